@@ -0,0 +1,33 @@
+package com.example.slshopping_ut;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+/**
+ * 登録・更新しようとした値が、一意制約のある列の登録済みの値と重複している場合の例外
+ * 重複の判定は事前の検索ではなくデータベースの一意制約で行い、同時に登録された場合も検出する
+ */
+public class DuplicateException extends Exception {
+
+    public DuplicateException(Throwable cause) {
+        super(cause);
+    }
+
+    /**
+     * 指定した一意制約(名前・メールアドレス)の違反による例外かを判定する
+     * 主キーなど他の一意制約の違反や、外部キー・NOT NULLなどの他の制約違反はfalseとする
+     *
+     * @param e 登録・更新時の例外
+     * @param constraintName 一意制約の名前
+     * @return true:指定した一意制約の違反 false:それ以外
+     */
+    public static boolean isUniqueViolation(DataIntegrityViolationException e, String constraintName) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                return constraintName.equalsIgnoreCase(violation.getConstraintName());
+            }
+        }
+        return false;
+    }
+
+}
@@ -6,6 +6,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,8 +52,9 @@ public class FileUploadUtil {
     public static void cleanDir(String dir) {
         Path dirPath = Paths.get(dir);
 
-        try {
-            Files.list(dirPath).forEach(file -> {
+        // ディレクトリのハンドルを開いたままにしないよう、一覧のストリームは使用後に閉じる
+        try (Stream<Path> files = Files.list(dirPath)) {
+            files.forEach(file -> {
                 if (!Files.isDirectory(file)) {
                     try {
                         Files.delete(file);
@@ -0,0 +1,75 @@
+package com.example.slshopping_ut;
+
+import java.util.Comparator;
+
+/**
+ * キーセットページングの境界位置を表すクラス
+ * 並び順のキー(名前など)と、同じキーが並んだ場合の順序を一意にするIDの組で位置を表す
+ */
+public class KeysetCursor {
+
+    /** 先頭のページを取得する際の起点(IDは1以上、名前は1文字以上のため全件がこれより後ろになる) */
+    public static final KeysetCursor START = new KeysetCursor(0L, "");
+
+    private static final char SEPARATOR = ':';
+
+    private final Long id;
+
+    private final String key;
+
+    public KeysetCursor(Long id, String key) {
+        this.id = id;
+        this.key = key;
+    }
+
+    /**
+     * 文字列表現からカーソルを復元する
+     * 形式は「ID」または「ID:キー」で、不正な値の場合はnullを返す
+     *
+     * @param value カーソルの文字列表現
+     * @return カーソル
+     */
+    public static KeysetCursor parse(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        int separator = value.indexOf(SEPARATOR);
+        try {
+            if (separator < 0) {
+                return new KeysetCursor(Long.valueOf(value), null);
+            }
+            return new KeysetCursor(Long.valueOf(value.substring(0, separator)), value.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * ページングの並び順に対応するカーソルの比較方法を返す
+     *
+     * @param sortByName 名前順の場合はtrue、ID順の場合はfalse
+     * @return カーソルの比較方法
+     */
+    public static Comparator<KeysetCursor> order(boolean sortByName) {
+        Comparator<KeysetCursor> byId = Comparator.comparing(KeysetCursor::getId);
+        return sortByName ? Comparator.comparing(KeysetCursor::getKey).thenComparing(byId) : byId;
+    }
+
+    /**
+     * カーソルを画面のリンクに埋め込む文字列に変換する
+     *
+     * @return カーソルの文字列表現
+     */
+    public String encode() {
+        return key == null ? String.valueOf(id) : id + String.valueOf(SEPARATOR) + key;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+}
@@ -0,0 +1,244 @@
+package com.example.slshopping_ut;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * キーセット(シーク)方式のページング結果を保持するクラス
+ * OFFSETで読み飛ばすのではなく、前後のページの境界位置を起点に取得するため、
+ * 何ページ目であっても1リクエストあたりの読み込み件数はページサイズ分に収まる
+ *
+ * @param <T> 一覧に表示するエンティティ
+ */
+public class KeysetPage<T> {
+
+    /** 1ページあたりの表示件数(デフォルト) */
+    public static final int DEFAULT_SIZE = 20;
+
+    /** 1ページあたりの表示件数(上限) */
+    public static final int MAX_SIZE = 100;
+
+    private final List<T> content;
+
+    private final String sort;
+
+    private final int size;
+
+    private final String nextCursor;
+
+    private final String prevCursor;
+
+    public KeysetPage(List<T> content, String sort, int size, String nextCursor, String prevCursor) {
+        this.content = content;
+        this.sort = sort;
+        this.size = size;
+        this.nextCursor = nextCursor;
+        this.prevCursor = prevCursor;
+    }
+
+    /**
+     * ページング条件に従って1ページ分を取得する
+     * 前後を判定するため、各クエリには1件多い件数を指定して呼び出す
+     *
+     * @param request ページング条件
+     * @param forwardQuery カーソルより後ろを昇順で取得するクエリ
+     * @param backwardQuery カーソルより前を降順で取得するクエリ
+     * @param cursorOf エンティティからカーソルを作成する関数
+     * @return ページング結果
+     */
+    public static <T> KeysetPage<T> fetch(KeysetRequest request,
+            BiFunction<KeysetCursor, Pageable, List<T>> forwardQuery,
+            BiFunction<KeysetCursor, Pageable, List<T>> backwardQuery,
+            Function<T, KeysetCursor> cursorOf) {
+        Pageable limit = PageRequest.of(0, request.getSize() + 1);
+        KeysetCursor after = usable(request, request.getAfter());
+        KeysetCursor before = usable(request, request.getBefore());
+
+        // 前のページへ戻る場合
+        if (before != null) {
+            List<T> rows = backwardQuery.apply(before, limit);
+            // 前のページが削除されていた場合は先頭のページを表示する
+            if (!rows.isEmpty()) {
+                return backward(rows, request, cursorOf);
+            }
+            after = null;
+        }
+
+        // 次のページへ進む場合、または先頭のページを表示する場合
+        List<T> rows = forwardQuery.apply(after != null ? after : KeysetCursor.START, limit);
+        return forward(rows, request, after != null, cursorOf);
+    }
+
+    /**
+     * 前方向(昇順)に size + 1 件取得した結果からページを作成する
+     * 1件多く取得できた場合のみ次のページが存在する
+     *
+     * @param rows 昇順に並んだ取得結果
+     * @param request ページング条件
+     * @param hasPrevious 前のページが存在するか
+     * @param cursorOf エンティティからカーソルを作成する関数
+     * @return ページング結果
+     */
+    public static <T> KeysetPage<T> forward(List<T> rows, KeysetRequest request, boolean hasPrevious,
+            Function<T, KeysetCursor> cursorOf) {
+        int size = request.getSize();
+        boolean hasNext = rows.size() > size;
+        List<T> content = hasNext ? rows.subList(0, size) : rows;
+
+        String next = hasNext ? encode(request, cursorOf.apply(content.get(content.size() - 1))) : null;
+        String prev = hasPrevious && !content.isEmpty() ? encode(request, cursorOf.apply(content.get(0))) : null;
+        return new KeysetPage<>(content, request.getSort(), size, next, prev);
+    }
+
+    /**
+     * 後方向(降順)に size + 1 件取得した結果からページを作成する
+     * 画面には昇順で表示するため、取得結果を反転させる
+     *
+     * @param rows 降順に並んだ取得結果
+     * @param request ページング条件
+     * @param cursorOf エンティティからカーソルを作成する関数
+     * @return ページング結果
+     */
+    public static <T> KeysetPage<T> backward(List<T> rows, KeysetRequest request, Function<T, KeysetCursor> cursorOf) {
+        int size = request.getSize();
+        boolean hasPrevious = rows.size() > size;
+        List<T> content = new ArrayList<>(hasPrevious ? rows.subList(0, size) : rows);
+        Collections.reverse(content);
+
+        // 後ろのページから戻ってきているため、次のページは常に存在する
+        String next = !content.isEmpty() ? encode(request, cursorOf.apply(content.get(content.size() - 1))) : null;
+        String prev = hasPrevious ? encode(request, cursorOf.apply(content.get(0))) : null;
+        return new KeysetPage<>(content, request.getSort(), size, next, prev);
+    }
+
+    /**
+     * インデックスなど、メモリ上で整列済みの検索結果から1ページ分を取得する
+     * カーソルの前後はメモリ上で求め、データベースからはページに表示する分だけを取得する
+     *
+     * @param request ページング条件
+     * @param sorted ページングの並び順に整列済みのカーソルのリスト
+     * @param loader IDのリストから、その並び順のままエンティティを取得する関数
+     * @param cursorOf エンティティからカーソルを作成する関数
+     * @return ページング結果
+     */
+    public static <T> KeysetPage<T> fetchSorted(KeysetRequest request, List<KeysetCursor> sorted,
+            Function<List<Long>, List<T>> loader, Function<T, KeysetCursor> cursorOf) {
+        Comparator<KeysetCursor> order = KeysetCursor.order(request.isSortedByName());
+        return fetch(request,
+            (cursor, limit) -> loader.apply(idsOf(seekAfter(sorted, cursor, order, limit.getPageSize()))),
+            (cursor, limit) -> loader.apply(idsOf(seekBefore(sorted, cursor, order, limit.getPageSize()))),
+            cursorOf);
+    }
+
+    /**
+     * 整列済みのカーソルのリストから、指定したカーソルより後ろを昇順で最大limit件取得する
+     * インデックスなど、メモリ上の検索結果をページングする場合に使用する
+     *
+     * @param sorted 整列済みのカーソルのリスト
+     * @param cursor 起点のカーソル
+     * @param order 並び順
+     * @param limit 最大件数
+     * @return カーソルのリスト
+     */
+    public static List<KeysetCursor> seekAfter(List<KeysetCursor> sorted, KeysetCursor cursor,
+            Comparator<KeysetCursor> order, int limit) {
+        int index = Collections.binarySearch(sorted, cursor, order);
+        int from = index >= 0 ? index + 1 : -index - 1;
+        return sorted.subList(from, Math.min(sorted.size(), from + limit));
+    }
+
+    /**
+     * 整列済みのカーソルのリストから、指定したカーソルより前を降順で最大limit件取得する
+     *
+     * @param sorted 整列済みのカーソルのリスト
+     * @param cursor 起点のカーソル
+     * @param order 並び順
+     * @param limit 最大件数
+     * @return カーソルのリスト
+     */
+    public static List<KeysetCursor> seekBefore(List<KeysetCursor> sorted, KeysetCursor cursor,
+            Comparator<KeysetCursor> order, int limit) {
+        int index = Collections.binarySearch(sorted, cursor, order);
+        int to = index >= 0 ? index : -index - 1;
+        List<KeysetCursor> result = new ArrayList<>(sorted.subList(Math.max(0, to - limit), to));
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * リクエストされた表示件数を1〜上限の範囲に丸める
+     *
+     * @param size リクエストされた表示件数
+     * @return 表示件数
+     */
+    public static int normalizeSize(Integer size) {
+        if (size == null || size < 1) {
+            return DEFAULT_SIZE;
+        }
+        return Math.min(size, MAX_SIZE);
+    }
+
+    /**
+     * 並び順に合わないカーソル(名前順なのにキーがないもの)は指定されていないものとして扱う
+     */
+    private static KeysetCursor usable(KeysetRequest request, KeysetCursor cursor) {
+        if (cursor == null || (request.isSortedByName() && cursor.getKey() == null)) {
+            return null;
+        }
+        return cursor;
+    }
+
+    private static List<Long> idsOf(List<KeysetCursor> cursors) {
+        List<Long> ids = new ArrayList<>(cursors.size());
+        for (KeysetCursor cursor : cursors) {
+            ids.add(cursor.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * ID順の場合はIDのみ、名前順の場合はIDと名前をカーソルに含める
+     */
+    private static String encode(KeysetRequest request, KeysetCursor cursor) {
+        if (!request.isSortedByName()) {
+            return new KeysetCursor(cursor.getId(), null).encode();
+        }
+        return cursor.encode();
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public String getSort() {
+        return sort;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public String getPrevCursor() {
+        return prevCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    public boolean hasPrevious() {
+        return prevCursor != null;
+    }
+
+}
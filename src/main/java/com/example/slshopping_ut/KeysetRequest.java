@@ -0,0 +1,77 @@
+package com.example.slshopping_ut;
+
+/**
+ * 一覧画面のページング条件を保持するクラス
+ * 各一覧画面で共通して、並び順・カーソル・表示件数をこのクラスで受け渡す
+ */
+public class KeysetRequest {
+
+    /** 並び順:ID順 */
+    public static final String SORT_ID = "id";
+
+    /** 並び順:名前順(同じ名前の場合はID順) */
+    public static final String SORT_NAME = "name";
+
+    private final String sort;
+
+    private final KeysetCursor after;
+
+    private final KeysetCursor before;
+
+    private final int size;
+
+    public KeysetRequest(String sort, KeysetCursor after, KeysetCursor before, int size) {
+        this.sort = sort;
+        this.after = after;
+        this.before = before;
+        this.size = size;
+    }
+
+    /**
+     * リクエストパラメーターからページング条件を作成する
+     * 不正な並び順・表示件数はデフォルト値に置き換える
+     *
+     * @param sort 並び順
+     * @param after 前のページの末尾のカーソル
+     * @param before 次のページの先頭のカーソル
+     * @param size 1ページあたりの表示件数
+     * @return ページング条件
+     */
+    public static KeysetRequest of(String sort, String after, String before, Integer size) {
+        String sortKey = SORT_NAME.equals(sort) ? SORT_NAME : SORT_ID;
+        return new KeysetRequest(sortKey, KeysetCursor.parse(after), KeysetCursor.parse(before),
+            KeysetPage.normalizeSize(size));
+    }
+
+    /**
+     * 先頭のページを取得するページング条件を作成する
+     *
+     * @param sort 並び順
+     * @param size 1ページあたりの表示件数
+     * @return ページング条件
+     */
+    public static KeysetRequest first(String sort, int size) {
+        return new KeysetRequest(sort, null, null, size);
+    }
+
+    public boolean isSortedByName() {
+        return SORT_NAME.equals(sort);
+    }
+
+    public String getSort() {
+        return sort;
+    }
+
+    public KeysetCursor getAfter() {
+        return after;
+    }
+
+    public KeysetCursor getBefore() {
+        return before;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+}
@@ -1,7 +1,7 @@
 package com.example.slshopping_ut;
 
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 
@@ -9,8 +9,8 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 public class MvcConfig implements WebMvcConfigurer {
 
     @Override
-    public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        registry.addResourceHandler("/product-images/**")
-            .addResourceLocations("file:product-images/");
+    public void addInterceptors(InterceptorRegistry registry) {
+        // 静的リソース(CSS・JavaScriptなど)のCache-Controlを、URLにハッシュ値を含むかどうかで切り替える
+        registry.addInterceptor(new StaticResourceCacheInterceptor());
     }
 }
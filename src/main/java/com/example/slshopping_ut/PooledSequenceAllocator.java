@@ -0,0 +1,47 @@
+package com.example.slshopping_ut;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * JDBCで直接登録する行のIDを、エンティティと同じシーケンスから払い出す処理
+ * エンティティのIDはHibernateのpooledオプティマイザで払い出しており、シーケンスの値1つが「値 - 49 ～ 値」の50件分の範囲を表す
+ * 同じ扱いで範囲ごとに確保し、Hibernateが払い出すIDと重複しないようにする(1行ごとにnextvalを呼ぶと50件分を消費してしまう)
+ */
+@Component
+public class PooledSequenceAllocator {
+
+    /** シーケンスの増分(エンティティの@SequenceGeneratorのallocationSizeと同じにすること) */
+    public static final int ALLOCATION_SIZE = 50;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * 指定した件数のIDを払い出す
+     *
+     * @param sequenceName シーケンス名
+     * @param count 件数
+     * @return 昇順のIDのリスト
+     */
+    public List<Long> allocate(String sequenceName, int count) {
+        List<Long> ids = new ArrayList<>(count);
+        while (ids.size() < count) {
+            int blocks = (count - ids.size() + ALLOCATION_SIZE - 1) / ALLOCATION_SIZE;
+            List<Long> values = jdbcTemplate.queryForList(
+                "SELECT nextval(CAST(? AS regclass)) FROM generate_series(1, ?)", Long.class, sequenceName, blocks);
+            for (Long value : values) {
+                // シーケンスの初期値(1)の範囲は1件のみ使用する
+                for (long id = Math.max(1, value - ALLOCATION_SIZE + 1); id <= value && ids.size() < count; id++) {
+                    ids.add(id);
+                }
+            }
+        }
+        return ids;
+    }
+
+}
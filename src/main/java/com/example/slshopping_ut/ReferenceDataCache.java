@@ -0,0 +1,84 @@
+package com.example.slshopping_ut;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * 画面の選択肢などに使用する、変更の少ないマスタ情報のキャッシュ
+ * 全件を変更不可のスナップショットとして保持し、初回の参照時に読み込む
+ * 登録・削除時にrebuildで作り直し、スナップショットは置き換えのみで変更しない
+ *
+ * @param <T> マスタ情報の型
+ */
+public class ReferenceDataCache<T> {
+
+    /** 全件の読み込み処理 */
+    private final Supplier<List<T>> loader;
+
+    /** 再構築を開始するたびに払い出すバージョン */
+    private final AtomicLong versions = new AtomicLong();
+
+    private final AtomicReference<Snapshot<T>> current = new AtomicReference<>();
+
+    /**
+     * @param loader 全件の読み込み処理(キャッシュの外から変更されないよう、エンティティの複製を返すこと)
+     */
+    public ReferenceDataCache(Supplier<List<T>> loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * 現在のスナップショットを取得する
+     * 未読み込みの場合はその場で読み込む
+     *
+     * @return スナップショット
+     */
+    public Snapshot<T> get() {
+        Snapshot<T> snapshot = current.get();
+        return snapshot != null ? snapshot : rebuild();
+    }
+
+    /**
+     * 全件を読み込み直し、スナップショットを置き換える
+     * 読み込みの開始前にバージョンを払い出し、後から開始した再構築の結果を古い内容で上書きしないようにする
+     *
+     * @return 置き換え後のスナップショット
+     */
+    public Snapshot<T> rebuild() {
+        long version = versions.incrementAndGet();
+        Snapshot<T> built = new Snapshot<>(version, List.copyOf(loader.get()));
+        return current.accumulateAndGet(built,
+            (old, next) -> old != null && old.getVersion() > next.getVersion() ? old : next);
+    }
+
+    /**
+     * ある時点のマスタ情報の全件
+     *
+     * @param <T> マスタ情報の型
+     */
+    public static class Snapshot<T> {
+
+        private final long version;
+
+        private final List<T> items;
+
+        Snapshot(long version, List<T> items) {
+            this.version = version;
+            this.items = items;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * @return 変更不可のリスト
+         */
+        public List<T> getItems() {
+            return items;
+        }
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.example.slshopping_ut;
+
+import java.util.regex.Pattern;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * 静的リソースのCache-Controlを設定するクラス
+ * テンプレートの@{...}のURLは、内容のハッシュ値を含むファイル名(例: style-<MD5>.css)に書き換えられる
+ * (spring.web.resources.chain.strategy.content)。ハッシュ値を含むURLは内容が変わらないため1年間再検証させず、
+ * CSSから参照される画像などハッシュ値を含まないURLは、毎回Last-Modifiedで再検証させる
+ */
+public class StaticResourceCacheInterceptor implements HandlerInterceptor {
+
+    /** 内容のハッシュ値を含むファイル名(ContentVersionStrategyが付ける、拡張子の前の32桁のMD5) */
+    private static final Pattern VERSIONED = Pattern.compile("-[0-9a-f]{32}\\.[^/]+$");
+
+    /** ハッシュ値を含むURLのCache-Control */
+    static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+    /** ハッシュ値を含まないURLのCache-Control */
+    static final String REVALIDATE = "no-cache";
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof ResourceHttpRequestHandler) {
+            boolean versioned = VERSIONED.matcher(request.getRequestURI()).find();
+            response.setHeader(HttpHeaders.CACHE_CONTROL, versioned ? IMMUTABLE : REVALIDATE);
+        }
+        return true;
+    }
+
+}
@@ -1,9 +1,11 @@
 package com.example.slshopping_ut.brand;
 
-import java.util.List;
+import java.io.IOException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.crossstore.ChangeSetPersister.NotFoundException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -13,10 +15,16 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import com.example.slshopping_ut.DuplicateException;
+import com.example.slshopping_ut.KeysetPage;
+import com.example.slshopping_ut.KeysetRequest;
+import com.example.slshopping_ut.csv.CsvImportResult;
 import com.example.slshopping_ut.entity.Brand;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 
 @Controller
@@ -26,17 +34,29 @@ public class BrandController {
     @Autowired
     private BrandService brandService;
 
+    /** 保存前に重複チェックを行うか(重複は保存時にデータベースの一意制約で検出するため、通常は行わない) */
+    @Value("${slshopping.unique-precheck:false}")
+    private boolean uniquePrecheck;
+
     /**
      * ブランド一覧画面表示
      *
+     * @param keyword 検索キーワード
+     * @param sort 並び順
+     * @param after 前のページの末尾のカーソル
+     * @param before 次のページの先頭のカーソル
+     * @param size 1ページあたりの表示件数
      * @param model
      * @return ブランド一覧画面
      */
     @GetMapping
-    public String listBrands(@RequestParam(required = false) String keyword, Model model) {
-        // 全ブランド情報の取得
-        List<Brand> listBrands = brandService.listAll(keyword);
-        model.addAttribute("listBrands", listBrands);
+    public String listBrands(@RequestParam(required = false) String keyword,
+        @RequestParam(required = false) String sort, @RequestParam(required = false) String after,
+        @RequestParam(required = false) String before, @RequestParam(required = false) Integer size, Model model) {
+        // 1ページ分のブランド情報の取得
+        KeysetPage<Brand> page = brandService.listPage(keyword, KeysetRequest.of(sort, after, before, size));
+        model.addAttribute("listBrands", page.getContent());
+        model.addAttribute("page", page);
         model.addAttribute("keyword", keyword);
         return "brands/brands";
     }
@@ -73,19 +93,70 @@ public class BrandController {
             return "brands/brand_form";
         }
 
-        // 重複チェック
-        if (!brandService.checkUnique(brand)) {
+        // 重複チェック(事前チェックを有効にした場合のみ)
+        if (uniquePrecheck && !brandService.checkUnique(brand)) {
             model.addAttribute("error_message", "重複しています");
             return "brands/brand_form";
         }
 
-        // ブランド情報の登録
-        brandService.save(brand);
+        // ブランド情報の登録(重複はデータベースの一意制約で検出する)
+        try {
+            brandService.save(brand);
+        } catch (DuplicateException e) {
+            model.addAttribute("error_message", "重複しています");
+            return "brands/brand_form";
+        }
         // 登録成功のメッセージを格納
         ra.addFlashAttribute("success_message", "登録に成功しました");
         return "redirect:/brands";
     }
 
+    /**
+     * ブランド一括登録画面表示
+     *
+     * @return ブランド一括登録画面
+     */
+    @GetMapping("/import")
+    public String importForm() {
+        return "brands/brand_import";
+    }
+
+    /**
+     * ブランド一括登録
+     * CSVファイルのブランドを登録し、登録件数と行ごとのエラーを表示する
+     *
+     * @param file CSVファイル
+     * @param model
+     * @return ブランド一括登録画面
+     * @throws IOException
+     */
+    @PostMapping("/import")
+    public String importBrands(MultipartFile file, Model model) throws IOException {
+        // ファイルのチェック
+        if (file == null || file.isEmpty()) {
+            model.addAttribute("file_error_message", "CSVファイルを選択してください");
+            return "brands/brand_import";
+        }
+
+        CsvImportResult result = brandService.importCsv(file.getInputStream());
+        model.addAttribute("result", result);
+        return "brands/brand_import";
+    }
+
+    /**
+     * ブランド情報の出力
+     * 全件をCSVでレスポンスに直接書き込む
+     *
+     * @param response
+     * @throws IOException
+     */
+    @GetMapping("/export")
+    public void exportBrands(HttpServletResponse response) throws IOException {
+        response.setContentType("text/csv;charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"brands.csv\"");
+        brandService.exportCsv(response.getOutputStream());
+    }
+
     /**
      * ブランド詳細画面表示
      *
@@ -145,14 +216,19 @@ public class BrandController {
             return "brands/brand_edit";
         }
 
-        // 重複チェック
-        if (!brandService.checkUnique(brand)) {
+        // 重複チェック(事前チェックを有効にした場合のみ)
+        if (uniquePrecheck && !brandService.checkUnique(brand)) {
             model.addAttribute("error_message", "重複しています");
             return "brands/brand_edit";
         }
 
-        // ブランド情報の更新
-        brandService.save(brand);
+        // ブランド情報の更新(重複はデータベースの一意制約で検出する)
+        try {
+            brandService.save(brand);
+        } catch (DuplicateException e) {
+            model.addAttribute("error_message", "重複しています");
+            return "brands/brand_edit";
+        }
         // 更新成功のメッセージを格納
         ra.addFlashAttribute("success_message", "更新に成功しました");
         return "redirect:/brands";
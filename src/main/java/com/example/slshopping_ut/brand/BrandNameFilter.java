@@ -0,0 +1,41 @@
+package com.example.slshopping_ut.brand;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import com.example.slshopping_ut.entity.Brand;
+import com.example.slshopping_ut.search.ExistenceFilter;
+
+/**
+ * ブランド名が登録済みかを判定するフィルター
+ */
+@Component
+public class BrandNameFilter extends ExistenceFilter<Brand> {
+
+    @Autowired
+    private BrandRepository brandRepository;
+
+    @Override
+    protected long countRows() {
+        return brandRepository.count();
+    }
+
+    @Override
+    protected List<Brand> loadAfter(long afterId, int limit) {
+        return brandRepository.searchPageAfter("", afterId, PageRequest.of(0, limit));
+    }
+
+    @Override
+    protected Long idOf(Brand brand) {
+        return brand.getId();
+    }
+
+    @Override
+    protected String keyOf(Brand brand) {
+        return brand.getName();
+    }
+
+}
@@ -1,31 +1,104 @@
 package com.example.slshopping_ut.brand;
 
+import java.util.Collection;
 import java.util.List;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import com.example.slshopping_ut.entity.Brand;
 
+import jakarta.persistence.QueryHint;
+
 @Repository
 public interface BrandRepository extends JpaRepository<Brand, Long> {
 
     /**
      * ブランド情報検索クエリ
+     * 2次キャッシュが有効な場合は、検索結果をクエリキャッシュに保持する
      *
      * @param name ブランド名
      * @return ブランド情報
      */
+    @QueryHints({ @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "brand.byName") })
     public Brand findByName(String name);
 
+    /**
+     * ブランド名のリストに一致するブランド情報を取得するクエリ
+     *
+     * @param names ブランド名のリスト
+     * @return ブランド情報のリスト
+     */
+    public List<Brand> findAllByNameIn(Collection<String> names);
+
     /**
      * ブランド情報検索クエリ
      *
      * @param keyword 検索キーワード
      * @return ブランド情報のリスト
      */
-    @Query("SELECT b FROM Brand b WHERE b.name LIKE %?1%")
+    @Query("SELECT b FROM Brand b WHERE b.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()}")
     public List<Brand> search(String keyword);
 
+    /**
+     * 検索キーワードに一致し、指定したIDより後ろのブランド情報をIDの昇順で取得するクエリ
+     * 検索キーワードに空文字を指定した場合は全件が対象になる
+     *
+     * @param keyword 検索キーワード
+     * @param afterId 前のページの末尾のブランドID
+     * @param pageable 取得件数
+     * @return ブランド情報のリスト
+     */
+    @Query("SELECT b FROM Brand b WHERE b.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "AND b.id > ?2 ORDER BY b.id ASC")
+    public List<Brand> searchPageAfter(String keyword, Long afterId, Pageable pageable);
+
+    /**
+     * 検索キーワードに一致し、指定したIDより前のブランド情報をIDの降順で取得するクエリ
+     * 検索キーワードに空文字を指定した場合は全件が対象になる
+     *
+     * @param keyword 検索キーワード
+     * @param beforeId 次のページの先頭のブランドID
+     * @param pageable 取得件数
+     * @return ブランド情報のリスト
+     */
+    @Query("SELECT b FROM Brand b WHERE b.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "AND b.id < ?2 ORDER BY b.id DESC")
+    public List<Brand> searchPageBefore(String keyword, Long beforeId, Pageable pageable);
+
+    /**
+     * 検索キーワードに一致し、指定した(名前, ID)より後ろのブランド情報を名前・IDの昇順で取得するクエリ
+     * 検索キーワードに空文字を指定した場合は全件が対象になる
+     *
+     * @param keyword 検索キーワード
+     * @param afterName 前のページの末尾のブランド名
+     * @param afterId 前のページの末尾のブランドID
+     * @param pageable 取得件数
+     * @return ブランド情報のリスト
+     */
+    @Query("SELECT b FROM Brand b WHERE b.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "AND (b.name > ?2 OR (b.name = ?2 AND b.id > ?3)) "
+            + "ORDER BY b.name ASC, b.id ASC")
+    public List<Brand> searchPageAfterName(String keyword, String afterName, Long afterId, Pageable pageable);
+
+    /**
+     * 検索キーワードに一致し、指定した(名前, ID)より前のブランド情報を名前・IDの降順で取得するクエリ
+     * 検索キーワードに空文字を指定した場合は全件が対象になる
+     *
+     * @param keyword 検索キーワード
+     * @param beforeName 次のページの先頭のブランド名
+     * @param beforeId 次のページの先頭のブランドID
+     * @param pageable 取得件数
+     * @return ブランド情報のリスト
+     */
+    @Query("SELECT b FROM Brand b WHERE b.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "AND (b.name < ?2 OR (b.name = ?2 AND b.id < ?3)) "
+            + "ORDER BY b.name DESC, b.id DESC")
+    public List<Brand> searchPageBeforeName(String keyword, String beforeName, Long beforeId, Pageable pageable);
+
 }
@@ -0,0 +1,41 @@
+package com.example.slshopping_ut.brand;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import com.example.slshopping_ut.entity.Brand;
+import com.example.slshopping_ut.search.SubstringSearchIndex;
+
+/**
+ * ブランド名の部分一致検索用のインデックス
+ */
+@Component
+public class BrandSearchIndex extends SubstringSearchIndex<Brand> {
+
+    @Autowired
+    private BrandRepository brandRepository;
+
+    @Override
+    protected List<Brand> loadAfter(long afterId, int limit) {
+        return brandRepository.searchPageAfter("", afterId, PageRequest.of(0, limit));
+    }
+
+    @Override
+    protected Long idOf(Brand brand) {
+        return brand.getId();
+    }
+
+    @Override
+    protected String nameOf(Brand brand) {
+        return brand.getName();
+    }
+
+    @Override
+    protected String[] textsOf(Brand brand) {
+        return new String[] { brand.getName() };
+    }
+
+}
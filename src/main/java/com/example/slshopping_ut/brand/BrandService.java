@@ -1,19 +1,82 @@
 package com.example.slshopping_ut.brand;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.crossstore.ChangeSetPersister.NotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.example.slshopping_ut.DuplicateException;
+import com.example.slshopping_ut.KeysetCursor;
+import com.example.slshopping_ut.KeysetPage;
+import com.example.slshopping_ut.KeysetRequest;
+import com.example.slshopping_ut.ReferenceDataCache;
+import com.example.slshopping_ut.csv.CsvImportResult;
+import com.example.slshopping_ut.csv.CsvReader;
+import com.example.slshopping_ut.csv.CsvWriter;
 import com.example.slshopping_ut.entity.Brand;
+import com.example.slshopping_ut.product.ProductSuggestIndex;
+import com.example.slshopping_ut.search.SearchResults;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 
 @Service
 public class BrandService {
 
+    /** 一括登録で1回のトランザクションで登録する件数 */
+    public static final int IMPORT_CHUNK_SIZE = 1000;
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerFactory.getLogger(BrandService.class);
+
     @Autowired
     private BrandRepository brandRepository;
 
+    @Autowired
+    private BrandSearchIndex brandSearchIndex;
+
+    @Autowired
+    private BrandNameFilter brandNameFilter;
+
+    @Autowired
+    private ProductSuggestIndex productSuggestIndex;
+
+    @Autowired
+    private BrandBulkRepository brandBulkRepository;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /** 商品画面の選択肢に使用するブランド情報のキャッシュ */
+    private final ReferenceDataCache<Brand> referenceCache = new ReferenceDataCache<>(this::loadReferenceData);
+
     /**
      * ブランド情報全件取得
      *
@@ -23,6 +86,16 @@ public class BrandService {
         return brandRepository.findAll();
     }
 
+    /**
+     * キャッシュしたブランド情報全件取得
+     * 商品画面の選択肢など、リクエストのたびにデータベースから取得する必要のない箇所で使用する
+     *
+     * @return ブランド情報の変更不可のリスト
+     */
+    public List<Brand> listCached() {
+        return referenceCache.get().getItems();
+    }
+
     /**
      * ブランド情報検索処理
      *
@@ -32,6 +105,10 @@ public class BrandService {
     public List<Brand> listAll(String keyword) {
         // 検索キーワードがあった場合
         if (keyword != null && !keyword.isEmpty()) {
+            // インデックスの構築が完了している場合は、一致したブランドIDだけをデータベースから取得する
+            if (brandSearchIndex.isReady()) {
+                return SearchResults.findAllInOrder(brandRepository, brandSearchIndex.search(keyword), Brand::getId);
+            }
             return brandRepository.search(keyword);
         }
         // それ以外の場合
@@ -40,6 +117,37 @@ public class BrandService {
         }
     }
 
+    /**
+     * ブランド情報のページ取得処理
+     * ページング条件の並び順(ID順・名前順)に従い、カーソルの前後1ページ分を取得する
+     *
+     * @param keyword 検索キーワード
+     * @param request ページング条件
+     * @return ブランド情報のページ
+     */
+    public KeysetPage<Brand> listPage(String keyword, KeysetRequest request) {
+        // 検索キーワードがあり、インデックスの構築が完了している場合は、インデックスの検索結果をページングする
+        if (keyword != null && !keyword.isEmpty() && brandSearchIndex.isReady()) {
+            return KeysetPage.fetchSorted(request, brandSearchIndex.search(keyword, request.isSortedByName()),
+                ids -> SearchResults.findAllInOrder(brandRepository, ids, Brand::getId),
+                brand -> new KeysetCursor(brand.getId(), brand.getName()));
+        }
+
+        // 検索キーワードがない場合は空文字を渡して全件を対象にする
+        String word = keyword != null ? keyword : "";
+
+        if (request.isSortedByName()) {
+            return KeysetPage.fetch(request,
+                (cursor, limit) -> brandRepository.searchPageAfterName(word, cursor.getKey(), cursor.getId(), limit),
+                (cursor, limit) -> brandRepository.searchPageBeforeName(word, cursor.getKey(), cursor.getId(), limit),
+                brand -> new KeysetCursor(brand.getId(), brand.getName()));
+        }
+        return KeysetPage.fetch(request,
+            (cursor, limit) -> brandRepository.searchPageAfter(word, cursor.getId(), limit),
+            (cursor, limit) -> brandRepository.searchPageBefore(word, cursor.getId(), limit),
+            brand -> new KeysetCursor(brand.getId(), brand.getName()));
+    }
+
     /**
      * IDに紐づくブランド情報取得処理
      *
@@ -54,23 +162,51 @@ public class BrandService {
 
     /**
      * ブランド情報登録処理
+     * ブランド名の重複はデータベースの一意制約で検出する
      *
      * @param brand 保存したいブランド情報
      * @return 保存したブランド情報
+     * @throws DuplicateException ブランド名が重複している場合
      */
-    public Brand save(Brand brand) {
-        return brandRepository.save(brand);
+    public Brand save(Brand brand) throws DuplicateException {
+        boolean isCreatingNew = (brand.getId() == null || brand.getId() == 0);
+        Brand savedBrand;
+        try {
+            // 一意制約違反をこの場で検出するため、INSERT・UPDATEを即時に送信する
+            savedBrand = brandRepository.saveAndFlush(brand);
+        } catch (DataIntegrityViolationException e) {
+            if (!DuplicateException.isUniqueViolation(e, Brand.NAME_CONSTRAINT)) {
+                throw e;
+            }
+            // 登録画面を再表示した際に更新扱いにならないよう、払い出されたIDを戻す
+            if (isCreatingNew) {
+                brand.setId(null);
+            }
+            throw new DuplicateException(e);
+        }
+        brandSearchIndex.put(savedBrand);
+        brandNameFilter.put(savedBrand.getName());
+        // 商品検索の入力補完に名前の変更を反映する
+        productSuggestIndex.putBrand(savedBrand);
+        referenceCache.rebuild();
+        return savedBrand;
     }
 
     /**
      * ブランド名の重複チェック
+     * 登録時の重複はsaveメソッドで検出するため、保存前に確認が必要な場合にのみ使用する
      *
      * @param name 重複確認したいブランド情報
      * @return true:重複なし false:重複あり
      */
     public boolean checkUnique(Brand brand) {
+        // 登録されていないことが確実な名前は、データベースに問い合わせない
+        if (!brandNameFilter.mightExist(brand.getName())) {
+            return true;
+        }
         boolean isCreatingNew = (brand.getId() == null || brand.getId() == 0);
         Brand brandByName = brandRepository.findByName(brand.getName());
+        brandNameFilter.recordLookup(brandByName != null);
 
         if (isCreatingNew) {
             if (brandByName != null) {
@@ -94,6 +230,144 @@ public class BrandService {
         // IDに紐づくブランド情報が存在するか確認するため、getメソッドを呼び出す
         Brand brand = get(id);
         brandRepository.deleteById(brand.getId());
+        brandSearchIndex.remove(brand.getId());
+        productSuggestIndex.removeBrand(brand.getId());
+        referenceCache.rebuild();
+    }
+
+    /**
+     * ブランド情報の一括登録処理
+     * CSVファイル(1行目はヘッダー行とし、name列にブランド名を記載する)のブランド名のうち、未登録のものを登録する
+     * 一定件数ずつINSERT ... ON CONFLICTのバッチで登録し、1件ごとの重複チェックは行わない
+     *
+     * @param in CSVファイル(UTF-8)
+     * @return 登録結果
+     * @throws IOException
+     */
+    public CsvImportResult importCsv(InputStream in) throws IOException {
+        long start = System.currentTimeMillis();
+        CsvImportResult result = new CsvImportResult();
+
+        try (CsvReader reader = new CsvReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            Map<String, Integer> columns = reader.readHeader();
+            if (columns == null || !columns.containsKey("name")) {
+                result.addError(1, "必須の列がありません: name");
+                return result;
+            }
+            int nameColumn = columns.get("name");
+
+            // ブランド名 → 行番号(ファイル内で重複したブランド名は1件として登録する)
+            Map<String, Long> chunk = new LinkedHashMap<>();
+            List<String> record;
+            while ((record = reader.readRecord()) != null) {
+                if (CsvReader.isBlank(record)) {
+                    continue;
+                }
+                result.addRows(1);
+                String name = nameColumn < record.size() ? record.get(nameColumn).trim() : "";
+                Set<ConstraintViolation<Brand>> violations = validator.validateValue(Brand.class, "name", name);
+                if (!violations.isEmpty()) {
+                    result.addError(reader.getLineNumber(), violations.iterator().next().getMessage());
+                    continue;
+                }
+                if (chunk.putIfAbsent(name, reader.getLineNumber()) != null) {
+                    result.addSkipped(1);
+                    continue;
+                }
+                if (chunk.size() == IMPORT_CHUNK_SIZE) {
+                    upsertChunk(chunk, result);
+                    chunk = new LinkedHashMap<>();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                upsertChunk(chunk, result);
+            }
+        } finally {
+            result.setElapsedMillis(System.currentTimeMillis() - start);
+            // JDBCで直接登録したため、2次キャッシュ・選択肢のキャッシュを破棄する
+            evictSecondLevelCache();
+            referenceCache.rebuild();
+        }
+
+        LOGGER.info("Brand import: " + result.getImportedRows() + "/" + result.getTotalRows() + " rows in "
+            + result.getElapsedMillis() + " ms (" + result.getRowsPerSecond() + " rows/s)");
+        return result;
+    }
+
+    /**
+     * ブランド情報の出力処理
+     * 全件をCSV(UTF-8、BOM付き)で出力する(一括登録の形式と同じ)
+     *
+     * @param out 出力先
+     * @throws IOException
+     */
+    public void exportCsv(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write('\uFEFF');
+        CsvWriter csv = new CsvWriter(writer);
+        csv.writeRecord("id", "name");
+        for (Brand brand : listCached()) {
+            csv.writeRecord(brand.getId(), brand.getName());
+        }
+        csv.flush();
+    }
+
+    /**
+     * 一定件数のブランド名を1回のトランザクションで登録し、検索インデックスに反映する
+     *
+     * @param chunk ブランド名 → 行番号
+     * @param result 登録結果の格納先
+     */
+    private void upsertChunk(Map<String, Long> chunk, CsvImportResult result) {
+        List<String> names = new ArrayList<>(chunk.keySet());
+        List<String> inserted;
+        try {
+            inserted = transactionTemplate.execute(status -> brandBulkRepository.upsert(names));
+        } catch (DataAccessException e) {
+            LOGGER.warn("Brand import chunk failed", e);
+            for (Long line : chunk.values()) {
+                result.addError(line, "登録に失敗しました");
+            }
+            return;
+        }
+        // 登録済みのブランド名はON CONFLICTで登録されないため、登録済みとして数える
+        result.addImported(inserted.size());
+        result.addSkipped(names.size() - inserted.size());
+        for (String name : names) {
+            brandNameFilter.put(name);
+        }
+
+        for (Brand brand : brandRepository.findAllByNameIn(inserted)) {
+            brandSearchIndex.put(brand);
+            productSuggestIndex.putBrand(brand);
+        }
+    }
+
+    /**
+     * ブランド情報の2次キャッシュ(エンティティ・ブランド名の検索結果)を破棄する
+     * 2次キャッシュが無効の場合は何もしない
+     */
+    private void evictSecondLevelCache() {
+        Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        cache.evict(Brand.class);
+        cache.evictQueryRegion("brand.byName");
+    }
+
+    /**
+     * キャッシュに保持するブランド情報を読み込む
+     * キャッシュの内容が画面などから変更されないよう、永続化コンテキストに属さない複製を返す
+     *
+     * @return ブランド情報のリスト
+     */
+    private List<Brand> loadReferenceData() {
+        List<Brand> copies = new ArrayList<>();
+        for (Brand brand : brandRepository.findAll()) {
+            Brand copy = new Brand();
+            copy.setId(brand.getId());
+            copy.setName(brand.getName());
+            copies.add(copy);
+        }
+        return copies;
     }
 
 }
@@ -0,0 +1,50 @@
+package com.example.slshopping_ut.cache;
+
+/**
+ * キャッシュ領域の利用状況
+ */
+public class CacheRegionReport {
+
+    /** 領域名(合計の場合は集計対象の名前) */
+    private final String name;
+
+    private final long hitCount;
+
+    private final long missCount;
+
+    private final long putCount;
+
+    public CacheRegionReport(String name, long hitCount, long missCount, long putCount) {
+        this.name = name;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.putCount = putCount;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getPutCount() {
+        return putCount;
+    }
+
+    /**
+     * ヒット率
+     *
+     * @return ヒット数 / (ヒット数 + ミス数)。参照がない場合は0
+     */
+    public double getHitRatio() {
+        long total = hitCount + missCount;
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.example.slshopping_ut.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import com.example.slshopping_ut.search.ExistenceFilter;
+import com.example.slshopping_ut.search.ExistenceFilterReport;
+
+@Controller
+@RequestMapping("/cache")
+public class CacheStatisticsController {
+
+    @Autowired
+    private CacheStatisticsService cacheStatisticsService;
+
+    @Autowired
+    private List<ExistenceFilter<?>> existenceFilters;
+
+    /**
+     * キャッシュの利用状況
+     * 2次キャッシュ・クエリキャッシュのヒット数・ミス数・ヒット率をJSONで返す
+     *
+     * @return キャッシュの利用状況
+     */
+    @GetMapping("/statistics")
+    @ResponseBody
+    public CacheStatisticsReport statistics() {
+        return cacheStatisticsService.getReport();
+    }
+
+    /**
+     * 登録済み判定のフィルターの利用状況
+     * フィルターごとのメモリ使用量・誤判定率・省略した問い合わせの回数をJSONで返す
+     *
+     * @return フィルターごとの利用状況
+     */
+    @GetMapping("/filters")
+    @ResponseBody
+    public List<ExistenceFilterReport> filters() {
+        List<ExistenceFilterReport> reports = new ArrayList<>();
+        for (ExistenceFilter<?> filter : existenceFilters) {
+            reports.add(filter.getReport());
+        }
+        return reports;
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.example.slshopping_ut.cache;
+
+import java.util.List;
+
+/**
+ * Hibernateの2次キャッシュ・クエリキャッシュの利用状況
+ */
+public class CacheStatisticsReport {
+
+    /** 統計情報の収集が有効な場合はtrue(falseの場合、各件数は0) */
+    private final boolean enabled;
+
+    /** エンティティ・コレクションのキャッシュの合計 */
+    private final CacheRegionReport secondLevel;
+
+    /** クエリキャッシュの合計 */
+    private final CacheRegionReport query;
+
+    /** 領域ごとの利用状況(領域名の昇順) */
+    private final List<CacheRegionReport> regions;
+
+    public CacheStatisticsReport(boolean enabled, CacheRegionReport secondLevel, CacheRegionReport query,
+            List<CacheRegionReport> regions) {
+        this.enabled = enabled;
+        this.secondLevel = secondLevel;
+        this.query = query;
+        this.regions = regions;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public CacheRegionReport getSecondLevel() {
+        return secondLevel;
+    }
+
+    public CacheRegionReport getQuery() {
+        return query;
+    }
+
+    public List<CacheRegionReport> getRegions() {
+        return regions;
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.example.slshopping_ut.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Hibernateの統計情報から、2次キャッシュ・クエリキャッシュのヒット率を集計する
+ * 統計情報の収集はcacheプロファイル(hibernate.generate_statistics)で有効にする
+ */
+@Service
+public class CacheStatisticsService {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * キャッシュの利用状況の取得処理
+     *
+     * @return キャッシュの利用状況
+     */
+    public CacheStatisticsReport getReport() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        if (!statistics.isStatisticsEnabled()) {
+            return new CacheStatisticsReport(false, new CacheRegionReport("second-level", 0, 0, 0),
+                new CacheRegionReport("query", 0, 0, 0), new ArrayList<>());
+        }
+
+        CacheRegionReport secondLevel = new CacheRegionReport("second-level",
+            statistics.getSecondLevelCacheHitCount(), statistics.getSecondLevelCacheMissCount(),
+            statistics.getSecondLevelCachePutCount());
+        CacheRegionReport query = new CacheRegionReport("query",
+            statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount(),
+            statistics.getQueryCachePutCount());
+
+        String[] names = statistics.getSecondLevelCacheRegionNames();
+        Arrays.sort(names);
+        List<CacheRegionReport> regions = new ArrayList<>();
+        for (String name : names) {
+            CacheRegionStatistics region = statistics.getCacheRegionStatistics(name);
+            if (region != null) {
+                regions.add(new CacheRegionReport(name, region.getHitCount(), region.getMissCount(),
+                    region.getPutCount()));
+            }
+        }
+        return new CacheStatisticsReport(true, secondLevel, query, regions);
+    }
+
+}
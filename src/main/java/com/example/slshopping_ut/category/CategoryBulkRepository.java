@@ -0,0 +1,47 @@
+package com.example.slshopping_ut.category;
+
+import java.sql.PreparedStatement;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.example.slshopping_ut.PooledSequenceAllocator;
+
+/**
+ * カテゴリー情報の一括登録
+ * 重複チェックと登録を1件ずつ行わず、カテゴリー名の配列を展開した1回のINSERT ... ON CONFLICTで登録する
+ * (JDBCのバッチではreWriteBatchedInsertsにより更新件数が返らないため、RETURNINGで登録したカテゴリー名を受け取る)
+ */
+@Repository
+public class CategoryBulkRepository {
+
+    /** 登録済みのカテゴリー名は何もしない(カテゴリー名以外の項目がないため、更新する内容がない) */
+    private static final String UPSERT = "INSERT INTO categories (id, name) "
+            + "SELECT * FROM unnest(?::bigint[], ?::varchar[]) "
+            + "ON CONFLICT (name) DO NOTHING RETURNING name";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PooledSequenceAllocator sequenceAllocator;
+
+    /**
+     * 未登録のカテゴリー名を登録する
+     *
+     * @param names カテゴリー名のリスト(重複しないこと)
+     * @return 登録したカテゴリー名のリスト(登録済みのカテゴリー名を除く)
+     */
+    public List<String> upsert(List<String> names) {
+        List<Long> ids = sequenceAllocator.allocate("categories_seq", names.size());
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(UPSERT);
+            statement.setArray(1, connection.createArrayOf("bigint", ids.toArray(new Long[0])));
+            statement.setArray(2, connection.createArrayOf("varchar", names.toArray(new String[0])));
+            return statement;
+        }, (rs, rowNum) -> rs.getString(1));
+    }
+
+}
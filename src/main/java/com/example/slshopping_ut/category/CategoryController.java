@@ -1,9 +1,11 @@
 package com.example.slshopping_ut.category;
 
-import java.util.List;
+import java.io.IOException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.crossstore.ChangeSetPersister.NotFoundException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -13,10 +15,16 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import com.example.slshopping_ut.DuplicateException;
+import com.example.slshopping_ut.KeysetPage;
+import com.example.slshopping_ut.KeysetRequest;
+import com.example.slshopping_ut.csv.CsvImportResult;
 import com.example.slshopping_ut.entity.Category;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 
 @Controller
@@ -26,17 +34,29 @@ public class CategoryController {
     @Autowired
     private CategoryService categoryService;
 
+    /** 保存前に重複チェックを行うか(重複は保存時にデータベースの一意制約で検出するため、通常は行わない) */
+    @Value("${slshopping.unique-precheck:false}")
+    private boolean uniquePrecheck;
+
     /**
      * カテゴリー一覧画面表示
      *
+     * @param keyword 検索キーワード
+     * @param sort 並び順
+     * @param after 前のページの末尾のカーソル
+     * @param before 次のページの先頭のカーソル
+     * @param size 1ページあたりの表示件数
      * @param model
      * @return カテゴリー一覧画面
      */
     @GetMapping
-    public String listCategories(@RequestParam(required = false) String keyword, Model model) {
-        // 全カテゴリー情報の取得
-        List<Category> listCategories = categoryService.listAll(keyword);
-        model.addAttribute("listCategories", listCategories);
+    public String listCategories(@RequestParam(required = false) String keyword,
+        @RequestParam(required = false) String sort, @RequestParam(required = false) String after,
+        @RequestParam(required = false) String before, @RequestParam(required = false) Integer size, Model model) {
+        // 1ページ分のカテゴリー情報の取得
+        KeysetPage<Category> page = categoryService.listPage(keyword, KeysetRequest.of(sort, after, before, size));
+        model.addAttribute("listCategories", page.getContent());
+        model.addAttribute("page", page);
         model.addAttribute("keyword", keyword);
         return "categories/categories";
     }
@@ -72,19 +92,70 @@ public class CategoryController {
             return "categories/category_form";
         }
 
-        // 重複チェック
-        if (!categoryService.checkUnique(category)) {
+        // 重複チェック(事前チェックを有効にした場合のみ)
+        if (uniquePrecheck && !categoryService.checkUnique(category)) {
             model.addAttribute("error_message", "重複しています");
             return "categories/category_form";
         }
 
-        // カテゴリー情報の登録
-        categoryService.save(category);
+        // カテゴリー情報の登録(重複はデータベースの一意制約で検出する)
+        try {
+            categoryService.save(category);
+        } catch (DuplicateException e) {
+            model.addAttribute("error_message", "重複しています");
+            return "categories/category_form";
+        }
         // 登録成功のメッセージを格納
         ra.addFlashAttribute("success_message", "登録に成功しました");
         return "redirect:/categories";
     }
 
+    /**
+     * カテゴリー一括登録画面表示
+     *
+     * @return カテゴリー一括登録画面
+     */
+    @GetMapping("/import")
+    public String importForm() {
+        return "categories/category_import";
+    }
+
+    /**
+     * カテゴリー一括登録
+     * CSVファイルのカテゴリーを登録し、登録件数と行ごとのエラーを表示する
+     *
+     * @param file CSVファイル
+     * @param model
+     * @return カテゴリー一括登録画面
+     * @throws IOException
+     */
+    @PostMapping("/import")
+    public String importCategories(MultipartFile file, Model model) throws IOException {
+        // ファイルのチェック
+        if (file == null || file.isEmpty()) {
+            model.addAttribute("file_error_message", "CSVファイルを選択してください");
+            return "categories/category_import";
+        }
+
+        CsvImportResult result = categoryService.importCsv(file.getInputStream());
+        model.addAttribute("result", result);
+        return "categories/category_import";
+    }
+
+    /**
+     * カテゴリー情報の出力
+     * 全件をCSVでレスポンスに直接書き込む
+     *
+     * @param response
+     * @throws IOException
+     */
+    @GetMapping("/export")
+    public void exportCategories(HttpServletResponse response) throws IOException {
+        response.setContentType("text/csv;charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"categories.csv\"");
+        categoryService.exportCsv(response.getOutputStream());
+    }
+
     /**
      * カテゴリー詳細画面表示
      *
@@ -144,14 +215,19 @@ public class CategoryController {
             return "categories/category_edit";
         }
 
-        // 重複チェック
-        if (!categoryService.checkUnique(category)) {
+        // 重複チェック(事前チェックを有効にした場合のみ)
+        if (uniquePrecheck && !categoryService.checkUnique(category)) {
             model.addAttribute("error_message", "重複しています");
             return "categories/category_edit";
         }
 
-        // カテゴリー情報の登録
-        categoryService.save(category);
+        // カテゴリー情報の登録(重複はデータベースの一意制約で検出する)
+        try {
+            categoryService.save(category);
+        } catch (DuplicateException e) {
+            model.addAttribute("error_message", "重複しています");
+            return "categories/category_edit";
+        }
         // 登録成功のメッセージを格納
         ra.addFlashAttribute("success_message", "更新に成功しました");
         return "redirect:/categories";
@@ -0,0 +1,41 @@
+package com.example.slshopping_ut.category;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import com.example.slshopping_ut.entity.Category;
+import com.example.slshopping_ut.search.ExistenceFilter;
+
+/**
+ * カテゴリー名が登録済みかを判定するフィルター
+ */
+@Component
+public class CategoryNameFilter extends ExistenceFilter<Category> {
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Override
+    protected long countRows() {
+        return categoryRepository.count();
+    }
+
+    @Override
+    protected List<Category> loadAfter(long afterId, int limit) {
+        return categoryRepository.searchPageAfter("", afterId, PageRequest.of(0, limit));
+    }
+
+    @Override
+    protected Long idOf(Category category) {
+        return category.getId();
+    }
+
+    @Override
+    protected String keyOf(Category category) {
+        return category.getName();
+    }
+
+}
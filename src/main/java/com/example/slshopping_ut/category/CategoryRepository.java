@@ -1,31 +1,104 @@
 package com.example.slshopping_ut.category;
 
+import java.util.Collection;
 import java.util.List;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import com.example.slshopping_ut.entity.Category;
 
+import jakarta.persistence.QueryHint;
+
 @Repository
 public interface CategoryRepository extends JpaRepository<Category, Long> {
 
     /**
      * カテゴリー情報検索クエリ
+     * 2次キャッシュが有効な場合は、検索結果をクエリキャッシュに保持する
      *
      * @param name カテゴリー名
      * @return カテゴリー情報
      */
+    @QueryHints({ @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "category.byName") })
     public Category findByName(String name);
 
+    /**
+     * カテゴリー名のリストに一致するカテゴリー情報を取得するクエリ
+     *
+     * @param names カテゴリー名のリスト
+     * @return カテゴリー情報のリスト
+     */
+    public List<Category> findAllByNameIn(Collection<String> names);
+
     /**
      * カテゴリー情報検索クエリ
      *
      * @param keyword 検索キーワード
      * @return カテゴリー情報のリスト
      */
-    @Query("SELECT c FROM Category c WHERE c.name LIKE %?1%")
+    @Query("SELECT c FROM Category c WHERE c.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()}")
     public List<Category> search(String keyword);
 
+    /**
+     * 検索キーワードに一致し、指定したIDより後ろのカテゴリー情報をIDの昇順で取得するクエリ
+     * 検索キーワードに空文字を指定した場合は全件が対象になる
+     *
+     * @param keyword 検索キーワード
+     * @param afterId 前のページの末尾のカテゴリーID
+     * @param pageable 取得件数
+     * @return カテゴリー情報のリスト
+     */
+    @Query("SELECT c FROM Category c WHERE c.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "AND c.id > ?2 ORDER BY c.id ASC")
+    public List<Category> searchPageAfter(String keyword, Long afterId, Pageable pageable);
+
+    /**
+     * 検索キーワードに一致し、指定したIDより前のカテゴリー情報をIDの降順で取得するクエリ
+     * 検索キーワードに空文字を指定した場合は全件が対象になる
+     *
+     * @param keyword 検索キーワード
+     * @param beforeId 次のページの先頭のカテゴリーID
+     * @param pageable 取得件数
+     * @return カテゴリー情報のリスト
+     */
+    @Query("SELECT c FROM Category c WHERE c.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "AND c.id < ?2 ORDER BY c.id DESC")
+    public List<Category> searchPageBefore(String keyword, Long beforeId, Pageable pageable);
+
+    /**
+     * 検索キーワードに一致し、指定した(名前, ID)より後ろのカテゴリー情報を名前・IDの昇順で取得するクエリ
+     * 検索キーワードに空文字を指定した場合は全件が対象になる
+     *
+     * @param keyword 検索キーワード
+     * @param afterName 前のページの末尾のカテゴリー名
+     * @param afterId 前のページの末尾のカテゴリーID
+     * @param pageable 取得件数
+     * @return カテゴリー情報のリスト
+     */
+    @Query("SELECT c FROM Category c WHERE c.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "AND (c.name > ?2 OR (c.name = ?2 AND c.id > ?3)) "
+            + "ORDER BY c.name ASC, c.id ASC")
+    public List<Category> searchPageAfterName(String keyword, String afterName, Long afterId, Pageable pageable);
+
+    /**
+     * 検索キーワードに一致し、指定した(名前, ID)より前のカテゴリー情報を名前・IDの降順で取得するクエリ
+     * 検索キーワードに空文字を指定した場合は全件が対象になる
+     *
+     * @param keyword 検索キーワード
+     * @param beforeName 次のページの先頭のカテゴリー名
+     * @param beforeId 次のページの先頭のカテゴリーID
+     * @param pageable 取得件数
+     * @return カテゴリー情報のリスト
+     */
+    @Query("SELECT c FROM Category c WHERE c.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "AND (c.name < ?2 OR (c.name = ?2 AND c.id < ?3)) "
+            + "ORDER BY c.name DESC, c.id DESC")
+    public List<Category> searchPageBeforeName(String keyword, String beforeName, Long beforeId, Pageable pageable);
+
 }
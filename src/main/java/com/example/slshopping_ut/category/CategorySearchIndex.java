@@ -0,0 +1,41 @@
+package com.example.slshopping_ut.category;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import com.example.slshopping_ut.entity.Category;
+import com.example.slshopping_ut.search.SubstringSearchIndex;
+
+/**
+ * カテゴリー名の部分一致検索用のインデックス
+ */
+@Component
+public class CategorySearchIndex extends SubstringSearchIndex<Category> {
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Override
+    protected List<Category> loadAfter(long afterId, int limit) {
+        return categoryRepository.searchPageAfter("", afterId, PageRequest.of(0, limit));
+    }
+
+    @Override
+    protected Long idOf(Category category) {
+        return category.getId();
+    }
+
+    @Override
+    protected String nameOf(Category category) {
+        return category.getName();
+    }
+
+    @Override
+    protected String[] textsOf(Category category) {
+        return new String[] { category.getName() };
+    }
+
+}
@@ -1,19 +1,82 @@
 package com.example.slshopping_ut.category;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.crossstore.ChangeSetPersister.NotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.example.slshopping_ut.DuplicateException;
+import com.example.slshopping_ut.KeysetCursor;
+import com.example.slshopping_ut.KeysetPage;
+import com.example.slshopping_ut.KeysetRequest;
+import com.example.slshopping_ut.ReferenceDataCache;
+import com.example.slshopping_ut.csv.CsvImportResult;
+import com.example.slshopping_ut.csv.CsvReader;
+import com.example.slshopping_ut.csv.CsvWriter;
 import com.example.slshopping_ut.entity.Category;
+import com.example.slshopping_ut.product.ProductSuggestIndex;
+import com.example.slshopping_ut.search.SearchResults;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 
 @Service
 public class CategoryService {
 
+    /** 一括登録で1回のトランザクションで登録する件数 */
+    public static final int IMPORT_CHUNK_SIZE = 1000;
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerFactory.getLogger(CategoryService.class);
+
     @Autowired
     private CategoryRepository categoryRepository;
 
+    @Autowired
+    private CategorySearchIndex categorySearchIndex;
+
+    @Autowired
+    private CategoryNameFilter categoryNameFilter;
+
+    @Autowired
+    private ProductSuggestIndex productSuggestIndex;
+
+    @Autowired
+    private CategoryBulkRepository categoryBulkRepository;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /** 商品画面の選択肢に使用するカテゴリー情報のキャッシュ */
+    private final ReferenceDataCache<Category> referenceCache = new ReferenceDataCache<>(this::loadReferenceData);
+
     /**
      * カテゴリー情報全件取得
      *
@@ -23,6 +86,16 @@ public class CategoryService {
         return categoryRepository.findAll();
     }
 
+    /**
+     * キャッシュしたカテゴリー情報全件取得
+     * 商品画面の選択肢など、リクエストのたびにデータベースから取得する必要のない箇所で使用する
+     *
+     * @return カテゴリー情報の変更不可のリスト
+     */
+    public List<Category> listCached() {
+        return referenceCache.get().getItems();
+    }
+
     /**
      * カテゴリー情報検索処理
      *
@@ -32,6 +105,10 @@ public class CategoryService {
     public List<Category> listAll(String keyword) {
         // 検索キーワードがあった場合
         if (keyword != null && !keyword.isEmpty()) {
+            // インデックスの構築が完了している場合は、一致したカテゴリーIDだけをデータベースから取得する
+            if (categorySearchIndex.isReady()) {
+                return SearchResults.findAllInOrder(categoryRepository, categorySearchIndex.search(keyword), Category::getId);
+            }
             return categoryRepository.search(keyword);
         }
         // それ以外の場合
@@ -40,6 +117,37 @@ public class CategoryService {
         }
     }
 
+    /**
+     * カテゴリー情報のページ取得処理
+     * ページング条件の並び順(ID順・名前順)に従い、カーソルの前後1ページ分を取得する
+     *
+     * @param keyword 検索キーワード
+     * @param request ページング条件
+     * @return カテゴリー情報のページ
+     */
+    public KeysetPage<Category> listPage(String keyword, KeysetRequest request) {
+        // 検索キーワードがあり、インデックスの構築が完了している場合は、インデックスの検索結果をページングする
+        if (keyword != null && !keyword.isEmpty() && categorySearchIndex.isReady()) {
+            return KeysetPage.fetchSorted(request, categorySearchIndex.search(keyword, request.isSortedByName()),
+                ids -> SearchResults.findAllInOrder(categoryRepository, ids, Category::getId),
+                category -> new KeysetCursor(category.getId(), category.getName()));
+        }
+
+        // 検索キーワードがない場合は空文字を渡して全件を対象にする
+        String word = keyword != null ? keyword : "";
+
+        if (request.isSortedByName()) {
+            return KeysetPage.fetch(request,
+                (cursor, limit) -> categoryRepository.searchPageAfterName(word, cursor.getKey(), cursor.getId(), limit),
+                (cursor, limit) -> categoryRepository.searchPageBeforeName(word, cursor.getKey(), cursor.getId(), limit),
+                category -> new KeysetCursor(category.getId(), category.getName()));
+        }
+        return KeysetPage.fetch(request,
+            (cursor, limit) -> categoryRepository.searchPageAfter(word, cursor.getId(), limit),
+            (cursor, limit) -> categoryRepository.searchPageBefore(word, cursor.getId(), limit),
+            category -> new KeysetCursor(category.getId(), category.getName()));
+    }
+
     /**
      * IDに紐づくカテゴリー情報取得処理
      *
@@ -54,23 +162,51 @@ public class CategoryService {
 
     /**
      * カテゴリー情報登録処理
+     * カテゴリー名の重複はデータベースの一意制約で検出する
      *
      * @param category 保存したいカテゴリー情報
      * @return 保存したカテゴリー情報
+     * @throws DuplicateException カテゴリー名が重複している場合
      */
-    public Category save(Category category) {
-        return categoryRepository.save(category);
+    public Category save(Category category) throws DuplicateException {
+        boolean isCreatingNew = (category.getId() == null || category.getId() == 0);
+        Category savedCategory;
+        try {
+            // 一意制約違反をこの場で検出するため、INSERT・UPDATEを即時に送信する
+            savedCategory = categoryRepository.saveAndFlush(category);
+        } catch (DataIntegrityViolationException e) {
+            if (!DuplicateException.isUniqueViolation(e, Category.NAME_CONSTRAINT)) {
+                throw e;
+            }
+            // 登録画面を再表示した際に更新扱いにならないよう、払い出されたIDを戻す
+            if (isCreatingNew) {
+                category.setId(null);
+            }
+            throw new DuplicateException(e);
+        }
+        categorySearchIndex.put(savedCategory);
+        categoryNameFilter.put(savedCategory.getName());
+        // 商品検索の入力補完に名前の変更を反映する
+        productSuggestIndex.putCategory(savedCategory);
+        referenceCache.rebuild();
+        return savedCategory;
     }
 
     /**
      * カテゴリー名の重複チェック
+     * 登録時の重複はsaveメソッドで検出するため、保存前に確認が必要な場合にのみ使用する
      *
      * @param name 重複確認したいブランド情報
      * @return true:重複なし false:重複あり
      */
     public boolean checkUnique(Category category) {
+        // 登録されていないことが確実な名前は、データベースに問い合わせない
+        if (!categoryNameFilter.mightExist(category.getName())) {
+            return true;
+        }
         boolean isCreatingNew = (category.getId() == null || category.getId() == 0);
         Category categoryByName = categoryRepository.findByName(category.getName());
+        categoryNameFilter.recordLookup(categoryByName != null);
 
         if (isCreatingNew) {
             if (categoryByName != null) {
@@ -94,6 +230,144 @@ public class CategoryService {
         // IDに紐づくブランド情報が存在するか確認するため、getメソッドを呼び出す
         Category category = get(id);
         categoryRepository.deleteById(category.getId());
+        categorySearchIndex.remove(category.getId());
+        productSuggestIndex.removeCategory(category.getId());
+        referenceCache.rebuild();
+    }
+
+    /**
+     * カテゴリー情報の一括登録処理
+     * CSVファイル(1行目はヘッダー行とし、name列にカテゴリー名を記載する)のカテゴリー名のうち、未登録のものを登録する
+     * 一定件数ずつINSERT ... ON CONFLICTのバッチで登録し、1件ごとの重複チェックは行わない
+     *
+     * @param in CSVファイル(UTF-8)
+     * @return 登録結果
+     * @throws IOException
+     */
+    public CsvImportResult importCsv(InputStream in) throws IOException {
+        long start = System.currentTimeMillis();
+        CsvImportResult result = new CsvImportResult();
+
+        try (CsvReader reader = new CsvReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            Map<String, Integer> columns = reader.readHeader();
+            if (columns == null || !columns.containsKey("name")) {
+                result.addError(1, "必須の列がありません: name");
+                return result;
+            }
+            int nameColumn = columns.get("name");
+
+            // カテゴリー名 → 行番号(ファイル内で重複したカテゴリー名は1件として登録する)
+            Map<String, Long> chunk = new LinkedHashMap<>();
+            List<String> record;
+            while ((record = reader.readRecord()) != null) {
+                if (CsvReader.isBlank(record)) {
+                    continue;
+                }
+                result.addRows(1);
+                String name = nameColumn < record.size() ? record.get(nameColumn).trim() : "";
+                Set<ConstraintViolation<Category>> violations = validator.validateValue(Category.class, "name", name);
+                if (!violations.isEmpty()) {
+                    result.addError(reader.getLineNumber(), violations.iterator().next().getMessage());
+                    continue;
+                }
+                if (chunk.putIfAbsent(name, reader.getLineNumber()) != null) {
+                    result.addSkipped(1);
+                    continue;
+                }
+                if (chunk.size() == IMPORT_CHUNK_SIZE) {
+                    upsertChunk(chunk, result);
+                    chunk = new LinkedHashMap<>();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                upsertChunk(chunk, result);
+            }
+        } finally {
+            result.setElapsedMillis(System.currentTimeMillis() - start);
+            // JDBCで直接登録したため、2次キャッシュ・選択肢のキャッシュを破棄する
+            evictSecondLevelCache();
+            referenceCache.rebuild();
+        }
+
+        LOGGER.info("Category import: " + result.getImportedRows() + "/" + result.getTotalRows() + " rows in "
+            + result.getElapsedMillis() + " ms (" + result.getRowsPerSecond() + " rows/s)");
+        return result;
+    }
+
+    /**
+     * カテゴリー情報の出力処理
+     * 全件をCSV(UTF-8、BOM付き)で出力する(一括登録の形式と同じ)
+     *
+     * @param out 出力先
+     * @throws IOException
+     */
+    public void exportCsv(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write('\uFEFF');
+        CsvWriter csv = new CsvWriter(writer);
+        csv.writeRecord("id", "name");
+        for (Category category : listCached()) {
+            csv.writeRecord(category.getId(), category.getName());
+        }
+        csv.flush();
+    }
+
+    /**
+     * 一定件数のカテゴリー名を1回のトランザクションで登録し、検索インデックスに反映する
+     *
+     * @param chunk カテゴリー名 → 行番号
+     * @param result 登録結果の格納先
+     */
+    private void upsertChunk(Map<String, Long> chunk, CsvImportResult result) {
+        List<String> names = new ArrayList<>(chunk.keySet());
+        List<String> inserted;
+        try {
+            inserted = transactionTemplate.execute(status -> categoryBulkRepository.upsert(names));
+        } catch (DataAccessException e) {
+            LOGGER.warn("Category import chunk failed", e);
+            for (Long line : chunk.values()) {
+                result.addError(line, "登録に失敗しました");
+            }
+            return;
+        }
+        // 登録済みのカテゴリー名はON CONFLICTで登録されないため、登録済みとして数える
+        result.addImported(inserted.size());
+        result.addSkipped(names.size() - inserted.size());
+        for (String name : names) {
+            categoryNameFilter.put(name);
+        }
+
+        for (Category category : categoryRepository.findAllByNameIn(inserted)) {
+            categorySearchIndex.put(category);
+            productSuggestIndex.putCategory(category);
+        }
+    }
+
+    /**
+     * カテゴリー情報の2次キャッシュ(エンティティ・カテゴリー名の検索結果)を破棄する
+     * 2次キャッシュが無効の場合は何もしない
+     */
+    private void evictSecondLevelCache() {
+        Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        cache.evict(Category.class);
+        cache.evictQueryRegion("category.byName");
+    }
+
+    /**
+     * キャッシュに保持するカテゴリー情報を読み込む
+     * キャッシュの内容が画面などから変更されないよう、永続化コンテキストに属さない複製を返す
+     *
+     * @return カテゴリー情報のリスト
+     */
+    private List<Category> loadReferenceData() {
+        List<Category> copies = new ArrayList<>();
+        for (Category category : categoryRepository.findAll()) {
+            Category copy = new Category();
+            copy.setId(category.getId());
+            copy.setName(category.getName());
+            copies.add(copy);
+        }
+        return copies;
     }
 
 }
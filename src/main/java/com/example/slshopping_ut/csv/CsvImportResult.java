@@ -0,0 +1,122 @@
+package com.example.slshopping_ut.csv;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CSVファイルによる一括登録の結果
+ * 行ごとのエラーは先頭から一定件数までを保持し、それ以降は件数のみ数える
+ */
+public class CsvImportResult {
+
+    /** 保持する行ごとのエラーの最大件数 */
+    public static final int MAX_ERRORS = 1000;
+
+    /** 読み込んだデータ行の件数(ヘッダー行を除く) */
+    private long totalRows;
+
+    /** 登録・更新した件数 */
+    private long importedRows;
+
+    /** 登録済み・ファイル内で重複したため、登録しなかった件数 */
+    private long skippedRows;
+
+    /** エラーになった行の件数 */
+    private long errorRows;
+
+    private final List<RowError> errors = new ArrayList<>();
+
+    /** 処理時間(ミリ秒) */
+    private long elapsedMillis;
+
+    public void addRows(long rows) {
+        totalRows += rows;
+    }
+
+    public void addImported(long rows) {
+        importedRows += rows;
+    }
+
+    public void addSkipped(long rows) {
+        skippedRows += rows;
+    }
+
+    /**
+     * エラーを追加する
+     *
+     * @param line CSVファイルの行番号
+     * @param message エラーメッセージ
+     */
+    public void addError(long line, String message) {
+        errorRows++;
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(new RowError(line, message));
+        }
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    public long getImportedRows() {
+        return importedRows;
+    }
+
+    public long getSkippedRows() {
+        return skippedRows;
+    }
+
+    public long getErrorRows() {
+        return errorRows;
+    }
+
+    public List<RowError> getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return 保持しきれずに省略したエラーがある場合はtrue
+     */
+    public boolean isErrorsTruncated() {
+        return errorRows > errors.size();
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return 1秒あたりの処理件数
+     */
+    public long getRowsPerSecond() {
+        return elapsedMillis > 0 ? totalRows * 1000 / elapsedMillis : totalRows;
+    }
+
+    /**
+     * CSVファイルの行ごとのエラー
+     */
+    public static class RowError {
+
+        private final long line;
+
+        private final String message;
+
+        public RowError(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+}
@@ -0,0 +1,148 @@
+package com.example.slshopping_ut.csv;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * CSV(RFC 4180)の読み込み処理
+ * ファイル全体を読み込まず、1レコードずつ読み込む
+ * ダブルクォートで囲まれた項目の中のカンマ・改行・連続したダブルクォート("")に対応する
+ */
+public class CsvReader implements Closeable {
+
+    private static final int BOM = '\uFEFF';
+
+    private final BufferedReader reader;
+
+    /** 次に読み込む文字の行番号 */
+    private long line = 1;
+
+    /** 最後に読み込んだレコードの開始行番号 */
+    private long recordLine;
+
+    private boolean first = true;
+
+    public CsvReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    /**
+     * 次のレコードを読み込む
+     *
+     * @return 項目のリスト(ファイルの末尾に達した場合はnull)
+     * @throws IOException
+     */
+    public List<String> readRecord() throws IOException {
+        int c = reader.read();
+        if (first) {
+            first = false;
+            // Excelなどが出力するUTF-8のBOMを読み飛ばす
+            if (c == BOM) {
+                c = reader.read();
+            }
+        }
+        if (c == -1) {
+            return null;
+        }
+
+        recordLine = line;
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    // 閉じられていないダブルクォートは、ファイルの末尾までを項目とする
+                    fields.add(field.toString());
+                    return fields;
+                }
+                if (c == '"') {
+                    int next = reader.read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        c = next;
+                        continue;
+                    }
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                if (c == '\r') {
+                    reader.mark(1);
+                    if (reader.read() != '\n') {
+                        reader.reset();
+                    }
+                }
+                if (c != -1) {
+                    line++;
+                }
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+    }
+
+    /**
+     * ヘッダー行を読み込む
+     * 列名は前後の空白を除いて小文字にする
+     *
+     * @return 列名 → 列の位置(ファイルが空の場合はnull)
+     * @throws IOException
+     */
+    public Map<String, Integer> readHeader() throws IOException {
+        List<String> header = readRecord();
+        if (header == null) {
+            return null;
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        return columns;
+    }
+
+    /**
+     * 最後に読み込んだレコードの開始行番号(1始まり)
+     *
+     * @return 行番号
+     */
+    public long getLineNumber() {
+        return recordLine;
+    }
+
+    /**
+     * 空行(項目が1つで空白のみ)のレコードか判定する
+     *
+     * @param record レコード
+     * @return 空行の場合はtrue
+     */
+    public static boolean isBlank(List<String> record) {
+        return record.size() == 1 && record.get(0).isBlank();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+}
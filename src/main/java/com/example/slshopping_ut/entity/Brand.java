@@ -1,26 +1,38 @@
 package com.example.slshopping_ut.entity;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import jakarta.validation.constraints.Size;
 
 /**
  * ブランド情報
  */
 @Entity
-@Table(name = "brands")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "brand")
+@Table(name = "brands", uniqueConstraints = @UniqueConstraint(name = Brand.NAME_CONSTRAINT, columnNames = "name"))
 public class Brand {
 
+    /** ブランド名の一意制約の名前(重複の判定に使用する。db/unique_constraint_names.sqlを参照) */
+    public static final String NAME_CONSTRAINT = "brands_name_key";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "brands_seq")
+    @SequenceGenerator(name = "brands_seq", sequenceName = "brands_seq", allocationSize = 50)
     private Long id;
 
     @Size(min = 1, max = 10, message = "ブランド名は1以上10文字以内で入力してください")
-    @Column(nullable = false, length = 10, unique = true)
+    @Column(nullable = false, length = 10)
     private String name;
 
     public Brand() {
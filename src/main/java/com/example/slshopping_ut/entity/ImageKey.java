@@ -0,0 +1,58 @@
+package com.example.slshopping_ut.entity;
+
+/**
+ * 商品画像の保存先のパス(画像のURLと保存先のディレクトリからの相対パスを兼ねる)
+ * 画像は内容のハッシュ値で名前を付け、ハッシュ値の先頭2バイトで2階層のディレクトリに分けて保存する
+ * 例: sha256/ab/cd/abcd…ef.png、サムネイルは sha256/ab/cd/abcd…ef_thumb.png
+ * 同じ内容の画像は商品が異なっても1つだけ保存し、保存後に内容が変わることはない
+ */
+public final class ImageKey {
+
+    /** 内容で名前を付けた画像を置くディレクトリ(商品IDごとの旧形式のディレクトリと区別する) */
+    public static final String ROOT = "sha256";
+
+    private ImageKey() {
+    }
+
+    /**
+     * アップロードされた画像のパス
+     *
+     * @param hash 内容のハッシュ値(SHA-256の16進数)
+     * @param image アップロード時のファイル名(拡張子を使用する)
+     * @return 保存先のディレクトリからの相対パス
+     */
+    public static String of(String hash, String image) {
+        return directoryOf(hash) + "/" + hash + "." + extensionOf(image);
+    }
+
+    /**
+     * 派生画像のパス
+     *
+     * @param hash 内容のハッシュ値(SHA-256の16進数)
+     * @param image アップロード時のファイル名(拡張子を使用する)
+     * @param variant 派生画像の種類
+     * @return 保存先のディレクトリからの相対パス
+     */
+    public static String of(String hash, String image, ImageVariant variant) {
+        return directoryOf(hash) + "/" + variant.fileName(hash + "." + extensionOf(image));
+    }
+
+    /**
+     * ハッシュ値の画像(派生画像を含む)を置くディレクトリ
+     *
+     * @param hash 内容のハッシュ値(SHA-256の16進数)
+     * @return 保存先のディレクトリからの相対パス
+     */
+    public static String directoryOf(String hash) {
+        return ROOT + "/" + hash.substring(0, 2) + "/" + hash.substring(2, 4);
+    }
+
+    /**
+     * 保存時の拡張子(小文字にし、jpegはjpgにそろえる)
+     */
+    private static String extensionOf(String image) {
+        String extension = image.substring(image.lastIndexOf('.') + 1).toLowerCase();
+        return extension.equals("jpeg") ? "jpg" : extension;
+    }
+
+}
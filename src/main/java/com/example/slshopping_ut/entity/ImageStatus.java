@@ -0,0 +1,18 @@
+package com.example.slshopping_ut.entity;
+
+/**
+ * 商品画像の保存状況
+ * アップロードされた画像は登録後に別スレッドで保存先へ移動するため、移動が完了するまではPROCESSINGとする
+ */
+public enum ImageStatus {
+
+    /** 保存済み(画像がない場合を含む) */
+    READY,
+
+    /** 保存先への移動待ち・移動中 */
+    PROCESSING,
+
+    /** 保存に失敗した */
+    FAILED
+
+}
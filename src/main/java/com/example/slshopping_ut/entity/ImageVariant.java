@@ -0,0 +1,61 @@
+package com.example.slshopping_ut.entity;
+
+/**
+ * 商品画像の表示サイズごとの派生画像
+ * アップロードされた画像と同じディレクトリに「元のファイル名_接尾辞.拡張子」で保存する
+ */
+public enum ImageVariant {
+
+    /** 一覧のサムネイル */
+    THUMBNAIL("thumb", 96),
+
+    /** 詳細画面 */
+    DETAIL("detail", 640);
+
+    /** ファイル名の接尾辞 */
+    private final String suffix;
+
+    /** 長辺のピクセル数の上限 */
+    private final int maxSize;
+
+    ImageVariant(String suffix, int maxSize) {
+        this.suffix = suffix;
+        this.maxSize = maxSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * 派生画像のファイル名
+     *
+     * @param image アップロードされた画像のファイル名
+     * @return 拡張子の前に接尾辞を付けたファイル名
+     */
+    public String fileName(String image) {
+        int dot = image.lastIndexOf('.');
+        if (dot < 0) {
+            return image + "_" + suffix;
+        }
+        return image.substring(0, dot) + "_" + suffix + image.substring(dot);
+    }
+
+    /**
+     * 派生画像のファイル名か判定する
+     *
+     * @param fileName ファイル名
+     * @return いずれかの派生画像のファイル名の形式の場合はtrue
+     */
+    public static boolean isVariant(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        String baseName = dot < 0 ? fileName : fileName.substring(0, dot);
+        for (ImageVariant variant : values()) {
+            if (baseName.endsWith("_" + variant.suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
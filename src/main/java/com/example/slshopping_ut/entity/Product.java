@@ -1,13 +1,23 @@
 package com.example.slshopping_ut.entity;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.PositiveOrZero;
@@ -17,15 +27,22 @@ import jakarta.validation.constraints.Size;
  * 商品情報
  */
 @Entity
-@Table(name = "products")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "product")
+@Table(name = "products", indexes = @Index(name = "products_image_hash_idx", columnList = "image_hash"),
+    uniqueConstraints = @UniqueConstraint(name = Product.NAME_CONSTRAINT, columnNames = "name"))
 public class Product {
 
+    /** 商品名の一意制約の名前(重複の判定に使用する。db/unique_constraint_names.sqlを参照) */
+    public static final String NAME_CONSTRAINT = "products_name_key";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "products_seq")
+    @SequenceGenerator(name = "products_seq", sequenceName = "products_seq", allocationSize = 50)
     private Long id;
 
     @Size(min = 1, max = 10, message = "商品名は1文字以上10文字以内で入力してください")
-    @Column(nullable = false, length = 10, unique = true)
+    @Column(nullable = false, length = 10)
     private String name;
 
     @Size(min = 1, max = 50, message = "商品説明は1文字以上50文字以内で入力してください")
@@ -40,6 +57,16 @@ public class Product {
     @Column
     private String image;
 
+    // 画像の内容のハッシュ値(同じ画像を参照する商品の件数を数え、参照がなくなった画像を削除する)
+    // nullの場合は商品IDごとのディレクトリに保存した旧形式の画像
+    @Column(length = 64)
+    private String imageHash;
+
+    // 画像の保存が完了するまではPROCESSING(ProductImageServiceが保存後に更新する)
+    @Enumerated(EnumType.STRING)
+    @Column(length = 10)
+    private ImageStatus imageStatus = ImageStatus.READY;
+
     @PositiveOrZero(message = "長さは0.0以上で入力してください")
     @Column
     private double length;
@@ -56,13 +83,14 @@ public class Product {
     @Column
     private double weight;
 
+    // ブランド・カテゴリーは一覧・詳細の取得時にProductRepositoryのEntityGraphでまとめて読み込む
     @NotNull(message = "カテゴリーを選択してください")
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "category_id", nullable = false)
     private Category category;
 
     @NotNull(message = "ブランドを選択してください")
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "brand_id", nullable = false)
     private Brand brand;
 
@@ -165,11 +193,72 @@ public class Product {
     }
 
     public String getImage() {
-        return "/product-images/" + id + "/" + image;
+        if (imageHash == null) {
+            return "/product-images/" + id + "/" + image;
+        }
+        return "/product-images/" + ImageKey.of(imageHash, image);
+    }
+
+    /**
+     * 一覧に表示するサムネイルのURL
+     *
+     * @return サムネイルのURL。画像がない場合はnull
+     */
+    public String getThumbnailImage() {
+        return getImage(ImageVariant.THUMBNAIL);
+    }
+
+    /**
+     * 詳細画面に表示する画像のURL
+     *
+     * @return 詳細画面用の画像のURL。画像がない場合はnull
+     */
+    public String getDetailImage() {
+        return getImage(ImageVariant.DETAIL);
+    }
+
+    /**
+     * 派生画像のURL
+     *
+     * @param variant 派生画像の種類
+     * @return 派生画像のURL。画像がない場合はnull
+     */
+    public String getImage(ImageVariant variant) {
+        if (image == null) {
+            return null;
+        }
+        if (imageHash == null) {
+            return "/product-images/" + id + "/" + variant.fileName(image);
+        }
+        return "/product-images/" + ImageKey.of(imageHash, image, variant);
+    }
+
+    /**
+     * @return アップロード時のファイル名
+     */
+    public String getImageName() {
+        return image;
     }
 
     public void setImage(String image) {
         this.image = image;
     }
 
+    public String getImageHash() {
+        return imageHash;
+    }
+
+    public void setImageHash(String imageHash) {
+        this.imageHash = imageHash;
+    }
+
+    public ImageStatus getImageStatus() {
+        // 列の追加前に登録された商品はnullのため、保存済みとして扱う
+        return imageStatus != null ? imageStatus : ImageStatus.READY;
+    }
+
+    public void setImageStatus(ImageStatus imageStatus) {
+        this.imageStatus = imageStatus;
+    }
+
 }
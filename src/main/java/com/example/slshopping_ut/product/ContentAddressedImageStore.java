@@ -0,0 +1,244 @@
+package com.example.slshopping_ut.product;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.slshopping_ut.entity.ImageKey;
+import com.example.slshopping_ut.entity.ImageVariant;
+
+/**
+ * 商品画像を内容のハッシュ値で名前を付けて保存するクラス
+ * 同じ内容の画像は1つだけ保存し、保存した画像の内容は変更しない(URLが同じなら内容も同じ)
+ * 画像の保存先はslshopping.image.storeで選択したImageStore(画像ごとのファイル・セグメントファイル・オブジェクトストレージ)とする
+ * 同じハッシュ値の画像の保存・削除を同時に行わないよう、呼び出し側(ProductImageService)でハッシュ値ごとに順番に呼び出すこと
+ */
+@Component
+public class ContentAddressedImageStore {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContentAddressedImageStore.class);
+
+    /** 旧形式の商品IDごとのディレクトリの保存先 */
+    @Value("${slshopping.image.dir:product-images}")
+    private String rootDir;
+
+    /** 一時ファイルの書き出し先(保存先と同じファイルシステムに置き、移動を1回のリネームで行う) */
+    @Value("${slshopping.image.staging-dir:product-images-staging}")
+    private String stagingDir;
+
+    /** 画像の保存先 */
+    @Autowired
+    private ImageStore backend;
+
+    /**
+     * 一時ファイルを作成する
+     *
+     * @param prefix ファイル名の接頭辞
+     * @param suffix ファイル名の接尾辞(拡張子で保存形式を判定する場合は拡張子まで含める)
+     * @return 作成した空の一時ファイル
+     * @throws IOException
+     */
+    public Path createTempFile(String prefix, String suffix) throws IOException {
+        Path dir = Paths.get(stagingDir);
+        Files.createDirectories(dir);
+        return Files.createTempFile(dir, prefix, suffix);
+    }
+
+    /**
+     * 一時ファイルの書き出し先に残っているファイルを削除する(起動時に使用する)
+     *
+     * @throws IOException
+     */
+    public void cleanStaging() throws IOException {
+        Path dir = Paths.get(stagingDir);
+        Files.createDirectories(dir);
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * ファイルの内容のハッシュ値
+     *
+     * @param file ファイル
+     * @return SHA-256の16進数
+     * @throws IOException
+     */
+    public static String hash(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHash(digest);
+    }
+
+    /**
+     * ハッシュ値の計算に使用するMessageDigest(ファイルへの書き込みと同時にハッシュ値を求める場合に使用する)
+     *
+     * @return SHA-256のMessageDigest
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * MessageDigestに入力した内容のハッシュ値
+     *
+     * @param digest newDigestで作成したMessageDigest
+     * @return SHA-256の16進数
+     */
+    public static String toHash(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * 画像が保存済みか判定する
+     *
+     * @param hash 内容のハッシュ値
+     * @param image アップロード時のファイル名
+     * @return 保存済みの場合はtrue
+     */
+    public boolean exists(String hash, String image) {
+        return backend.exists(ImageKey.of(hash, image));
+    }
+
+    /**
+     * 一時ファイルの画像を保存する
+     * 派生画像を作成して先に置き、最後に元の画像を置く(元の画像があれば派生画像もそろっている)
+     * 保存済みの場合は何もしない。いずれの場合も一時ファイルは残らない
+     *
+     * @param source 一時ファイル
+     * @param hash 内容のハッシュ値
+     * @param image アップロード時のファイル名
+     * @throws IOException
+     */
+    public void store(Path source, String hash, String image) throws IOException {
+        try {
+            if (exists(hash, image)) {
+                return;
+            }
+            for (ImageVariant variant : ImageVariant.values()) {
+                String variantKey = ImageKey.of(hash, image, variant);
+                Path variantFile = createVariant(source, variant, variantKey.substring(variantKey.lastIndexOf('/') + 1));
+                try {
+                    backend.put(variantKey, variantFile);
+                } finally {
+                    Files.deleteIfExists(variantFile);
+                }
+            }
+            backend.put(ImageKey.of(hash, image), source);
+        } finally {
+            Files.deleteIfExists(source);
+        }
+    }
+
+    /**
+     * ハッシュ値の画像(派生画像を含む)を削除する
+     *
+     * @param hash 内容のハッシュ値
+     */
+    public void remove(String hash) {
+        backend.removeAll(ImageKey.directoryOf(hash) + "/" + hash);
+    }
+
+    /**
+     * 商品IDごとのディレクトリに保存した旧形式の画像の一覧
+     *
+     * @return 商品IDと、ディレクトリ内の画像(派生画像を除く)のパスの組
+     */
+    public List<LegacyImage> listLegacyImages() {
+        Path root = Paths.get(rootDir);
+        if (!Files.isDirectory(root)) {
+            return List.of();
+        }
+        try (Stream<Path> dirs = Files.list(root)) {
+            return dirs.filter(dir -> Files.isDirectory(dir) && dir.getFileName().toString().matches("\\d+"))
+                .flatMap(dir -> {
+                    try (Stream<Path> files = Files.list(dir)) {
+                        Long productId = Long.valueOf(dir.getFileName().toString());
+                        return files.filter(file -> !Files.isDirectory(file)
+                            && !ImageVariant.isVariant(file.getFileName().toString()))
+                            .map(file -> new LegacyImage(productId, file))
+                            .toList().stream();
+                    } catch (IOException e) {
+                        LOGGER.error("Could not list directory: " + dir);
+                        return Stream.empty();
+                    }
+                })
+                .toList();
+        } catch (IOException e) {
+            LOGGER.error("Could not list directory: " + root);
+            return List.of();
+        }
+    }
+
+    /**
+     * 派生画像を一時ファイルに作成する
+     * 画像として読み込めない場合は、元のファイルを複製して派生画像とする(表示できない画像の参照先をなくさないため)
+     */
+    private Path createVariant(Path source, ImageVariant variant, String fileName) throws IOException {
+        Path path = createTempFile("variant-", "-" + fileName);
+        try {
+            ImageResizer.resize(source, path, variant.getMaxSize());
+        } catch (IOException e) {
+            LOGGER.error("Could not resize image: " + fileName + " (" + e.getMessage() + ")");
+            try {
+                Files.copy(source, path, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException ex) {
+                Files.deleteIfExists(path);
+                throw ex;
+            }
+        }
+        return path;
+    }
+
+    /**
+     * 旧形式の画像
+     */
+    public static class LegacyImage {
+
+        private final Long productId;
+
+        private final Path path;
+
+        public LegacyImage(Long productId, Path path) {
+            this.productId = productId;
+            this.path = path;
+        }
+
+        public Long getProductId() {
+            return productId;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+    }
+
+}
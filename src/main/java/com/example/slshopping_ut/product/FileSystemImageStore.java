@@ -0,0 +1,100 @@
+package com.example.slshopping_ut.product;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * 商品画像を画像ごとのファイルとして保存するクラス(slshopping.image.store=directory、既定)
+ * キーをslshopping.image.dirからの相対パスとして保存する
+ */
+@Component
+@ConditionalOnProperty(name = "slshopping.image.store", havingValue = "directory", matchIfMissing = true)
+public class FileSystemImageStore implements ImageStore {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileSystemImageStore.class);
+
+    /** 画像の保存先 */
+    @Value("${slshopping.image.dir:product-images}")
+    private String rootDir;
+
+    @Override
+    public boolean exists(String key) {
+        Path file = resolve(key);
+        return file != null && Files.exists(file);
+    }
+
+    /**
+     * ファイルを1回のリネームで保存先へ移動する(移動した時点で、元の画像・派生画像がそろって参照できる)
+     */
+    @Override
+    public void put(String key, Path source) throws IOException {
+        Path target = resolve(key);
+        if (target == null) {
+            throw new IOException("Invalid image key: " + key);
+        }
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public StoredImage get(String key) throws IOException {
+        Path file = resolve(key);
+        if (file == null || !Files.isRegularFile(file)) {
+            return null;
+        }
+        return StoredImage.ofFile(file);
+    }
+
+    @Override
+    public void removeAll(String keyPrefix) {
+        Path prefix = resolve(keyPrefix);
+        if (prefix == null || !Files.isDirectory(prefix.getParent())) {
+            return;
+        }
+        Path dir = prefix.getParent();
+        String fileNamePrefix = prefix.getFileName().toString();
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(file -> file.getFileName().toString().startsWith(fileNamePrefix)).toList();
+        } catch (IOException e) {
+            LOGGER.error("Could not list directory: " + dir);
+            return;
+        }
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                LOGGER.error("Could not delete file: " + file);
+            }
+        }
+    }
+
+    /**
+     * キーのファイルのパス
+     *
+     * @return 保存先の外を指すキーの場合はnull
+     */
+    private Path resolve(String key) {
+        Path root = Paths.get(rootDir).toAbsolutePath().normalize();
+        Path file = root.resolve(key).normalize();
+        return file.startsWith(root) && !file.equals(root) ? file : null;
+    }
+
+}
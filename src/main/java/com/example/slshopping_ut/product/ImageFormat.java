@@ -0,0 +1,61 @@
+package com.example.slshopping_ut.product;
+
+import java.util.Arrays;
+
+/**
+ * 商品画像として受け付ける画像の形式
+ * ファイル名の拡張子ではなく、ファイルの先頭のバイト列(マジックナンバー)で判定する
+ */
+public enum ImageFormat {
+
+    PNG(new byte[] { (byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A }, "png"),
+    JPEG(new byte[] { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF }, "jpg", "jpeg");
+
+    /** 判定に読み込む先頭のバイト数(最も長いマジックナンバーの長さ) */
+    public static final int HEADER_LENGTH = 8;
+
+    /** ファイルの先頭のバイト列 */
+    private final byte[] signature;
+
+    /** 拡張子(先頭が正式な拡張子) */
+    private final String[] extensions;
+
+    private ImageFormat(byte[] signature, String... extensions) {
+        this.signature = signature;
+        this.extensions = extensions;
+    }
+
+    /**
+     * ファイルの先頭のバイト列から画像の形式を判定する
+     *
+     * @param header ファイルの先頭のバイト列
+     * @return 画像の形式。受け付けない形式の場合はnull
+     */
+    public static ImageFormat detect(byte[] header) {
+        for (ImageFormat format : values()) {
+            if (header.length >= format.signature.length
+                && Arrays.equals(header, 0, format.signature.length, format.signature, 0, format.signature.length)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 拡張子を画像の形式に合わせたファイル名
+     * 拡張子が形式と異なる場合は正式な拡張子に置き換え、拡張子がない場合は付け加える
+     * (保存先のファイル名・配信時のContent-Typeは拡張子で決まるため、内容と一致させる)
+     *
+     * @param fileName アップロード時のファイル名
+     * @return 拡張子を形式に合わせたファイル名
+     */
+    public String fileName(String fileName) {
+        String name = fileName == null ? "" : fileName;
+        int dot = name.lastIndexOf('.');
+        if (dot >= 0 && Arrays.asList(extensions).contains(name.substring(dot + 1).toLowerCase())) {
+            return name;
+        }
+        return (dot >= 0 ? name.substring(0, dot) : name) + "." + extensions[0];
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.example.slshopping_ut.product;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import javax.imageio.ImageIO;
+
+/**
+ * 商品画像の縮小を行うクラス
+ * 一覧・詳細画面に表示する大きさの派生画像を作成し、画面ごとの転送量を抑える
+ */
+public class ImageResizer {
+
+    private ImageResizer() {
+    }
+
+    /**
+     * 画像を長辺が指定したピクセル数以下になるよう縮小して保存する
+     * 指定した大きさ以下の画像は縮小せずにそのまま複製する
+     *
+     * @param source 元の画像(png・jpg・jpeg)
+     * @param target 保存先(元の画像と同じ形式で保存する)
+     * @param maxSize 長辺のピクセル数の上限
+     * @throws IOException 画像として読み込めない場合
+     */
+    public static void resize(Path source, Path target, int maxSize) throws IOException {
+        BufferedImage image = ImageIO.read(source.toFile());
+        if (image == null) {
+            throw new IOException("Unsupported image: " + source);
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (Math.max(width, height) <= maxSize) {
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+            return;
+        }
+
+        String format = formatOf(target);
+        double scale = (double) maxSize / Math.max(width, height);
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        // 1回で大きく縮小すると細部が粗くなるため、半分ずつ縮小してから目的の大きさにする
+        BufferedImage current = image;
+        while (current.getWidth() / 2 >= targetWidth && current.getHeight() / 2 >= targetHeight) {
+            current = scale(current, current.getWidth() / 2, current.getHeight() / 2, format);
+        }
+        current = scale(current, targetWidth, targetHeight, format);
+
+        if (!ImageIO.write(current, format, target.toFile())) {
+            throw new IOException("No writer for " + format + ": " + target);
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage source, int width, int height, String format) {
+        // JPEGは透過を保存できないため、白で塗りつぶしたRGBの画像に描画する
+        boolean alpha = format.equals("png");
+        BufferedImage scaled = new BufferedImage(width, height,
+            alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            if (!alpha) {
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, width, height);
+            }
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    private static String formatOf(Path path) {
+        String fileName = path.getFileName().toString().toLowerCase();
+        return fileName.endsWith(".png") ? "png" : "jpeg";
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.example.slshopping_ut.product;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * 商品画像の保存先
+ * 画像はImageKeyのパス(sha256/ab/cd/<ハッシュ値>.png など)をキーとして保存し、保存後に内容を変更しない
+ * 使用する保存先はslshopping.image.storeで選択する(directory: 画像ごとのファイル、packed: セグメントファイルへの追記、
+ * s3: S3互換のオブジェクトストレージ)
+ * 同じキーの保存・削除を同時に呼び出さないこと(ProductImageServiceでハッシュ値ごとに順番に呼び出す)
+ */
+public interface ImageStore {
+
+    /**
+     * 画像が保存済みか判定する
+     *
+     * @param key 画像のキー
+     * @return 保存済みの場合はtrue
+     */
+    boolean exists(String key);
+
+    /**
+     * ファイルの内容を画像として保存する
+     * 保存が完了するまでは、exists・getは保存前の状態を返す
+     *
+     * @param key 画像のキー
+     * @param source 保存するファイル(移動する場合がある。残った場合は呼び出し側で削除する)
+     * @throws IOException
+     */
+    void put(String key, Path source) throws IOException;
+
+    /**
+     * 保存済みの画像
+     *
+     * @param key 画像のキー
+     * @return 画像。保存されていない場合はnull
+     * @throws IOException
+     */
+    StoredImage get(String key) throws IOException;
+
+    /**
+     * キーが指定した文字列で始まる画像をすべて削除する(元の画像と派生画像をまとめて削除する場合に使用する)
+     * 削除に失敗した画像はログに出力し、残ったままとする
+     *
+     * @param keyPrefix キーの先頭の文字列
+     */
+    void removeAll(String keyPrefix);
+
+}
@@ -0,0 +1,12 @@
+package com.example.slshopping_ut.product;
+
+/**
+ * アップロードされた商品画像が上限サイズを超えている場合・受け付けない形式の場合の例外
+ */
+public class InvalidImageException extends Exception {
+
+    public InvalidImageException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,676 @@
+package com.example.slshopping_ut.product;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 商品画像を大きなセグメントファイルに追記して保存するクラス(slshopping.image.store=packed)
+ * 画像ごとのファイルを作らないため、画像が増えてもファイル数(inode)・ディレクトリの検索が増えず、バックアップも少数の大きなファイルで済む
+ *
+ * セグメントファイルは「ヘッダー(24バイト)・キー・画像の内容」のレコードを順に並べたもので、削除は削除済みのレコード(内容の長さが-1)を追記して表す
+ * キーから画像の位置への索引はメモリ上に持ち、起動時にセグメントファイルを先頭から読んで作成する(後のレコードが前のレコードを上書きする)
+ * 画像はセグメントファイルをメモリにマップした領域の一部(ByteBuffer)として、ファイルから読み込まずに返す
+ * 削除により参照されない部分の割合がslshopping.image.packed.compaction-thresholdを超えたセグメントファイルは、
+ * 別のスレッドで参照されるレコードだけを残したファイルに置き換える(圧縮)
+ */
+@Component
+@ConditionalOnProperty(name = "slshopping.image.store", havingValue = "packed")
+public class PackedImageStore implements ImageStore {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerFactory.getLogger(PackedImageStore.class);
+
+    /** レコードの先頭を示す値("SLPI") */
+    private static final int MAGIC = 0x534C5049;
+
+    /** ヘッダーの長さ(先頭の値・キーの長さ・内容の長さ・保存日時・CRC32) */
+    private static final int HEADER_LENGTH = 4 + 4 + 4 + 8 + 4;
+
+    /** 削除済みのレコードの内容の長さ */
+    private static final int TOMBSTONE = -1;
+
+    /** セグメントファイルの名前(segment-00000001.dat) */
+    private static final String SEGMENT_FILE_FORMAT = "segment-%08d.dat";
+
+    /** 圧縮中のコピー先のファイルの名前の末尾(segment-00000001.dat.compacting) */
+    private static final String COMPACTING_SUFFIX = ".compacting";
+
+    /** 追記先のセグメントファイルを最初に確保する長さ(以降は倍ずつ確保する) */
+    private static final long INITIAL_CAPACITY = 1024 * 1024;
+
+    /** セグメントファイルの保存先 */
+    @Value("${slshopping.image.packed.dir:product-images-packed}")
+    private String packedDir;
+
+    /** セグメントファイルの最大サイズ(バイト)。超える場合は次のセグメントファイルに追記する */
+    @Value("${slshopping.image.packed.segment-size:268435456}")
+    private long segmentSize;
+
+    /** セグメントファイルを圧縮する、参照されない部分の割合 */
+    @Value("${slshopping.image.packed.compaction-threshold:0.5}")
+    private double compactionThreshold;
+
+    /** キー → 画像の位置(キーの前方一致で削除するため、キーの順に並べる) */
+    private final NavigableMap<String, Entry> index = new ConcurrentSkipListMap<>();
+
+    /** セグメントの番号 → セグメント */
+    private final Map<Integer, Segment> segments = new ConcurrentHashMap<>();
+
+    /**
+     * 追記・索引の更新を行う際のロック
+     * 画像の読み込み・ディスクへの書き込みの完了待ち・圧縮のコピーはロックの外で行い、他のスレッドの保存・削除を待たせない
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /** セグメントファイルの圧縮を行うスレッド(圧縮は1件ずつ順に行う) */
+    private final ExecutorService compaction =
+        Executors.newSingleThreadExecutor(task -> new Thread(task, "packed-image-compaction"));
+
+    /** 追記先のセグメント */
+    private Segment active;
+
+    /**
+     * セグメントファイルを読み込み、索引を作成する
+     * 末尾のセグメントファイルの途中までしか書き込まれていないレコード(書き込み中の停止)は切り捨てる
+     *
+     * @throws IOException
+     */
+    @PostConstruct
+    void open() throws IOException {
+        // セグメントファイル全体を1つのByteBufferにマップするため、2GB未満とする
+        if (segmentSize <= 0 || segmentSize >= Integer.MAX_VALUE) {
+            throw new IllegalStateException("slshopping.image.packed.segment-size must be less than 2GB: " + segmentSize);
+        }
+        Path dir = Paths.get(packedDir);
+        Files.createDirectories(dir);
+        List<Integer> ids;
+        try (Stream<Path> files = Files.list(dir)) {
+            ids = new ArrayList<>();
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.matches("segment-\\d{8}\\.dat")) {
+                    ids.add(Integer.valueOf(name.substring(8, 16)));
+                } else if (name.endsWith(COMPACTING_SUFFIX)) {
+                    // 圧縮の途中で停止した場合は、元のセグメントファイルがそのまま残っている
+                    Files.delete(file);
+                }
+            }
+            ids.sort(null);
+        }
+        writeLock.lock();
+        try {
+            for (int i = 0; i < ids.size(); i++) {
+                Segment segment = openSegment(ids.get(i));
+                segments.put(segment.id, segment);
+                load(segment, i == ids.size() - 1);
+                active = segment;
+            }
+            if (active == null) {
+                active = openSegment(1);
+                segments.put(active.id, active);
+            }
+            for (Entry entry : index.values()) {
+                entry.segment.liveBytes += entry.recordLength;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        LOGGER.info("Loaded " + index.size() + " images from " + segments.size() + " segments");
+    }
+
+    /**
+     * 実行中の圧縮が終わるのを待ってから、セグメントファイルを閉じる
+     */
+    @PreDestroy
+    void close() {
+        compaction.shutdown();
+        try {
+            compaction.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writeLock.lock();
+        try {
+            try {
+                active.trim();
+            } catch (IOException e) {
+                LOGGER.error("Could not trim segment: " + active.path);
+            }
+            for (Segment segment : segments.values()) {
+                try {
+                    segment.channel.close();
+                } catch (IOException e) {
+                    LOGGER.error("Could not close segment: " + segment.path);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return index.containsKey(key);
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        // 画像は上限2MBのため、一度に読み込んでレコードを作成してから追記する
+        ByteBuffer record = encode(key.getBytes(StandardCharsets.UTF_8), ByteBuffer.wrap(Files.readAllBytes(source)),
+            System.currentTimeMillis());
+        Entry entry;
+        writeLock.lock();
+        try {
+            entry = append(record);
+            replace(key, entry);
+        } finally {
+            writeLock.unlock();
+        }
+        force(entry.segment);
+    }
+
+    @Override
+    public StoredImage get(String key) throws IOException {
+        // 圧縮で移動中の画像は、移動先の位置で読み直す
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Entry entry = index.get(key);
+            if (entry == null) {
+                return null;
+            }
+            try {
+                return StoredImage.ofBuffer(entry.segment.slice(entry.dataOffset, entry.length), entry.lastModified);
+            } catch (ClosedChannelException e) {
+                continue;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void removeAll(String keyPrefix) {
+        Set<Integer> touched = new HashSet<>();
+        Set<Segment> written = new HashSet<>();
+        writeLock.lock();
+        try {
+            List<String> keys = new ArrayList<>(index.subMap(keyPrefix, true, keyPrefix + Character.MAX_VALUE, false)
+                .keySet());
+            for (String key : keys) {
+                try {
+                    written.add(append(encode(key.getBytes(StandardCharsets.UTF_8), null, System.currentTimeMillis()))
+                        .segment);
+                } catch (IOException e) {
+                    LOGGER.error("Could not remove image: " + key);
+                    continue;
+                }
+                Entry removed = replace(key, null);
+                touched.add(removed.segment.id);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        for (Segment segment : written) {
+            try {
+                force(segment);
+            } catch (IOException e) {
+                LOGGER.error("Could not flush segment: " + segment.path);
+            }
+        }
+        for (Integer id : touched) {
+            try {
+                compaction.execute(() -> compactIfNeeded(id));
+            } catch (RejectedExecutionException e) {
+                // 停止中の場合は、次回の起動後の削除で圧縮する
+            }
+        }
+    }
+
+    /**
+     * 参照されない部分の割合がしきい値を超えたセグメントファイルを圧縮する(圧縮を行うスレッドで実行する)
+     * 追記先のセグメントファイルは圧縮しない
+     *
+     * @param id セグメントの番号
+     */
+    void compactIfNeeded(int id) {
+        Segment segment;
+        writeLock.lock();
+        try {
+            segment = segments.get(id);
+            if (segment == null || segment == active || segment.size == 0
+                || 1.0 - (double) segment.liveBytes / segment.size < compactionThreshold) {
+                return;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        try {
+            compact(segment);
+        } catch (IOException e) {
+            LOGGER.error("Could not compact segment: " + segment.path + " (" + e.getMessage() + ")");
+        }
+    }
+
+    /**
+     * 実行中・実行待ちの圧縮が終わるまで待つ(テスト用)
+     */
+    void awaitCompaction() throws Exception {
+        compaction.submit(() -> { }).get();
+    }
+
+    /**
+     * セグメントファイルの参照されるレコードだけを別のファイルにコピーし、元のセグメントファイルと置き換える
+     * 追記の終わったセグメントファイルは変更されないため、コピーはロックを取得せずに行い、
+     * ロックは索引の位置の置き換えとセグメントの入れ替えの間だけ取得する
+     * 置き換え後も同じ番号のため、より新しいセグメントファイルのレコードとの前後関係は変わらない
+     * 削除済みのレコードは、より古いセグメントファイルに同じキーの画像が残っている可能性がある場合のみ残す
+     * (起動時の索引の作成で、古い画像が削除されていない状態に戻らないようにするため)
+     */
+    private void compact(Segment segment) throws IOException {
+        boolean hasOlder = segments.keySet().stream().anyMatch(other -> other < segment.id);
+        ByteBuffer buffer = segment.slice(0, (int) segment.size);
+        Path compactingPath = Paths.get(segment.path + COMPACTING_SUFFIX);
+        // キー → 元の位置・コピー先の位置(画像の内容の先頭)
+        Map<String, long[]> moved = new HashMap<>();
+        long size = 0;
+        try (FileChannel channel = FileChannel.open(compactingPath, StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.WRITE)) {
+            long position = 0;
+            while (position < segment.size) {
+                Record record = Record.read(buffer, position, false);
+                if (record == null) {
+                    break;
+                }
+                Entry current = index.get(record.key);
+                boolean live = record.length != TOMBSTONE && current != null && current.segment == segment
+                    && current.dataOffset == record.dataOffset(position);
+                if (live || (record.length == TOMBSTONE && current == null && hasOlder)) {
+                    writeFully(channel, buffer.slice((int) position, record.recordLength()), size);
+                    if (live) {
+                        moved.put(record.key, new long[] { record.dataOffset(position), record.dataOffset(size) });
+                    }
+                    size += record.recordLength();
+                }
+                position += record.recordLength();
+            }
+            channel.force(false);
+        }
+
+        Segment compacted = null;
+        if (size > 0) {
+            Files.move(compactingPath, segment.path, StandardCopyOption.ATOMIC_MOVE);
+            compacted = openSegment(segment.id);
+            compacted.size = size;
+        } else {
+            Files.delete(compactingPath);
+        }
+
+        int relocated = 0;
+        writeLock.lock();
+        try {
+            if (compacted != null) {
+                segments.put(segment.id, compacted);
+            } else {
+                segments.remove(segment.id);
+            }
+            // コピー中に上書き・削除された画像は、新しい位置・削除済みのままとする
+            for (Map.Entry<String, long[]> move : moved.entrySet()) {
+                Entry current = index.get(move.getKey());
+                if (current != null && current.segment == segment && current.dataOffset == move.getValue()[0]) {
+                    replace(move.getKey(), new Entry(compacted, move.getValue()[1], current.length,
+                        current.lastModified, current.recordLength));
+                    relocated++;
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+
+        // マップした領域を参照中の読み込みは、領域が解放されるまでそのまま読める
+        segment.channel.close();
+        if (compacted == null) {
+            Files.delete(segment.path);
+        }
+        LOGGER.info("Compacted " + segment.path + " (" + relocated + " images kept, " + (segment.size - size)
+            + " bytes released)");
+    }
+
+    /**
+     * レコードを追記先のセグメントファイルに追記する(ロックを取得して呼び出す)
+     * 最大サイズを超える場合は、次のセグメントファイルを作成して追記する
+     *
+     * @param record encodeで作成したレコード
+     * @return 追記した画像の位置
+     */
+    private Entry append(ByteBuffer record) throws IOException {
+        int keyLength = record.getInt(4);
+        int length = record.getInt(8);
+        long lastModified = record.getLong(12);
+        int recordLength = record.remaining();
+        if (active.size > 0 && active.size + recordLength > segmentSize) {
+            // 前のセグメントファイルは追記に備えて確保した領域を切り詰める
+            // ディスクへの書き込みは、追記した各スレッドがロックの外で待つ
+            active.trim();
+            active = openSegment(active.id + 1);
+            segments.put(active.id, active);
+        }
+
+        long position = active.size;
+        active.reserve(position + recordLength, segmentSize);
+        writeFully(active.channel, record.duplicate(), position);
+        active.size += recordLength;
+        return new Entry(active, position + HEADER_LENGTH + keyLength, Math.max(length, 0), lastModified,
+            recordLength);
+    }
+
+    /**
+     * 索引のキーの位置を置き換え、セグメントごとの参照される部分のサイズを更新する(ロックを取得して呼び出す)
+     *
+     * @param entry 新しい位置(削除する場合はnull)
+     * @return 置き換える前の位置
+     */
+    private Entry replace(String key, Entry entry) {
+        Entry previous = entry == null ? index.remove(key) : index.put(key, entry);
+        if (previous != null) {
+            previous.segment.liveBytes -= previous.recordLength;
+        }
+        if (entry != null) {
+            entry.segment.liveBytes += entry.recordLength;
+        }
+        return previous;
+    }
+
+    /**
+     * 追記したセグメントファイルをディスクに書き込む
+     * 書き込みの前に圧縮で置き換えられた場合は、圧縮のコピーがディスクに書き込み済みのため何もしない
+     */
+    private static void force(Segment segment) throws IOException {
+        try {
+            segment.channel.force(false);
+        } catch (ClosedChannelException e) {
+            // 圧縮済み
+        }
+    }
+
+    /**
+     * ヘッダー・キー・画像の内容を並べたレコードを作成する
+     *
+     * @param keyBytes キー
+     * @param data 画像の内容(削除済みのレコードの場合はnull)
+     * @param lastModified 保存日時
+     * @return レコード
+     */
+    private static ByteBuffer encode(byte[] keyBytes, ByteBuffer data, long lastModified) {
+        int length = data == null ? TOMBSTONE : data.remaining();
+        CRC32 crc = new CRC32();
+        crc.update(keyBytes);
+        if (data != null) {
+            crc.update(data.duplicate());
+        }
+        ByteBuffer record = ByteBuffer.allocate(HEADER_LENGTH + keyBytes.length + Math.max(length, 0))
+            .putInt(MAGIC)
+            .putInt(keyBytes.length)
+            .putInt(length)
+            .putLong(lastModified)
+            .putInt((int) crc.getValue())
+            .put(keyBytes);
+        if (data != null) {
+            record.put(data.duplicate());
+        }
+        return record.flip();
+    }
+
+    /**
+     * セグメントファイルのレコードを索引に反映する
+     * 読めないレコード以降は切り捨てる(末尾のセグメントファイルのみ、CRC32で書き込みの途中の停止を検出する)
+     */
+    private void load(Segment segment, boolean last) throws IOException {
+        long fileSize = segment.channel.size();
+        ByteBuffer buffer = fileSize == 0 ? ByteBuffer.allocate(0) : segment.slice(0, (int) fileSize);
+        long position = 0;
+        while (position < fileSize) {
+            Record record = Record.read(buffer, position, last);
+            if (record == null) {
+                break;
+            }
+            if (record.length == TOMBSTONE) {
+                index.remove(record.key);
+            } else {
+                index.put(record.key, new Entry(segment, record.dataOffset(position), record.length,
+                    record.lastModified, record.recordLength()));
+            }
+            position += record.recordLength();
+        }
+        segment.size = position;
+        if (position < fileSize) {
+            // 追記に備えて確保した領域(0で埋まっている)は、途中までしか書き込まれていないレコードではない
+            if (position + 4 > fileSize || buffer.getInt((int) position) != 0) {
+                LOGGER.warn("Truncated incomplete records in " + segment.path + " at " + position);
+            }
+            if (last) {
+                segment.channel.truncate(position);
+                segment.capacity = position;
+                segment.mapped = null;
+            }
+        }
+    }
+
+    private Segment openSegment(int id) throws IOException {
+        Path path = Paths.get(packedDir, String.format(SEGMENT_FILE_FORMAT, id));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        Segment segment = new Segment(id, path, channel);
+        segment.capacity = channel.size();
+        return segment;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * セグメントファイル
+     */
+    private static class Segment {
+
+        private final int id;
+
+        private final Path path;
+
+        private final FileChannel channel;
+
+        /** 書き込み済みのサイズ(バイト) */
+        private long size;
+
+        /** ファイルの長さ(追記先のセグメントファイルは、書き込み済みのサイズより先まで確保する) */
+        private long capacity;
+
+        /** 索引から参照されるレコードのサイズの合計(バイト) */
+        private long liveBytes;
+
+        /**
+         * ファイルをマップした領域(追記で足りなくなった場合はマップし直す)
+         * 追記先のセグメントファイルは確保した長さまでマップするため、マップし直すのは確保した長さが倍になった場合のみ
+         */
+        private volatile MappedByteBuffer mapped;
+
+        /** マップし直す際のロック */
+        private final ReentrantLock mapLock = new ReentrantLock();
+
+        Segment(int id, Path path, FileChannel channel) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+        }
+
+        /**
+         * 追記する位置までファイルの長さを確保する(ロックを取得して呼び出す)
+         * 足りない場合は、確保済みの長さの倍(最大サイズまで)に伸ばす。伸ばした部分は0で埋まる
+         *
+         * @param required 必要な長さ
+         * @param max セグメントファイルの最大サイズ
+         */
+        void reserve(long required, long max) throws IOException {
+            if (required <= capacity) {
+                return;
+            }
+            long grown = Math.max(required, Math.min(Math.max(capacity * 2, INITIAL_CAPACITY), max));
+            writeFully(channel, ByteBuffer.allocate(1), grown - 1);
+            capacity = grown;
+        }
+
+        /**
+         * 追記に備えて確保した領域を切り詰め、ファイルの長さを書き込み済みのサイズにする(ロックを取得して呼び出す)
+         * 確保した領域は読み込まれないため、マップした領域を参照中の読み込みには影響しない
+         */
+        void trim() throws IOException {
+            if (capacity > size) {
+                channel.truncate(size);
+                capacity = size;
+            }
+        }
+
+        /**
+         * ファイルの指定した範囲をマップした領域(読み取り専用)
+         */
+        ByteBuffer slice(long offset, int length) throws IOException {
+            MappedByteBuffer buffer = mapped;
+            if (buffer == null || offset + length > buffer.capacity()) {
+                mapLock.lock();
+                try {
+                    buffer = mapped;
+                    if (buffer == null || offset + length > buffer.capacity()) {
+                        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                        mapped = buffer;
+                    }
+                } finally {
+                    mapLock.unlock();
+                }
+            }
+            return buffer.slice((int) offset, length).asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * 索引の値(画像の位置)
+     */
+    private static class Entry {
+
+        private final Segment segment;
+
+        /** 画像の内容の先頭の位置 */
+        private final long dataOffset;
+
+        private final int length;
+
+        private final long lastModified;
+
+        /** ヘッダー・キーを含むレコード全体の長さ */
+        private final int recordLength;
+
+        Entry(Segment segment, long dataOffset, int length, long lastModified, int recordLength) {
+            this.segment = segment;
+            this.dataOffset = dataOffset;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.recordLength = recordLength;
+        }
+    }
+
+    /**
+     * セグメントファイルから読み込んだレコード
+     */
+    private static class Record {
+
+        private final byte[] keyBytes;
+
+        private final String key;
+
+        /** 内容の長さ(削除済みのレコードの場合は-1) */
+        private final int length;
+
+        private final long lastModified;
+
+        private Record(byte[] keyBytes, int length, long lastModified) {
+            this.keyBytes = keyBytes;
+            this.key = new String(keyBytes, StandardCharsets.UTF_8);
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * 指定した位置のレコードを読み込む
+         *
+         * @param verify CRC32を検証する場合はtrue
+         * @return レコード。途中までしか書き込まれていない・壊れている場合はnull
+         */
+        static Record read(ByteBuffer buffer, long position, boolean verify) {
+            if (position + HEADER_LENGTH > buffer.capacity()) {
+                return null;
+            }
+            int offset = (int) position;
+            int keyLength = buffer.getInt(offset + 4);
+            int length = buffer.getInt(offset + 8);
+            if (buffer.getInt(offset) != MAGIC || keyLength <= 0 || length < TOMBSTONE
+                || position + HEADER_LENGTH + keyLength + Math.max(length, 0) > buffer.capacity()) {
+                return null;
+            }
+            byte[] keyBytes = new byte[keyLength];
+            buffer.get(offset + HEADER_LENGTH, keyBytes);
+            if (verify) {
+                CRC32 crc = new CRC32();
+                crc.update(keyBytes);
+                if (length > 0) {
+                    crc.update(buffer.slice(offset + HEADER_LENGTH + keyLength, length));
+                }
+                if ((int) crc.getValue() != buffer.getInt(offset + 20)) {
+                    return null;
+                }
+            }
+            return new Record(keyBytes, length, buffer.getLong(offset + 12));
+        }
+
+        long dataOffset(long position) {
+            return position + HEADER_LENGTH + keyBytes.length;
+        }
+
+        int recordLength() {
+            return HEADER_LENGTH + keyBytes.length + Math.max(length, 0);
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.example.slshopping_ut.product;
+
+/**
+ * 商品一覧の絞り込みに使用する価格帯
+ * 境界を変更する場合は、ProductRepository.countFacetsの集計条件も合わせて変更すること
+ */
+public enum PriceRange {
+
+    UNDER_1000(1, 999, "〜999円"),
+    FROM_1000(1000, 4999, "1,000〜4,999円"),
+    FROM_5000(5000, 9999, "5,000〜9,999円"),
+    FROM_10000(10000, 49999, "10,000〜49,999円"),
+    FROM_50000(50000, Integer.MAX_VALUE, "50,000円〜");
+
+    private final int min;
+
+    private final int max;
+
+    private final String label;
+
+    PriceRange(int min, int max, String label) {
+        this.min = min;
+        this.max = max;
+        this.label = label;
+    }
+
+    /**
+     * 価格が含まれる価格帯を返す
+     *
+     * @param price 価格
+     * @return 価格帯
+     */
+    public static PriceRange of(int price) {
+        for (PriceRange range : values()) {
+            if (price <= range.max) {
+                return range;
+            }
+        }
+        return FROM_50000;
+    }
+
+    /**
+     * 画面から渡された値を価格帯に変換する
+     *
+     * @param value 価格帯の名前
+     * @return 価格帯(指定がない場合・不正な値の場合はnull)
+     */
+    public static PriceRange parse(String value) {
+        for (PriceRange range : values()) {
+            if (range.name().equals(value)) {
+                return range;
+            }
+        }
+        return null;
+    }
+
+    public int getMin() {
+        return min;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+}
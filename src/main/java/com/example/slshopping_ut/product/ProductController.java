@@ -4,7 +4,9 @@ import java.io.IOException;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.crossstore.ChangeSetPersister.NotFoundException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -14,15 +16,18 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import com.example.slshopping_ut.DuplicateException;
+import com.example.slshopping_ut.KeysetRequest;
 import com.example.slshopping_ut.brand.BrandService;
 import com.example.slshopping_ut.category.CategoryService;
-import com.example.slshopping_ut.entity.Brand;
-import com.example.slshopping_ut.entity.Category;
+import com.example.slshopping_ut.csv.CsvImportResult;
 import com.example.slshopping_ut.entity.Product;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 
 
@@ -36,49 +41,69 @@ public class ProductController {
     @Autowired
     private ProductImageService productImageService;
 
+    @Autowired
+    private ProductImportService productImportService;
+
+    @Autowired
+    private ProductExportService productExportService;
+
     @Autowired
     private BrandService brandService;
 
     @Autowired
     private CategoryService categoryService;
 
-    /**
-     * ブランドリストをmodelに追加する処理
-     * 複数のハンドラメソッドでlistBrandsをmodelに追加する必要があるため、共通化する
-     *
-     * @return
-     */
-    @ModelAttribute(name = "listBrands")
-    public List<Brand> setBrandsToModel() {
-        return brandService.listAll();
-    }
-
-    /**
-     * カテゴリーリストをmodelに追加する処理
-     * 複数のハンドラメソッドでlistCategoriesをmodelに追加する必要があるため、共通化する
-     *
-     * @return
-     */
-    @ModelAttribute(name = "listCategories")
-    public List<Category> setCategoriesToModel() {
-        return categoryService.listAll();
-    }
+    /** 保存前に重複チェックを行うか(重複は保存時にデータベースの一意制約で検出するため、通常は行わない) */
+    @Value("${slshopping.unique-precheck:false}")
+    private boolean uniquePrecheck;
 
     /**
      * 商品一覧画面表示
      *
+     * @param keyword 検索キーワード
+     * @param brandId 絞り込むブランドID
+     * @param categoryId 絞り込むカテゴリーID
+     * @param price 絞り込む価格帯
+     * @param sort 並び順
+     * @param after 前のページの末尾のカーソル
+     * @param before 次のページの先頭のカーソル
+     * @param size 1ページあたりの表示件数
      * @param model
      * @return 商品一覧画面
      */
     @GetMapping
-    public String listProducts(@RequestParam(required = false) String keyword, Model model) {
-        // 全商品情報の取得
-        List<Product> listProducts = productService.listAll(keyword);
-        model.addAttribute("listProducts", listProducts);
+    public String listProducts(@RequestParam(required = false) String keyword,
+        @RequestParam(required = false) Long brandId, @RequestParam(required = false) Long categoryId,
+        @RequestParam(required = false) String price,
+        @RequestParam(required = false) String sort, @RequestParam(required = false) String after,
+        @RequestParam(required = false) String before, @RequestParam(required = false) Integer size, Model model) {
+        ProductFilter filter = ProductFilter.of(brandId, categoryId, price);
+        // 1ページ分の商品情報と、絞り込み候補ごとの件数の取得
+        ProductSearchResult result = productService.listPage(keyword, filter,
+            KeysetRequest.of(sort, after, before, size));
+        model.addAttribute("listProducts", result.getPage().getContent());
+        model.addAttribute("page", result.getPage());
+        model.addAttribute("facets", result.getFacets());
+        model.addAttribute("filter", filter);
+        model.addAttribute("priceRanges", PriceRange.values());
         model.addAttribute("keyword", keyword);
+        addReferenceData(model);
         return "products/products";
     }
 
+    /**
+     * 商品検索の入力補完
+     * 入力された文字列に前方一致する商品名・ブランド名・カテゴリー名をJSONで返す
+     *
+     * @param q 入力された文字列
+     * @return 候補のリスト
+     */
+    @GetMapping("/suggest")
+    @ResponseBody
+    public List<Suggestion> suggest(@RequestParam(name = "q", required = false) String q) {
+        return productService.suggest(q);
+    }
+
     /**
      * 商品新規登録画面表示
      *
@@ -90,6 +115,7 @@ public class ProductController {
         // 新規登録用に、空の商品情報作成
         Product product = new Product();
         model.addAttribute("product", product);
+        addReferenceData(model);
         return "products/product_form";
     }
 
@@ -111,31 +137,103 @@ public class ProductController {
         // 入力値のチェック
         if (result.hasErrors()) {
             model.addAttribute("errors", result.getAllErrors());
+            addReferenceData(model);
             return "products/product_form";
         }
 
-        // 重複チェック
-        if (!productService.checkUnique(product)) {
+        // 重複チェック(事前チェックを有効にした場合のみ)
+        if (uniquePrecheck && !productService.checkUnique(product)) {
             model.addAttribute("error_message", "重複しています");
+            addReferenceData(model);
             return "products/product_form";
         }
 
-        // 画像ファイルのチェック
-        if (!productImageService.isValid(file)) {
+        // 商品画像をチェックしながら一時ファイルに書き出し、ファイル名と内容のハッシュ値を商品情報に格納する
+        StagedImage stagedImage;
+        try {
+            stagedImage = productImageService.stage(file);
+        } catch (InvalidImageException e) {
             model.addAttribute("file_error_message", "画像は2MB以内かつpng・jpg・jpeg形式で添付してください");
+            addReferenceData(model);
             return "products/product_form";
         }
-
-        // 商品画像のファイル名を取得し、商品情報に格納する
-        productImageService.setMainImageName(file, product);
-        // 商品情報の登録
-        Product savedProduct = productService.save(product);
-        // 商品画像のファイルを保存する
-        productImageService.saveUploadedImages(file, savedProduct);
+        String previousImageHash = productImageService.setMainImage(stagedImage, product);
+        // 商品情報の登録(重複はデータベースの一意制約で検出する)
+        Product savedProduct;
+        try {
+            savedProduct = productService.save(product);
+        } catch (DuplicateException e) {
+            productImageService.discard(stagedImage);
+            model.addAttribute("error_message", "重複しています");
+            addReferenceData(model);
+            return "products/product_form";
+        } catch (RuntimeException e) {
+            // 重複以外の理由で保存できなかった場合も一時ファイルを残さない
+            productImageService.discard(stagedImage);
+            throw e;
+        }
+        // 商品画像の保存と使われなくなった画像の削除は別スレッドで行い、完了を待たずに一覧画面へ戻る
+        productImageService.commitAsync(stagedImage, savedProduct, previousImageHash);
         ra.addFlashAttribute("success_message", "登録に成功しました");
         return "redirect:/products";
     }
 
+    /**
+     * 商品一括登録画面表示
+     *
+     * @return 商品一括登録画面
+     */
+    @GetMapping("/import")
+    public String importForm() {
+        return "products/product_import";
+    }
+
+    /**
+     * 商品一括登録
+     * CSVファイルの商品を登録し、登録件数と行ごとのエラーを表示する
+     *
+     * @param file CSVファイル
+     * @param model
+     * @return 商品一括登録画面
+     * @throws IOException
+     */
+    @PostMapping("/import")
+    public String importProducts(MultipartFile file, Model model) throws IOException {
+        // ファイルのチェック
+        if (file == null || file.isEmpty()) {
+            model.addAttribute("file_error_message", "CSVファイルを選択してください");
+            return "products/product_import";
+        }
+
+        CsvImportResult result = productImportService.importCsv(file.getInputStream());
+        model.addAttribute("result", result);
+        return "products/product_import";
+    }
+
+    /**
+     * 商品情報の出力
+     * 全商品をCSVまたはNDJSONでレスポンスに直接書き込む
+     *
+     * @param format 出力形式(csv・ndjson)
+     * @param response
+     * @throws IOException
+     */
+    @GetMapping("/export")
+    public void exportProducts(@RequestParam(defaultValue = "csv") String format, HttpServletResponse response)
+        throws IOException {
+        if (format.equals("csv")) {
+            response.setContentType("text/csv;charset=UTF-8");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"products.csv\"");
+            productExportService.exportCsv(response.getOutputStream());
+        } else if (format.equals("ndjson")) {
+            response.setContentType("application/x-ndjson;charset=UTF-8");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"products.ndjson\"");
+            productExportService.exportNdjson(response.getOutputStream());
+        } else {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+        }
+    }
+
     /**
      * 商品詳細画面表示
      *
@@ -176,6 +274,7 @@ public class ProductController {
             return "redirect:/products";
         }
 
+        addReferenceData(model);
         return "products/product_edit";
     }
 
@@ -197,27 +296,43 @@ public class ProductController {
         // 入力値のチェック
         if (result.hasErrors()) {
             model.addAttribute("errors", result.getAllErrors());
+            addReferenceData(model);
             return "products/product_edit";
         }
 
-        // 重複チェック
-        if (!productService.checkUnique(product)) {
+        // 重複チェック(事前チェックを有効にした場合のみ)
+        if (uniquePrecheck && !productService.checkUnique(product)) {
             model.addAttribute("error_message", "重複しています");
+            addReferenceData(model);
             return "products/product_edit";
         }
 
-        // 画像ファイルのチェック
-        if (!productImageService.isValid(file)) {
+        // 商品画像をチェックしながら一時ファイルに書き出し、ファイル名と内容のハッシュ値を商品情報に格納する
+        StagedImage stagedImage;
+        try {
+            stagedImage = productImageService.stage(file);
+        } catch (InvalidImageException e) {
             model.addAttribute("file_error_message", "画像は2MB以内かつpng・jpg・jpeg形式で添付してください");
+            addReferenceData(model);
             return "products/product_edit";
         }
-
-        // 商品画像のファイル名を取得し、商品情報に格納する
-        productImageService.setMainImageName(file, product);
-        // 商品情報の更新
-        Product savedProduct = productService.save(product);
-        // 商品画像のファイルを保存する
-        productImageService.saveUploadedImages(file, savedProduct);
+        String previousImageHash = productImageService.setMainImage(stagedImage, product);
+        // 商品情報の更新(重複はデータベースの一意制約で検出する)
+        Product savedProduct;
+        try {
+            savedProduct = productService.save(product);
+        } catch (DuplicateException e) {
+            productImageService.discard(stagedImage);
+            model.addAttribute("error_message", "重複しています");
+            addReferenceData(model);
+            return "products/product_edit";
+        } catch (RuntimeException e) {
+            // 重複以外の理由で保存できなかった場合も一時ファイルを残さない
+            productImageService.discard(stagedImage);
+            throw e;
+        }
+        // 商品画像の保存と使われなくなった画像の削除は別スレッドで行い、完了を待たずに一覧画面へ戻る
+        productImageService.commitAsync(stagedImage, savedProduct, previousImageHash);
         ra.addFlashAttribute("success_message", "更新に成功しました");
         return "redirect:/products";
     }
@@ -233,9 +348,9 @@ public class ProductController {
     @GetMapping("/delete/{id}")
     public String deleteProduct(@PathVariable(name = "id") Long id, Model model, RedirectAttributes ra) {
         try {
-            // 商品情報削除
-            productService.delete(id);
-            productImageService.delete(id);
+            // 商品情報削除(他の商品が参照していない商品画像も削除する)
+            Product product = productService.delete(id);
+            productImageService.delete(product);
             ra.addFlashAttribute("success_message", "削除に成功しました");
         } catch (NotFoundException e) {
             ra.addFlashAttribute("error_message", "対象のデータが見つかりませんでした");
@@ -243,4 +358,15 @@ public class ProductController {
         return "redirect:/products";
     }
 
+    /**
+     * ブランド・カテゴリーの選択肢をmodelに追加する処理
+     * 選択肢を表示する画面(一覧・登録・編集)を返す場合のみ呼び出し、詳細画面やリダイレクトでは取得しない
+     *
+     * @param model
+     */
+    private void addReferenceData(Model model) {
+        model.addAttribute("listBrands", brandService.listCached());
+        model.addAttribute("listCategories", categoryService.listCached());
+    }
+
 }
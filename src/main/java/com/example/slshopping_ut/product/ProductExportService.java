@@ -0,0 +1,121 @@
+package com.example.slshopping_ut.product;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.example.slshopping_ut.csv.CsvWriter;
+import com.example.slshopping_ut.entity.Product;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+
+/**
+ * 商品情報の出力(CSV・NDJSON)処理
+ * 全件をリストに読み込まず、データベースのカーソルから1件ずつ読み込んで出力先に書き込む
+ * 書き込んだ商品は永続化コンテキストから切り離し、件数に関わらず使用するメモリを一定にする
+ */
+@Service
+public class ProductExportService {
+
+    /** CSVの列名(一括登録の列名と同じにする) */
+    static final String[] CSV_HEADER = { "id", "name", "description", "price", "brand", "category",
+        "length", "width", "height", "weight" };
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * 全商品をCSV(UTF-8、BOM付き)で出力する
+     *
+     * @param out 出力先
+     * @throws IOException
+     */
+    @Transactional
+    public void exportCsv(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        // Excelで開いた場合に文字化けしないようBOMを付ける(一括登録ではBOMを読み飛ばす)
+        writer.write('\uFEFF');
+        CsvWriter csv = new CsvWriter(writer);
+        csv.writeRecord((Object[]) CSV_HEADER);
+        forEachProduct(product -> csv.writeRecord(product.getId(), product.getName(), product.getDescription(),
+            product.getPrice(), product.getBrand().getName(), product.getCategory().getName(),
+            product.getLength(), product.getWidth(), product.getHeight(), product.getWeight()));
+        csv.flush();
+    }
+
+    /**
+     * 全商品をNDJSON(1行に1件のJSON)で出力する
+     *
+     * @param out 出力先
+     * @throws IOException
+     */
+    @Transactional
+    public void exportNdjson(OutputStream out) throws IOException {
+        JsonGenerator json = objectMapper.getFactory().createGenerator(out);
+        // 出力先はレスポンスのため、書き込み後も閉じない
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        json.setRootValueSeparator(null);
+        forEachProduct(product -> {
+            json.writeStartObject();
+            json.writeNumberField("id", product.getId());
+            json.writeStringField("name", product.getName());
+            json.writeStringField("description", product.getDescription());
+            json.writeNumberField("price", product.getPrice());
+            json.writeStringField("brand", product.getBrand().getName());
+            json.writeStringField("category", product.getCategory().getName());
+            json.writeNumberField("length", product.getLength());
+            json.writeNumberField("width", product.getWidth());
+            json.writeNumberField("height", product.getHeight());
+            json.writeNumberField("weight", product.getWeight());
+            json.writeEndObject();
+            json.writeRaw('\n');
+        });
+        json.close();
+    }
+
+    /**
+     * 全商品をIDの昇順に1件ずつ処理する
+     * 処理した商品は永続化コンテキストから切り離す(ブランド・カテゴリーは種類数分のみ保持される)
+     *
+     * @param action 1件ごとの処理
+     * @throws IOException
+     */
+    private void forEachProduct(ProductWriter action) throws IOException {
+        try (Stream<Product> products = productRepository.streamAll()) {
+            // 書き込みのIOExceptionをそのまま返すため、forEachではなくIteratorで処理する
+            Iterator<Product> iterator = products.iterator();
+            while (iterator.hasNext()) {
+                Product product = iterator.next();
+                action.write(product);
+                entityManager.detach(product);
+            }
+        }
+    }
+
+    /**
+     * 商品1件の書き込み処理
+     */
+    @FunctionalInterface
+    private interface ProductWriter {
+
+        void write(Product product) throws IOException;
+    }
+
+}
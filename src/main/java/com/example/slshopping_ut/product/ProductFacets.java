@@ -0,0 +1,69 @@
+package com.example.slshopping_ut.product;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 商品一覧の絞り込み候補ごとの件数(ファセット)
+ * 各項目の件数は、その項目以外の絞り込み条件を適用した件数とする
+ * (ブランドを1つ選択していても、他のブランドに切り替えた場合の件数を表示できるようにするため)
+ */
+public class ProductFacets {
+
+    private final ProductFilter filter;
+
+    /** ブランドID → 件数 */
+    private final Map<Long, Long> brandCounts = new HashMap<>();
+
+    /** カテゴリーID → 件数 */
+    private final Map<Long, Long> categoryCounts = new HashMap<>();
+
+    /** 価格帯 → 件数 */
+    private final Map<PriceRange, Long> priceCounts = new EnumMap<>(PriceRange.class);
+
+    public ProductFacets(ProductFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * 件数を加算する
+     * インデックスからは1商品ずつ、集計クエリからは(ブランド, カテゴリー, 価格帯)の組ごとに呼び出す
+     *
+     * @param brandId ブランドID
+     * @param categoryId カテゴリーID
+     * @param price 価格帯
+     * @param count 件数
+     */
+    public void add(Long brandId, Long categoryId, PriceRange price, long count) {
+        boolean brand = filter.matchesBrand(brandId);
+        boolean category = filter.matchesCategory(categoryId);
+        boolean range = filter.matchesPrice(price);
+        if (category && range) {
+            brandCounts.merge(brandId, count, Long::sum);
+        }
+        if (brand && range) {
+            categoryCounts.merge(categoryId, count, Long::sum);
+        }
+        if (brand && category) {
+            priceCounts.merge(price, count, Long::sum);
+        }
+    }
+
+    public long getBrandCount(Long brandId) {
+        return brandCounts.getOrDefault(brandId, 0L);
+    }
+
+    public long getCategoryCount(Long categoryId) {
+        return categoryCounts.getOrDefault(categoryId, 0L);
+    }
+
+    public long getPriceCount(PriceRange price) {
+        return priceCounts.getOrDefault(price, 0L);
+    }
+
+    public ProductFilter getFilter() {
+        return filter;
+    }
+
+}
@@ -0,0 +1,153 @@
+package com.example.slshopping_ut.product;
+
+import java.util.Objects;
+
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * 商品一覧の絞り込み条件(ブランド・カテゴリー・価格帯)
+ * 指定がない項目はnullとし、その項目では絞り込まない
+ */
+public class ProductFilter {
+
+    /** 絞り込みなし */
+    public static final ProductFilter NONE = new ProductFilter(null, null, null);
+
+    private final Long brandId;
+
+    private final Long categoryId;
+
+    private final PriceRange price;
+
+    public ProductFilter(Long brandId, Long categoryId, PriceRange price) {
+        this.brandId = brandId;
+        this.categoryId = categoryId;
+        this.price = price;
+    }
+
+    /**
+     * 画面から渡された値から絞り込み条件を作成する
+     *
+     * @param brandId ブランドID
+     * @param categoryId カテゴリーID
+     * @param price 価格帯の名前
+     * @return 絞り込み条件
+     */
+    public static ProductFilter of(Long brandId, Long categoryId, String price) {
+        return new ProductFilter(brandId, categoryId, PriceRange.parse(price));
+    }
+
+    /**
+     * いずれかの項目で絞り込んでいるか
+     *
+     * @return 絞り込んでいる場合はtrue
+     */
+    public boolean isActive() {
+        return brandId != null || categoryId != null || price != null;
+    }
+
+    public boolean matchesBrand(Long id) {
+        return brandId == null || brandId.equals(id);
+    }
+
+    public boolean matchesCategory(Long id) {
+        return categoryId == null || categoryId.equals(id);
+    }
+
+    public boolean matchesPrice(PriceRange range) {
+        return price == null || price == range;
+    }
+
+    /**
+     * ブランドの絞り込みを切り替えた条件を返す(選択中のブランドを指定した場合は解除する)
+     *
+     * @param id ブランドID
+     * @return 絞り込み条件
+     */
+    public ProductFilter withBrand(Long id) {
+        return new ProductFilter(Objects.equals(brandId, id) ? null : id, categoryId, price);
+    }
+
+    /**
+     * カテゴリーの絞り込みを切り替えた条件を返す(選択中のカテゴリーを指定した場合は解除する)
+     *
+     * @param id カテゴリーID
+     * @return 絞り込み条件
+     */
+    public ProductFilter withCategory(Long id) {
+        return new ProductFilter(brandId, Objects.equals(categoryId, id) ? null : id, price);
+    }
+
+    /**
+     * 価格帯の絞り込みを切り替えた条件を返す(選択中の価格帯を指定した場合は解除する)
+     *
+     * @param range 価格帯
+     * @return 絞り込み条件
+     */
+    public ProductFilter withPrice(PriceRange range) {
+        return new ProductFilter(brandId, categoryId, price == range ? null : range);
+    }
+
+    /**
+     * 絞り込み条件をクエリパラメーターとして付与したパスを返す
+     * 一覧画面のページング・並び替えのリンクで条件を引き継ぐために使用する
+     *
+     * @param path 一覧画面のパス
+     * @return クエリパラメーター付きのパス
+     */
+    public String toPath(String path) {
+        UriComponentsBuilder builder = UriComponentsBuilder.fromPath(path);
+        if (brandId != null) {
+            builder.queryParam("brandId", brandId);
+        }
+        if (categoryId != null) {
+            builder.queryParam("categoryId", categoryId);
+        }
+        if (price != null) {
+            builder.queryParam("price", price.name());
+        }
+        return builder.toUriString();
+    }
+
+    /**
+     * 価格の下限(データベースへのクエリで使用する)
+     */
+    public int getMinPrice() {
+        return price != null ? price.getMin() : 0;
+    }
+
+    /**
+     * 価格の上限(データベースへのクエリで使用する)
+     */
+    public int getMaxPrice() {
+        return price != null ? price.getMax() : Integer.MAX_VALUE;
+    }
+
+    public Long getBrandId() {
+        return brandId;
+    }
+
+    public Long getCategoryId() {
+        return categoryId;
+    }
+
+    public PriceRange getPrice() {
+        return price;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ProductFilter)) {
+            return false;
+        }
+        ProductFilter other = (ProductFilter) obj;
+        return Objects.equals(brandId, other.brandId) && Objects.equals(categoryId, other.categoryId)
+            && price == other.price;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(brandId, categoryId, price);
+    }
+
+}
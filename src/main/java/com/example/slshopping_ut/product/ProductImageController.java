@@ -0,0 +1,184 @@
+package com.example.slshopping_ut.product;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.util.UrlPathHelper;
+
+import com.example.slshopping_ut.entity.ImageKey;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * 商品画像の配信を行うコントローラー
+ * 画像ごとのファイルに保存した画像は、Tomcatのsendfile(カーネル内でのファイルからソケットへの転送)で送信する
+ * セグメントファイルに保存した画像(PackedImageStore)は、メモリにマップした領域をそのまま書き込む
+ * ETag・Last-Modifiedによる再検証(304)と、Rangeによる部分取得(206)に対応する
+ */
+@Controller
+public class ProductImageController {
+
+    /** 画像のURLの接頭辞 */
+    static final String PREFIX = "/product-images/";
+
+    /** 内容のハッシュ値で名前を付けた画像のCache-Control(内容が変わらないため、1年間再検証させない) */
+    static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+    /** 商品IDごとのディレクトリの旧形式の画像のCache-Control(毎回ETagで再検証させる) */
+    static final String REVALIDATE = "no-cache";
+
+    /** Tomcatがsendfileに対応している場合にtrueを返すリクエスト属性 */
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+
+    /** sendfileで送信するファイルのパス */
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+    /** sendfileで送信する範囲の先頭(バイト) */
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+
+    /** sendfileで送信する範囲の終端(バイト、この位置を含まない) */
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /** 内容のハッシュ値で名前を付けた画像の保存先 */
+    @Autowired
+    private ImageStore imageStore;
+
+    /** 旧形式の商品IDごとのディレクトリの保存先 */
+    @Value("${slshopping.image.dir:product-images}")
+    private String imageDir;
+
+    /** sendfileで送信する最小のサイズ(バイト)。小さいファイルは通常の書き込みの方が速い */
+    @Value("${slshopping.image.sendfile-threshold:49152}")
+    private long sendfileThreshold;
+
+    /**
+     * 商品画像の配信
+     * 条件付きリクエストで変更がない場合は304、Rangeを指定した場合は指定範囲のみを206で返す
+     * 画像がない場合は404を返す
+     *
+     * @param request リクエスト
+     * @param response レスポンス
+     * @throws IOException
+     */
+    @GetMapping(PREFIX + "**")
+    public void serve(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String key = UrlPathHelper.defaultInstance.getPathWithinApplication(request).substring(PREFIX.length());
+        boolean contentAddressed = key.startsWith(ImageKey.ROOT + "/");
+        StoredImage image = contentAddressed ? imageStore.get(key) : getLegacyImage(key);
+        if (image == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        long length = image.getLength();
+        // Last-Modifiedは秒単位のため、If-Modified-Since・If-Rangeと比較できるよう切り捨てる
+        long lastModified = image.getLastModified() / 1000 * 1000;
+        String etag = etagOf(key, contentAddressed, length, lastModified);
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, contentAddressed ? IMMUTABLE : REVALIDATE);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+        response.setContentType(MediaTypeFactory.getMediaType(key.substring(key.lastIndexOf('/') + 1))
+            .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        response.setHeader("X-Content-Type-Options", "nosniff");
+
+        long start = 0;
+        long count = length;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && matchesIfRange(request, etag, lastModified)) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+                // 複数の範囲の指定(multipart/byteranges)には対応せず、全体を返す
+                if (ranges.size() == 1) {
+                    start = ranges.get(0).getRangeStart(length);
+                    count = ranges.get(0).getRangeEnd(length) - start + 1;
+                    response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                    response.setHeader(HttpHeaders.CONTENT_RANGE,
+                        "bytes " + start + "-" + (start + count - 1) + "/" + length);
+                }
+            } catch (IllegalArgumentException e) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+        }
+
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+        if (image.getFile() != null && count >= sendfileThreshold
+            && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            // 本文はTomcatがこのメソッドの終了後にsendfileで送信する
+            request.setAttribute(SENDFILE_FILENAME, image.getFile().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return;
+        }
+        image.transferTo(start, count, Channels.newChannel(response.getOutputStream()));
+    }
+
+    /**
+     * 商品IDごとのディレクトリに保存した旧形式の画像(移行前の商品の画像)
+     *
+     * @return 画像。ない場合・保存先の外を指す場合はnull
+     */
+    private StoredImage getLegacyImage(String key) throws IOException {
+        Path root = Paths.get(imageDir).toAbsolutePath().normalize();
+        Path file = root.resolve(key).normalize();
+        if (key.isEmpty() || !file.startsWith(root) || !Files.isRegularFile(file)) {
+            return null;
+        }
+        return StoredImage.ofFile(file);
+    }
+
+    /**
+     * 強いETag
+     * 内容のハッシュ値で名前を付けた画像はファイル名(派生画像の種類を含む)、旧形式の画像はサイズと更新日時から作成する
+     * (旧形式の画像は上書きされず、画像の変更時は新しいファイルになるため、サイズと更新日時で内容を区別できる)
+     */
+    private static String etagOf(String key, boolean contentAddressed, long length, long lastModified) {
+        if (contentAddressed) {
+            String fileName = key.substring(key.lastIndexOf('/') + 1);
+            int dot = fileName.lastIndexOf('.');
+            return "\"" + (dot < 0 ? fileName : fileName.substring(0, dot)) + "\"";
+        }
+        return "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    /**
+     * If-Rangeの判定
+     * 指定がない場合と、ETagまたは更新日時が一致する場合にtrue(一致しない場合はRangeを無視して全体を返す)
+     */
+    private static boolean matchesIfRange(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) == lastModified;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+}
@@ -1,85 +1,351 @@
 package com.example.slshopping_ut.product;
 
 import java.io.IOException;
-import java.util.Arrays;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.example.slshopping_ut.FileUploadUtil;
+import com.example.slshopping_ut.entity.ImageStatus;
 import com.example.slshopping_ut.entity.Product;
+import com.example.slshopping_ut.product.ContentAddressedImageStore.LegacyImage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 /**
  * 商品画像関連の処理を行うサービスクラス
  * ProductServiceと役割を分けるために、別クラスに処理を切り出しています
+ *
+ * アップロードされた画像はリクエスト中に一時ファイルへ書き出してハッシュ値を求めるだけとし、
+ * 商品の登録後に別スレッドで派生画像(ImageVariant)を作成して、内容のハッシュ値で名前を付けた保存先へ移動する
+ * 参照する商品がなくなった画像は削除する(参照数は同じimageHashを持つ商品の件数)
  */
 @Service
 public class ProductImageService {
 
-    private static final String UPLOADED_DIR = "product-images/";
+    /** ロガー */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProductImageService.class);
+
+    /** 待ち行列が満杯の場合に、空くまで待つ時間(秒) */
+    private static final long ENQUEUE_TIMEOUT_SECONDS = 30;
+
+    /** 商品画像の上限サイズ(2MB) */
+    public static final long MAX_IMAGE_SIZE = 2 * 1024 * 1024;
+
+    /** 画像の保存先(旧形式の商品IDごとのディレクトリの削除に使用する) */
+    @Value("${slshopping.image.dir:product-images}")
+    private String uploadDir;
+
+    /** 派生画像の作成・保存先への移動を行うスレッドの数 */
+    @Value("${slshopping.image.workers:2}")
+    private int workers;
+
+    /** スレッドごとの待ち行列の長さ */
+    @Value("${slshopping.image.queue-capacity:50}")
+    private int queueCapacity;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ContentAddressedImageStore imageStore;
+
+    /**
+     * 画像の保存・削除を行うスレッド
+     * 同じ画像の保存と削除が順番通りに行われるよう、画像のハッシュ値ごとに同じスレッドに割り当てる
+     * 待ち行列が満杯の場合、登録・更新のリクエストは空くまで待つ(保存が追いつかない分だけ受付を遅らせる)
+     */
+    private ThreadPoolExecutor[] lanes;
+
+    @PostConstruct
+    void start() throws IOException {
+        // 前回の停止時に移動されずに残った一時ファイルを削除する
+        imageStore.cleanStaging();
+
+        lanes = new ThreadPoolExecutor[workers];
+        for (int i = 0; i < workers; i++) {
+            String threadName = "product-image-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), task -> new Thread(task, threadName),
+                (task, executor) -> {
+                    try {
+                        if (executor.isShutdown()
+                            || !executor.getQueue().offer(task, ENQUEUE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                            throw new RejectedExecutionException("Image queue is full");
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException(e);
+                    }
+                });
+        }
+    }
+
+    /**
+     * 待ち行列に残っている画像を保存し終えてから停止する
+     */
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.awaitTermination(ENQUEUE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
 
     /**
-     * 画像ファイルアップロード処理
+     * アップロードされた画像を検証しながら一時ファイルに書き出し、内容のハッシュ値を求める
+     * 先頭のバイト列で画像の形式(PNG・JPEG)を判定し、受け付けない形式・上限サイズを超える場合は
+     * その時点で読み込みをやめる。検証・書き出し・ハッシュ値の計算は1回の読み込みで行い、画像全体をメモリに保持しない
      *
      * @param mainImageMultipart 商品画像
-     * @param savedProduct 商品情報
+     * @return 書き出した一時ファイル。画像が添付されていない場合はnull
      * @throws IOException
+     * @throws InvalidImageException 上限サイズを超える場合・PNG・JPEG以外の場合
      */
-    public void saveUploadedImages(MultipartFile mainImageMultipart, Product savedProduct) throws IOException {
-        if (!mainImageMultipart.isEmpty()) {
-            String fileName = mainImageMultipart.getOriginalFilename();
-            String uploadDir = UPLOADED_DIR + savedProduct.getId();
-
-            FileUploadUtil.cleanDir(uploadDir);
-            FileUploadUtil.saveFile(uploadDir, fileName, mainImageMultipart);
+    public StagedImage stage(MultipartFile mainImageMultipart) throws IOException, InvalidImageException {
+        if (mainImageMultipart == null || mainImageMultipart.isEmpty()) {
+            return null;
+        }
+        // サイズが分かっている場合は読み込む前に判定する
+        if (mainImageMultipart.getSize() > MAX_IMAGE_SIZE) {
+            throw new InvalidImageException("Image is too large: " + mainImageMultipart.getSize());
+        }
+        Path path = imageStore.createTempFile("upload-", ".tmp");
+        MessageDigest digest = ContentAddressedImageStore.newDigest();
+        try (InputStream in = mainImageMultipart.getInputStream();
+                OutputStream out = new DigestOutputStream(Files.newOutputStream(path), digest)) {
+            byte[] header = in.readNBytes(ImageFormat.HEADER_LENGTH);
+            ImageFormat format = ImageFormat.detect(header);
+            if (format == null) {
+                throw new InvalidImageException("Unsupported image format: " + mainImageMultipart.getOriginalFilename());
+            }
+            out.write(header);
+            long size = header.length;
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                size += read;
+                if (size > MAX_IMAGE_SIZE) {
+                    throw new InvalidImageException("Image is too large: " + size);
+                }
+                out.write(buffer, 0, read);
+            }
+            return new StagedImage(path, format.fileName(mainImageMultipart.getOriginalFilename()),
+                ContentAddressedImageStore.toHash(digest));
+        } catch (IOException | InvalidImageException e) {
+            Files.deleteIfExists(path);
+            throw e;
         }
     }
 
     /**
-     * 商品画像名をProductエンティティにセットする
+     * 商品画像のファイル名・ハッシュ値・保存状況をProductエンティティにセットする
+     * 保存済みの画像(他の商品と同じ画像)は保存状況をREADY、未保存の画像は保存が完了するまでPROCESSINGとする
+     * 更新で画像が添付されていない場合・登録済みと同じ画像の場合は、登録済みの画像をそのまま引き継ぐ
      *
-     * @param mainImageMultipart 商品画像
+     * @param stagedImage 一時ファイル(画像が添付されていない場合はnull)
      * @param product 商品情報
+     * @return 更新前の画像のハッシュ値(新規登録・更新前に画像がない場合はnull)
      */
-    public void setMainImageName(MultipartFile mainImageMultipart, Product product) {
-        if (!mainImageMultipart.isEmpty()) {
-            String fileName = mainImageMultipart.getOriginalFilename();
-            product.setImage(fileName);
+    public String setMainImage(StagedImage stagedImage, Product product) {
+        Product current = product.getId() != null ? productRepository.findById(product.getId()).orElse(null) : null;
+        String previousHash = current != null ? current.getImageHash() : null;
+
+        if (current != null && (stagedImage == null || stagedImage.getHash().equals(previousHash))) {
+            product.setImage(current.getImageName());
+            product.setImageHash(previousHash);
+            product.setImageStatus(current.getImageStatus());
+        } else if (stagedImage != null) {
+            product.setImage(stagedImage.getFileName());
+            product.setImageHash(stagedImage.getHash());
+            product.setImageStatus(imageStore.exists(stagedImage.getHash(), stagedImage.getFileName())
+                ? ImageStatus.READY : ImageStatus.PROCESSING);
         }
+        return previousHash;
     }
 
     /**
-     * 商品画像のサイズと種類をチェックする
+     * 商品画像の保存と、使われなくなった画像の削除を登録する
+     * 商品情報の保存(コミット済み)の後に呼び出すこと
+     * 保存が完了すると商品の画像の保存状況をREADY(失敗した場合はFAILED)に更新する
+     * 保存済みの登録済みと同じ画像の場合は何もしない
      *
-     * @param mainImageMultipart 商品画像
-     * @return
+     * @param stagedImage 一時ファイル(nullの場合は保存しない)
+     * @param savedProduct 保存した商品情報
+     * @param previousHash 更新前の画像のハッシュ値(nullの場合は削除しない)
+     */
+    public void commitAsync(StagedImage stagedImage, Product savedProduct, String previousHash) {
+        enqueue(stagedImage, savedProduct, previousHash);
+    }
+
+    /**
+     * 一時ファイルを削除する(商品の登録に失敗した場合に使用する)
+     *
+     * @param stagedImage 一時ファイル(nullの場合は何もしない)
      */
-    public boolean isValid(MultipartFile mainImageMultipart) {
-        // ファイルが添付されていない場合
-        if (mainImageMultipart.isEmpty()) {
-            return true;
+    public void discard(StagedImage stagedImage) {
+        if (stagedImage == null) {
+            return;
         }
-        // ファイルサイズが2MBより大きい場合
-        if (mainImageMultipart.getSize() > 2 * 1024 * 1024) {
-            return false;
+        try {
+            Files.deleteIfExists(stagedImage.getPath());
+        } catch (IOException e) {
+            LOGGER.error("Could not delete file: " + stagedImage.getPath());
         }
+    }
 
-        String originalFileName = mainImageMultipart.getOriginalFilename();
-        String fileExtension = originalFileName.substring(originalFileName.lastIndexOf(".") + 1).toLowerCase();
-        // ファイルの種類が画像じゃない場合
-        if (!Arrays.asList("png", "jpg", "jpeg").contains(fileExtension)) {
-            return false;
+    /**
+     * 削除した商品の画像を削除する
+     * 他の商品も参照している画像は削除しない
+     *
+     * @param product 削除した商品情報
+     */
+    public void delete(Product product) {
+        if (product.getImageHash() != null) {
+            release(product.getImageHash());
+        }
+        // 旧形式の画像(移行済みの場合も残している)は商品IDごとのディレクトリを削除する
+        Path legacyDir = Paths.get(uploadDir, String.valueOf(product.getId()));
+        if (Files.isDirectory(legacyDir)) {
+            FileUploadUtil.removeDir(legacyDir.toString());
         }
-        return true;
     }
 
     /**
-     * 商品画像を削除する
-     *
-     * @param id
+     * 商品IDごとのディレクトリに保存した旧形式の画像を、内容のハッシュ値で名前を付けた保存先へコピーする
+     * 起動完了後に実行し、ハッシュ値を設定済みの(移行済みの)商品の画像は対象外とする
+     * 旧形式の画像は削除しない(リポジトリで管理しているサンプルの画像を起動のたびに書き換えないため)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateLegacyImages() {
+        List<LegacyImage> legacyImages = imageStore.listLegacyImages();
+        if (legacyImages.isEmpty()) {
+            return;
+        }
+        Set<Long> pending = new HashSet<>(productRepository.findIdsWithoutImageHash());
+        for (LegacyImage legacyImage : legacyImages) {
+            if (!pending.contains(legacyImage.getProductId())) {
+                continue;
+            }
+            String hash;
+            try {
+                hash = ContentAddressedImageStore.hash(legacyImage.getPath());
+            } catch (IOException e) {
+                LOGGER.error("Could not read file: " + legacyImage.getPath());
+                continue;
+            }
+            try {
+                laneOf(hash).execute(() -> migrate(legacyImage, hash));
+            } catch (RejectedExecutionException e) {
+                LOGGER.error("Could not queue image: " + legacyImage.getPath());
+            }
+        }
+    }
+
+    /**
+     * 保存・削除の処理を、画像のハッシュ値に割り当てたスレッドの待ち行列に追加する
+     * 待ち行列が空かない場合は画像を破棄し、保存状況をFAILEDにする
+     */
+    private void enqueue(StagedImage stagedImage, Product savedProduct, String previousHash) {
+        String hash = savedProduct.getImageHash();
+        if (stagedImage != null) {
+            if (stagedImage.getHash().equals(previousHash) && savedProduct.getImageStatus() == ImageStatus.READY) {
+                // 保存済みの登録済みと同じ画像のため、保存しない
+                discard(stagedImage);
+            } else {
+                try {
+                    laneOf(hash).execute(() -> store(stagedImage, savedProduct.getId()));
+                } catch (RejectedExecutionException e) {
+                    LOGGER.error("Could not queue image: " + stagedImage.getFileName()
+                        + " (product " + savedProduct.getId() + ")");
+                    discard(stagedImage);
+                    productRepository.updateImageStatus(savedProduct.getId(), hash, ImageStatus.FAILED);
+                }
+            }
+        }
+        if (previousHash != null && !previousHash.equals(hash)) {
+            release(previousHash);
+        }
+    }
+
+    /**
+     * 一時ファイルの画像を保存し、保存状況を更新する(保存済みの画像の場合は一時ファイルを削除するのみ)
+     */
+    private void store(StagedImage stagedImage, Long productId) {
+        try {
+            imageStore.store(stagedImage.getPath(), stagedImage.getHash(), stagedImage.getFileName());
+        } catch (IOException e) {
+            LOGGER.error("Could not save file: " + stagedImage.getFileName() + " (product " + productId + ")");
+            productRepository.updateImageStatus(productId, stagedImage.getHash(), ImageStatus.FAILED);
+            return;
+        }
+        productRepository.updateImageStatus(productId, stagedImage.getHash(), ImageStatus.READY);
+    }
+
+    /**
+     * 参照する商品がなくなった画像を削除する処理を登録する
+     * 同じ画像の保存と同じスレッドで行うため、参照がないと判定した後に同じ画像の保存が割り込むことはない
+     */
+    private void release(String hash) {
+        Runnable task = () -> {
+            if (productRepository.countByImageHash(hash) == 0) {
+                imageStore.remove(hash);
+            }
+        };
+        try {
+            laneOf(hash).execute(task);
+        } catch (RejectedExecutionException e) {
+            // 待ち行列が空かない場合は削除しない(参照のない画像が残るのみで、表示には影響しない)
+            LOGGER.error("Could not queue image removal: " + hash);
+        }
+    }
+
+    /**
+     * 旧形式の画像を保存先へコピーし、商品のハッシュ値を設定する
+     * 商品が削除・画像が変更されていた場合は、コピーした画像を参照する商品がなければ削除する
      */
-    public void delete(Long id) {
-        String deleteDir= UPLOADED_DIR + id;
-        FileUploadUtil.removeDir(deleteDir);
+    private void migrate(LegacyImage legacyImage, String hash) {
+        String image = legacyImage.getPath().getFileName().toString();
+        try {
+            // 保存すると一時ファイルは削除されるため、旧形式の画像のコピーを保存する
+            Path copy = imageStore.createTempFile("legacy-", ".tmp");
+            Files.copy(legacyImage.getPath(), copy, StandardCopyOption.REPLACE_EXISTING);
+            imageStore.store(copy, hash, image);
+        } catch (IOException e) {
+            LOGGER.error("Could not save file: " + legacyImage.getPath());
+            return;
+        }
+        if (productRepository.updateImageHash(legacyImage.getProductId(), image, hash) == 0
+            && productRepository.countByImageHash(hash) == 0) {
+            imageStore.remove(hash);
+        }
+    }
+
+    private ThreadPoolExecutor laneOf(String hash) {
+        return lanes[Math.floorMod(hash.hashCode(), lanes.length)];
     }
 }
@@ -0,0 +1,347 @@
+package com.example.slshopping_ut.product;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.slshopping_ut.brand.BrandService;
+import com.example.slshopping_ut.category.CategoryService;
+import com.example.slshopping_ut.csv.CsvImportResult;
+import com.example.slshopping_ut.csv.CsvReader;
+import com.example.slshopping_ut.entity.Brand;
+import com.example.slshopping_ut.entity.Category;
+import com.example.slshopping_ut.entity.Product;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+/**
+ * 商品の一括登録(CSV)処理
+ * ファイル全体を読み込まず、一定件数ずつ読み込み・検証・登録する
+ * 1回の登録ごとにトランザクションを分け、失敗した場合はその件数分だけをエラーにする
+ */
+@Service
+public class ProductImportService {
+
+    /** 1回のトランザクションで登録する件数 */
+    public static final int CHUNK_SIZE = 1000;
+
+    /** 必須の列(ヘッダー行の列名) */
+    static final List<String> REQUIRED_COLUMNS = List.of("name", "description", "price", "brand", "category");
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProductImportService.class);
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private BrandService brandService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Autowired
+    private ProductNameFilter productNameFilter;
+
+    @Autowired
+    private ProductSuggestIndex productSuggestIndex;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    /**
+     * 行の変換・検証用のスレッド(共通のForkJoinPoolを他の処理と奪い合わないよう専用にする)
+     * CPUを使い続ける処理のため、仮想スレッドでの実行時(virtualプロファイル)もプラットフォームスレッドで行う
+     */
+    private final ForkJoinPool validationPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    @PreDestroy
+    void shutdown() {
+        validationPool.shutdown();
+    }
+
+    /**
+     * CSVファイルの商品を一括登録する
+     * 1行目はヘッダー行とし、列名(name, description, price, brand, category, length, width, height, weight)で列を判別する
+     * ブランド・カテゴリーは名前で指定する
+     *
+     * @param in CSVファイル(UTF-8)
+     * @return 登録結果
+     * @throws IOException
+     */
+    public CsvImportResult importCsv(InputStream in) throws IOException {
+        long start = System.currentTimeMillis();
+        CsvImportResult result = new CsvImportResult();
+
+        try (CsvReader reader = new CsvReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            Map<String, Integer> columns = reader.readHeader();
+            if (columns == null) {
+                result.addError(1, "ヘッダー行がありません");
+                return result;
+            }
+            List<String> missing = REQUIRED_COLUMNS.stream()
+                .filter(column -> !columns.containsKey(column))
+                .toList();
+            if (!missing.isEmpty()) {
+                result.addError(1, "必須の列がありません: " + String.join(", ", missing));
+                return result;
+            }
+
+            // ブランド・カテゴリーは行ごとに問い合わせず、キャッシュ済みの全件から名前で引く
+            RowParser parser = new RowParser(columns,
+                brandService.listCached().stream().collect(Collectors.toMap(Brand::getName, b -> b, (a, b) -> a)),
+                categoryService.listCached().stream().collect(Collectors.toMap(Category::getName, c -> c, (a, b) -> a)));
+
+            List<CsvRow> chunk = new ArrayList<>(CHUNK_SIZE);
+            List<String> record;
+            while ((record = reader.readRecord()) != null) {
+                // 空行は読み飛ばす
+                if (CsvReader.isBlank(record)) {
+                    continue;
+                }
+                chunk.add(new CsvRow(reader.getLineNumber(), record));
+                if (chunk.size() == CHUNK_SIZE) {
+                    importChunk(chunk, parser, result);
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                importChunk(chunk, parser, result);
+            }
+        } finally {
+            result.setElapsedMillis(System.currentTimeMillis() - start);
+        }
+
+        LOGGER.info("Product import: " + result.getImportedRows() + "/" + result.getTotalRows() + " rows imported, "
+            + result.getErrorRows() + " errors in " + result.getElapsedMillis() + " ms ("
+            + result.getRowsPerSecond() + " rows/s)");
+        return result;
+    }
+
+    /**
+     * 一定件数の行を検証し、エラーのない商品を1回のトランザクションで登録する
+     *
+     * @param chunk CSVファイルの行のリスト
+     * @param parser 行の変換処理
+     * @param result 登録結果の格納先
+     */
+    private void importChunk(List<CsvRow> chunk, RowParser parser, CsvImportResult result) {
+        result.addRows(chunk.size());
+
+        // 行の変換・検証は互いに独立しているため並列に行う
+        List<ParsedRow> parsed;
+        try {
+            parsed = validationPool.submit(() -> chunk.parallelStream().map(parser::parse).toList()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+
+        // 商品名の重複は、ファイル内の重複を除いたうえでデータベースにまとめて問い合わせる
+        Set<String> names = new HashSet<>();
+        List<ParsedRow> candidates = new ArrayList<>();
+        for (ParsedRow row : parsed) {
+            if (row.error != null) {
+                result.addError(row.line, row.error);
+            } else if (!names.add(row.product.getName())) {
+                result.addError(row.line, "商品名「" + row.product.getName() + "」がファイル内で重複しています");
+            } else {
+                candidates.add(row);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+        // 登録されていないことが確実な名前は問い合わせの対象から除く
+        List<String> maybeExisting = names.stream().filter(productNameFilter::mightExist).toList();
+        Set<String> existing = maybeExisting.isEmpty() ? Set.of()
+            : new HashSet<>(productRepository.findExistingNames(maybeExisting));
+        for (String name : maybeExisting) {
+            productNameFilter.recordLookup(existing.contains(name));
+        }
+
+        List<Product> products = new ArrayList<>(candidates.size());
+        List<Long> lines = new ArrayList<>(candidates.size());
+        for (ParsedRow row : candidates) {
+            if (existing.contains(row.product.getName())) {
+                result.addError(row.line, "商品名「" + row.product.getName() + "」は既に登録されています");
+            } else {
+                products.add(row.product);
+                lines.add(row.line);
+            }
+        }
+        if (products.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                productRepository.saveAll(products);
+                // 登録した商品を永続化コンテキストから切り離し、件数に応じてメモリが増えないようにする
+                entityManager.flush();
+                entityManager.clear();
+            });
+        } catch (DataAccessException e) {
+            LOGGER.warn("Product import chunk failed", e);
+            for (Long line : lines) {
+                result.addError(line, "登録に失敗しました");
+            }
+            return;
+        }
+        result.addImported(products.size());
+
+        for (Product product : products) {
+            productSearchIndex.put(product);
+            productSuggestIndex.putProduct(product);
+            productNameFilter.put(product.getName());
+        }
+    }
+
+    /**
+     * CSVファイルのデータ行
+     */
+    static class CsvRow {
+
+        final long line;
+
+        final List<String> values;
+
+        CsvRow(long line, List<String> values) {
+            this.line = line;
+            this.values = values;
+        }
+    }
+
+    /**
+     * 変換・検証後の行(商品とエラーのいずれか一方を持つ)
+     */
+    static class ParsedRow {
+
+        final long line;
+
+        final Product product;
+
+        final String error;
+
+        ParsedRow(long line, Product product, String error) {
+            this.line = line;
+            this.product = product;
+            this.error = error;
+        }
+    }
+
+    /**
+     * CSVファイルの行を商品に変換し、入力チェックを行う
+     * 複数のスレッドから呼び出すため、状態を変更しないこと
+     */
+    private class RowParser {
+
+        private final Map<String, Integer> columns;
+
+        private final Map<String, Brand> brands;
+
+        private final Map<String, Category> categories;
+
+        RowParser(Map<String, Integer> columns, Map<String, Brand> brands, Map<String, Category> categories) {
+            this.columns = columns;
+            this.brands = brands;
+            this.categories = categories;
+        }
+
+        ParsedRow parse(CsvRow row) {
+            List<String> errors = new ArrayList<>();
+
+            int price = 0;
+            try {
+                price = Integer.parseInt(value(row, "price"));
+            } catch (NumberFormatException e) {
+                errors.add("価格は整数で入力してください");
+            }
+            double length = number(row, "length", "長辺", errors);
+            double width = number(row, "width", "短辺", errors);
+            double height = number(row, "height", "高さ", errors);
+            double weight = number(row, "weight", "重量", errors);
+
+            String brandName = value(row, "brand");
+            Brand brand = brands.get(brandName);
+            if (brand == null) {
+                errors.add("ブランド「" + brandName + "」は登録されていません");
+            }
+            String categoryName = value(row, "category");
+            Category category = categories.get(categoryName);
+            if (category == null) {
+                errors.add("カテゴリー「" + categoryName + "」は登録されていません");
+            }
+
+            Product product = new Product(null, value(row, "name"), value(row, "description"), price, null,
+                length, width, height, weight, category, brand);
+            for (ConstraintViolation<Product> violation : validator.validate(product)) {
+                // ブランド・カテゴリーの未登録は上で個別のメッセージにしている
+                String property = violation.getPropertyPath().toString();
+                if (!property.equals("brand") && !property.equals("category")) {
+                    errors.add(violation.getMessage());
+                }
+            }
+
+            if (!errors.isEmpty()) {
+                return new ParsedRow(row.line, null, String.join("、", errors));
+            }
+            return new ParsedRow(row.line, product, null);
+        }
+
+        /**
+         * 列の値を取得する(列がない行は空文字とする)
+         */
+        private String value(CsvRow row, String column) {
+            Integer index = columns.get(column);
+            return index != null && index < row.values.size() ? row.values.get(index).trim() : "";
+        }
+
+        /**
+         * 任意の数値の列の値を取得する(空の場合は0.0とする)
+         */
+        private double number(CsvRow row, String column, String label, List<String> errors) {
+            String value = value(row, column);
+            if (value.isEmpty()) {
+                return 0.0;
+            }
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                errors.add(label + "は数値で入力してください");
+                return 0.0;
+            }
+        }
+    }
+
+}
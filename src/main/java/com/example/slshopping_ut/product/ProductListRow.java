@@ -0,0 +1,82 @@
+package com.example.slshopping_ut.product;
+
+import com.example.slshopping_ut.entity.ImageKey;
+import com.example.slshopping_ut.entity.ImageStatus;
+import com.example.slshopping_ut.entity.ImageVariant;
+
+/**
+ * 商品一覧の1行分の表示項目
+ * 一覧に表示する列だけをクエリで取得し、エンティティを永続化コンテキストに読み込まないようにする
+ */
+public class ProductListRow {
+
+    private final Long id;
+
+    private final String name;
+
+    private final int price;
+
+    private final String image;
+
+    private final String imageHash;
+
+    private final ImageStatus imageStatus;
+
+    private final String brandName;
+
+    private final String categoryName;
+
+    public ProductListRow(Long id, String name, int price, String image, String imageHash, ImageStatus imageStatus,
+            String brandName, String categoryName) {
+        this.id = id;
+        this.name = name;
+        this.price = price;
+        this.image = image;
+        this.imageHash = imageHash;
+        this.imageStatus = imageStatus;
+        this.brandName = brandName;
+        this.categoryName = categoryName;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPrice() {
+        return price;
+    }
+
+    public String getImage() {
+        return image;
+    }
+
+    /**
+     * 一覧に表示するサムネイルのURL
+     * 元の画像ではなく縮小した派生画像を表示し、一覧の転送量を抑える
+     *
+     * @return サムネイルのURL。画像がない場合・保存が完了していない場合はnull
+     */
+    public String getThumbnailImage() {
+        // 列の追加前に登録された商品はnullのため、保存済みとして扱う
+        if (image == null || (imageStatus != null && imageStatus != ImageStatus.READY)) {
+            return null;
+        }
+        if (imageHash == null) {
+            return "/product-images/" + id + "/" + ImageVariant.THUMBNAIL.fileName(image);
+        }
+        return "/product-images/" + ImageKey.of(imageHash, image, ImageVariant.THUMBNAIL);
+    }
+
+    public String getBrandName() {
+        return brandName;
+    }
+
+    public String getCategoryName() {
+        return categoryName;
+    }
+
+}
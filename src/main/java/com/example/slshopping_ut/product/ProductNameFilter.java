@@ -0,0 +1,43 @@
+package com.example.slshopping_ut.product;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import com.example.slshopping_ut.entity.Product;
+import com.example.slshopping_ut.search.ExistenceFilter;
+
+/**
+ * 商品名が登録済みかを判定するフィルター
+ */
+@Component
+public class ProductNameFilter extends ExistenceFilter<Product> {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Override
+    protected long countRows() {
+        return productRepository.count();
+    }
+
+    @Override
+    protected List<Product> loadAfter(long afterId, int limit) {
+        ProductFilter none = ProductFilter.NONE;
+        return productRepository.searchPageAfter("", none.getBrandId(), none.getCategoryId(), none.getMinPrice(),
+            none.getMaxPrice(), afterId, PageRequest.of(0, limit));
+    }
+
+    @Override
+    protected Long idOf(Product product) {
+        return product.getId();
+    }
+
+    @Override
+    protected String keyOf(Product product) {
+        return product.getName();
+    }
+
+}
@@ -1,22 +1,69 @@
 package com.example.slshopping_ut.product;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import com.example.slshopping_ut.entity.ImageStatus;
 import com.example.slshopping_ut.entity.Product;
 
+import jakarta.persistence.QueryHint;
+import jakarta.transaction.Transactional;
+
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
 
+    /**
+     * 商品情報全件取得クエリ
+     * 一覧に表示するブランド・カテゴリーを同じクエリで結合して取得する
+     *
+     * @return 商品情報のリスト
+     */
+    @Override
+    @EntityGraph(attributePaths = { "brand", "category" })
+    public List<Product> findAll();
+
+    /**
+     * IDに紐づく商品情報取得クエリ
+     * 詳細・編集画面に表示するブランド・カテゴリーを同じクエリで結合して取得する
+     *
+     * @param id 商品ID
+     * @return 商品情報
+     */
+    @Override
+    @EntityGraph(attributePaths = { "brand", "category" })
+    public Optional<Product> findById(Long id);
+
+    /**
+     * IDのリストに紐づく商品情報取得クエリ
+     * 検索インデックスで一致した商品をブランド・カテゴリーとあわせて取得する
+     *
+     * @param ids 商品IDのリスト
+     * @return 商品情報のリスト
+     */
+    @Override
+    @EntityGraph(attributePaths = { "brand", "category" })
+    public List<Product> findAllById(Iterable<Long> ids);
+
     /**
      * 商品情報検索クエリ
+     * 2次キャッシュが有効な場合は、検索結果をクエリキャッシュに保持する
      *
      * @param name 商品名
      * @return 商品情報
      */
+    @QueryHints({ @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "product.byName") })
     public Product findByName(String name);
 
     /**
@@ -25,10 +72,241 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
      * @param keyword 検索キーワード
      * @return 商品情報のリスト
      */
-    @Query("SELECT p FROM Product p WHERE p.name LIKE %?1% "
-            + "OR p.description LIKE %?1% "
-            + "OR p.brand.name LIKE %?1% "
-            + "OR p.category.name LIKE %?1%")
+    @EntityGraph(attributePaths = { "brand", "category" })
+    @Query("SELECT p FROM Product p WHERE p.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "OR p.description LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "OR p.brand.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "OR p.category.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()}")
     public List<Product> search(String keyword);
 
+    /**
+     * 検索キーワード・絞り込み条件に一致し、指定したIDより後ろの商品情報をIDの昇順で取得するクエリ
+     * 検索キーワードに空文字を指定した場合は全件が対象になる
+     * 検索インデックスの構築など、エンティティの項目が必要な場合に使用する(一覧表示にはfindListRowsAfterを使用する)
+     *
+     * @param keyword 検索キーワード
+     * @param brandId 絞り込むブランドID(nullの場合は絞り込まない)
+     * @param categoryId 絞り込むカテゴリーID(nullの場合は絞り込まない)
+     * @param minPrice 価格の下限
+     * @param maxPrice 価格の上限
+     * @param afterId 前のページの末尾の商品ID
+     * @param pageable 取得件数
+     * @return 商品情報のリスト
+     */
+    @EntityGraph(attributePaths = { "brand", "category" })
+    @Query("SELECT p FROM Product p WHERE (p.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "OR p.description LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "OR p.brand.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "OR p.category.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()}) "
+            + "AND (?2 IS NULL OR p.brand.id = ?2) "
+            + "AND (?3 IS NULL OR p.category.id = ?3) "
+            + "AND p.price BETWEEN ?4 AND ?5 "
+            + "AND p.id > ?6 ORDER BY p.id ASC")
+    public List<Product> searchPageAfter(String keyword, Long brandId, Long categoryId, int minPrice, int maxPrice,
+            Long afterId, Pageable pageable);
+
+    /**
+     * 検索キーワード・絞り込み条件に一致し、指定したIDより後ろの商品一覧の行をIDの昇順で取得するクエリ
+     * 検索キーワードに空文字を指定した場合は全件が対象になる
+     *
+     * @param keyword 検索キーワード
+     * @param brandId 絞り込むブランドID(nullの場合は絞り込まない)
+     * @param categoryId 絞り込むカテゴリーID(nullの場合は絞り込まない)
+     * @param minPrice 価格の下限
+     * @param maxPrice 価格の上限
+     * @param afterId 前のページの末尾の商品ID
+     * @param pageable 取得件数
+     * @return 商品一覧の行のリスト
+     */
+    @Query("SELECT new com.example.slshopping_ut.product.ProductListRow(p.id, p.name, p.price, p.image, p.imageHash, p.imageStatus, p.brand.name, p.category.name) "
+            + "FROM Product p WHERE (p.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "OR p.description LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "OR p.brand.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "OR p.category.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()}) "
+            + "AND (?2 IS NULL OR p.brand.id = ?2) "
+            + "AND (?3 IS NULL OR p.category.id = ?3) "
+            + "AND p.price BETWEEN ?4 AND ?5 "
+            + "AND p.id > ?6 ORDER BY p.id ASC")
+    public List<ProductListRow> findListRowsAfter(String keyword, Long brandId, Long categoryId, int minPrice,
+            int maxPrice, Long afterId, Pageable pageable);
+
+    /**
+     * 検索キーワード・絞り込み条件に一致し、指定したIDより前の商品一覧の行をIDの降順で取得するクエリ
+     * 検索キーワードに空文字を指定した場合は全件が対象になる
+     *
+     * @param keyword 検索キーワード
+     * @param brandId 絞り込むブランドID(nullの場合は絞り込まない)
+     * @param categoryId 絞り込むカテゴリーID(nullの場合は絞り込まない)
+     * @param minPrice 価格の下限
+     * @param maxPrice 価格の上限
+     * @param beforeId 次のページの先頭の商品ID
+     * @param pageable 取得件数
+     * @return 商品一覧の行のリスト
+     */
+    @Query("SELECT new com.example.slshopping_ut.product.ProductListRow(p.id, p.name, p.price, p.image, p.imageHash, p.imageStatus, p.brand.name, p.category.name) "
+            + "FROM Product p WHERE (p.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "OR p.description LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "OR p.brand.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "OR p.category.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()}) "
+            + "AND (?2 IS NULL OR p.brand.id = ?2) "
+            + "AND (?3 IS NULL OR p.category.id = ?3) "
+            + "AND p.price BETWEEN ?4 AND ?5 "
+            + "AND p.id < ?6 ORDER BY p.id DESC")
+    public List<ProductListRow> findListRowsBefore(String keyword, Long brandId, Long categoryId, int minPrice,
+            int maxPrice, Long beforeId, Pageable pageable);
+
+    /**
+     * 検索キーワード・絞り込み条件に一致し、指定した(名前, ID)より後ろの商品一覧の行を名前・IDの昇順で取得するクエリ
+     * 検索キーワードに空文字を指定した場合は全件が対象になる
+     *
+     * @param keyword 検索キーワード
+     * @param brandId 絞り込むブランドID(nullの場合は絞り込まない)
+     * @param categoryId 絞り込むカテゴリーID(nullの場合は絞り込まない)
+     * @param minPrice 価格の下限
+     * @param maxPrice 価格の上限
+     * @param afterName 前のページの末尾の商品名
+     * @param afterId 前のページの末尾の商品ID
+     * @param pageable 取得件数
+     * @return 商品一覧の行のリスト
+     */
+    @Query("SELECT new com.example.slshopping_ut.product.ProductListRow(p.id, p.name, p.price, p.image, p.imageHash, p.imageStatus, p.brand.name, p.category.name) "
+            + "FROM Product p WHERE (p.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "OR p.description LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "OR p.brand.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "OR p.category.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()}) "
+            + "AND (?2 IS NULL OR p.brand.id = ?2) "
+            + "AND (?3 IS NULL OR p.category.id = ?3) "
+            + "AND p.price BETWEEN ?4 AND ?5 "
+            + "AND (p.name > ?6 OR (p.name = ?6 AND p.id > ?7)) "
+            + "ORDER BY p.name ASC, p.id ASC")
+    public List<ProductListRow> findListRowsAfterName(String keyword, Long brandId, Long categoryId, int minPrice,
+            int maxPrice, String afterName, Long afterId, Pageable pageable);
+
+    /**
+     * 検索キーワード・絞り込み条件に一致し、指定した(名前, ID)より前の商品一覧の行を名前・IDの降順で取得するクエリ
+     * 検索キーワードに空文字を指定した場合は全件が対象になる
+     *
+     * @param keyword 検索キーワード
+     * @param brandId 絞り込むブランドID(nullの場合は絞り込まない)
+     * @param categoryId 絞り込むカテゴリーID(nullの場合は絞り込まない)
+     * @param minPrice 価格の下限
+     * @param maxPrice 価格の上限
+     * @param beforeName 次のページの先頭の商品名
+     * @param beforeId 次のページの先頭の商品ID
+     * @param pageable 取得件数
+     * @return 商品一覧の行のリスト
+     */
+    @Query("SELECT new com.example.slshopping_ut.product.ProductListRow(p.id, p.name, p.price, p.image, p.imageHash, p.imageStatus, p.brand.name, p.category.name) "
+            + "FROM Product p WHERE (p.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "OR p.description LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "OR p.brand.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "OR p.category.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()}) "
+            + "AND (?2 IS NULL OR p.brand.id = ?2) "
+            + "AND (?3 IS NULL OR p.category.id = ?3) "
+            + "AND p.price BETWEEN ?4 AND ?5 "
+            + "AND (p.name < ?6 OR (p.name = ?6 AND p.id < ?7)) "
+            + "ORDER BY p.name DESC, p.id DESC")
+    public List<ProductListRow> findListRowsBeforeName(String keyword, Long brandId, Long categoryId, int minPrice,
+            int maxPrice, String beforeName, Long beforeId, Pageable pageable);
+
+    /**
+     * IDのリストに紐づく商品一覧の行を取得するクエリ
+     * 検索インデックスで一致した商品の表示項目だけを取得する
+     *
+     * @param ids 商品IDのリスト
+     * @return 商品一覧の行のリスト
+     */
+    @Query("SELECT new com.example.slshopping_ut.product.ProductListRow(p.id, p.name, p.price, p.image, p.imageHash, p.imageStatus, p.brand.name, p.category.name) "
+            + "FROM Product p WHERE p.id IN ?1")
+    public List<ProductListRow> findListRows(Collection<Long> ids);
+
+    /**
+     * 全商品をIDの昇順に1件ずつ読み込むクエリ
+     * 一覧をリストにまとめず、データベースのカーソルから一定件数ずつ取得する(トランザクション内で使用し、使用後はcloseすること)
+     * ブランド・カテゴリーは同じSQLで結合して取得する
+     *
+     * @return 商品情報のストリーム
+     */
+    @QueryHints({ @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false") })
+    @Query("SELECT p FROM Product p JOIN FETCH p.brand JOIN FETCH p.category ORDER BY p.id")
+    public Stream<Product> streamAll();
+
+    /**
+     * 商品名のリストのうち、登録済みの商品名を取得するクエリ
+     * 一括登録で重複を確認する商品名を、1件ずつではなくまとめて問い合わせるために使用する
+     *
+     * @param names 商品名のリスト
+     * @return 登録済みの商品名のリスト
+     */
+    @Query("SELECT p.name FROM Product p WHERE p.name IN ?1")
+    public List<String> findExistingNames(Collection<String> names);
+
+    /**
+     * 検索キーワードに一致する商品の件数を、ブランド・カテゴリー・価格帯の組ごとに集計するクエリ
+     * 商品を読み込まずに1回の集計で絞り込み候補ごとの件数を求めるために使用する
+     * 価格帯の番号はPriceRangeの定義順と対応させること
+     *
+     * @param keyword 検索キーワード
+     * @return ブランドID・カテゴリーID・価格帯の番号・件数の配列のリスト
+     */
+    @Query("SELECT p.brand.id, p.category.id, "
+            + "CASE WHEN p.price < 1000 THEN 0 WHEN p.price < 5000 THEN 1 WHEN p.price < 10000 THEN 2 "
+            + "WHEN p.price < 50000 THEN 3 ELSE 4 END, COUNT(p) "
+            + "FROM Product p WHERE p.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "OR p.description LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "OR p.brand.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "OR p.category.name LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "GROUP BY p.brand.id, p.category.id, "
+            + "CASE WHEN p.price < 1000 THEN 0 WHEN p.price < 5000 THEN 1 WHEN p.price < 10000 THEN 2 "
+            + "WHEN p.price < 50000 THEN 3 ELSE 4 END")
+    public List<Object[]> countFacets(String keyword);
+
+    /**
+     * 商品画像の保存状況の更新クエリ
+     * 画像の保存は登録・更新とは別のスレッドで行うため、他の項目を上書きしないよう保存状況の列のみ更新する
+     * 保存中に別の画像へ更新された場合は、その画像の保存状況を上書きしないよう更新しない
+     *
+     * @param id 商品ID
+     * @param imageHash 保存した画像のハッシュ値
+     * @param status 保存状況
+     * @return 更新件数(画像の保存中に商品が削除・別の画像に更新された場合は0)
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Product p SET p.imageStatus = ?3 WHERE p.id = ?1 AND p.imageHash = ?2")
+    public int updateImageStatus(Long id, String imageHash, ImageStatus status);
+
+    /**
+     * 旧形式の商品画像のハッシュ値の設定クエリ
+     * 商品IDごとのディレクトリの画像を、内容で名前を付けた保存先へ移した後に使用する
+     *
+     * @param id 商品ID
+     * @param image アップロード時のファイル名
+     * @param imageHash 画像のハッシュ値
+     * @return 更新件数(商品が削除された・画像が変更された場合は0)
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Product p SET p.imageHash = ?3 WHERE p.id = ?1 AND p.image = ?2 AND p.imageHash IS NULL")
+    public int updateImageHash(Long id, String image, String imageHash);
+
+    /**
+     * 画像のハッシュ値が未設定の商品のIDを取得するクエリ
+     * 旧形式の商品画像の移行で、移行済みの商品を除くために使用する
+     *
+     * @return 商品IDのリスト
+     */
+    @Query("SELECT p.id FROM Product p WHERE p.imageHash IS NULL")
+    public List<Long> findIdsWithoutImageHash();
+
+    /**
+     * 画像を参照している商品の件数を取得するクエリ(参照がなくなった画像の削除に使用する)
+     *
+     * @param imageHash 画像のハッシュ値
+     * @return 商品の件数
+     */
+    public long countByImageHash(String imageHash);
+
 }
@@ -0,0 +1,315 @@
+package com.example.slshopping_ut.product;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import com.example.slshopping_ut.KeysetCursor;
+import com.example.slshopping_ut.brand.BrandSearchIndex;
+import com.example.slshopping_ut.category.CategorySearchIndex;
+import com.example.slshopping_ut.entity.Product;
+import com.example.slshopping_ut.search.PostingList;
+import com.example.slshopping_ut.search.SubstringSearchIndex;
+
+/**
+ * 商品のキーワード検索用のインデックス
+ * ProductRepository.searchと同じく、商品名・商品説明・ブランド名・カテゴリー名のいずれかにキーワードを含む商品を検索する
+ * ブランド名・カテゴリー名はそれぞれのインデックスで検索し、一致したブランド・カテゴリーの商品を結果に加える
+ */
+@Component
+public class ProductSearchIndex extends SubstringSearchIndex<Product> {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private BrandSearchIndex brandSearchIndex;
+
+    @Autowired
+    private CategorySearchIndex categorySearchIndex;
+
+    /** ブランドID → そのブランドの商品ID */
+    private final Map<Long, PostingList> productsByBrand = new HashMap<>();
+
+    /** カテゴリーID → そのカテゴリーの商品ID */
+    private final Map<Long, PostingList> productsByCategory = new HashMap<>();
+
+    /** 商品ID → 絞り込み・件数の集計に使用する項目(更新・削除時に古い紐づけを取り除くためにも使用する) */
+    private final NavigableMap<Long, IndexedProduct> products = new TreeMap<>();
+
+    /** (名前, ID) → 絞り込みに使用する項目(名前順のページングで、カーソルの位置から走査するために使用する) */
+    private final NavigableMap<KeysetCursor, IndexedProduct> productsByName = new TreeMap<>(KeysetCursor.order(true));
+
+    /** (ブランド, カテゴリー, 価格帯)の組 → 件数(キーワードがない場合の集計に使用し、登録・削除のたびに更新する) */
+    private final Map<FacetGroup, Long> facetCounts = new HashMap<>();
+
+    /**
+     * ブランド名・カテゴリー名の検索にも使用するため、それぞれのインデックスの構築が完了している場合のみtrueを返す
+     */
+    @Override
+    public boolean isReady() {
+        return super.isReady() && brandSearchIndex.isReady() && categorySearchIndex.isReady();
+    }
+
+    /**
+     * 全商品の件数を、絞り込み候補ごとに集計する
+     * 商品を走査せず、登録・削除時に更新済みの(ブランド, カテゴリー, 価格帯)の組ごとの件数を合算する
+     *
+     * @param facets 集計結果の格納先
+     */
+    public void countFacets(ProductFacets facets) {
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<FacetGroup, Long> entry : facetCounts.entrySet()) {
+                FacetGroup group = entry.getKey();
+                facets.add(group.brandId, group.categoryId, group.price, entry.getValue());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 絞り込み条件に一致する商品を、指定したカーソルより後ろから昇順で最大limit件取得する
+     * 全件を整列せず、ページングの並び順に保持した商品をカーソルの位置から走査する
+     *
+     * @param filter 絞り込み条件
+     * @param sortByName 名前順の場合はtrue、ID順の場合はfalse
+     * @param cursor 起点のカーソル
+     * @param limit 最大件数
+     * @return カーソルのリスト
+     */
+    public List<KeysetCursor> seekAfter(ProductFilter filter, boolean sortByName, KeysetCursor cursor, int limit) {
+        lock.readLock().lock();
+        try {
+            Map<?, IndexedProduct> after = sortByName ? productsByName.tailMap(cursor, false)
+                : products.tailMap(cursor.getId(), false);
+            return collect(after.values().iterator(), filter, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 絞り込み条件に一致する商品を、指定したカーソルより前から降順で最大limit件取得する
+     *
+     * @param filter 絞り込み条件
+     * @param sortByName 名前順の場合はtrue、ID順の場合はfalse
+     * @param cursor 起点のカーソル
+     * @param limit 最大件数
+     * @return カーソルのリスト
+     */
+    public List<KeysetCursor> seekBefore(ProductFilter filter, boolean sortByName, KeysetCursor cursor, int limit) {
+        lock.readLock().lock();
+        try {
+            Map<?, IndexedProduct> before = sortByName ? productsByName.headMap(cursor, false).descendingMap()
+                : products.headMap(cursor.getId(), false).descendingMap();
+            return collect(before.values().iterator(), filter, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * キーワード・絞り込み条件に一致する商品を、ページングの並び順に整列したカーソルのリストで返す
+     * 一致した商品を1回走査する間に、絞り込み候補ごとの件数も集計する
+     *
+     * @param keyword 検索キーワード(空文字の場合は全件)
+     * @param filter 絞り込み条件
+     * @param sortByName 名前順の場合はtrue、ID順の場合はfalse
+     * @param facets 集計結果の格納先
+     * @return 整列済みのカーソルのリスト
+     */
+    public List<KeysetCursor> search(String keyword, ProductFilter filter, boolean sortByName, ProductFacets facets) {
+        List<KeysetCursor> cursors = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            PostingList ids = match(keyword);
+            for (int i = 0; i < ids.size(); i++) {
+                long id = ids.get(i);
+                IndexedProduct product = products.get(id);
+                if (product == null) {
+                    continue;
+                }
+                facets.add(product.group.brandId, product.group.categoryId, product.group.price, 1);
+                if (product.matches(filter)) {
+                    cursors.add(product.cursor);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (sortByName) {
+            cursors.sort(KeysetCursor.order(true));
+        }
+        return cursors;
+    }
+
+    @Override
+    protected PostingList match(String keyword) {
+        PostingList matched = super.match(keyword);
+        if (keyword == null || keyword.isEmpty()) {
+            return matched;
+        }
+
+        List<PostingList> lists = new ArrayList<>();
+        lists.add(matched);
+        addProducts(lists, productsByBrand, brandSearchIndex.search(keyword));
+        addProducts(lists, productsByCategory, categorySearchIndex.search(keyword));
+        return lists.size() == 1 ? matched : PostingList.union(lists);
+    }
+
+    @Override
+    protected void indexed(Product product) {
+        Long brandId = product.getBrand() != null ? product.getBrand().getId() : null;
+        Long categoryId = product.getCategory() != null ? product.getCategory().getId() : null;
+        long id = product.getId();
+        if (brandId != null) {
+            productsByBrand.computeIfAbsent(brandId, key -> new PostingList()).add(id);
+        }
+        if (categoryId != null) {
+            productsByCategory.computeIfAbsent(categoryId, key -> new PostingList()).add(id);
+        }
+        IndexedProduct indexed = new IndexedProduct(new KeysetCursor(id, product.getName()),
+            new FacetGroup(brandId, categoryId, PriceRange.of(product.getPrice())));
+        products.put(id, indexed);
+        productsByName.put(indexed.cursor, indexed);
+        facetCounts.merge(indexed.group, 1L, Long::sum);
+    }
+
+    @Override
+    protected void removed(Long id) {
+        IndexedProduct old = products.remove(id);
+        if (old == null) {
+            return;
+        }
+        productsByName.remove(old.cursor);
+        // 件数が0になった組は取り除き、集計時に走査する組の数を登録済みの組み合わせに抑える
+        facetCounts.computeIfPresent(old.group, (group, count) -> count > 1 ? count - 1 : null);
+        if (old.group.brandId != null) {
+            removePosting(productsByBrand, old.group.brandId, id);
+        }
+        if (old.group.categoryId != null) {
+            removePosting(productsByCategory, old.group.categoryId, id);
+        }
+    }
+
+    @Override
+    protected List<Product> loadAfter(long afterId, int limit) {
+        ProductFilter none = ProductFilter.NONE;
+        return productRepository.searchPageAfter("", none.getBrandId(), none.getCategoryId(), none.getMinPrice(),
+            none.getMaxPrice(), afterId, PageRequest.of(0, limit));
+    }
+
+    @Override
+    protected Long idOf(Product product) {
+        return product.getId();
+    }
+
+    @Override
+    protected String nameOf(Product product) {
+        return product.getName();
+    }
+
+    @Override
+    protected String[] textsOf(Product product) {
+        return new String[] { product.getName(), product.getDescription() };
+    }
+
+    /**
+     * 名前が一致したブランド・カテゴリーの商品IDのリストを追加する
+     */
+    private static void addProducts(List<PostingList> lists, Map<Long, PostingList> products, PostingList ownerIds) {
+        for (int i = 0; i < ownerIds.size(); i++) {
+            PostingList productIds = products.get(ownerIds.get(i));
+            if (productIds != null) {
+                lists.add(productIds);
+            }
+        }
+    }
+
+    /**
+     * 絞り込み条件に一致する商品のカーソルを、走査順に最大limit件取得する
+     */
+    private static List<KeysetCursor> collect(Iterator<IndexedProduct> products, ProductFilter filter, int limit) {
+        List<KeysetCursor> cursors = new ArrayList<>(limit);
+        while (cursors.size() < limit && products.hasNext()) {
+            IndexedProduct product = products.next();
+            if (product.matches(filter)) {
+                cursors.add(product.cursor);
+            }
+        }
+        return cursors;
+    }
+
+    private static void removePosting(Map<Long, PostingList> postings, Long key, long id) {
+        PostingList list = postings.get(key);
+        if (list != null && list.remove(id) && list.isEmpty()) {
+            postings.remove(key);
+        }
+    }
+
+    /**
+     * インデックスに登録済みの商品の、ページング・絞り込みに使用する項目
+     */
+    private static class IndexedProduct {
+
+        private final KeysetCursor cursor;
+
+        private final FacetGroup group;
+
+        IndexedProduct(KeysetCursor cursor, FacetGroup group) {
+            this.cursor = cursor;
+            this.group = group;
+        }
+
+        boolean matches(ProductFilter filter) {
+            return filter.matchesBrand(group.brandId) && filter.matchesCategory(group.categoryId)
+                && filter.matchesPrice(group.price);
+        }
+    }
+
+    /**
+     * 絞り込み候補ごとの件数を集計する単位となる、(ブランド, カテゴリー, 価格帯)の組
+     */
+    private static class FacetGroup {
+
+        private final Long brandId;
+
+        private final Long categoryId;
+
+        private final PriceRange price;
+
+        FacetGroup(Long brandId, Long categoryId, PriceRange price) {
+            this.brandId = brandId;
+            this.categoryId = categoryId;
+            this.price = price;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof FacetGroup)) {
+                return false;
+            }
+            FacetGroup other = (FacetGroup) obj;
+            return Objects.equals(brandId, other.brandId) && Objects.equals(categoryId, other.categoryId)
+                && price == other.price;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(brandId, categoryId, price);
+        }
+    }
+
+}
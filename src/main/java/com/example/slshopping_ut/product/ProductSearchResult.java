@@ -0,0 +1,28 @@
+package com.example.slshopping_ut.product;
+
+import com.example.slshopping_ut.KeysetPage;
+
+/**
+ * 商品一覧の検索結果
+ * 表示する1ページ分の商品一覧の行と、絞り込み候補ごとの件数を保持する
+ */
+public class ProductSearchResult {
+
+    private final KeysetPage<ProductListRow> page;
+
+    private final ProductFacets facets;
+
+    public ProductSearchResult(KeysetPage<ProductListRow> page, ProductFacets facets) {
+        this.page = page;
+        this.facets = facets;
+    }
+
+    public KeysetPage<ProductListRow> getPage() {
+        return page;
+    }
+
+    public ProductFacets getFacets() {
+        return facets;
+    }
+
+}
@@ -1,12 +1,19 @@
 package com.example.slshopping_ut.product;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.crossstore.ChangeSetPersister.NotFoundException;
 import org.springframework.stereotype.Service;
 
+import com.example.slshopping_ut.DuplicateException;
+import com.example.slshopping_ut.KeysetCursor;
+import com.example.slshopping_ut.KeysetPage;
+import com.example.slshopping_ut.KeysetRequest;
 import com.example.slshopping_ut.entity.Product;
+import com.example.slshopping_ut.search.SearchResults;
 
 
 @Service
@@ -15,6 +22,15 @@ public class ProductService {
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Autowired
+    private ProductNameFilter productNameFilter;
+
+    @Autowired
+    private ProductSuggestIndex productSuggestIndex;
+
     /**
      * 商品情報全件取得
      *
@@ -33,6 +49,10 @@ public class ProductService {
     public List<Product> listAll(String keyword) {
         // 検索キーワードがあった場合
         if (keyword != null && !keyword.isEmpty()) {
+            // インデックスの構築が完了している場合は、一致した商品IDだけをデータベースから取得する
+            if (productSearchIndex.isReady()) {
+                return SearchResults.findAllInOrder(productRepository, productSearchIndex.search(keyword), Product::getId);
+            }
             return productRepository.search(keyword);
         }
         // それ以外の場合
@@ -41,6 +61,63 @@ public class ProductService {
         }
     }
 
+    /**
+     * 商品情報のページ取得処理
+     * 検索キーワード・絞り込み条件に一致する商品を、ページング条件の並び順(ID順・名前順)に従いカーソルの前後1ページ分取得する
+     * 一覧に表示する項目だけを取得し、エンティティは読み込まない
+     * あわせて、絞り込み候補(ブランド・カテゴリー・価格帯)ごとの件数を集計する
+     * 名前順はインデックスの構築後はインデックスの並び順(文字コード順)、構築前はデータベースの照合順序に従う
+     *
+     * @param keyword 検索キーワード
+     * @param filter 絞り込み条件
+     * @param request ページング条件
+     * @return 商品情報のページと絞り込み候補ごとの件数
+     */
+    public ProductSearchResult listPage(String keyword, ProductFilter filter, KeysetRequest request) {
+        // 検索キーワードがない場合は空文字を渡して全件を対象にする
+        String word = keyword != null ? keyword : "";
+        ProductFacets facets = new ProductFacets(filter);
+
+        if (productSearchIndex.isReady()) {
+            // 検索キーワードがある場合は、一致した商品の走査と件数の集計を1回で行い、その結果をページングする
+            if (!word.isEmpty()) {
+                List<KeysetCursor> hits = productSearchIndex.search(word, filter, request.isSortedByName(), facets);
+                KeysetPage<ProductListRow> page = KeysetPage.fetchSorted(request, hits,
+                    ids -> SearchResults.findAllInOrder(productRepository::findListRows, ids, ProductListRow::getId),
+                    row -> new KeysetCursor(row.getId(), row.getName()));
+                return new ProductSearchResult(page, facets);
+            }
+            // 検索キーワードがない場合は、登録・削除時に集計済みの件数を使用し、商品は走査しない
+            productSearchIndex.countFacets(facets);
+            // カーソルの位置から1ページ分だけインデックスを走査する
+            // 絞り込み条件の有無にかかわらずインデックスの並び順を使用し、キーワード検索とも名前順をそろえる
+            boolean sortByName = request.isSortedByName();
+            KeysetPage<ProductListRow> page = KeysetPage.fetch(request,
+                (cursor, limit) -> findListRows(
+                    productSearchIndex.seekAfter(filter, sortByName, cursor, limit.getPageSize())),
+                (cursor, limit) -> findListRows(
+                    productSearchIndex.seekBefore(filter, sortByName, cursor, limit.getPageSize())),
+                row -> new KeysetCursor(row.getId(), row.getName()));
+            return new ProductSearchResult(page, facets);
+        }
+        // インデックスの構築が完了するまでは、(ブランド, カテゴリー, 価格帯)の組ごとに集計した件数を合算する
+        for (Object[] row : productRepository.countFacets(word)) {
+            facets.add((Long) row[0], (Long) row[1], PriceRange.values()[((Number) row[2]).intValue()],
+                ((Number) row[3]).longValue());
+        }
+        return new ProductSearchResult(fetchPage(word, filter, request), facets);
+    }
+
+    /**
+     * 商品検索の入力補完処理
+     *
+     * @param prefix 入力された文字列
+     * @return 前方一致する商品名・ブランド名・カテゴリー名の候補のリスト
+     */
+    public List<Suggestion> suggest(String prefix) {
+        return productSuggestIndex.suggest(prefix);
+    }
+
     /**
      * IDに紐づく商品情報取得処理
      *
@@ -55,23 +132,49 @@ public class ProductService {
 
     /**
      * 商品情報登録処理
+     * 商品名の重複はデータベースの一意制約で検出する
      *
      * @param product 保存したい商品情報
      * @return 保存した商品情報
+     * @throws DuplicateException 商品名が重複している場合
      */
-    public Product save(Product product) {
-        return productRepository.save(product);
+    public Product save(Product product) throws DuplicateException {
+        boolean isCreatingNew = (product.getId() == null || product.getId() == 0);
+        Product savedProduct;
+        try {
+            // 一意制約違反をこの場で検出するため、INSERT・UPDATEを即時に送信する
+            savedProduct = productRepository.saveAndFlush(product);
+        } catch (DataIntegrityViolationException e) {
+            if (!DuplicateException.isUniqueViolation(e, Product.NAME_CONSTRAINT)) {
+                throw e;
+            }
+            // 登録画面を再表示した際に更新扱いにならないよう、払い出されたIDを戻す
+            if (isCreatingNew) {
+                product.setId(null);
+            }
+            throw new DuplicateException(e);
+        }
+        productSearchIndex.put(savedProduct);
+        productSuggestIndex.putProduct(savedProduct);
+        productNameFilter.put(savedProduct.getName());
+        return savedProduct;
     }
 
     /**
      * 商品名の重複チェック
+     * 登録時の重複はsaveメソッドで検出するため、保存前に確認が必要な場合にのみ使用する
      *
      * @param name 重複確認したい商品情報
      * @return true:重複なし false:重複あり
      */
     public boolean checkUnique(Product product) {
+        // 登録されていないことが確実な名前は、データベースに問い合わせない
+        if (!productNameFilter.mightExist(product.getName())) {
+            return true;
+        }
         boolean isCreatingNew = (product.getId() == null || product.getId() == 0);
         Product productByName = productRepository.findByName(product.getName());
+        productNameFilter.recordLookup(productByName != null);
 
         if (isCreatingNew) {
             if (productByName != null) {
@@ -87,13 +190,63 @@ public class ProductService {
 
     /**
      * IDに紐づく商品情報削除処理
+     * 削除した商品情報を返却し、呼び出し元で商品画像の削除に使用する(商品情報を再度取得しない)
      *
      * @param id 商品ID
+     * @return 削除した商品情報
      * @throws NotFoundException
      */
-    public void delete(Long id) throws NotFoundException {
+    public Product delete(Long id) throws NotFoundException {
         // IDに紐づく商品情報が存在するか確認するため、getメソッドを呼び出す
         Product product = get(id);
-        productRepository.deleteById(product.getId());
+        // 取得した商品情報をそのまま削除する(deleteByIdは商品情報を再度取得するため使用しない)
+        productRepository.delete(product);
+        productSearchIndex.remove(product.getId());
+        productSuggestIndex.removeProduct(product.getId());
+        return product;
+    }
+
+    /**
+     * インデックスから取得したカーソルの並び順のまま、一覧に表示する項目を取得する
+     *
+     * @param cursors カーソルのリスト
+     * @return 一覧に表示する項目のリスト
+     */
+    private List<ProductListRow> findListRows(List<KeysetCursor> cursors) {
+        List<Long> ids = new ArrayList<>(cursors.size());
+        for (KeysetCursor cursor : cursors) {
+            ids.add(cursor.getId());
+        }
+        return SearchResults.findAllInOrder(productRepository::findListRows, ids, ProductListRow::getId);
+    }
+
+    /**
+     * データベースへのクエリで1ページ分の商品一覧の行を取得する
+     *
+     * @param word 検索キーワード(空文字の場合は全件)
+     * @param filter 絞り込み条件
+     * @param request ページング条件
+     * @return 商品一覧の行のページ
+     */
+    private KeysetPage<ProductListRow> fetchPage(String word, ProductFilter filter, KeysetRequest request) {
+        Long brandId = filter.getBrandId();
+        Long categoryId = filter.getCategoryId();
+        int min = filter.getMinPrice();
+        int max = filter.getMaxPrice();
+
+        if (request.isSortedByName()) {
+            return KeysetPage.fetch(request,
+                (cursor, limit) -> productRepository.findListRowsAfterName(word, brandId, categoryId, min, max,
+                    cursor.getKey(), cursor.getId(), limit),
+                (cursor, limit) -> productRepository.findListRowsBeforeName(word, brandId, categoryId, min, max,
+                    cursor.getKey(), cursor.getId(), limit),
+                row -> new KeysetCursor(row.getId(), row.getName()));
+        }
+        return KeysetPage.fetch(request,
+            (cursor, limit) -> productRepository.findListRowsAfter(word, brandId, categoryId, min, max,
+                cursor.getId(), limit),
+            (cursor, limit) -> productRepository.findListRowsBefore(word, brandId, categoryId, min, max,
+                cursor.getId(), limit),
+            row -> new KeysetCursor(row.getId(), row.getName()));
     }
 }
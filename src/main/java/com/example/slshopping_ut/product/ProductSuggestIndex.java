@@ -0,0 +1,152 @@
+package com.example.slshopping_ut.product;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import com.example.slshopping_ut.brand.BrandRepository;
+import com.example.slshopping_ut.category.CategoryRepository;
+import com.example.slshopping_ut.entity.Brand;
+import com.example.slshopping_ut.entity.Category;
+import com.example.slshopping_ut.entity.Product;
+import com.example.slshopping_ut.search.PrefixIndex;
+
+/**
+ * 商品検索の入力補完用のインデックス
+ * 商品名・ブランド名・カテゴリー名を前方一致で検索できるよう保持し、キー入力ごとの問い合わせにデータベースを使用しない
+ * 起動時に各テーブルから構築し、以降は各サービスの登録・削除処理から差分更新する
+ */
+@Component
+public class ProductSuggestIndex {
+
+    /** 1回の問い合わせで返す候補の最大件数 */
+    public static final int MAX_SUGGESTIONS = 10;
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProductSuggestIndex.class);
+
+    /** 構築時に1回で読み込む商品の件数 */
+    private static final int BUILD_BATCH_SIZE = 1000;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private BrandRepository brandRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    private final PrefixIndex<Suggestion> names = new PrefixIndex<>();
+
+    /** 構築中に削除された候補(構築処理が古い内容を登録し直さないようにする) */
+    private final Set<String> removedWhileBuilding = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean building;
+
+    /**
+     * 起動完了後にインデックスを構築する
+     * 構築中に登録・更新された候補は上書きしない
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long start = System.currentTimeMillis();
+        building = true;
+
+        for (Brand brand : brandRepository.findAll()) {
+            load(new Suggestion(Suggestion.TYPE_BRAND, brand.getId(), brand.getName()));
+        }
+        for (Category category : categoryRepository.findAll()) {
+            load(new Suggestion(Suggestion.TYPE_CATEGORY, category.getId(), category.getName()));
+        }
+
+        // 全件を一度に読み込まないよう、IDの昇順に一定件数ずつ読み込む
+        ProductFilter none = ProductFilter.NONE;
+        long afterId = 0L;
+        List<Product> batch;
+        do {
+            batch = productRepository.searchPageAfter("", none.getBrandId(), none.getCategoryId(),
+                none.getMinPrice(), none.getMaxPrice(), afterId, PageRequest.of(0, BUILD_BATCH_SIZE));
+            for (Product product : batch) {
+                load(new Suggestion(Suggestion.TYPE_PRODUCT, product.getId(), product.getName()));
+            }
+            if (!batch.isEmpty()) {
+                afterId = batch.get(batch.size() - 1).getId();
+            }
+        } while (batch.size() == BUILD_BATCH_SIZE);
+
+        building = false;
+        removedWhileBuilding.clear();
+        LOGGER.info("Product suggest index built: " + names.size() + " names in "
+            + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * 入力された文字列に前方一致する商品名・ブランド名・カテゴリー名を取得する
+     *
+     * @param prefix 入力された文字列
+     * @return 名前の辞書順の候補のリスト
+     */
+    public List<Suggestion> suggest(String prefix) {
+        return names.find(prefix, MAX_SUGGESTIONS);
+    }
+
+    public void putProduct(Product product) {
+        put(new Suggestion(Suggestion.TYPE_PRODUCT, product.getId(), product.getName()));
+    }
+
+    public void removeProduct(Long id) {
+        remove(Suggestion.TYPE_PRODUCT, id);
+    }
+
+    public void putBrand(Brand brand) {
+        put(new Suggestion(Suggestion.TYPE_BRAND, brand.getId(), brand.getName()));
+    }
+
+    public void removeBrand(Long id) {
+        remove(Suggestion.TYPE_BRAND, id);
+    }
+
+    public void putCategory(Category category) {
+        put(new Suggestion(Suggestion.TYPE_CATEGORY, category.getId(), category.getName()));
+    }
+
+    public void removeCategory(Long id) {
+        remove(Suggestion.TYPE_CATEGORY, id);
+    }
+
+    private void put(Suggestion suggestion) {
+        names.put(ownerOf(suggestion.getType(), suggestion.getId()), suggestion.getName(), suggestion);
+    }
+
+    private void remove(String type, Long id) {
+        String owner = ownerOf(type, id);
+        names.remove(owner);
+        if (building) {
+            removedWhileBuilding.add(owner);
+        }
+    }
+
+    /**
+     * 構築時の登録(サービスから登録・削除された候補は対象外にする)
+     */
+    private void load(Suggestion suggestion) {
+        String owner = ownerOf(suggestion.getType(), suggestion.getId());
+        if (!removedWhileBuilding.contains(owner)) {
+            names.putIfAbsent(owner, suggestion.getName(), suggestion);
+        }
+    }
+
+    private static String ownerOf(String type, Long id) {
+        return type + ":" + id;
+    }
+
+}
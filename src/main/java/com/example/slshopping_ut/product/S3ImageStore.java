@@ -0,0 +1,419 @@
+package com.example.slshopping_ut.product;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.FileTransformerConfiguration;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.multipart.MultipartConfiguration;
+
+/**
+ * 商品画像をS3互換のオブジェクトストレージに保存するクラス(slshopping.image.store=s3)
+ * 複数のアプリケーションサーバーで同じ画像を参照できる
+ * APIの呼び出し・署名はAWS SDKで行い、エンドポイントを変更することでMinIOなどにも接続できる(バケットはパス形式で指定する)
+ *
+ * slshopping.image.s3.part-sizeを超える画像は、SDKのマルチパートアップロードでパートを並行して送信する
+ * アップロードされる画像は上限(2MB)よりパートのサイズが大きいため1回のPUTで保存し、
+ * マルチパートアップロードは上限を設ける前の画像など、起動時に移行する大きな画像にのみ使用する
+ * 取得した画像はslshopping.image.s3.cache-dirにキャッシュし(読み込み時キャッシュ)、同じ画像を再びダウンロードしない
+ * キャッシュはファイルとして保持するため、配信はsendfileで行える。合計サイズが上限を超えた場合は、最も長く使われていない画像から削除する
+ * 画像の内容は変更されないため、キャッシュの無効化は行わない(他のサーバーで削除された画像は、キャッシュから削除されるまで配信される)
+ * 保存済みかの判定(exists)はキャッシュを使用せず、オブジェクトストレージで行う
+ */
+@Component
+@ConditionalOnProperty(name = "slshopping.image.store", havingValue = "s3")
+public class S3ImageStore implements ImageStore {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerFactory.getLogger(S3ImageStore.class);
+
+    /** ダウンロード中の一時ファイルの接頭辞 */
+    private static final String DOWNLOAD_PREFIX = "download-";
+
+    /** エンドポイント(https://s3.ap-northeast-1.amazonaws.com、MinIOの場合はhttp://localhost:9000 など) */
+    @Value("${slshopping.image.s3.endpoint}")
+    private String endpoint;
+
+    @Value("${slshopping.image.s3.region:us-east-1}")
+    private String region;
+
+    @Value("${slshopping.image.s3.bucket}")
+    private String bucket;
+
+    /** アクセスキー(指定しない場合は、環境変数・インスタンスのロールなどSDKの既定の認証情報を使用する) */
+    @Value("${slshopping.image.s3.access-key:}")
+    private String accessKey;
+
+    @Value("${slshopping.image.s3.secret-key:}")
+    private String secretKey;
+
+    /**
+     * マルチパートアップロードのパートのサイズ(バイト。S3では5MB以上)。これを超える画像をマルチパートアップロードで保存する
+     * アップロードの上限(2MB)より大きいため、対象は起動時に移行する大きな画像のみとなる
+     */
+    @Value("${slshopping.image.s3.part-size:8388608}")
+    private long partSize;
+
+    /** 取得した画像のキャッシュの保存先 */
+    @Value("${slshopping.image.s3.cache-dir:product-images-cache}")
+    private String cacheDir;
+
+    /** キャッシュの合計サイズの上限(バイト) */
+    @Value("${slshopping.image.s3.cache-size:1073741824}")
+    private long cacheSize;
+
+    private S3AsyncClient client;
+
+    /** キャッシュ済みの画像のキー → サイズ(最も長く使われていない順) */
+    private final LinkedHashMap<String, Long> cached = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** キャッシュ済みの画像のサイズの合計(バイト) */
+    private long cachedBytes;
+
+    /**
+     * cached・cachedBytesを参照・更新する際のロック
+     * 仮想スレッドで処理する場合にキャリアスレッドを占有しないよう、synchronizedは使用しない
+     */
+    private final ReentrantLock cacheLock = new ReentrantLock();
+
+    /** ダウンロード中の画像のキー → ダウンロードの完了(同じ画像を同時に要求された場合は1回だけダウンロードする) */
+    private final Map<String, CompletableFuture<Path>> downloads = new ConcurrentHashMap<>();
+
+    /**
+     * キャッシュの保存先に残っている画像を、更新日時の古い順にキャッシュ済みとして登録する
+     * 前回の停止時にダウンロード途中だった一時ファイルは削除する
+     *
+     * @throws IOException
+     */
+    @PostConstruct
+    void open() throws IOException {
+        AwsCredentialsProvider credentials = accessKey.isEmpty() ? DefaultCredentialsProvider.create()
+            : StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
+        client = S3AsyncClient.builder()
+            .endpointOverride(URI.create(endpoint))
+            .region(Region.of(region))
+            .credentialsProvider(credentials)
+            .forcePathStyle(true)
+            .multipartEnabled(true)
+            .multipartConfiguration(MultipartConfiguration.builder()
+                .thresholdInBytes(partSize)
+                .minimumPartSizeInBytes(partSize)
+                .build())
+            .build();
+        Path root = cacheRoot();
+        Files.createDirectories(root);
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(Files::isRegularFile).toList();
+        }
+        List<Path> images = new ArrayList<>();
+        for (Path file : files) {
+            if (file.getParent().equals(root) && file.getFileName().toString().startsWith(DOWNLOAD_PREFIX)) {
+                Files.deleteIfExists(file);
+            } else {
+                images.add(file);
+            }
+        }
+        images.sort(Comparator.comparing(file -> file.toFile().lastModified()));
+        for (Path file : images) {
+            register(root.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/"),
+                Files.size(file));
+        }
+        LOGGER.info("Loaded " + cached.size() + " cached images (" + cachedBytes + " bytes)");
+    }
+
+    @PreDestroy
+    void close() {
+        client.close();
+    }
+
+    /**
+     * キャッシュは使用せず、常にオブジェクトストレージで判定する
+     * 他のサーバーで削除された画像がキャッシュに残っていても、保存し直しが省略されないようにするため
+     * (キャッシュに残っていた画像は、保存されていない場合はキャッシュからも削除する)
+     * オブジェクトストレージに接続できない場合は、保存されていないものとする(保存し直しても同じ内容になるため)
+     */
+    @Override
+    public boolean exists(String key) {
+        if (resolve(key) == null) {
+            return false;
+        }
+        try {
+            if (call(() -> client.headObject(request -> request.bucket(bucket).key(key))) != null) {
+                return true;
+            }
+            evict(key);
+            return false;
+        } catch (IOException e) {
+            LOGGER.error("Could not check image: " + key + " (" + e.getMessage() + ")");
+            return false;
+        }
+    }
+
+    /**
+     * オブジェクトストレージに保存し、保存したサーバーではダウンロードせずに配信できるようキャッシュにも入れる
+     */
+    @Override
+    public void put(String key, Path source) throws IOException {
+        if (resolve(key) == null) {
+            throw new IOException("Invalid image key: " + key);
+        }
+        // part-sizeを超える場合、SDKがマルチパートアップロードで送信し、失敗した場合はアップロードを中止する
+        call(() -> client.putObject(request -> request.bucket(bucket).key(key), AsyncRequestBody.fromFile(source)));
+        try {
+            addToCache(key, source);
+        } catch (IOException e) {
+            LOGGER.warn("Could not cache image: " + key + " (" + e.getMessage() + ")");
+        }
+    }
+
+    /**
+     * キャッシュ済みの場合はキャッシュのファイル、それ以外はダウンロードしてキャッシュに入れたファイルを返す
+     */
+    @Override
+    public StoredImage get(String key) throws IOException {
+        Path file = resolve(key);
+        if (file == null) {
+            return null;
+        }
+        if (touch(key)) {
+            try {
+                return StoredImage.ofFile(file);
+            } catch (NoSuchFileException e) {
+                // 判定の後にキャッシュから削除された場合は、ダウンロードし直す
+            }
+        }
+        Path downloaded = download(key);
+        return downloaded == null ? null : StoredImage.ofFile(downloaded);
+    }
+
+    @Override
+    public void removeAll(String keyPrefix) {
+        try {
+            List<String> keys = new ArrayList<>();
+            call(() -> client.listObjectsV2Paginator(request -> request.bucket(bucket).prefix(keyPrefix))
+                .contents().subscribe(object -> keys.add(object.key())));
+            for (String key : keys) {
+                call(() -> client.deleteObject(request -> request.bucket(bucket).key(key)));
+            }
+        } catch (IOException e) {
+            LOGGER.error("Could not remove images: " + keyPrefix + " (" + e.getMessage() + ")");
+        }
+        List<String> keys;
+        cacheLock.lock();
+        try {
+            keys = cached.keySet().stream().filter(key -> key.startsWith(keyPrefix)).toList();
+        } finally {
+            cacheLock.unlock();
+        }
+        for (String key : keys) {
+            evict(key);
+        }
+    }
+
+    /**
+     * 画像をダウンロードしてキャッシュに入れる
+     * 同じ画像を同時にダウンロードしている場合は、その完了を待って結果を共有する
+     *
+     * @return キャッシュのファイル。オブジェクトストレージに存在しない場合はnull
+     */
+    private Path download(String key) throws IOException {
+        CompletableFuture<Path> future = new CompletableFuture<>();
+        CompletableFuture<Path> running = downloads.putIfAbsent(key, future);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw new IOException("Could not download image: " + key, e.getCause());
+            }
+        }
+        try {
+            Path temp = Files.createTempFile(cacheRoot(), DOWNLOAD_PREFIX, ".tmp");
+            try {
+                Path file = getObject(key, temp) ? addToCache(key, temp) : null;
+                future.complete(file);
+                return file;
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            downloads.remove(key, future);
+        }
+    }
+
+    /**
+     * ファイルをキャッシュに移動し、合計サイズが上限を超えた分を最も長く使われていない画像から削除する
+     *
+     * @return キャッシュのファイル
+     */
+    private Path addToCache(String key, Path source) throws IOException {
+        Path file = resolve(key);
+        Files.createDirectories(file.getParent());
+        long size = Files.size(source);
+        try {
+            Files.move(source, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        List<String> evicted = new ArrayList<>();
+        cacheLock.lock();
+        try {
+            register(key, size);
+            long excess = cachedBytes - cacheSize;
+            Iterator<Map.Entry<String, Long>> eldest = cached.entrySet().iterator();
+            while (excess > 0 && eldest.hasNext()) {
+                Map.Entry<String, Long> entry = eldest.next();
+                if (entry.getKey().equals(key)) {
+                    break;
+                }
+                evicted.add(entry.getKey());
+                excess -= entry.getValue();
+            }
+        } finally {
+            cacheLock.unlock();
+        }
+        for (String evictedKey : evicted) {
+            evict(evictedKey);
+        }
+        return file;
+    }
+
+    /**
+     * キャッシュ済みの画像を使用したことを記録する
+     *
+     * @return キャッシュ済みの場合はtrue
+     */
+    private boolean touch(String key) {
+        cacheLock.lock();
+        try {
+            return cached.get(key) != null;
+        } finally {
+            cacheLock.unlock();
+        }
+    }
+
+    private void register(String key, long size) {
+        cacheLock.lock();
+        try {
+            Long previous = cached.put(key, size);
+            cachedBytes += size - (previous == null ? 0 : previous);
+        } finally {
+            cacheLock.unlock();
+        }
+    }
+
+    /**
+     * 画像をキャッシュから削除する
+     */
+    private void evict(String key) {
+        cacheLock.lock();
+        try {
+            Long size = cached.remove(key);
+            if (size == null) {
+                return;
+            }
+            cachedBytes -= size;
+        } finally {
+            cacheLock.unlock();
+        }
+        try {
+            Files.deleteIfExists(resolve(key));
+        } catch (IOException e) {
+            LOGGER.error("Could not delete cached image: " + key);
+        }
+    }
+
+    /**
+     * オブジェクトの内容をファイルに書き出す
+     * ファイルの更新日時はオブジェクトの保存日時とする(キャッシュの読み込み時の並び順に使用する)
+     *
+     * @return オブジェクトが存在しない場合はfalse
+     */
+    private boolean getObject(String key, Path target) throws IOException {
+        GetObjectResponse response = call(() -> client.getObject(request -> request.bucket(bucket).key(key),
+            AsyncResponseTransformer.toFile(target, FileTransformerConfiguration.defaultCreateOrReplaceExisting())));
+        if (response == null) {
+            return false;
+        }
+        if (response.lastModified() != null) {
+            Files.setLastModifiedTime(target, FileTime.from(response.lastModified()));
+        }
+        return true;
+    }
+
+    /**
+     * SDKの呼び出しの完了を待ち、失敗をIOExceptionに変換する
+     *
+     * @return 呼び出しの結果。オブジェクトが存在しない(404)場合はnull
+     */
+    private static <T> T call(Supplier<CompletableFuture<T>> request) throws IOException {
+        try {
+            return request.get().join();
+        } catch (CompletionException | SdkException e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof S3Exception && ((S3Exception) cause).statusCode() == 404) {
+                return null;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    private Path cacheRoot() {
+        return Paths.get(cacheDir).toAbsolutePath().normalize();
+    }
+
+    /**
+     * キーのキャッシュのファイルのパス
+     *
+     * @return キャッシュの保存先の外・直下(ダウンロード中の一時ファイルの置き場所)を指すキーの場合はnull
+     */
+    private Path resolve(String key) {
+        Path root = cacheRoot();
+        Path file = root.resolve(key).normalize();
+        return file.startsWith(root) && !file.getParent().equals(root) ? file : null;
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.example.slshopping_ut.product;
+
+import java.nio.file.Path;
+
+/**
+ * 一時ファイルに書き出した商品画像
+ * 商品の登録後に、ProductImageServiceが内容のハッシュ値で名前を付けた保存先へ移動する
+ */
+public class StagedImage {
+
+    /** 一時ファイルのパス */
+    private final Path path;
+
+    /** アップロード時のファイル名 */
+    private final String fileName;
+
+    /** 内容のハッシュ値(SHA-256の16進数) */
+    private final String hash;
+
+    public StagedImage(Path path, String fileName, String hash) {
+        this.path = path;
+        this.fileName = fileName;
+        this.hash = hash;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+}
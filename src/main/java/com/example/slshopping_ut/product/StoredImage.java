@@ -0,0 +1,106 @@
+package com.example.slshopping_ut.product;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * ImageStoreに保存済みの画像
+ * 画像ごとのファイル、またはセグメントファイルをメモリにマップした領域の一部を表し、画像全体をヒープに読み込まずに送信する
+ */
+public class StoredImage {
+
+    /** 画像のファイル(セグメントファイルに保存した画像の場合はnull) */
+    private final Path file;
+
+    /** セグメントファイルをマップした領域のうち、画像の部分(画像ごとのファイルの場合はnull) */
+    private final ByteBuffer buffer;
+
+    /** サイズ(バイト) */
+    private final long length;
+
+    /** 保存日時(エポックミリ秒) */
+    private final long lastModified;
+
+    private StoredImage(Path file, ByteBuffer buffer, long length, long lastModified) {
+        this.file = file;
+        this.buffer = buffer;
+        this.length = length;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * 画像ごとのファイルに保存した画像
+     *
+     * @param file 画像のファイル
+     * @return 画像
+     * @throws IOException
+     */
+    public static StoredImage ofFile(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        return new StoredImage(file, null, attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
+
+    /**
+     * メモリにマップした領域に保存した画像
+     *
+     * @param buffer 画像の部分の領域(読み取り専用)
+     * @param lastModified 保存日時(エポックミリ秒)
+     * @return 画像
+     */
+    public static StoredImage ofBuffer(ByteBuffer buffer, long lastModified) {
+        return new StoredImage(null, buffer, buffer.remaining(), lastModified);
+    }
+
+    /**
+     * 画像のファイル(sendfileで送信する場合に使用する)
+     *
+     * @return 画像ごとのファイルに保存した画像の場合はファイル、それ以外はnull
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * 画像の指定した範囲を書き込む
+     * ファイルの場合はFileChannel.transferTo、マップした領域の場合は領域をそのまま書き込む
+     *
+     * @param position 範囲の先頭(バイト)
+     * @param count 範囲の長さ(バイト)
+     * @param target 書き込み先
+     * @throws IOException
+     */
+    public void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        if (file == null) {
+            ByteBuffer range = buffer.slice((int) position, (int) count);
+            while (range.hasRemaining()) {
+                target.write(range);
+            }
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long end = position + count;
+            while (position < end) {
+                long sent = channel.transferTo(position, end - position, target);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+            }
+        }
+    }
+
+}
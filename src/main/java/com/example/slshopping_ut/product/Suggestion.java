@@ -0,0 +1,39 @@
+package com.example.slshopping_ut.product;
+
+/**
+ * 商品検索の入力補完の候補
+ */
+public class Suggestion {
+
+    public static final String TYPE_PRODUCT = "product";
+
+    public static final String TYPE_BRAND = "brand";
+
+    public static final String TYPE_CATEGORY = "category";
+
+    /** 候補の種別(商品・ブランド・カテゴリー) */
+    private final String type;
+
+    private final Long id;
+
+    private final String name;
+
+    public Suggestion(String type, Long id, String name) {
+        this.type = type;
+        this.id = id;
+        this.name = name;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.example.slshopping_ut.search;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 文字列の集合のBloomフィルター
+ * 登録していない文字列を「含まない」と判定でき、登録した文字列を「含まない」と誤判定することはない
+ * 登録していない文字列を「含む可能性がある」と誤判定する割合は、登録件数が想定件数に近づくほど高くなる
+ * 削除はできない。複数のスレッドから同時に登録・判定できる
+ */
+public class BloomFilter {
+
+    /** 1ワードあたりのビット数 */
+    private static final int WORD_BITS = 64;
+
+    private final AtomicLongArray words;
+
+    /** ビット数 */
+    private final long bitSize;
+
+    /** 1件あたりに立てるビット数 */
+    private final int hashCount;
+
+    /** 立っているビット数 */
+    private final AtomicLong setBits = new AtomicLong();
+
+    /**
+     * @param expectedInsertions 想定する登録件数
+     * @param falsePositiveRate 想定件数を登録した時点の誤判定率(0より大きく1未満)
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("expectedInsertions must be positive: " + expectedInsertions);
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1: " + falsePositiveRate);
+        }
+        // 最適なビット数 m = -n ln(p) / (ln 2)^2、ハッシュ数 k = m / n ln 2
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.max(1, (bits + WORD_BITS - 1) / WORD_BITS);
+        this.words = new AtomicLongArray(wordCount);
+        this.bitSize = (long) wordCount * WORD_BITS;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * 文字列を登録する
+     *
+     * @param value 登録する文字列
+     */
+    public void put(String value) {
+        long hash1 = hash(value);
+        long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L);
+        for (int i = 0; i < hashCount; i++) {
+            long index = Math.floorMod(hash1 + i * hash2, bitSize);
+            long mask = 1L << index;
+            long previous = words.getAndAccumulate((int) (index / WORD_BITS), mask, (word, bit) -> word | bit);
+            if ((previous & mask) == 0) {
+                setBits.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 文字列を含む可能性があるか判定する
+     *
+     * @param value 判定する文字列
+     * @return true:含む可能性がある false:含まない
+     */
+    public boolean mightContain(String value) {
+        long hash1 = hash(value);
+        long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L);
+        for (int i = 0; i < hashCount; i++) {
+            long index = Math.floorMod(hash1 + i * hash2, bitSize);
+            if ((words.get((int) (index / WORD_BITS)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 現在のビットの埋まり具合から求めた、登録していない文字列の誤判定率
+     *
+     * @return 誤判定率の推定値
+     */
+    public double expectedFalsePositiveRate() {
+        return Math.pow((double) setBits.get() / bitSize, hashCount);
+    }
+
+    public long getBitSize() {
+        return bitSize;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * @return ビット配列のバイト数
+     */
+    public long getMemoryBytes() {
+        return (long) words.length() * Long.BYTES;
+    }
+
+    /**
+     * 文字列の64ビットのハッシュ値(FNV-1aの結果をかき混ぜたもの)
+     */
+    private static long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * 64ビットの値の各ビットを全体に行き渡らせる(MurmurHash3の最終処理)
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+}
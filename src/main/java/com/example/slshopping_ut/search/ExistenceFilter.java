@@ -0,0 +1,206 @@
+package com.example.slshopping_ut.search;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 名前・メールアドレスなど一意な値が登録済みかを、データベースに問い合わせる前に判定するフィルターの基底クラス
+ * 登録されていないことが確実な値は問い合わせを省略し、登録済みの可能性がある値のみ問い合わせる
+ * 起動時にテーブルから構築し、以降は各サービスの登録処理から追加する(削除・変更前の値は構築し直すまで残る)
+ * 構築が完了するまでは、すべての値を登録済みの可能性があるものとして扱う
+ * 他のノードで登録された値は構築し直すまで含まれないため、一意制約で重複を検出できる判定にのみ使用する
+ *
+ * @param <T> 対象のエンティティ
+ */
+public abstract class ExistenceFilter<T> {
+
+    /** 想定件数を登録した時点の誤判定率 */
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    /** 想定件数の最小値 */
+    private static final long MIN_CAPACITY = 1024;
+
+    /** 構築時に1回で読み込む件数 */
+    private static final int BUILD_BATCH_SIZE = 1000;
+
+    /** ロガー */
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    /** 構築し直す処理を実行する(virtualプロファイルでは仮想スレッドで実行する) */
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private TaskExecutor taskExecutor;
+
+    /** 判定に使用するフィルター(構築前はnull) */
+    private volatile BloomFilter current;
+
+    /** 構築中のフィルター(構築中に登録された値も追加する) */
+    private volatile BloomFilter next;
+
+    /** 判定に使用しているフィルターの想定件数 */
+    private volatile long capacity;
+
+    private final AtomicBoolean building = new AtomicBoolean();
+
+    /** 判定に使用しているフィルターへの登録件数 */
+    private final AtomicLong insertions = new AtomicLong();
+
+    /** 判定の回数 */
+    private final AtomicLong lookups = new AtomicLong();
+
+    /** 登録されていないと判定し、問い合わせを省略した回数 */
+    private final AtomicLong skippedQueries = new AtomicLong();
+
+    /** 登録済みの可能性があると判定したが、問い合わせの結果が未登録だった回数 */
+    private final AtomicLong falsePositives = new AtomicLong();
+
+    /**
+     * 起動完了後にフィルターを構築する
+     * 想定件数は現在の件数の2倍とし、登録件数が想定件数を超えた場合は構築し直す
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        if (!building.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            long size = Math.max(MIN_CAPACITY, countRows() * 2);
+            BloomFilter filter = new BloomFilter(size, FALSE_POSITIVE_RATE);
+            next = filter;
+
+            long afterId = 0L;
+            long count = 0;
+            List<T> batch;
+            do {
+                batch = loadAfter(afterId, BUILD_BATCH_SIZE);
+                for (T entity : batch) {
+                    filter.put(keyOf(entity));
+                }
+                if (!batch.isEmpty()) {
+                    afterId = idOf(batch.get(batch.size() - 1));
+                    count += batch.size();
+                }
+            } while (batch.size() == BUILD_BATCH_SIZE);
+
+            capacity = size;
+            insertions.set(count);
+            current = filter;
+            next = null;
+            logger.info(getClass().getSimpleName() + " built: " + count + " keys, " + filter.getMemoryBytes()
+                + " bytes in " + (System.currentTimeMillis() - start) + " ms");
+        } finally {
+            building.set(false);
+        }
+    }
+
+    /**
+     * 値が登録済みの可能性があるか判定する
+     *
+     * @param key 名前・メールアドレス
+     * @return true:登録済みの可能性がある(データベースに問い合わせる) false:登録されていない
+     */
+    public boolean mightExist(String key) {
+        BloomFilter filter = current;
+        if (filter == null || key == null) {
+            return true;
+        }
+        lookups.incrementAndGet();
+        if (filter.mightContain(key)) {
+            return true;
+        }
+        skippedQueries.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * mightExistがtrueを返した値の、データベースへの問い合わせ結果を記録する(誤判定率の集計に使用する)
+     *
+     * @param found 登録済みだった場合はtrue
+     */
+    public void recordLookup(boolean found) {
+        if (!found && current != null) {
+            falsePositives.incrementAndGet();
+        }
+    }
+
+    /**
+     * 登録した値を追加する
+     * トランザクション中の場合は、構築中のフィルターが読み込み済みの範囲にも反映されるよう、コミット後にも追加する
+     *
+     * @param key 名前・メールアドレス
+     */
+    public void put(String key) {
+        if (key == null) {
+            return;
+        }
+        add(key);
+        // 想定件数を超えると誤判定率が上がるため、より大きなフィルターを別スレッドで構築し直す
+        if (current != null && insertions.incrementAndGet() > capacity && !building.get()) {
+            taskExecutor.execute(this::build);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(key);
+                }
+            });
+        }
+    }
+
+    /**
+     * フィルターの利用状況の取得処理
+     *
+     * @return フィルターの利用状況
+     */
+    public ExistenceFilterReport getReport() {
+        BloomFilter filter = current;
+        if (filter == null) {
+            return new ExistenceFilterReport(getClass().getSimpleName(), false, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+        }
+        return new ExistenceFilterReport(getClass().getSimpleName(), true, capacity, insertions.get(),
+            filter.getBitSize(), filter.getHashCount(), filter.getMemoryBytes(), filter.expectedFalsePositiveRate(),
+            lookups.get(), skippedQueries.get(), falsePositives.get());
+    }
+
+    private void add(String key) {
+        BloomFilter filter = current;
+        if (filter != null) {
+            filter.put(key);
+        }
+        BloomFilter pending = next;
+        if (pending != null) {
+            pending.put(key);
+        }
+    }
+
+    /**
+     * 全件の件数を取得する(想定件数の算出に使用する)
+     */
+    protected abstract long countRows();
+
+    /**
+     * IDの昇順に、指定したIDより後のエンティティを取得する
+     */
+    protected abstract List<T> loadAfter(long afterId, int limit);
+
+    protected abstract Long idOf(T entity);
+
+    /**
+     * 判定に使用する値(名前・メールアドレス)
+     */
+    protected abstract String keyOf(T entity);
+
+}
@@ -0,0 +1,109 @@
+package com.example.slshopping_ut.search;
+
+/**
+ * 登録済み判定のフィルターの利用状況
+ */
+public class ExistenceFilterReport {
+
+    /** フィルター名 */
+    private final String name;
+
+    /** 構築済みの場合はtrue(falseの場合、各値は0) */
+    private final boolean ready;
+
+    /** 想定件数 */
+    private final long capacity;
+
+    /** 登録件数 */
+    private final long insertions;
+
+    private final long bitSize;
+
+    private final int hashCount;
+
+    /** ビット配列のバイト数 */
+    private final long memoryBytes;
+
+    /** ビットの埋まり具合から求めた誤判定率 */
+    private final double expectedFalsePositiveRate;
+
+    /** 判定の回数 */
+    private final long lookups;
+
+    /** 登録されていないと判定し、問い合わせを省略した回数 */
+    private final long skippedQueries;
+
+    /** 登録済みの可能性があると判定したが、未登録だった回数 */
+    private final long falsePositives;
+
+    public ExistenceFilterReport(String name, boolean ready, long capacity, long insertions, long bitSize,
+            int hashCount, long memoryBytes, double expectedFalsePositiveRate, long lookups, long skippedQueries,
+            long falsePositives) {
+        this.name = name;
+        this.ready = ready;
+        this.capacity = capacity;
+        this.insertions = insertions;
+        this.bitSize = bitSize;
+        this.hashCount = hashCount;
+        this.memoryBytes = memoryBytes;
+        this.expectedFalsePositiveRate = expectedFalsePositiveRate;
+        this.lookups = lookups;
+        this.skippedQueries = skippedQueries;
+        this.falsePositives = falsePositives;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public long getInsertions() {
+        return insertions;
+    }
+
+    public long getBitSize() {
+        return bitSize;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public double getExpectedFalsePositiveRate() {
+        return expectedFalsePositiveRate;
+    }
+
+    public long getLookups() {
+        return lookups;
+    }
+
+    public long getSkippedQueries() {
+        return skippedQueries;
+    }
+
+    public long getFalsePositives() {
+        return falsePositives;
+    }
+
+    /**
+     * 実際の誤判定率
+     *
+     * @return 未登録だった値のうち、登録済みの可能性があると判定した割合。未登録の値の判定がない場合は0
+     */
+    public double getFalsePositiveRate() {
+        long absent = skippedQueries + falsePositives;
+        return absent == 0 ? 0.0 : (double) falsePositives / absent;
+    }
+
+}
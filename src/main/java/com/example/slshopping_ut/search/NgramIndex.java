@@ -0,0 +1,152 @@
+package com.example.slshopping_ut.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 部分一致検索用のN-gramインデックス
+ * 文字列を1文字(ユニグラム)と連続する2文字(バイグラム)に分割し、それぞれにIDのポスティングリストを保持する
+ * 単語の区切りに依存しないため、日本語のように空白で区切られない文字列もLIKE '%キーワード%'と同じ結果になる
+ * スレッドセーフではないため、呼び出し側で排他制御を行うこと
+ */
+public class NgramIndex {
+
+    /** N-gram → その文字列を含むID */
+    private final Map<String, PostingList> grams = new HashMap<>();
+
+    /** ID → 登録した文字列(候補の絞り込み後に、実際に部分一致するかを確認するために保持する) */
+    private final Map<Long, String[]> texts = new HashMap<>();
+
+    /** 登録済みの全ID(空文字で検索した場合の結果) */
+    private final PostingList all = new PostingList();
+
+    /**
+     * IDに紐づく文字列を登録する
+     * 登録済みのIDの場合は、以前の文字列を置き換える
+     *
+     * @param id ID
+     * @param values 検索対象の文字列(nullは無視する)
+     */
+    public void put(long id, String... values) {
+        remove(id);
+
+        List<String> stored = new ArrayList<>(values.length);
+        Set<String> keys = new LinkedHashSet<>();
+        for (String value : values) {
+            if (value != null && !value.isEmpty()) {
+                stored.add(value);
+                keys.addAll(grams(value));
+            }
+        }
+        for (String key : keys) {
+            grams.computeIfAbsent(key, k -> new PostingList()).add(id);
+        }
+        texts.put(id, stored.toArray(new String[0]));
+        all.add(id);
+    }
+
+    /**
+     * IDを削除する
+     *
+     * @param id ID
+     */
+    public void remove(long id) {
+        String[] old = texts.remove(id);
+        if (old == null) {
+            return;
+        }
+        for (String value : old) {
+            for (String key : grams(value)) {
+                PostingList list = grams.get(key);
+                if (list != null && list.remove(id) && list.isEmpty()) {
+                    grams.remove(key);
+                }
+            }
+        }
+        all.remove(id);
+    }
+
+    /**
+     * キーワードを部分文字列として含むIDを検索する
+     * キーワードのN-gramすべてを含むIDに候補を絞り込み、3文字以上の場合は登録した文字列で部分一致を確認する
+     * 大文字・小文字は区別する(PostgreSQLのLIKEと同じ)
+     * %・_は通常の文字として扱う(リポジトリのLIKEもescapeでワイルドカードにならないようにしている)
+     *
+     * @param keyword 検索キーワード
+     * @return 昇順のIDのリスト
+     */
+    public PostingList search(String keyword) {
+        if (keyword == null || keyword.isEmpty()) {
+            return PostingList.of(all.toArray());
+        }
+
+        List<PostingList> lists = new ArrayList<>();
+        for (String key : keyword.length() == 1 ? List.of(keyword) : bigrams(keyword)) {
+            PostingList list = grams.get(key);
+            if (list == null) {
+                return new PostingList();
+            }
+            lists.add(list);
+        }
+        // 件数の少ないリストから積集合を取り、候補を早く絞り込む
+        lists.sort(Comparator.comparingInt(PostingList::size));
+        PostingList candidates = lists.get(0);
+        for (int i = 1; i < lists.size() && !candidates.isEmpty(); i++) {
+            candidates = candidates.intersect(lists.get(i));
+        }
+
+        // 2文字以下はN-gramの一致がそのまま部分一致になる
+        if (keyword.length() <= 2) {
+            return PostingList.of(candidates.toArray());
+        }
+        PostingList result = new PostingList();
+        for (int i = 0; i < candidates.size(); i++) {
+            long id = candidates.get(i);
+            if (contains(texts.get(id), keyword)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return texts.size();
+    }
+
+    private static boolean contains(String[] values, String keyword) {
+        for (String value : values) {
+            if (value.contains(keyword)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 文字列のユニグラムとバイグラムを重複なく取得する
+     */
+    private static Set<String> grams(String value) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (int i = 0; i < value.length(); i++) {
+            keys.add(value.substring(i, i + 1));
+            if (i + 1 < value.length()) {
+                keys.add(value.substring(i, i + 2));
+            }
+        }
+        return keys;
+    }
+
+    private static Set<String> bigrams(String value) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (int i = 0; i + 1 < value.length(); i++) {
+            keys.add(value.substring(i, i + 2));
+        }
+        return keys;
+    }
+
+}
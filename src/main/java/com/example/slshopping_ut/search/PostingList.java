@@ -0,0 +1,168 @@
+package com.example.slshopping_ut.search;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * 転置インデックスのポスティングリスト
+ * IDを昇順のlong配列で保持する。新規登録のIDは末尾に追加されるため、追加はほぼ定数時間で済む
+ * スレッドセーフではないため、呼び出し側で排他制御を行うこと
+ */
+public class PostingList {
+
+    private static final long[] EMPTY = new long[0];
+
+    private long[] ids;
+
+    private int size;
+
+    public PostingList() {
+        this.ids = new long[4];
+    }
+
+    private PostingList(long[] ids, int size) {
+        this.ids = ids;
+        this.size = size;
+    }
+
+    /**
+     * 昇順に並んだ重複のないID配列からポスティングリストを作成する
+     *
+     * @param sortedIds IDの配列
+     * @return ポスティングリスト
+     */
+    public static PostingList of(long... sortedIds) {
+        return new PostingList(sortedIds.clone(), sortedIds.length);
+    }
+
+    /**
+     * IDを追加する
+     *
+     * @param id 追加するID
+     * @return 追加した場合はtrue、既に存在した場合はfalse
+     */
+    public boolean add(long id) {
+        // 末尾への追加(IDの採番順に追加される通常のケース)
+        if (size == 0 || ids[size - 1] < id) {
+            grow();
+            ids[size++] = id;
+            return true;
+        }
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index >= 0) {
+            return false;
+        }
+        int insertion = -index - 1;
+        grow();
+        System.arraycopy(ids, insertion, ids, insertion + 1, size - insertion);
+        ids[insertion] = id;
+        size++;
+        return true;
+    }
+
+    /**
+     * IDを削除する
+     *
+     * @param id 削除するID
+     * @return 削除した場合はtrue、存在しなかった場合はfalse
+     */
+    public boolean remove(long id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+        size--;
+        return true;
+    }
+
+    public boolean contains(long id) {
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    public long get(int index) {
+        return ids[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 保持しているIDを昇順の配列で返す
+     *
+     * @return IDの配列
+     */
+    public long[] toArray() {
+        return size == 0 ? EMPTY : Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * 両方のリストに含まれるIDのリストを作成する(AND検索)
+     *
+     * @param other 比較対象のリスト
+     * @return 積集合のリスト
+     */
+    public PostingList intersect(PostingList other) {
+        long[] result = new long[Math.min(size, other.size)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            long a = ids[i];
+            long b = other.ids[j];
+            if (a == b) {
+                result[count++] = a;
+                i++;
+                j++;
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return new PostingList(result, count);
+    }
+
+    /**
+     * いずれかのリストに含まれるIDのリストを作成する(OR検索)
+     *
+     * @param lists 対象のリスト
+     * @return 和集合のリスト
+     */
+    public static PostingList union(Collection<PostingList> lists) {
+        int total = 0;
+        for (PostingList list : lists) {
+            total += list.size;
+        }
+        long[] merged = new long[total];
+        int offset = 0;
+        for (PostingList list : lists) {
+            System.arraycopy(list.ids, 0, merged, offset, list.size);
+            offset += list.size;
+        }
+        if (lists.size() > 1) {
+            Arrays.sort(merged);
+        }
+
+        // 重複を取り除く
+        int count = 0;
+        for (int i = 0; i < total; i++) {
+            if (count == 0 || merged[count - 1] != merged[i]) {
+                merged[count++] = merged[i];
+            }
+        }
+        return new PostingList(merged, count);
+    }
+
+    private void grow() {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, Math.max(4, size * 2));
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.example.slshopping_ut.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 前方一致検索用の整列済みインデックス
+ * 正規化した文字列の辞書順に値を保持し、前方一致する範囲を先頭から必要な件数だけ取り出す
+ * 読み取りはロックを取得しないため、入力補完のように同時に大量の検索が行われる用途に使用する
+ *
+ * @param <V> 検索結果として返す値
+ */
+public class PrefixIndex<V> {
+
+    /** 同じ文字列を持つ値を区別するため、正規化した文字列と所有者の間に挟む区切り文字 */
+    private static final char SEPARATOR = '\u0000';
+
+    /** 正規化した文字列 + 区切り文字 + 所有者 → 値 */
+    private final ConcurrentSkipListMap<String, V> entries = new ConcurrentSkipListMap<>();
+
+    /** 所有者 → 登録済みのキー(更新・削除時に古いキーを取り除くために保持する) */
+    private final ConcurrentHashMap<String, String> keys = new ConcurrentHashMap<>();
+
+    /**
+     * 値を登録する
+     * 同じ所有者の値が登録済みの場合は置き換える
+     *
+     * @param owner 値の所有者(「種別:ID」など、値ごとに一意な文字列)
+     * @param text 前方一致の対象の文字列
+     * @param value 値
+     */
+    public void put(String owner, String text, V value) {
+        keys.compute(owner, (k, oldKey) -> {
+            if (oldKey != null) {
+                entries.remove(oldKey);
+            }
+            String key = normalize(text) + SEPARATOR + owner;
+            entries.put(key, value);
+            return key;
+        });
+    }
+
+    /**
+     * 同じ所有者の値が登録されていない場合のみ値を登録する
+     *
+     * @param owner 値の所有者
+     * @param text 前方一致の対象の文字列
+     * @param value 値
+     */
+    public void putIfAbsent(String owner, String text, V value) {
+        keys.computeIfAbsent(owner, k -> {
+            String key = normalize(text) + SEPARATOR + owner;
+            entries.put(key, value);
+            return key;
+        });
+    }
+
+    /**
+     * 値を削除する
+     *
+     * @param owner 値の所有者
+     */
+    public void remove(String owner) {
+        keys.computeIfPresent(owner, (k, oldKey) -> {
+            entries.remove(oldKey);
+            return null;
+        });
+    }
+
+    /**
+     * 前方一致する値を文字列の辞書順に取得する
+     *
+     * @param prefix 前方一致させる文字列
+     * @param limit 最大件数
+     * @return 値のリスト
+     */
+    public List<V> find(String prefix, int limit) {
+        String from = normalize(prefix);
+        if (from.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<V> result = new ArrayList<>(limit);
+        for (V value : entries.subMap(from, true, from + Character.MAX_VALUE, false).values()) {
+            if (result.size() == limit) {
+                break;
+            }
+            result.add(value);
+        }
+        return result;
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    /**
+     * 入力の揺れを吸収するため、全角英数字を半角に揃え(NFKC)、英字を小文字に揃える
+     *
+     * @param text 文字列
+     * @return 正規化した文字列
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return Normalizer.normalize(text.strip(), Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.example.slshopping_ut.search;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+/**
+ * インデックスの検索結果(ID)からエンティティ・一覧表示用の行を取得する処理
+ */
+public class SearchResults {
+
+    /** IDを指定して取得する際に、1回のクエリで指定するIDの件数 */
+    private static final int FETCH_BATCH_SIZE = 1000;
+
+    private SearchResults() {
+    }
+
+    /**
+     * 指定したIDのエンティティを、IDの並び順のまま取得する
+     * IN句のパラメーター数が増えすぎないよう、一定件数ずつに分けて取得する
+     *
+     * @param repository リポジトリ
+     * @param ids IDのリスト
+     * @param idOf エンティティのIDを取得する関数
+     * @return エンティティのリスト
+     */
+    public static <T> List<T> findAllInOrder(JpaRepository<T, Long> repository, List<Long> ids,
+            Function<T, Long> idOf) {
+        return findAllInOrder(repository::findAllById, ids, idOf);
+    }
+
+    /**
+     * 指定したIDの行を、IDの並び順のまま取得する
+     * 一覧表示用の項目だけを取得するクエリなど、findAllById以外の取得処理に使用する
+     *
+     * @param finder IDのリストに一致する行を取得する関数
+     * @param ids IDのリスト
+     * @param idOf 行のIDを取得する関数
+     * @return 行のリスト
+     */
+    public static <T> List<T> findAllInOrder(Function<List<Long>, ? extends Iterable<T>> finder, List<Long> ids,
+            Function<T, Long> idOf) {
+        Map<Long, T> found = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += FETCH_BATCH_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + FETCH_BATCH_SIZE));
+            for (T row : finder.apply(chunk)) {
+                found.put(idOf.apply(row), row);
+            }
+        }
+
+        List<T> rows = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            // インデックスの更新とデータベースの削除の間に取得した場合、存在しないものは除外する
+            T row = found.get(id);
+            if (row != null) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 指定したIDのエンティティを、IDの昇順で取得する
+     *
+     * @param repository リポジトリ
+     * @param ids IDのリスト
+     * @param idOf エンティティのIDを取得する関数
+     * @return エンティティのリスト
+     */
+    public static <T> List<T> findAllInOrder(JpaRepository<T, Long> repository, PostingList ids,
+            Function<T, Long> idOf) {
+        List<Long> idList = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            idList.add(ids.get(i));
+        }
+        return findAllInOrder(repository, idList, idOf);
+    }
+
+}
@@ -0,0 +1,242 @@
+package com.example.slshopping_ut.search;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+
+import com.example.slshopping_ut.KeysetCursor;
+
+/**
+ * 一覧画面のキーワード検索(LIKE '%キーワード%')をメモリ上で行うインデックスの基底クラス
+ * 起動時にテーブルから構築し、以降は各サービスの登録・削除処理から差分更新する
+ * 構築が完了するまでは、検索はデータベースへのクエリで行う
+ * キーワードの%・_はワイルドカードではなく通常の文字として扱う(データベースへのクエリもエスケープして同じ結果にする)
+ *
+ * @param <T> 検索対象のエンティティ
+ */
+public abstract class SubstringSearchIndex<T> {
+
+    /** 構築時に1回で読み込む件数 */
+    private static final int BUILD_BATCH_SIZE = 1000;
+
+    /** ロガー */
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    protected final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final NgramIndex ngrams = new NgramIndex();
+
+    /** ID → 名前(名前順のページングに使用する) */
+    private final Map<Long, String> names = new HashMap<>();
+
+    /** 構築中に削除されたID(構築処理が古い内容を登録し直さないようにする) */
+    private final Set<Long> removedWhileBuilding = new HashSet<>();
+
+    /** 構築中に登録・更新されたID(構築処理が読み込み済みの古い内容で上書きしないようにする) */
+    private final Set<Long> putWhileBuilding = new HashSet<>();
+
+    private volatile boolean building;
+
+    private volatile boolean ready;
+
+    /**
+     * 起動完了後にインデックスを構築する
+     * 全件を一度に読み込まないよう、IDの昇順に一定件数ずつ読み込む
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long start = System.currentTimeMillis();
+        building = true;
+
+        long afterId = 0L;
+        int count = 0;
+        List<T> batch;
+        do {
+            batch = loadAfter(afterId, BUILD_BATCH_SIZE);
+            lock.writeLock().lock();
+            try {
+                for (T entity : batch) {
+                    Long id = idOf(entity);
+                    if (!removedWhileBuilding.contains(id) && !putWhileBuilding.contains(id)) {
+                        putEntity(entity);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (!batch.isEmpty()) {
+                afterId = idOf(batch.get(batch.size() - 1));
+                count += batch.size();
+            }
+        } while (batch.size() == BUILD_BATCH_SIZE);
+
+        lock.writeLock().lock();
+        try {
+            removedWhileBuilding.clear();
+            putWhileBuilding.clear();
+            building = false;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info(getClass().getSimpleName() + " built: " + count + " rows in "
+            + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * インデックスの構築が完了しているか
+     *
+     * @return 構築済みの場合はtrue
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * キーワードを部分文字列として含むIDを検索する
+     *
+     * @param keyword 検索キーワード
+     * @return 昇順のIDのリスト
+     */
+    public PostingList search(String keyword) {
+        lock.readLock().lock();
+        try {
+            return match(keyword);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * キーワードに一致するIDを、ページングの並び順に整列したカーソルのリストで返す
+     *
+     * @param keyword 検索キーワード
+     * @param sortByName 名前順の場合はtrue、ID順の場合はfalse
+     * @return 整列済みのカーソルのリスト
+     */
+    public List<KeysetCursor> search(String keyword, boolean sortByName) {
+        PostingList ids = search(keyword);
+        List<KeysetCursor> cursors = new ArrayList<>(ids.size());
+
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < ids.size(); i++) {
+                // 検索後に削除されたものは除外する
+                String name = names.get(ids.get(i));
+                if (name != null) {
+                    cursors.add(new KeysetCursor(ids.get(i), name));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (sortByName) {
+            cursors.sort(KeysetCursor.order(true));
+        }
+        return cursors;
+    }
+
+    /**
+     * 登録・更新する
+     *
+     * @param entity 登録するエンティティ
+     */
+    public void put(T entity) {
+        lock.writeLock().lock();
+        try {
+            putEntity(entity);
+            if (building) {
+                putWhileBuilding.add(idOf(entity));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 削除する
+     *
+     * @param id 削除するID
+     */
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            ngrams.remove(id);
+            names.remove(id);
+            removed(id);
+            if (building) {
+                removedWhileBuilding.add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * キーワードに一致するIDを取得する(読み取りロックを取得した状態で呼び出される)
+     *
+     * @param keyword 検索キーワード
+     * @return 昇順のIDのリスト
+     */
+    protected PostingList match(String keyword) {
+        return ngrams.search(keyword);
+    }
+
+    /**
+     * 登録後に追加の情報を保持する場合に実装する(書き込みロックを取得した状態で呼び出される)
+     *
+     * @param entity 登録したエンティティ
+     */
+    protected void indexed(T entity) {
+    }
+
+    /**
+     * 削除時・更新時に追加の情報を取り除く場合に実装する(書き込みロックを取得した状態で呼び出される)
+     *
+     * @param id 削除・更新するID
+     */
+    protected void removed(Long id) {
+    }
+
+    /**
+     * 指定したIDより後ろをIDの昇順で取得する(構築時に使用する)
+     *
+     * @param afterId 前回取得した末尾のID
+     * @param limit 取得件数
+     * @return エンティティのリスト
+     */
+    protected abstract List<T> loadAfter(long afterId, int limit);
+
+    protected abstract Long idOf(T entity);
+
+    protected abstract String nameOf(T entity);
+
+    /**
+     * 検索対象の文字列を取得する
+     * いずれかの文字列にキーワードを含む場合に一致したものとして扱う
+     *
+     * @param entity エンティティ
+     * @return 検索対象の文字列
+     */
+    protected abstract String[] textsOf(T entity);
+
+    private void putEntity(T entity) {
+        Long id = idOf(entity);
+        removed(id);
+        ngrams.put(id, textsOf(entity));
+        names.put(id, nameOf(entity));
+        indexed(entity);
+    }
+
+}
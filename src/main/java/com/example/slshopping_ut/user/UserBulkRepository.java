@@ -0,0 +1,134 @@
+package com.example.slshopping_ut.user;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.example.slshopping_ut.PooledSequenceAllocator;
+
+/**
+ * 管理者情報の一括登録・出力
+ * 重複チェックと登録を1件ずつ行わず、INSERT ... ON CONFLICTをJDBCのバッチでまとめて送信する
+ */
+@Repository
+public class UserBulkRepository {
+
+    /**
+     * 登録済みのメールアドレスは管理者名・有効状態を更新する
+     * パスワードが空文字の場合は登録済みのパスワードを変更しない(NOT NULL制約は競合の判定前に確認されるため、nullではなく空文字を渡す)
+     */
+    private static final String UPSERT = "INSERT INTO users (id, email, password, name, enabled) VALUES (?, ?, ?, ?, ?) "
+            + "ON CONFLICT (email) DO UPDATE SET name = EXCLUDED.name, enabled = EXCLUDED.enabled, "
+            + "password = CASE WHEN EXCLUDED.password = '' THEN users.password ELSE EXCLUDED.password END";
+
+    /** 出力時に1回で取得する件数 */
+    private static final int EXPORT_FETCH_SIZE = 500;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PooledSequenceAllocator sequenceAllocator;
+
+    /**
+     * 管理者情報を登録・更新し、ロールが指定された行はロールを置き換える
+     * トランザクション内で呼び出すこと
+     *
+     * @param rows 登録する行のリスト(メールアドレスが重複しないこと)
+     */
+    public void upsert(List<UserImportRow> rows) {
+        List<Long> ids = sequenceAllocator.allocate("users_seq", rows.size());
+        List<Object[]> args = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            UserImportRow row = rows.get(i);
+            String password = row.getEncodedPassword() != null ? row.getEncodedPassword() : "";
+            args.add(new Object[] { ids.get(i), row.getEmail(), password, row.getName(), row.isEnabled() });
+        }
+        jdbcTemplate.batchUpdate(UPSERT, args);
+
+        // 更新した行はIDが払い出したものと異なるため、メールアドレスから取得し直す
+        List<UserImportRow> withRoles = rows.stream().filter(row -> !row.getRoleIds().isEmpty()).toList();
+        if (withRoles.isEmpty()) {
+            return;
+        }
+        Map<String, Long> idsByEmail = findIds(withRoles.stream().map(UserImportRow::getEmail).toList());
+        List<Object[]> deletes = new ArrayList<>(withRoles.size());
+        List<Object[]> inserts = new ArrayList<>();
+        for (UserImportRow row : withRoles) {
+            Long userId = idsByEmail.get(row.getEmail());
+            deletes.add(new Object[] { userId });
+            for (Long roleId : row.getRoleIds()) {
+                inserts.add(new Object[] { userId, roleId });
+            }
+        }
+        jdbcTemplate.batchUpdate("DELETE FROM users_roles WHERE user_id = ?", deletes);
+        jdbcTemplate.batchUpdate("INSERT INTO users_roles (user_id, role_id) VALUES (?, ?)", inserts);
+    }
+
+    /**
+     * メールアドレスのリストに一致する管理者IDを取得する
+     *
+     * @param emails メールアドレスのリスト
+     * @return メールアドレス → 管理者ID
+     */
+    public Map<String, Long> findIds(Collection<String> emails) {
+        Map<String, Long> ids = new HashMap<>();
+        if (emails.isEmpty()) {
+            return ids;
+        }
+        jdbcTemplate.query("SELECT id, email FROM users WHERE email = ANY(?)",
+            rs -> {
+                ids.put(rs.getString("email"), rs.getLong("id"));
+            }, (Object) emails.toArray(new String[0]));
+        return ids;
+    }
+
+    /**
+     * 全管理者をIDの昇順に1件ずつ処理する
+     * 一覧をリストにまとめず、データベースのカーソルから一定件数ずつ取得する(トランザクション内で呼び出すこと)
+     *
+     * @param writer 1件ごとの処理
+     * @throws IOException
+     */
+    public void forEachExportRow(ExportRowWriter writer) throws IOException {
+        String sql = "SELECT u.id, u.email, u.name, u.enabled, "
+                + "(SELECT string_agg(r.name, '|' ORDER BY r.id) FROM users_roles ur "
+                + "JOIN roles r ON r.id = ur.role_id WHERE ur.user_id = u.id) AS roles "
+                + "FROM users u ORDER BY u.id";
+        try {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(sql);
+                statement.setFetchSize(EXPORT_FETCH_SIZE);
+                return statement;
+            }, rs -> {
+                try {
+                    writer.write(rs.getLong("id"), rs.getString("email"), rs.getString("name"),
+                        rs.getBoolean("enabled"), rs.getString("roles"));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 出力する管理者1件分の処理
+     */
+    @FunctionalInterface
+    public interface ExportRowWriter {
+
+        void write(long id, String email, String name, boolean enabled, String roles) throws IOException;
+    }
+
+}
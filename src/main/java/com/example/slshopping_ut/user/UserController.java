@@ -1,9 +1,12 @@
 package com.example.slshopping_ut.user;
 
+import java.io.IOException;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.crossstore.ChangeSetPersister.NotFoundException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -14,12 +17,18 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import com.example.slshopping_ut.DuplicateException;
+import com.example.slshopping_ut.KeysetPage;
+import com.example.slshopping_ut.KeysetRequest;
+import com.example.slshopping_ut.csv.CsvImportResult;
 import com.example.slshopping_ut.entity.Role;
 import com.example.slshopping_ut.entity.User;
 import com.example.slshopping_ut.security.SLShopUserDetails;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 
 @Controller
@@ -29,6 +38,10 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    /** 保存前に重複チェックを行うか(重複は保存時にデータベースの一意制約で検出するため、通常は行わない) */
+    @Value("${slshopping.unique-precheck:false}")
+    private boolean uniquePrecheck;
+
     /**
      * ロールリストをmodelに追加する処理
      * 複数のハンドラメソッドでlistRolesをmodelに追加する必要があるため、共通化する
@@ -43,14 +56,22 @@ public class UserController {
     /**
      * 管理者一覧画面表示
      *
+     * @param keyword 検索キーワード
+     * @param sort 並び順
+     * @param after 前のページの末尾のカーソル
+     * @param before 次のページの先頭のカーソル
+     * @param size 1ページあたりの表示件数
      * @param model
      * @return 管理者一覧画面
      */
     @GetMapping
-    public String listUsers(@RequestParam(required = false) String keyword, Model model) {
-        // 全管理者情報の取得
-        List<User> listUsers = userService.listAll(keyword);
-        model.addAttribute("listUsers", listUsers);
+    public String listUsers(@RequestParam(required = false) String keyword,
+        @RequestParam(required = false) String sort, @RequestParam(required = false) String after,
+        @RequestParam(required = false) String before, @RequestParam(required = false) Integer size, Model model) {
+        // 1ページ分の管理者情報の取得
+        KeysetPage<UserListRow> page = userService.listPage(keyword, KeysetRequest.of(sort, after, before, size));
+        model.addAttribute("listUsers", page.getContent());
+        model.addAttribute("page", page);
         model.addAttribute("keyword", keyword);
         return "users/users";
     }
@@ -87,19 +108,70 @@ public class UserController {
             return "users/user_form";
         }
 
-        // 重複チェック
-        if (!userService.checkUnique(user)) {
+        // 重複チェック(事前チェックを有効にした場合のみ)
+        if (uniquePrecheck && !userService.checkUnique(user)) {
             model.addAttribute("error_message", "重複しています");
             return "users/user_form";
         }
 
-        // 管理者情報の登録
-        userService.save(user);
+        // 管理者情報の登録(重複はデータベースの一意制約で検出する)
+        try {
+            userService.save(user);
+        } catch (DuplicateException e) {
+            model.addAttribute("error_message", "重複しています");
+            return "users/user_form";
+        }
         // 登録成功のメッセージを格納
         ra.addFlashAttribute("success_message", "登録に成功しました");
         return "redirect:/users";
     }
 
+    /**
+     * 管理者一括登録画面表示
+     *
+     * @return 管理者一括登録画面
+     */
+    @GetMapping("/import")
+    public String importForm() {
+        return "users/user_import";
+    }
+
+    /**
+     * 管理者一括登録
+     * CSVファイルの管理者を登録し、登録件数と行ごとのエラーを表示する
+     *
+     * @param file CSVファイル
+     * @param model
+     * @return 管理者一括登録画面
+     * @throws IOException
+     */
+    @PostMapping("/import")
+    public String importUsers(MultipartFile file, Model model) throws IOException {
+        // ファイルのチェック
+        if (file == null || file.isEmpty()) {
+            model.addAttribute("file_error_message", "CSVファイルを選択してください");
+            return "users/user_import";
+        }
+
+        CsvImportResult result = userService.importCsv(file.getInputStream());
+        model.addAttribute("result", result);
+        return "users/user_import";
+    }
+
+    /**
+     * 管理者情報の出力
+     * 全件をCSVでレスポンスに直接書き込む
+     *
+     * @param response
+     * @throws IOException
+     */
+    @GetMapping("/export")
+    public void exportUsers(HttpServletResponse response) throws IOException {
+        response.setContentType("text/csv;charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users.csv\"");
+        userService.exportCsv(response.getOutputStream());
+    }
+
     /**
      * 管理者詳細画面表示
      *
@@ -160,14 +232,19 @@ public class UserController {
             return "users/user_edit";
         }
 
-        // 重複チェック
-        if (!userService.checkUnique(user)) {
+        // 重複チェック(事前チェックを有効にした場合のみ)
+        if (uniquePrecheck && !userService.checkUnique(user)) {
             model.addAttribute("error_message", "重複しています");
             return "users/user_edit";
         }
 
-        // 管理者情報の更新
-        userService.save(user);
+        // 管理者情報の更新(重複はデータベースの一意制約で検出する)
+        try {
+            userService.save(user);
+        } catch (DuplicateException e) {
+            model.addAttribute("error_message", "重複しています");
+            return "users/user_edit";
+        }
         // 更新成功のメッセージを格納
         ra.addFlashAttribute("success_message", "更新に成功しました");
         return "redirect:/users";
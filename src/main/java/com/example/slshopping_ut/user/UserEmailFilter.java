@@ -0,0 +1,42 @@
+package com.example.slshopping_ut.user;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import com.example.slshopping_ut.entity.User;
+import com.example.slshopping_ut.search.ExistenceFilter;
+
+/**
+ * 管理者のメールアドレスが登録済みかを判定するフィルター
+ * 他のノードやSQLで登録された値を含まないことがあるため、ログイン時の管理者の検索には使用しない
+ */
+@Component
+public class UserEmailFilter extends ExistenceFilter<User> {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Override
+    protected long countRows() {
+        return userRepository.count();
+    }
+
+    @Override
+    protected List<User> loadAfter(long afterId, int limit) {
+        return userRepository.searchPageAfter("", afterId, PageRequest.of(0, limit));
+    }
+
+    @Override
+    protected Long idOf(User user) {
+        return user.getId();
+    }
+
+    @Override
+    protected String keyOf(User user) {
+        return user.getEmail();
+    }
+
+}
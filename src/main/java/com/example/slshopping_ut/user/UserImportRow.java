@@ -0,0 +1,70 @@
+package com.example.slshopping_ut.user;
+
+import java.util.List;
+
+/**
+ * 管理者の一括登録の1行分の情報
+ */
+public class UserImportRow {
+
+    /** CSVファイルの行番号 */
+    private final long line;
+
+    private final String email;
+
+    private final String name;
+
+    private final boolean enabled;
+
+    /** 入力されたパスワード(空の場合は登録済みのパスワードを変更しない) */
+    private final String rawPassword;
+
+    /** ロールID(空の場合は登録済みのロールを変更しない) */
+    private final List<Long> roleIds;
+
+    /** ハッシュ化したパスワード */
+    private String encodedPassword;
+
+    public UserImportRow(long line, String email, String name, boolean enabled, String rawPassword,
+            List<Long> roleIds) {
+        this.line = line;
+        this.email = email;
+        this.name = name;
+        this.enabled = enabled;
+        this.rawPassword = rawPassword;
+        this.roleIds = roleIds;
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getRawPassword() {
+        return rawPassword;
+    }
+
+    public List<Long> getRoleIds() {
+        return roleIds;
+    }
+
+    public String getEncodedPassword() {
+        return encodedPassword;
+    }
+
+    public void setEncodedPassword(String encodedPassword) {
+        this.encodedPassword = encodedPassword;
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.example.slshopping_ut.user;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 管理者一覧の1行分の表示項目
+ * 一覧に表示する列だけをクエリで取得し、パスワードなどを含むエンティティを永続化コンテキストに読み込まないようにする
+ */
+public class UserListRow {
+
+    private final Long id;
+
+    private final String email;
+
+    private final String name;
+
+    private final boolean enabled;
+
+    /** ロール名のリスト(一覧の取得後に、ページ内の管理者分をまとめて設定する) */
+    private final List<String> roles = new ArrayList<>();
+
+    public UserListRow(Long id, String email, String name, boolean enabled) {
+        this.id = id;
+        this.email = email;
+        this.name = name;
+        this.enabled = enabled;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public List<String> getRoles() {
+        return roles;
+    }
+
+    public void addRole(String role) {
+        roles.add(role);
+    }
+
+}
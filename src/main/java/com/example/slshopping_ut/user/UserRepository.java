@@ -1,22 +1,31 @@
 package com.example.slshopping_ut.user;
 
+import java.util.Collection;
 import java.util.List;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import com.example.slshopping_ut.entity.User;
 
+import jakarta.persistence.QueryHint;
+
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
 
     /**
      * メールアドレスに紐づく管理者情報取得クエリ
+     * 2次キャッシュが有効な場合は、検索結果をクエリキャッシュに保持する
      *
      * @param email メールアドレス
      * @return 管理者情報
      */
+    @QueryHints({ @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "user.byEmail") })
     public User findByEmail(String email);
 
     /**
@@ -25,7 +34,102 @@ public interface UserRepository extends JpaRepository<User, Long> {
      * @param keyword 検索キーワード
      * @return 管理者情報のリスト
      */
-    @Query("SELECT u FROM User u WHERE CONCAT(u.id, ' ', u.email, ' ', u.name, ' ') LIKE %?1%")
+    @Query("SELECT u FROM User u WHERE CONCAT(u.id, ' ', u.email, ' ', u.name, ' ') LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()}")
     public List<User> search(String keyword);
 
+    /**
+     * 検索キーワードに一致し、指定したIDより後ろの管理者情報をIDの昇順で取得するクエリ
+     * 検索キーワードに空文字を指定した場合は全件が対象になる
+     * 検索インデックスの構築など、エンティティの項目が必要な場合に使用する(一覧表示にはfindListRowsAfterを使用する)
+     *
+     * @param keyword 検索キーワード
+     * @param afterId 前のページの末尾の管理者ID
+     * @param pageable 取得件数
+     * @return 管理者情報のリスト
+     */
+    @Query("SELECT u FROM User u WHERE CONCAT(u.id, ' ', u.email, ' ', u.name, ' ') LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "AND u.id > ?2 ORDER BY u.id ASC")
+    public List<User> searchPageAfter(String keyword, Long afterId, Pageable pageable);
+
+    /**
+     * 検索キーワードに一致し、指定したIDより後ろの管理者一覧の行をIDの昇順で取得するクエリ
+     * 検索キーワードに空文字を指定した場合は全件が対象になる
+     *
+     * @param keyword 検索キーワード
+     * @param afterId 前のページの末尾の管理者ID
+     * @param pageable 取得件数
+     * @return 管理者一覧の行のリスト
+     */
+    @Query("SELECT new com.example.slshopping_ut.user.UserListRow(u.id, u.email, u.name, u.enabled) "
+            + "FROM User u WHERE CONCAT(u.id, ' ', u.email, ' ', u.name, ' ') LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "AND u.id > ?2 ORDER BY u.id ASC")
+    public List<UserListRow> findListRowsAfter(String keyword, Long afterId, Pageable pageable);
+
+    /**
+     * 検索キーワードに一致し、指定したIDより前の管理者一覧の行をIDの降順で取得するクエリ
+     * 検索キーワードに空文字を指定した場合は全件が対象になる
+     *
+     * @param keyword 検索キーワード
+     * @param beforeId 次のページの先頭の管理者ID
+     * @param pageable 取得件数
+     * @return 管理者一覧の行のリスト
+     */
+    @Query("SELECT new com.example.slshopping_ut.user.UserListRow(u.id, u.email, u.name, u.enabled) "
+            + "FROM User u WHERE CONCAT(u.id, ' ', u.email, ' ', u.name, ' ') LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "AND u.id < ?2 ORDER BY u.id DESC")
+    public List<UserListRow> findListRowsBefore(String keyword, Long beforeId, Pageable pageable);
+
+    /**
+     * 検索キーワードに一致し、指定した(名前, ID)より後ろの管理者一覧の行を名前・IDの昇順で取得するクエリ
+     * 検索キーワードに空文字を指定した場合は全件が対象になる
+     *
+     * @param keyword 検索キーワード
+     * @param afterName 前のページの末尾の管理者名
+     * @param afterId 前のページの末尾の管理者ID
+     * @param pageable 取得件数
+     * @return 管理者一覧の行のリスト
+     */
+    @Query("SELECT new com.example.slshopping_ut.user.UserListRow(u.id, u.email, u.name, u.enabled) "
+            + "FROM User u WHERE CONCAT(u.id, ' ', u.email, ' ', u.name, ' ') LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "AND (u.name > ?2 OR (u.name = ?2 AND u.id > ?3)) "
+            + "ORDER BY u.name ASC, u.id ASC")
+    public List<UserListRow> findListRowsAfterName(String keyword, String afterName, Long afterId, Pageable pageable);
+
+    /**
+     * 検索キーワードに一致し、指定した(名前, ID)より前の管理者一覧の行を名前・IDの降順で取得するクエリ
+     * 検索キーワードに空文字を指定した場合は全件が対象になる
+     *
+     * @param keyword 検索キーワード
+     * @param beforeName 次のページの先頭の管理者名
+     * @param beforeId 次のページの先頭の管理者ID
+     * @param pageable 取得件数
+     * @return 管理者一覧の行のリスト
+     */
+    @Query("SELECT new com.example.slshopping_ut.user.UserListRow(u.id, u.email, u.name, u.enabled) "
+            + "FROM User u WHERE CONCAT(u.id, ' ', u.email, ' ', u.name, ' ') LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()} "
+            + "AND (u.name < ?2 OR (u.name = ?2 AND u.id < ?3)) "
+            + "ORDER BY u.name DESC, u.id DESC")
+    public List<UserListRow> findListRowsBeforeName(String keyword, String beforeName, Long beforeId, Pageable pageable);
+
+    /**
+     * IDのリストに紐づく管理者一覧の行を取得するクエリ
+     * 検索インデックスで一致した管理者の表示項目だけを取得する
+     *
+     * @param ids 管理者IDのリスト
+     * @return 管理者一覧の行のリスト
+     */
+    @Query("SELECT new com.example.slshopping_ut.user.UserListRow(u.id, u.email, u.name, u.enabled) "
+            + "FROM User u WHERE u.id IN ?1")
+    public List<UserListRow> findListRows(Collection<Long> ids);
+
+    /**
+     * IDのリストに紐づく管理者のロール名を取得するクエリ
+     * 一覧の1ページ分の管理者のロールを1回のクエリでまとめて取得するために使用する
+     *
+     * @param ids 管理者IDのリスト
+     * @return 管理者ID・ロール名の配列のリスト
+     */
+    @Query("SELECT u.id, r.name FROM User u JOIN u.roles r WHERE u.id IN ?1 ORDER BY r.id ASC")
+    public List<Object[]> findRoleNames(Collection<Long> ids);
+
 }
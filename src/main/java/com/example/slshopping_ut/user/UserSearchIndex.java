@@ -0,0 +1,42 @@
+package com.example.slshopping_ut.user;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import com.example.slshopping_ut.entity.User;
+import com.example.slshopping_ut.search.SubstringSearchIndex;
+
+/**
+ * 管理者のキーワード検索用のインデックス
+ * UserRepository.searchと同じく、ID・メールアドレス・管理者名を空白で連結した文字列を部分一致の対象にする
+ */
+@Component
+public class UserSearchIndex extends SubstringSearchIndex<User> {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Override
+    protected List<User> loadAfter(long afterId, int limit) {
+        return userRepository.searchPageAfter("", afterId, PageRequest.of(0, limit));
+    }
+
+    @Override
+    protected Long idOf(User user) {
+        return user.getId();
+    }
+
+    @Override
+    protected String nameOf(User user) {
+        return user.getName();
+    }
+
+    @Override
+    protected String[] textsOf(User user) {
+        return new String[] { user.getId() + " " + user.getEmail() + " " + user.getName() + " " };
+    }
+
+}
@@ -1,29 +1,109 @@
 package com.example.slshopping_ut.user;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
 
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.crossstore.ChangeSetPersister.NotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.example.slshopping_ut.DuplicateException;
+import com.example.slshopping_ut.KeysetCursor;
+import com.example.slshopping_ut.KeysetPage;
+import com.example.slshopping_ut.KeysetRequest;
+import com.example.slshopping_ut.csv.CsvImportResult;
+import com.example.slshopping_ut.csv.CsvReader;
+import com.example.slshopping_ut.csv.CsvWriter;
 import com.example.slshopping_ut.entity.Role;
 import com.example.slshopping_ut.entity.User;
+import com.example.slshopping_ut.search.SearchResults;
 
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
 import jakarta.transaction.Transactional;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 
 @Service
 public class UserService {
 
+    /** 一括登録で1回のトランザクションで登録する件数 */
+    public static final int IMPORT_CHUNK_SIZE = 1000;
+
+    /** 一括登録のCSVファイルのロールの区切り文字 */
+    static final String ROLE_SEPARATOR = "|";
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserService.class);
+
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserSearchIndex userSearchIndex;
+
+    @Autowired
+    private UserEmailFilter userEmailFilter;
+
     @Autowired
     private RoleRepository roleRepository;
 
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private UserBulkRepository userBulkRepository;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * 一括登録のパスワードのハッシュ化用のスレッド
+     * ハッシュ化は1件ごとに意図的に時間のかかる処理のため、CPUのコア数分だけ並列に行う
+     * 一度に投入するのは1回の登録件数分までとし、待ち行列が際限なく伸びないようにする
+     * CPUを使い続ける処理のため、仮想スレッドでの実行時(virtualプロファイル)もプラットフォームスレッドで行う
+     */
+    private final ExecutorService passwordHashPool =
+        Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+    @PreDestroy
+    void shutdown() {
+        passwordHashPool.shutdown();
+    }
+
     /**
      * 管理者情報検索処理
      *
@@ -33,6 +113,10 @@ public class UserService {
     public List<User> listAll(String keyword) {
         // 検索キーワードがあった場合
         if (keyword != null && !keyword.isEmpty()) {
+            // インデックスの構築が完了している場合は、一致した管理者IDだけをデータベースから取得する
+            if (userSearchIndex.isReady()) {
+                return SearchResults.findAllInOrder(userRepository, userSearchIndex.search(keyword), User::getId);
+            }
             return userRepository.search(keyword);
         }
         // それ以外
@@ -41,6 +125,22 @@ public class UserService {
         }
     }
 
+    /**
+     * 管理者情報のページ取得処理
+     * ページング条件の並び順(ID順・名前順)に従い、カーソルの前後1ページ分を取得する
+     * 一覧に表示する項目だけを取得し、エンティティは読み込まない
+     *
+     * @param keyword 検索キーワード
+     * @param request ページング条件
+     * @return 管理者一覧の行のページ
+     */
+    public KeysetPage<UserListRow> listPage(String keyword, KeysetRequest request) {
+        KeysetPage<UserListRow> page = fetchPage(keyword, request);
+        // ロールは1ページ分の管理者についてまとめて取得する
+        setRoles(page.getContent());
+        return page;
+    }
+
     /**
      * ロール情報全件取得処理
      *
@@ -64,12 +164,17 @@ public class UserService {
 
     /**
      * 管理者情報登録処理
+     * メールアドレスの重複はデータベースの一意制約で検出する
      *
      * @param user 保存したい管理者情報
      * @return 保存した管理者情報
+     * @throws DuplicateException メールアドレスが重複している場合
      */
-    @Transactional
-    public User save(User user) {
+    @Transactional(rollbackOn = DuplicateException.class)
+    public User save(User user) throws DuplicateException {
+        boolean isCreatingNew = (user.getId() == null || user.getId() == 0);
+        // 重複で登録画面を再表示する際に、ハッシュ化したパスワードを表示しないよう入力値を残しておく
+        String rawPassword = user.getPassword();
         // 管理者情報を更新する場合
         if (user.getId() != null) {
             // 更新対象の管理者情報を取得
@@ -92,18 +197,41 @@ public class UserService {
             // ハッシュ化したパスワードを格納
             user.setPassword(encodedPassword);
         }
-        return userRepository.save(user);
+        User savedUser;
+        try {
+            // 一意制約違反をこの場で検出するため、INSERT・UPDATEを即時に送信する
+            savedUser = userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            if (!DuplicateException.isUniqueViolation(e, User.EMAIL_CONSTRAINT)) {
+                throw e;
+            }
+            // 登録画面を再表示した際に更新扱いにならないよう、払い出されたIDを戻す
+            if (isCreatingNew) {
+                user.setId(null);
+            }
+            user.setPassword(rawPassword);
+            throw new DuplicateException(e);
+        }
+        userSearchIndex.put(savedUser);
+        userEmailFilter.put(savedUser.getEmail());
+        return savedUser;
     }
 
     /**
      * 管理者情報のメールアドレス重複チェック
+     * 登録時の重複はsaveメソッドで検出するため、保存前に確認が必要な場合にのみ使用する
      *
      * @param name 重複確認したい管理者情報
      * @return true:重複なし false:重複あり
      */
     public boolean checkUnique(User user) {
+        // 登録されていないことが確実なメールアドレスは、データベースに問い合わせない
+        if (!userEmailFilter.mightExist(user.getEmail())) {
+            return true;
+        }
         boolean isCreatingNew = (user.getId() == null || user.getId() == 0);
         User userByEmail = userRepository.findByEmail(user.getEmail());
+        userEmailFilter.recordLookup(userByEmail != null);
 
         if (isCreatingNew) {
             if (userByEmail != null) {
@@ -127,6 +255,83 @@ public class UserService {
         // IDに紐づく管理者情報が存在するか確認するため、getメソッドを呼び出す
         User user = get(id);
         userRepository.deleteById(user.getId());
+        userSearchIndex.remove(user.getId());
+    }
+
+    /**
+     * 管理者情報の一括登録処理
+     * CSVファイル(1行目はヘッダー行とし、email, name, password, enabled, roles列を記載する)の管理者を登録・更新する
+     * メールアドレスが登録済みの場合は更新し、password・rolesが空の場合は登録済みの内容を変更しない
+     * ロールはロール名を「|」で区切って指定する
+     *
+     * @param in CSVファイル(UTF-8)
+     * @return 登録結果
+     * @throws IOException
+     */
+    public CsvImportResult importCsv(InputStream in) throws IOException {
+        long start = System.currentTimeMillis();
+        CsvImportResult result = new CsvImportResult();
+
+        try (CsvReader reader = new CsvReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            Map<String, Integer> columns = reader.readHeader();
+            if (columns == null || !columns.containsKey("email") || !columns.containsKey("name")) {
+                result.addError(1, "必須の列がありません: email, name");
+                return result;
+            }
+            Map<String, Long> roleIds = new HashMap<>();
+            for (Role role : roleRepository.findAll()) {
+                roleIds.put(role.getName(), role.getId());
+            }
+
+            // メールアドレス → 行(ファイル内で重複したメールアドレスは後の行で登録する)
+            Map<String, UserImportRow> chunk = new LinkedHashMap<>();
+            List<String> record;
+            while ((record = reader.readRecord()) != null) {
+                if (CsvReader.isBlank(record)) {
+                    continue;
+                }
+                result.addRows(1);
+                UserImportRow row = parseRow(reader.getLineNumber(), record, columns, roleIds, result);
+                if (row == null) {
+                    continue;
+                }
+                chunk.remove(row.getEmail());
+                chunk.put(row.getEmail(), row);
+                if (chunk.size() == IMPORT_CHUNK_SIZE) {
+                    upsertChunk(new ArrayList<>(chunk.values()), result);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                upsertChunk(new ArrayList<>(chunk.values()), result);
+            }
+        } finally {
+            result.setElapsedMillis(System.currentTimeMillis() - start);
+            // JDBCで直接登録したため、2次キャッシュを破棄する
+            evictSecondLevelCache();
+        }
+
+        LOGGER.info("User import: " + result.getImportedRows() + "/" + result.getTotalRows() + " rows in "
+            + result.getElapsedMillis() + " ms (" + result.getRowsPerSecond() + " rows/s)");
+        return result;
+    }
+
+    /**
+     * 管理者情報の出力処理
+     * 全件をCSV(UTF-8、BOM付き)で出力する(パスワードを除き、一括登録の形式と同じ)
+     *
+     * @param out 出力先
+     * @throws IOException
+     */
+    @Transactional
+    public void exportCsv(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write('\uFEFF');
+        CsvWriter csv = new CsvWriter(writer);
+        csv.writeRecord("id", "email", "name", "enabled", "roles");
+        userBulkRepository.forEachExportRow((id, email, name, enabled, roles) ->
+            csv.writeRecord(id, email, name, enabled, roles));
+        csv.flush();
     }
 
     /**
@@ -138,4 +343,199 @@ public class UserService {
         return passwordEncoder.encode(rawPassword);
     }
 
+    /**
+     * 1ページ分の管理者一覧の行を取得する
+     *
+     * @param keyword 検索キーワード
+     * @param request ページング条件
+     * @return 管理者一覧の行のページ
+     */
+    private KeysetPage<UserListRow> fetchPage(String keyword, KeysetRequest request) {
+        // 検索キーワードがあり、インデックスの構築が完了している場合は、インデックスの検索結果をページングする
+        if (keyword != null && !keyword.isEmpty() && userSearchIndex.isReady()) {
+            return KeysetPage.fetchSorted(request, userSearchIndex.search(keyword, request.isSortedByName()),
+                ids -> SearchResults.findAllInOrder(userRepository::findListRows, ids, UserListRow::getId),
+                row -> new KeysetCursor(row.getId(), row.getName()));
+        }
+
+        // 検索キーワードがない場合は空文字を渡して全件を対象にする
+        String word = keyword != null ? keyword : "";
+
+        if (request.isSortedByName()) {
+            return KeysetPage.fetch(request,
+                (cursor, limit) -> userRepository.findListRowsAfterName(word, cursor.getKey(), cursor.getId(), limit),
+                (cursor, limit) -> userRepository.findListRowsBeforeName(word, cursor.getKey(), cursor.getId(), limit),
+                row -> new KeysetCursor(row.getId(), row.getName()));
+        }
+        return KeysetPage.fetch(request,
+            (cursor, limit) -> userRepository.findListRowsAfter(word, cursor.getId(), limit),
+            (cursor, limit) -> userRepository.findListRowsBefore(word, cursor.getId(), limit),
+            row -> new KeysetCursor(row.getId(), row.getName()));
+    }
+
+    /**
+     * 管理者一覧の行にロール名を設定する
+     *
+     * @param rows 管理者一覧の行のリスト
+     */
+    private void setRoles(List<UserListRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        Map<Long, UserListRow> rowsById = new HashMap<>();
+        for (UserListRow row : rows) {
+            rowsById.put(row.getId(), row);
+        }
+        for (Object[] role : userRepository.findRoleNames(rowsById.keySet())) {
+            rowsById.get((Long) role[0]).addRole((String) role[1]);
+        }
+    }
+
+    /**
+     * CSVファイルの行を変換し、入力チェックを行う
+     *
+     * @param line 行番号
+     * @param record 行の項目
+     * @param columns 列名 → 列の位置
+     * @param roleIds ロール名 → ロールID
+     * @param result エラーの格納先
+     * @return 変換した行(エラーの場合はnull)
+     */
+    private UserImportRow parseRow(long line, List<String> record, Map<String, Integer> columns,
+        Map<String, Long> roleIds, CsvImportResult result) {
+        List<String> errors = new ArrayList<>();
+        String email = value(record, columns, "email");
+        String name = value(record, columns, "name");
+        String password = value(record, columns, "password");
+        validate("email", email, errors);
+        validate("name", name, errors);
+        if (!password.isEmpty()) {
+            validate("password", password, errors);
+        }
+
+        String enabled = value(record, columns, "enabled");
+        if (!enabled.isEmpty() && !enabled.equalsIgnoreCase("true") && !enabled.equalsIgnoreCase("false")) {
+            errors.add("有効状態はtrueまたはfalseで入力してください");
+        }
+
+        List<Long> roles = new ArrayList<>();
+        String roleNames = value(record, columns, "roles");
+        if (!roleNames.isEmpty()) {
+            for (String roleName : roleNames.split(Pattern.quote(ROLE_SEPARATOR))) {
+                Long roleId = roleIds.get(roleName.trim());
+                if (roleId == null) {
+                    errors.add("ロール「" + roleName.trim() + "」は登録されていません");
+                } else if (!roles.contains(roleId)) {
+                    roles.add(roleId);
+                }
+            }
+        }
+
+        if (!errors.isEmpty()) {
+            result.addError(line, String.join("、", errors));
+            return null;
+        }
+        // 有効状態の指定がない場合は有効にする
+        return new UserImportRow(line, email, name, !enabled.equalsIgnoreCase("false"), password, roles);
+    }
+
+    private String value(List<String> record, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        return index != null && index < record.size() ? record.get(index).trim() : "";
+    }
+
+    private void validate(String property, String value, List<String> errors) {
+        for (ConstraintViolation<User> violation : validator.validateValue(User.class, property, value)) {
+            errors.add(violation.getMessage());
+        }
+    }
+
+    /**
+     * 一定件数の管理者を1回のトランザクションで登録・更新し、検索インデックスに反映する
+     * 新規の管理者はパスワード・ロールが必須のため、登録済みのメールアドレスをまとめて確認する
+     *
+     * @param rows 登録する行のリスト
+     * @param result 登録結果の格納先
+     */
+    private void upsertChunk(List<UserImportRow> rows, CsvImportResult result) {
+        // 登録されていないことが確実なメールアドレスは、データベースに問い合わせない
+        List<String> candidates = rows.stream().map(UserImportRow::getEmail)
+            .filter(userEmailFilter::mightExist).toList();
+        Set<String> existing = candidates.isEmpty() ? Set.of() : userBulkRepository.findIds(candidates).keySet();
+        for (String email : candidates) {
+            userEmailFilter.recordLookup(existing.contains(email));
+        }
+        List<UserImportRow> valid = new ArrayList<>(rows.size());
+        for (UserImportRow row : rows) {
+            if (!existing.contains(row.getEmail()) && row.getRawPassword().isEmpty()) {
+                result.addError(row.getLine(), "新規の管理者はパスワードを入力してください");
+            } else if (!existing.contains(row.getEmail()) && row.getRoleIds().isEmpty()) {
+                result.addError(row.getLine(), "新規の管理者はロールを入力してください");
+            } else {
+                valid.add(row);
+            }
+        }
+        if (valid.isEmpty()) {
+            return;
+        }
+
+        encodePasswords(valid);
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> userBulkRepository.upsert(valid));
+        } catch (DataAccessException e) {
+            LOGGER.warn("User import chunk failed", e);
+            for (UserImportRow row : valid) {
+                result.addError(row.getLine(), "登録に失敗しました");
+            }
+            return;
+        }
+        result.addImported(valid.size());
+
+        // 検索インデックスにはID・メールアドレス・管理者名のみ使用するため、エンティティは読み込まない
+        Map<String, Long> ids = userBulkRepository.findIds(valid.stream().map(UserImportRow::getEmail).toList());
+        for (UserImportRow row : valid) {
+            userEmailFilter.put(row.getEmail());
+            userSearchIndex.put(new User(ids.get(row.getEmail()), row.getEmail(), null, row.getName(),
+                row.isEnabled(), new HashSet<>()));
+        }
+    }
+
+    /**
+     * パスワードが入力された行のパスワードを並列にハッシュ化する
+     *
+     * @param rows 行のリスト
+     */
+    private void encodePasswords(List<UserImportRow> rows) {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (UserImportRow row : rows) {
+            if (!row.getRawPassword().isEmpty()) {
+                tasks.add(() -> {
+                    row.setEncodedPassword(encodePassword(row.getRawPassword()));
+                    return null;
+                });
+            }
+        }
+        try {
+            for (Future<Void> future : passwordHashPool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * 管理者情報の2次キャッシュ(エンティティ・ロール・メールアドレスの検索結果)を破棄する
+     * 2次キャッシュが無効の場合は何もしない
+     */
+    private void evictSecondLevelCache() {
+        Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        cache.evict(User.class);
+        cache.evictCollectionData(User.class.getName() + ".roles");
+        cache.evictQueryRegion("user.byEmail");
+    }
 }
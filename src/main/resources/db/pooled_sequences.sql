@@ -0,0 +1,24 @@
+-- 商品・ブランド・カテゴリー・管理者のIDを、IDENTITY列からシーケンス(50件ずつ払い出し)に移行する
+--
+-- 既存のデータベースに対して、アプリケーションを停止した状態で1回実行する
+--   psql -U slshoput -d slshoput_db -f src/main/resources/db/pooled_sequences.sql
+-- 新規のデータベースでは、spring.jpa.hibernate.ddl-auto=updateによりシーケンスが作成されるため不要
+--
+-- Hibernateのpooledオプティマイザは、シーケンスから取得した値vに対して v-49〜v のIDを使用する
+-- 既存の最大IDと重複しないよう、最初に取得される値を 最大ID + 50 に設定する
+
+ALTER TABLE products ALTER COLUMN id DROP IDENTITY IF EXISTS;
+CREATE SEQUENCE IF NOT EXISTS products_seq INCREMENT BY 50;
+SELECT setval('products_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM products), false);
+
+ALTER TABLE brands ALTER COLUMN id DROP IDENTITY IF EXISTS;
+CREATE SEQUENCE IF NOT EXISTS brands_seq INCREMENT BY 50;
+SELECT setval('brands_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM brands), false);
+
+ALTER TABLE categories ALTER COLUMN id DROP IDENTITY IF EXISTS;
+CREATE SEQUENCE IF NOT EXISTS categories_seq INCREMENT BY 50;
+SELECT setval('categories_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM categories), false);
+
+ALTER TABLE users ALTER COLUMN id DROP IDENTITY IF EXISTS;
+CREATE SEQUENCE IF NOT EXISTS users_seq INCREMENT BY 50;
+SELECT setval('users_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM users), false);
@@ -0,0 +1,29 @@
+-- 商品名・ブランド名・カテゴリー名・メールアドレスの一意制約の名前を、エンティティで指定した名前(テーブル名_列名_key)にそろえる
+-- 重複の判定(DuplicateException.isUniqueViolation)は、違反した一意制約の名前で行うため
+--
+-- 既存のデータベースに対して、アプリケーションを停止した状態で1回実行する
+--   psql -U slshoput -d slshoput_db -f src/main/resources/db/unique_constraint_names.sql
+-- 新規のデータベースでは、spring.jpa.hibernate.ddl-auto=updateにより指定した名前で作成されるため不要
+--
+-- 以前の@Column(unique = true)では、Hibernateが自動で付けた名前(UK_〜)で作成されている
+
+DO $$
+DECLARE
+    r record;
+BEGIN
+    FOR r IN
+        SELECT c.conrelid::regclass AS table_name, c.conname, t.constraint_name
+        FROM (VALUES
+            ('products', 'name', 'products_name_key'),
+            ('brands', 'name', 'brands_name_key'),
+            ('categories', 'name', 'categories_name_key'),
+            ('users', 'email', 'users_email_key')
+        ) AS t(table_name, column_name, constraint_name)
+        JOIN pg_constraint c ON c.conrelid = t.table_name::regclass AND c.contype = 'u'
+            AND array_length(c.conkey, 1) = 1
+        JOIN pg_attribute a ON a.attrelid = c.conrelid AND a.attnum = c.conkey[1] AND a.attname = t.column_name
+        WHERE c.conname <> t.constraint_name
+    LOOP
+        EXECUTE format('ALTER TABLE %s RENAME CONSTRAINT %I TO %I', r.table_name, r.conname, r.constraint_name);
+    END LOOP;
+END $$;
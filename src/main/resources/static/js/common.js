@@ -10,4 +10,27 @@ $(document).ready(function() {
         $("#confirmModal").modal();
     });
 
+    // 入力補完(data-suggest-urlを指定した入力欄で、入力された文字列に前方一致する名前を候補として表示する)
+    var suggestTypes = { product: "商品", brand: "ブランド", category: "カテゴリー" };
+    $("input[data-suggest-url]").each(function() {
+        var url = $(this).data("suggest-url");
+        $(this).autocomplete({
+            minLength: 1,
+            delay: 100,
+            source: function(request, response) {
+                $.getJSON(url, { q: request.term }, function(data) {
+                    response($.map(data, function(item) {
+                        return { label: item.name + " (" + suggestTypes[item.type] + ")", value: item.name };
+                    }));
+                }).fail(function() {
+                    response([]);
+                });
+            },
+            select: function(e, ui) {
+                $(this).val(ui.item.value);
+                this.form.submit();
+            }
+        });
+    });
+
 });
\ No newline at end of file
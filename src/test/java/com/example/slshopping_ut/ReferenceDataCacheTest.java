@@ -0,0 +1,89 @@
+package com.example.slshopping_ut;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class ReferenceDataCacheTest {
+
+    /**
+     * 【概要】
+     * スナップショットの読み込みと再構築<br>
+     *
+     * 【条件】
+     * getメソッドを2回呼び出した後、rebuildメソッドを呼び出すこと<br>
+     *
+     * 【結果】
+     * 初回のgetメソッドでのみ読み込み、2回目は同じスナップショットを返却すること<br>
+     * rebuildメソッドで読み込み直し、バージョンが増えること
+     */
+    @Test
+    void testGetAndRebuild() {
+        AtomicInteger loads = new AtomicInteger();
+        ReferenceDataCache<String> target = new ReferenceDataCache<>(() -> List.of("item" + loads.incrementAndGet()));
+
+        ReferenceDataCache.Snapshot<String> first = target.get();
+        assertThat(target.get()).isSameAs(first);
+        assertThat(first.getItems()).containsExactly("item1");
+
+        ReferenceDataCache.Snapshot<String> rebuilt = target.rebuild();
+        assertThat(rebuilt.getVersion()).isGreaterThan(first.getVersion());
+        assertThat(target.get().getItems()).containsExactly("item2");
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    /**
+     * 【概要】
+     * 読み込み中に別の再構築が完了した場合<br>
+     *
+     * 【条件】
+     * 1回目の読み込みの途中で、2回目の再構築を実行すること<br>
+     *
+     * 【結果】
+     * 後から開始した2回目の再構築の内容が、1回目の古い内容で上書きされないこと
+     */
+    @Test
+    void testRebuild_olderLoadDoesNotOverwrite() {
+        List<ReferenceDataCache<String>> holder = new ArrayList<>();
+        AtomicInteger loads = new AtomicInteger();
+        ReferenceDataCache<String> target = new ReferenceDataCache<>(() -> {
+            int load = loads.incrementAndGet();
+            if (load == 1) {
+                holder.get(0).rebuild();
+                return List.of("old");
+            }
+            return List.of("new");
+        });
+        holder.add(target);
+
+        ReferenceDataCache.Snapshot<String> result = target.rebuild();
+
+        assertThat(result.getItems()).containsExactly("new");
+        assertThat(target.get().getItems()).containsExactly("new");
+    }
+
+    /**
+     * 【概要】
+     * スナップショットのリストの変更<br>
+     *
+     * 【結果】
+     * 読み込み処理が返したリストを変更しても、スナップショットは変わらないこと<br>
+     * スナップショットのリストは変更できないこと
+     */
+    @Test
+    void testSnapshotIsImmutable() {
+        List<String> source = new ArrayList<>(List.of("a"));
+        ReferenceDataCache<String> target = new ReferenceDataCache<>(() -> source);
+
+        List<String> items = target.get().getItems();
+        source.add("b");
+
+        assertThat(items).containsExactly("a");
+        assertThatThrownBy(() -> items.add("c")).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+}
@@ -0,0 +1,148 @@
+package com.example.slshopping_ut;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * リクエスト処理の性能測定
+ * Tomcatのスレッドプール(プラットフォームスレッド)と仮想スレッド(virtualプロファイル)で、
+ * 2000人が同時に商品一覧を表示し続けた場合の1秒あたりの処理件数と応答時間を比較する
+ * 認証を省略するためdevプロファイルで起動し、データベースに接続して実行する。接続プールの大きさは両方で揃える
+ *
+ * 通常のテストでは実行しない。実行する場合は ./gradlew benchmark
+ */
+@Tag("benchmark")
+class RequestThroughputBenchmark {
+
+    /** 同時に操作する利用者の数 */
+    private static final int USERS = 2000;
+
+    /** 1人あたりのリクエストの回数 */
+    private static final int REQUESTS_PER_USER = 10;
+
+    /** 測定前の準備運転のリクエストの回数 */
+    private static final int WARMUP_REQUESTS = 500;
+
+    /** 対象の画面(データベースへの問い合わせで待つ時間が大半を占める) */
+    private static final String PATH = "/products?keyword=a";
+
+    @Test
+    void benchmarkThroughput() throws Exception {
+        Result platform = measure(false);
+        Result virtual = measure(true);
+
+        System.out.printf("%d users: platform threads %.0f req/s (p99 %d ms, errors %d), "
+            + "virtual threads %.0f req/s (p99 %d ms, errors %d) (x%.1f)%n", USERS,
+            platform.throughput, platform.p99Millis, platform.errors,
+            virtual.throughput, virtual.p99Millis, virtual.errors, virtual.throughput / platform.throughput);
+    }
+
+    /**
+     * アプリケーションを起動し、全員のリクエストが終わるまでの処理件数と応答時間を測定する
+     *
+     * @param virtualThreads 仮想スレッドで実行する場合はtrue
+     * @return 測定結果
+     */
+    private Result measure(boolean virtualThreads) throws Exception {
+        String[] profiles = virtualThreads ? new String[] { "dev", "virtual" } : new String[] { "dev" };
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(SlshoppingUtApplication.class)
+                .profiles(profiles)
+                .properties("server.port=0", "spring.jpa.show-sql=false",
+                    "spring.datasource.hikari.maximum-pool-size=20")
+                .run();
+                ExecutorService clientThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            URI uri = URI.create("http://localhost:" + port + PATH);
+            HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(clientThreads)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+
+            for (int i = 0; i < WARMUP_REQUESTS; i++) {
+                send(client, uri);
+            }
+
+            AtomicLongArray latencies = new AtomicLongArray(USERS * REQUESTS_PER_USER);
+            AtomicInteger errors = new AtomicInteger();
+            long start = System.nanoTime();
+            try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int user = 0; user < USERS; user++) {
+                    int offset = user * REQUESTS_PER_USER;
+                    users.submit(() -> {
+                        for (int i = 0; i < REQUESTS_PER_USER; i++) {
+                            long sent = System.nanoTime();
+                            if (!send(client, uri)) {
+                                errors.incrementAndGet();
+                            }
+                            latencies.set(offset + i, System.nanoTime() - sent);
+                        }
+                    });
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+
+            long[] sorted = new long[latencies.length()];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = latencies.get(i);
+            }
+            Arrays.sort(sorted);
+            long p99 = sorted[(int) (sorted.length * 0.99) - 1] / 1_000_000;
+            return new Result(sorted.length / (elapsed / 1_000_000_000.0), p99, errors.get());
+        }
+    }
+
+    /**
+     * 画面を取得する
+     *
+     * @return ステータスが200の場合はtrue
+     */
+    private static boolean send(HttpClient client, URI uri) {
+        try {
+            HttpResponse<Void> response = client.send(HttpRequest.newBuilder(uri).GET().build(),
+                HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() == 200;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * 測定結果
+     */
+    private static class Result {
+
+        /** 1秒あたりの処理件数 */
+        private final double throughput;
+
+        /** 応答時間の99パーセンタイル(ミリ秒) */
+        private final long p99Millis;
+
+        /** エラーになったリクエストの数 */
+        private final int errors;
+
+        Result(double throughput, long p99Millis, int errors) {
+            this.throughput = throughput;
+            this.p99Millis = p99Millis;
+            this.errors = errors;
+        }
+    }
+
+}
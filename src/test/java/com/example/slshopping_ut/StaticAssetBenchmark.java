@@ -0,0 +1,100 @@
+package com.example.slshopping_ut;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * 静的リソースの初回表示の転送量の測定
+ * 圧縮版・ハッシュ値を含むURLを使用しない場合(以前の設定)と使用する場合で、
+ * HOME画面(layout/base.html)が読み込むCSS・JavaScriptの転送量の合計と、2回目の表示で再取得が必要なファイルの数を比較する
+ * 圧縮版はビルド時に作成するため、./gradlew benchmark(processResourcesの後)で実行すること
+ * 認証を省略するためdevプロファイルで起動し、データベースに接続して実行する
+ *
+ * 通常のテストでは実行しない。実行する場合は ./gradlew benchmark
+ */
+@Tag("benchmark")
+class StaticAssetBenchmark {
+
+    /** 対象の画面 */
+    private static final String PATH = "/home";
+
+    /** 画面が読み込むCSS・JavaScriptのURL */
+    private static final Pattern ASSET = Pattern.compile("\"(/[^\"]+\\.(?:css|js))\"");
+
+    @Test
+    void benchmarkFirstLoad() throws Exception {
+        Result before = measure("spring.web.resources.chain.strategy.content.enabled=false",
+            "spring.web.resources.chain.compressed=false");
+        Result after = measure();
+
+        System.out.printf("first load of %s: before %d files %,d bytes, after %d files %,d bytes (%.0f%% smaller)%n",
+            PATH, before.files, before.bytes, after.files, after.bytes, 100.0 - after.bytes * 100.0 / before.bytes);
+        System.out.printf("second load of %s: before %d files to revalidate, after %d files to revalidate%n",
+            PATH, before.revalidated, after.revalidated);
+    }
+
+    /**
+     * アプリケーションを起動し、画面が読み込むCSS・JavaScriptをブラウザと同じAccept-Encodingで取得する
+     *
+     * @param properties 追加の設定
+     * @return 測定結果
+     */
+    private Result measure(String... properties) throws Exception {
+        List<String> allProperties = new ArrayList<>(List.of("server.port=0", "spring.jpa.show-sql=false"));
+        allProperties.addAll(List.of(properties));
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(SlshoppingUtApplication.class)
+                .profiles("dev")
+                .properties(allProperties.toArray(String[]::new))
+                .run()) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            HttpClient client = HttpClient.newHttpClient();
+            String page = client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + PATH)).build(),
+                HttpResponse.BodyHandlers.ofString()).body();
+
+            Result result = new Result();
+            Matcher matcher = ASSET.matcher(page);
+            while (matcher.find()) {
+                // HttpClientは圧縮を展開しないため、本文の長さが転送量になる
+                HttpResponse<byte[]> response = client.send(
+                    HttpRequest.newBuilder(URI.create("http://localhost:" + port + matcher.group(1)))
+                        .header("Accept-Encoding", "br, gzip")
+                        .build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+                result.files++;
+                result.bytes += response.body().length;
+                if (!response.headers().firstValue("Cache-Control").orElse("").contains("immutable")) {
+                    result.revalidated++;
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 測定結果
+     */
+    private static class Result {
+
+        /** 取得したファイルの数 */
+        private int files;
+
+        /** 転送量の合計(バイト) */
+        private long bytes;
+
+        /** 2回目の表示で再取得(再検証)が必要なファイルの数 */
+        private int revalidated;
+    }
+
+}
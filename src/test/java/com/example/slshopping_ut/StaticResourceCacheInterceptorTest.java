@@ -0,0 +1,85 @@
+package com.example.slshopping_ut;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+
+class StaticResourceCacheInterceptorTest {
+
+    /** テスト対象クラス */
+    private StaticResourceCacheInterceptor target = new StaticResourceCacheInterceptor();
+
+    /**
+     * 【概要】
+     * ハッシュ値を含むURLの静的リソースの検証<br>
+     *
+     * 【条件】
+     * /css/style-{32桁のMD5}.cssにリクエストすること<br>
+     *
+     * 【結果】
+     * 1年間再検証しないCache-Controlを設定すること
+     */
+    @Test
+    void testPreHandle_versioned() throws Exception {
+        //準備
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/css/style-0123456789abcdef0123456789abcdef.css");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        //実行
+        boolean result = target.preHandle(request, response, new ResourceHttpRequestHandler());
+
+        //検証
+        assertThat(result).isTrue();
+        assertThat(response.getHeader("Cache-Control")).isEqualTo(StaticResourceCacheInterceptor.IMMUTABLE);
+    }
+
+    /**
+     * 【概要】
+     * ハッシュ値を含まないURLの静的リソースの検証<br>
+     *
+     * 【条件】
+     * /images/logo.pngにリクエストすること<br>
+     *
+     * 【結果】
+     * 毎回再検証させるCache-Controlを設定すること
+     */
+    @Test
+    void testPreHandle_unversioned() throws Exception {
+        //準備
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/images/logo.png");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        //実行
+        target.preHandle(request, response, new ResourceHttpRequestHandler());
+
+        //検証
+        assertThat(response.getHeader("Cache-Control")).isEqualTo(StaticResourceCacheInterceptor.REVALIDATE);
+    }
+
+    /**
+     * 【概要】
+     * 静的リソース以外のリクエストの検証<br>
+     *
+     * 【条件】
+     * コントローラーの処理へのリクエストであること<br>
+     *
+     * 【結果】
+     * Cache-Controlを設定しないこと
+     */
+    @Test
+    void testPreHandle_controller() throws Exception {
+        //準備
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/products");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        //実行
+        target.preHandle(request, response, new Object());
+
+        //検証
+        assertThat(response.getHeader("Cache-Control")).isNull();
+    }
+
+}
@@ -1,6 +1,7 @@
 package com.example.slshopping_ut.brand;
 
 import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.*;
@@ -15,9 +16,14 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import com.example.slshopping_ut.DuplicateException;
+import com.example.slshopping_ut.KeysetPage;
+import com.example.slshopping_ut.KeysetRequest;
+import com.example.slshopping_ut.csv.CsvImportResult;
 import com.example.slshopping_ut.entity.Brand;
 
 @ExtendWith(MockitoExtension.class) // JUnit5でMockito使うために書く
@@ -46,7 +52,7 @@ class BrandControllerTest {
      * 【条件】
      * GET通信の/brandsにリクエストすること<br>
      * クエリパラメーターkeywordにはnullを入力すること<br>
-     * brandServiceのfindAllメソッドはブランドのリストを返却するようスタブ化すること<br>
+     * brandServiceのlistPageメソッドは1ページ分のリストを返却するようスタブ化すること<br>
      *
      * 【結果】
      * ステータスが200であること<br>
@@ -58,11 +64,13 @@ class BrandControllerTest {
     void testListBrands() throws Exception {
         // 準備
         List<Brand> brands = new ArrayList<>();
+        KeysetPage<Brand> page = new KeysetPage<>(brands, KeysetRequest.SORT_ID, KeysetPage.DEFAULT_SIZE, null, null);
         String keyword = null;
 
         // スタブを設定
         // doReturn(返り値の設定).when(対象のモック).対象のメソッド(引数)
-        doReturn(brands).when(this.mockBrandService).listAll(keyword);
+        doReturn(page).when(this.mockBrandService).listPage(isNull(), argThat(request ->
+            KeysetRequest.SORT_ID.equals(request.getSort()) && request.getSize() == KeysetPage.DEFAULT_SIZE));
 
         // 検証
         /*
@@ -78,6 +86,7 @@ class BrandControllerTest {
                 .andExpect(status().isOk()) // ステータスの検証
                 .andExpect(view().name("brands/brands")) // テンプレートファイルの呼び出し検証
                 .andExpect(model().attribute("listBrands", brands)) // modelに格納されている要素の検証
+                .andExpect(model().attribute("page", page))
                 .andExpect(model().attribute("keyword", keyword));
 
     }
@@ -114,7 +123,6 @@ class BrandControllerTest {
      * 【条件】
      * POST通信の/brands/saveにリクエストすること<br>
      * バリデーションを通過する値をパラメーターにすること<br>
-     * brandServiceのcheckUniqueメソッドはtrueを返却するようスタブ化すること<br>
      * brandServiceのsaveメソッドはBrandのインスタンスを返却するようスタブ化すること<br>
      *
      * 【結果】
@@ -129,7 +137,6 @@ class BrandControllerTest {
         brand.setName("brandA");
 
         // スタブを設定
-        doReturn(true).when(this.mockBrandService).checkUnique(brand);
         // doNothing()は返り値がないとき
         doReturn(brand).when(this.mockBrandService).save(brand);
 
@@ -146,6 +153,36 @@ class BrandControllerTest {
 
     }
 
+    /**
+     * 【概要】
+     * ブランド新規登録処理で名前が重複していた場合の検証<br>
+     *
+     * 【条件】
+     * POST通信の/brands/saveにリクエストすること<br>
+     * brandServiceのsaveメソッドはDuplicateExceptionをスローするようスタブ化すること<br>
+     *
+     * 【結果】
+     * ステータスが200であること<br>
+     * brands/brand_form.htmlを表示すること<br>
+     * キー名error_messageに「重複しています」という文字列が格納されていること
+     */
+    @Test
+    void testSaveBrand_duplicate() throws Exception {
+        // 準備
+        Brand brand = new Brand();
+        brand.setName("brandA");
+
+        // スタブを設定
+        doThrow(new DuplicateException(null)).when(this.mockBrandService).save(brand);
+
+        // 検証
+        this.mockMvc.perform(post("/brands/save").flashAttr("brand", brand))
+                .andExpect(status().isOk())
+                .andExpect(view().name("brands/brand_form"))
+                .andExpect(model().attribute("error_message", "重複しています"));
+        verify(this.mockBrandService, never()).checkUnique(any());
+    }
+
     /**
      * 【概要】
      * ブランド詳細画面の検証<br>
@@ -212,7 +249,6 @@ class BrandControllerTest {
      * 【条件】
      * POST通信の/brands/edit/1にリクエストすること<br>
      * バリデーションを通過する値をパラメーターにすること<br>
-     * brandServiceのcheckUniqueメソッドはtrueを返却するようスタブ化すること<br>
      * brandServiceのsaveメソッドはBrandのインスタンスを返却するようスタブ化すること<br>
      *
      * 【結果】
@@ -227,7 +263,6 @@ class BrandControllerTest {
         Brand brand = new Brand(1L, "brandA");
 
         // スタブを設定
-        doReturn(true).when(this.mockBrandService).checkUnique(brand);
         doReturn(brand).when(this.mockBrandService).save(brand);
 
         // 検証
@@ -263,4 +298,54 @@ class BrandControllerTest {
                 .andExpect(redirectedUrl("/brands"))
                 .andExpect(flash().attribute("success_message", "削除に成功しました"));
     }
+
+    /**
+     * 【概要】
+     * ブランド一括登録処理の検証<br>
+     *
+     * 【条件】
+     * POST通信の/brands/importにCSVファイルを添付してリクエストすること<br>
+     * brandServiceのimportCsvメソッドは登録結果を返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * ステータスが200であること<br>
+     * brands/brand_import.htmlを表示すること<br>
+     * キー名resultに登録結果が格納されていること
+     */
+    @Test
+    void testImportBrands() throws Exception {
+        //準備
+        MockMultipartFile file = new MockMultipartFile("file", "brands.csv", "text/csv", "name\n".getBytes());
+        CsvImportResult result = new CsvImportResult();
+
+        //スタブを設定
+        doReturn(result).when(this.mockBrandService).importCsv(any());
+
+        //検証
+        this.mockMvc.perform(multipart("/brands/import").file(file))
+            .andExpect(status().isOk())
+            .andExpect(view().name("brands/brand_import"))
+            .andExpect(model().attribute("result", result));
+    }
+
+    /**
+     * 【概要】
+     * ブランド情報のCSV出力の検証<br>
+     *
+     * 【条件】
+     * GET通信の/brands/exportにリクエストすること<br>
+     *
+     * 【結果】
+     * ステータスが200であること<br>
+     * CSVを添付ファイルとして返却すること
+     */
+    @Test
+    void testExportBrands() throws Exception {
+        this.mockMvc.perform(get("/brands/export"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Disposition", "attachment; filename=\"brands.csv\""));
+
+        verify(this.mockBrandService, times(1)).exportCsv(any());
+    }
+
 }
@@ -4,18 +4,38 @@ import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.crossstore.ChangeSetPersister.NotFoundException;
-
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.slshopping_ut.DuplicateException;
+import com.example.slshopping_ut.KeysetPage;
+import com.example.slshopping_ut.KeysetRequest;
+import com.example.slshopping_ut.csv.CsvImportResult;
 import com.example.slshopping_ut.entity.Brand;
+import com.example.slshopping_ut.product.ProductSuggestIndex;
+
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
 
 /*
  * @SpringBootTest
@@ -29,6 +49,32 @@ class BrandServiceTest {
     @Mock
     private BrandRepository mockBrandRepository;
 
+    @Mock
+    private BrandSearchIndex mockBrandSearchIndex;
+
+    @Mock
+    private BrandNameFilter mockBrandNameFilter;
+
+    @Mock
+    private ProductSuggestIndex mockProductSuggestIndex;
+
+    @Mock
+    private BrandBulkRepository mockBrandBulkRepository;
+
+    @Mock
+    private TransactionTemplate mockTransactionTemplate;
+
+    /** 2次キャッシュの破棄で使用する(EntityManagerFactoryとして注入する) */
+    @Mock
+    private SessionFactory mockSessionFactory;
+
+    @Mock
+    private Cache mockCache;
+
+    /** 入力チェックは実際の処理を使用する */
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
     /** テスト対象クラスにモックを注入 */
     @InjectMocks
     private BrandService target;
@@ -126,11 +172,79 @@ class BrandServiceTest {
         assertThat(target.listAll(keyword)).isEqualTo(expected);
     }
 
+    /**
+     * 【概要】
+     * キャッシュしたブランドのリストを取得<br>
+     *
+     * 【条件】
+     * brandRepositoryのfindAllメソッドは1回目にbrandA、2回目にbrandA・brandBのリストを返却するようスタブ化すること<br>
+     * listCachedメソッドを2回呼び出した後、brandBを登録し、再度listCachedメソッドを呼び出すこと<br>
+     *
+     * 【結果】
+     * 登録前の2回は同じリストを返却し、データベースから1回だけ取得すること<br>
+     * 登録後はbrandBを含むリストを返却すること<br>
+     * リストの要素はリポジトリが返却したインスタンスの複製であり、リストは変更できないこと
+     */
+    @Test
+    void testListCached_rebuiltOnSave() throws Exception {
+        Brand brandA = new Brand(1L, "brandA");
+        brandA.setId(1L);
+        Brand brandB = new Brand(2L, "brandB");
+        brandB.setId(2L);
+
+        //スタブの設定
+        doReturn(Arrays.asList(brandA)).doReturn(Arrays.asList(brandA, brandB)).when(this.mockBrandRepository).findAll();
+        doReturn(brandB).when(this.mockBrandRepository).saveAndFlush(brandB);
+
+        //検証処理
+        List<Brand> before = target.listCached();
+        assertThat(target.listCached()).isSameAs(before);
+        target.save(brandB);
+        List<Brand> after = target.listCached();
+
+        assertThat(before).extracting(Brand::getName).containsExactly("brandA");
+        assertThat(after).extracting(Brand::getId).containsExactly(1L, 2L);
+        assertThat(after.get(0)).isNotSameAs(brandA);
+        assertThatThrownBy(() -> after.add(brandA)).isInstanceOf(UnsupportedOperationException.class);
+        verify(this.mockBrandRepository, times(2)).findAll();
+    }
+
+    /**
+     * 【概要】
+     * ブランドの2ページ目を名前順で取得<br>
+     *
+     * 【条件】
+     * brandServiceのlistPageメソッドにキーワードを指定せず、名前順・after=0:a・表示件数2を渡すこと<br>
+     * brandRepositoryのsearchPageAfterNameメソッドは3件のBrandのリストを返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * 先頭2件のBrandが格納されていること<br>
+     * 次のページのカーソルが2件目のIDと名前であること<br>
+     * 前のページのカーソルが1件目のIDと名前であること
+     */
+    @Test
+    void testListPage_sortedByName() {
+        List<Brand> rows = Arrays.asList(new Brand(1L, "brandA"), new Brand(2L, "brandB"), new Brand(3L, "brandC"));
+        for (int i = 0; i < rows.size(); i++) {
+            rows.get(i).setId(i + 1L);
+        }
+
+        //スタブの設定
+        doReturn(rows).when(this.mockBrandRepository).searchPageAfterName("", "a", 0L, PageRequest.of(0, 3));
+
+        //検証処理
+        KeysetPage<Brand> page = target.listPage(null, KeysetRequest.of("name", "0:a", null, 2));
+        assertThat(page.getContent()).containsExactly(rows.get(0), rows.get(1));
+        assertThat(page.getNextCursor()).isEqualTo("2:" + rows.get(1).getName());
+        assertThat(page.getPrevCursor()).isEqualTo("1:" + rows.get(0).getName());
+    }
+
     /**
      * 【概要】
      * ブランド名の重複チェック<br>
      *
      * 【条件】
+     * brandNameFilterのmightExistメソッドはtrueを返却するようスタブ化すること<br>
      * brandRepositoryのfindByNameメソッドはnullを返すようスタブ化すること<br>
      *
      * 【結果】
@@ -142,6 +256,7 @@ class BrandServiceTest {
         Brand newBrand = new Brand(1L, "brandA");
 
         // スタブの設定
+        doReturn(true).when(this.mockBrandNameFilter).mightExist(anyString());
         doReturn(null).when(this.mockBrandRepository).findByName(anyString());
 
         // 検証処理
@@ -167,12 +282,80 @@ class BrandServiceTest {
         Brand mockBrand = new Brand(1L, "brandA");
 
         //スタブの設定
+        doReturn(true).when(this.mockBrandNameFilter).mightExist(anyString());
         doReturn(mockBrand).when(this.mockBrandRepository).findByName(newBrand.getName());
 
         // 検証
         assertThat(target.checkUnique(newBrand)).isFalse();
     }
 
+    /**
+     * 【概要】
+     * 登録されていないことが確実なブランド名の重複チェック<br>
+     *
+     * 【条件】
+     * brandNameFilterのmightExistメソッドはfalseを返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * trueを返し、データベースに問い合わせないこと
+     */
+    @Test
+    void testCheckUnique_definitelyAbsent() {
+        Brand newBrand = new Brand();
+        newBrand.setName("newbrand");
+
+        doReturn(false).when(this.mockBrandNameFilter).mightExist(newBrand.getName());
+
+        assertThat(target.checkUnique(newBrand)).isTrue();
+        verify(this.mockBrandRepository, never()).findByName(anyString());
+    }
+
+    /**
+     * 【概要】
+     * ブランド名が重複するブランド情報の登録<br>
+     *
+     * 【条件】
+     * brandRepositoryのsaveAndFlushメソッドは名前の一意制約違反のDataIntegrityViolationExceptionをスローするようスタブ化すること<br>
+     *
+     * 【結果】
+     * DuplicateExceptionをスローすること<br>
+     * 払い出されたIDを戻し、検索インデックスに追加しないこと
+     */
+    @Test
+    void testSave_duplicate() {
+        Brand newBrand = new Brand();
+        newBrand.setName("brand");
+
+        //スタブの設定(保存時に払い出されたIDが格納された後、一意制約違反になる)
+        doAnswer(invocation -> {
+            newBrand.setId(1L);
+            throw uniqueViolation();
+        }).when(this.mockBrandRepository).saveAndFlush(newBrand);
+
+        //検証処理
+        assertThatThrownBy(() -> target.save(newBrand)).isInstanceOf(DuplicateException.class);
+        assertThat(newBrand.getId()).isNull();
+        verify(this.mockBrandSearchIndex, never()).put(any());
+    }
+
+    /**
+     * 【概要】
+     * 一意制約以外の制約に違反するブランド情報の登録<br>
+     *
+     * 【結果】
+     * DataIntegrityViolationExceptionをそのままスローすること
+     */
+    @Test
+    void testSave_otherConstraintViolation() {
+        Brand newBrand = new Brand();
+        DataIntegrityViolationException e = new DataIntegrityViolationException("not null",
+            new SQLException("null value", "23502"));
+
+        doThrow(e).when(this.mockBrandRepository).saveAndFlush(newBrand);
+
+        assertThatThrownBy(() -> target.save(newBrand)).isSameAs(e);
+    }
+
     /**
      * 【概要】
      * ブランド情報の取得<br>
@@ -252,4 +435,88 @@ class BrandServiceTest {
         // 検証
         assertThat(target.get(id)).isEqualTo(brand.get());
     }
+
+    /**
+     * 【概要】
+     * ブランドの一括登録<br>
+     *
+     * 【条件】
+     * 空行・ファイル内で重複したブランド名・10文字を超えるブランド名を含むCSVファイルを読み込むこと<br>
+     * brandBulkRepositoryのupsertメソッドはbrandBのみを登録した(brandAは登録済み)結果を返却するようスタブ化すること<br>
+     * brandRepositoryのfindAllByNameInメソッドは登録したブランドのリストを返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * 重複を除いたブランド名を1回のupsertで登録すること<br>
+     * 登録件数は実際に登録した1件、登録済み・ファイル内の重複は2件であること<br>
+     * 10文字を超えるブランド名の行は行番号とエラーメッセージを返却すること<br>
+     * 登録したブランドのみを検索インデックス・入力補完に追加し、2次キャッシュを破棄すること
+     */
+    @Test
+    void testImportCsv() throws Exception {
+        Brand brandA = new Brand(null, "brandA");
+        brandA.setId(1L);
+        Brand brandB = new Brand(null, "brandB");
+        brandB.setId(2L);
+        stubTransaction();
+        stubCache();
+        doReturn(List.of("brandB")).when(this.mockBrandBulkRepository).upsert(List.of("brandA", "brandB"));
+        doReturn(List.of(brandB)).when(this.mockBrandRepository).findAllByNameIn(List.of("brandB"));
+
+        CsvImportResult result = target.importCsv(stream("name\nbrandA\nbrandB\n\nbrandA\nbrandLongName1\n"));
+
+        assertThat(result.getTotalRows()).isEqualTo(4L);
+        assertThat(result.getImportedRows()).isEqualTo(1L);
+        assertThat(result.getSkippedRows()).isEqualTo(2L);
+        assertThat(result.getErrors()).extracting(CsvImportResult.RowError::getLine).containsExactly(6L);
+        verify(this.mockBrandBulkRepository, times(1)).upsert(List.of("brandA", "brandB"));
+        verify(this.mockBrandSearchIndex, times(1)).put(brandB);
+        verify(this.mockBrandSearchIndex, never()).put(brandA);
+        verify(this.mockProductSuggestIndex, times(1)).putBrand(brandB);
+        verify(this.mockCache, times(1)).evict(Brand.class);
+    }
+
+    /**
+     * 【概要】
+     * name列がないCSVファイルの一括登録<br>
+     *
+     * 【結果】
+     * 1行目のエラーを返却し、登録しないこと
+     */
+    @Test
+    void testImportCsv_missingColumn() throws Exception {
+        stubCache();
+
+        CsvImportResult result = target.importCsv(stream("id\n1\n"));
+
+        assertThat(result.getErrors()).extracting(CsvImportResult.RowError::getLine).containsExactly(1L);
+        verify(this.mockBrandBulkRepository, never()).upsert(any());
+    }
+
+    /**
+     * トランザクション内の処理をそのまま実行するようスタブ化する
+     */
+    @SuppressWarnings("unchecked")
+    private void stubTransaction() {
+        doAnswer(invocation -> ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null))
+            .when(this.mockTransactionTemplate).execute(any());
+    }
+
+    /**
+     * 2次キャッシュの破棄をモックで受けるようスタブ化する
+     */
+    private void stubCache() {
+        doReturn(this.mockSessionFactory).when(this.mockSessionFactory).unwrap(SessionFactory.class);
+        doReturn(this.mockCache).when(this.mockSessionFactory).getCache();
+    }
+
+    private static ByteArrayInputStream stream(String csv) {
+        return new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static DataIntegrityViolationException uniqueViolation() {
+        return new DataIntegrityViolationException("duplicate key",
+            new ConstraintViolationException("duplicate key value violates unique constraint",
+                new SQLException("duplicate key value violates unique constraint", "23505"), Brand.NAME_CONSTRAINT));
+    }
+
 }
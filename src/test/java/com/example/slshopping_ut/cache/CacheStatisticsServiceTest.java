@@ -0,0 +1,101 @@
+package com.example.slshopping_ut.cache;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import jakarta.persistence.EntityManagerFactory;
+
+@ExtendWith(MockitoExtension.class)
+class CacheStatisticsServiceTest {
+
+    /** モック化したクラス */
+    @Mock
+    private EntityManagerFactory mockEntityManagerFactory;
+
+    @Mock
+    private SessionFactory mockSessionFactory;
+
+    @Mock
+    private Statistics mockStatistics;
+
+    /** テスト対象クラスにモックを注入 */
+    @InjectMocks
+    private CacheStatisticsService target;
+
+    @BeforeEach
+    void setup() {
+        doReturn(this.mockSessionFactory).when(this.mockEntityManagerFactory).unwrap(SessionFactory.class);
+        doReturn(this.mockStatistics).when(this.mockSessionFactory).getStatistics();
+    }
+
+    /**
+     * 【概要】
+     * キャッシュの利用状況を取得<br>
+     *
+     * 【条件】
+     * statisticsのisStatisticsEnabledメソッドはtrueを返却するようスタブ化すること<br>
+     * 2次キャッシュはヒット3・ミス1、クエリキャッシュはヒット0・ミス0を返却するようスタブ化すること<br>
+     * 領域名はrole、brandの順で返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * 2次キャッシュのヒット率が0.75であること<br>
+     * 参照のないクエリキャッシュのヒット率が0であること<br>
+     * 領域ごとの利用状況が領域名の昇順に格納されていること
+     */
+    @Test
+    void testGetReport() {
+        CacheRegionStatistics brand = mock(CacheRegionStatistics.class);
+        CacheRegionStatistics role = mock(CacheRegionStatistics.class);
+
+        //スタブの設定
+        doReturn(true).when(this.mockStatistics).isStatisticsEnabled();
+        doReturn(3L).when(this.mockStatistics).getSecondLevelCacheHitCount();
+        doReturn(1L).when(this.mockStatistics).getSecondLevelCacheMissCount();
+        doReturn(new String[] { "role", "brand" }).when(this.mockStatistics).getSecondLevelCacheRegionNames();
+        doReturn(brand).when(this.mockStatistics).getCacheRegionStatistics("brand");
+        doReturn(role).when(this.mockStatistics).getCacheRegionStatistics("role");
+        doReturn(9L).when(brand).getHitCount();
+        doReturn(1L).when(brand).getMissCount();
+
+        //検証処理
+        CacheStatisticsReport report = target.getReport();
+        assertThat(report.isEnabled()).isTrue();
+        assertThat(report.getSecondLevel().getHitRatio()).isEqualTo(0.75);
+        assertThat(report.getQuery().getHitRatio()).isEqualTo(0.0);
+        assertThat(report.getRegions()).extracting(CacheRegionReport::getName).containsExactly("brand", "role");
+        assertThat(report.getRegions().get(0).getHitRatio()).isEqualTo(0.9);
+    }
+
+    /**
+     * 【概要】
+     * 統計情報の収集が無効な場合<br>
+     *
+     * 【条件】
+     * statisticsのisStatisticsEnabledメソッドはfalseを返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * 無効であることと、空の利用状況を返却すること
+     */
+    @Test
+    void testGetReport_statisticsDisabled() {
+        //スタブの設定
+        doReturn(false).when(this.mockStatistics).isStatisticsEnabled();
+
+        //検証処理
+        CacheStatisticsReport report = target.getReport();
+        assertThat(report.isEnabled()).isFalse();
+        assertThat(report.getRegions()).isEmpty();
+        verify(this.mockStatistics, never()).getSecondLevelCacheRegionNames();
+    }
+
+}
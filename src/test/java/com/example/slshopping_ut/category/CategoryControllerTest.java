@@ -1,6 +1,7 @@
 package com.example.slshopping_ut.category;
 
 import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.*;
@@ -15,9 +16,14 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import com.example.slshopping_ut.DuplicateException;
+import com.example.slshopping_ut.KeysetPage;
+import com.example.slshopping_ut.KeysetRequest;
+import com.example.slshopping_ut.csv.CsvImportResult;
 import com.example.slshopping_ut.entity.Category;
 
 @ExtendWith(MockitoExtension.class)
@@ -46,7 +52,7 @@ class CategoryControllerTest {
      * 【条件】
      * GET通信の/categoriesにリクエストすること<br>
      * クエリパラメーターkeywordにはnullを入力すること<br>
-     * categoryServiceのfindAllメソッドはカテゴリーのリストを返却するようスタブ化すること<br>
+     * categoryServiceのlistPageメソッドは1ページ分のリストを返却するようスタブ化すること<br>
      *
      * 【結果】
      * ステータスが200であること<br>
@@ -57,14 +63,17 @@ class CategoryControllerTest {
     @Test
     void testListCategories() throws Exception {
         List<Category> categories = new ArrayList<>();
+        KeysetPage<Category> page = new KeysetPage<>(categories, KeysetRequest.SORT_ID, KeysetPage.DEFAULT_SIZE, null, null);
         String keyword = null;
 
-        doReturn(categories).when(this.mockCategoryService).listAll(keyword);
+        doReturn(page).when(this.mockCategoryService).listPage(isNull(), argThat(request ->
+            KeysetRequest.SORT_ID.equals(request.getSort()) && request.getSize() == KeysetPage.DEFAULT_SIZE));
 
         this.mockMvc.perform(get("/categories").param("keyword", keyword))
                 .andExpect(status().isOk())
                 .andExpect(view().name("categories/categories"))
                 .andExpect(model().attribute("listCategories", categories))
+                .andExpect(model().attribute("page", page))
                 .andExpect(model().attribute("keyword", keyword));
     }
 
@@ -95,7 +104,6 @@ class CategoryControllerTest {
      * 【条件】
      * POST通信の/categories/saveにリクエストすること<br>
      * バリデーションを通過する値をパラメーターにすること<br>
-     * categoryServiceのcheckUniqueメソッドはtrueを返却するようスタブ化すること<br>
      * categoryServiceのsaveメソッドはCategoryのインスタンスを返却するようスタブ化すること<br>
      *
      * 【結果】
@@ -107,7 +115,6 @@ class CategoryControllerTest {
     void testSaveCategory() throws Exception {
         Category category = new Category();
 
-        doReturn(true).when(this.mockCategoryService).checkUnique(category);
         doReturn(category).when(this.mockCategoryService).save(category);
 
         this.mockMvc.perform(post("/categories/save").flashAttr("category", category))
@@ -117,6 +124,32 @@ class CategoryControllerTest {
 
     }
 
+    /**
+     * 【概要】
+     * カテゴリー新規登録処理で名前が重複していた場合の検証<br>
+     *
+     * 【条件】
+     * POST通信の/categories/saveにリクエストすること<br>
+     * categoryServiceのsaveメソッドはDuplicateExceptionをスローするようスタブ化すること<br>
+     *
+     * 【結果】
+     * ステータスが200であること<br>
+     * categories/category_form.htmlを表示すること<br>
+     * キー名error_messageに「重複しています」という文字列が格納されていること
+     */
+    @Test
+    void testSaveCategory_duplicate() throws Exception {
+        Category category = new Category();
+
+        doThrow(new DuplicateException(null)).when(this.mockCategoryService).save(category);
+
+        this.mockMvc.perform(post("/categories/save").flashAttr("category", category))
+                .andExpect(status().isOk())
+                .andExpect(view().name("categories/category_form"))
+                .andExpect(model().attribute("error_message", "重複しています"));
+        verify(this.mockCategoryService, never()).checkUnique(any());
+    }
+
     /**
      * 【概要】
      * カテゴリー詳細画面の検証<br>
@@ -176,7 +209,6 @@ class CategoryControllerTest {
      * 【条件】
      * POST通信の/categories/edit/1にリクエストすること<br>
      * バリデーションを通過する値をパラメーターにすること<br>
-     * categoryServiceのcheckUniqueメソッドはtrueを返却するようスタブ化すること<br>
      * categoryServiceのsaveメソッドはCategoryのインスタンスを返却するようスタブ化すること<br>
      *
      * 【結果】
@@ -191,7 +223,6 @@ class CategoryControllerTest {
         Category category = new Category(1L, "categoryA");
 
         // スタブを設定
-        doReturn(true).when(this.mockCategoryService).checkUnique(category);
         doReturn(category).when(this.mockCategoryService).save(category);
 
         // 検証
@@ -224,4 +255,54 @@ class CategoryControllerTest {
                 .andExpect(redirectedUrl("/categories"))
                 .andExpect(flash().attribute("success_message", "削除に成功しました"));
     }
+
+    /**
+     * 【概要】
+     * カテゴリー一括登録処理の検証<br>
+     *
+     * 【条件】
+     * POST通信の/categories/importにCSVファイルを添付してリクエストすること<br>
+     * categoryServiceのimportCsvメソッドは登録結果を返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * ステータスが200であること<br>
+     * categories/category_import.htmlを表示すること<br>
+     * キー名resultに登録結果が格納されていること
+     */
+    @Test
+    void testImportCategories() throws Exception {
+        //準備
+        MockMultipartFile file = new MockMultipartFile("file", "categories.csv", "text/csv", "name\n".getBytes());
+        CsvImportResult result = new CsvImportResult();
+
+        //スタブを設定
+        doReturn(result).when(this.mockCategoryService).importCsv(any());
+
+        //検証
+        this.mockMvc.perform(multipart("/categories/import").file(file))
+            .andExpect(status().isOk())
+            .andExpect(view().name("categories/category_import"))
+            .andExpect(model().attribute("result", result));
+    }
+
+    /**
+     * 【概要】
+     * カテゴリー情報のCSV出力の検証<br>
+     *
+     * 【条件】
+     * GET通信の/categories/exportにリクエストすること<br>
+     *
+     * 【結果】
+     * ステータスが200であること<br>
+     * CSVを添付ファイルとして返却すること
+     */
+    @Test
+    void testExportCategories() throws Exception {
+        this.mockMvc.perform(get("/categories/export"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Disposition", "attachment; filename=\"categories.csv\""));
+
+        verify(this.mockCategoryService, times(1)).exportCsv(any());
+    }
+
 }
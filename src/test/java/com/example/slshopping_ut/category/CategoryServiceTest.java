@@ -4,18 +4,38 @@ import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.crossstore.ChangeSetPersister.NotFoundException;
-
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.slshopping_ut.DuplicateException;
+import com.example.slshopping_ut.KeysetPage;
+import com.example.slshopping_ut.KeysetRequest;
+import com.example.slshopping_ut.csv.CsvImportResult;
 import com.example.slshopping_ut.entity.Category;
+import com.example.slshopping_ut.product.ProductSuggestIndex;
+
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
 
 @ExtendWith(MockitoExtension.class)
 class CategoryServiceTest {
@@ -24,6 +44,32 @@ class CategoryServiceTest {
     @Mock
     private CategoryRepository mockCategoryRepository;
 
+    @Mock
+    private CategorySearchIndex mockCategorySearchIndex;
+
+    @Mock
+    private CategoryNameFilter mockCategoryNameFilter;
+
+    @Mock
+    private ProductSuggestIndex mockProductSuggestIndex;
+
+    @Mock
+    private CategoryBulkRepository mockCategoryBulkRepository;
+
+    @Mock
+    private TransactionTemplate mockTransactionTemplate;
+
+    /** 2次キャッシュの破棄で使用する(EntityManagerFactoryとして注入する) */
+    @Mock
+    private SessionFactory mockSessionFactory;
+
+    @Mock
+    private Cache mockCache;
+
+    /** 入力チェックは実際の処理を使用する */
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
     /** テスト対象クラスにモックを注入 */
     @InjectMocks
     private CategoryService target;
@@ -131,11 +177,79 @@ class CategoryServiceTest {
         assertThat(target.listAll(keyword)).isEqualTo(expected);
     }
 
+    /**
+     * 【概要】
+     * キャッシュしたカテゴリーのリストを取得<br>
+     *
+     * 【条件】
+     * categoryRepositoryのfindAllメソッドは1回目にcategoryA、2回目にcategoryA・categoryBのリストを返却するようスタブ化すること<br>
+     * listCachedメソッドを2回呼び出した後、categoryBを登録し、再度listCachedメソッドを呼び出すこと<br>
+     *
+     * 【結果】
+     * 登録前の2回は同じリストを返却し、データベースから1回だけ取得すること<br>
+     * 登録後はcategoryBを含むリストを返却すること<br>
+     * リストの要素はリポジトリが返却したインスタンスの複製であり、リストは変更できないこと
+     */
+    @Test
+    void testListCached_rebuiltOnSave() throws Exception {
+        Category categoryA = new Category(1L, "categoryA");
+        categoryA.setId(1L);
+        Category categoryB = new Category(2L, "categoryB");
+        categoryB.setId(2L);
+
+        //スタブの設定
+        doReturn(Arrays.asList(categoryA)).doReturn(Arrays.asList(categoryA, categoryB)).when(this.mockCategoryRepository).findAll();
+        doReturn(categoryB).when(this.mockCategoryRepository).saveAndFlush(categoryB);
+
+        //検証処理
+        List<Category> before = target.listCached();
+        assertThat(target.listCached()).isSameAs(before);
+        target.save(categoryB);
+        List<Category> after = target.listCached();
+
+        assertThat(before).extracting(Category::getName).containsExactly("categoryA");
+        assertThat(after).extracting(Category::getId).containsExactly(1L, 2L);
+        assertThat(after.get(0)).isNotSameAs(categoryA);
+        assertThatThrownBy(() -> after.add(categoryA)).isInstanceOf(UnsupportedOperationException.class);
+        verify(this.mockCategoryRepository, times(2)).findAll();
+    }
+
+    /**
+     * 【概要】
+     * カテゴリーの2ページ目を名前順で取得<br>
+     *
+     * 【条件】
+     * categoryServiceのlistPageメソッドにキーワードを指定せず、名前順・after=0:a・表示件数2を渡すこと<br>
+     * categoryRepositoryのsearchPageAfterNameメソッドは3件のCategoryのリストを返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * 先頭2件のCategoryが格納されていること<br>
+     * 次のページのカーソルが2件目のIDと名前であること<br>
+     * 前のページのカーソルが1件目のIDと名前であること
+     */
+    @Test
+    void testListPage_sortedByName() {
+        List<Category> rows = Arrays.asList(new Category(1L, "categoryA"), new Category(2L, "categoryB"), new Category(3L, "categoryC"));
+        for (int i = 0; i < rows.size(); i++) {
+            rows.get(i).setId(i + 1L);
+        }
+
+        //スタブの設定
+        doReturn(rows).when(this.mockCategoryRepository).searchPageAfterName("", "a", 0L, PageRequest.of(0, 3));
+
+        //検証処理
+        KeysetPage<Category> page = target.listPage(null, KeysetRequest.of("name", "0:a", null, 2));
+        assertThat(page.getContent()).containsExactly(rows.get(0), rows.get(1));
+        assertThat(page.getNextCursor()).isEqualTo("2:" + rows.get(1).getName());
+        assertThat(page.getPrevCursor()).isEqualTo("1:" + rows.get(0).getName());
+    }
+
     /**
      * 【概要】
      * カテゴリー名の重複チェック<br>
      *
      * 【条件】
+     * categoryNameFilterのmightExistメソッドはtrueを返却するようスタブ化すること<br>
      * categoryRepositoryのfindByNameメソッドはnullを返すようスタブ化すること<br>
      *
      * 【結果】
@@ -147,6 +261,7 @@ class CategoryServiceTest {
         Category newCategory = new Category(1L, "categoryA");
 
         //スタブの設定
+        doReturn(true).when(this.mockCategoryNameFilter).mightExist(anyString());
         doReturn(null).when(this.mockCategoryRepository).findByName(anyString());
 
         //検証処理
@@ -172,12 +287,80 @@ class CategoryServiceTest {
         Category mockCategory = new Category(1L, "categoryA");
 
         //スタブの設定
+        doReturn(true).when(this.mockCategoryNameFilter).mightExist(anyString());
         doReturn(mockCategory).when(this.mockCategoryRepository).findByName(newCategory.getName());
 
         //検証処理
         assertThat(target.checkUnique(newCategory)).isFalse();
     }
 
+    /**
+     * 【概要】
+     * 登録されていないことが確実なカテゴリー名の重複チェック<br>
+     *
+     * 【条件】
+     * categoryNameFilterのmightExistメソッドはfalseを返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * trueを返し、データベースに問い合わせないこと
+     */
+    @Test
+    void testCheckUnique_definitelyAbsent() {
+        Category newCategory = new Category();
+        newCategory.setName("newcategory");
+
+        doReturn(false).when(this.mockCategoryNameFilter).mightExist(newCategory.getName());
+
+        assertThat(target.checkUnique(newCategory)).isTrue();
+        verify(this.mockCategoryRepository, never()).findByName(anyString());
+    }
+
+    /**
+     * 【概要】
+     * カテゴリー名が重複するカテゴリー情報の登録<br>
+     *
+     * 【条件】
+     * categoryRepositoryのsaveAndFlushメソッドは名前の一意制約違反のDataIntegrityViolationExceptionをスローするようスタブ化すること<br>
+     *
+     * 【結果】
+     * DuplicateExceptionをスローすること<br>
+     * 払い出されたIDを戻し、検索インデックスに追加しないこと
+     */
+    @Test
+    void testSave_duplicate() {
+        Category newCategory = new Category();
+        newCategory.setName("category");
+
+        //スタブの設定(保存時に払い出されたIDが格納された後、一意制約違反になる)
+        doAnswer(invocation -> {
+            newCategory.setId(1L);
+            throw uniqueViolation();
+        }).when(this.mockCategoryRepository).saveAndFlush(newCategory);
+
+        //検証処理
+        assertThatThrownBy(() -> target.save(newCategory)).isInstanceOf(DuplicateException.class);
+        assertThat(newCategory.getId()).isNull();
+        verify(this.mockCategorySearchIndex, never()).put(any());
+    }
+
+    /**
+     * 【概要】
+     * 一意制約以外の制約に違反するカテゴリー情報の登録<br>
+     *
+     * 【結果】
+     * DataIntegrityViolationExceptionをそのままスローすること
+     */
+    @Test
+    void testSave_otherConstraintViolation() {
+        Category newCategory = new Category();
+        DataIntegrityViolationException e = new DataIntegrityViolationException("not null",
+            new SQLException("null value", "23502"));
+
+        doThrow(e).when(this.mockCategoryRepository).saveAndFlush(newCategory);
+
+        assertThatThrownBy(() -> target.save(newCategory)).isSameAs(e);
+    }
+
     /**
      * 【概要】
      * カテゴリー情報の取得<br>
@@ -257,4 +440,89 @@ class CategoryServiceTest {
         //検証処理
         assertThat(target.get(id)).isEqualTo(category.get());
     }
+
+    /**
+     * 【概要】
+     * カテゴリーの一括登録<br>
+     *
+     * 【条件】
+     * 空行・ファイル内で重複したカテゴリー名・32文字を超えるカテゴリー名を含むCSVファイルを読み込むこと<br>
+     * categoryBulkRepositoryのupsertメソッドはcategoryBのみを登録した(categoryAは登録済み)結果を返却するようスタブ化すること<br>
+     * categoryRepositoryのfindAllByNameInメソッドは登録したカテゴリーのリストを返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * 重複を除いたカテゴリー名を1回のupsertで登録すること<br>
+     * 登録件数は実際に登録した1件、登録済み・ファイル内の重複は2件であること<br>
+     * 32文字を超えるカテゴリー名の行は行番号とエラーメッセージを返却すること<br>
+     * 登録したカテゴリーのみを検索インデックス・入力補完に追加し、2次キャッシュを破棄すること
+     */
+    @Test
+    void testImportCsv() throws Exception {
+        Category categoryA = new Category(null, "categoryA");
+        categoryA.setId(1L);
+        Category categoryB = new Category(null, "categoryB");
+        categoryB.setId(2L);
+        stubTransaction();
+        stubCache();
+        doReturn(List.of("categoryB")).when(this.mockCategoryBulkRepository).upsert(List.of("categoryA", "categoryB"));
+        doReturn(List.of(categoryB)).when(this.mockCategoryRepository).findAllByNameIn(List.of("categoryB"));
+
+        CsvImportResult result = target.importCsv(
+            stream("name\ncategoryA\ncategoryB\n\ncategoryA\ncategoryNameLongerThanThirtyTwoChars\n"));
+
+        assertThat(result.getTotalRows()).isEqualTo(4L);
+        assertThat(result.getImportedRows()).isEqualTo(1L);
+        assertThat(result.getSkippedRows()).isEqualTo(2L);
+        assertThat(result.getErrors()).extracting(CsvImportResult.RowError::getLine).containsExactly(6L);
+        verify(this.mockCategoryBulkRepository, times(1)).upsert(List.of("categoryA", "categoryB"));
+        verify(this.mockCategorySearchIndex, times(1)).put(categoryB);
+        verify(this.mockCategorySearchIndex, never()).put(categoryA);
+        verify(this.mockProductSuggestIndex, times(1)).putCategory(categoryB);
+        verify(this.mockCache, times(1)).evict(Category.class);
+    }
+
+    /**
+     * 【概要】
+     * name列がないCSVファイルの一括登録<br>
+     *
+     * 【結果】
+     * 1行目のエラーを返却し、登録しないこと
+     */
+    @Test
+    void testImportCsv_missingColumn() throws Exception {
+        stubCache();
+
+        CsvImportResult result = target.importCsv(stream("id\n1\n"));
+
+        assertThat(result.getErrors()).extracting(CsvImportResult.RowError::getLine).containsExactly(1L);
+        verify(this.mockCategoryBulkRepository, never()).upsert(any());
+    }
+
+    /**
+     * トランザクション内の処理をそのまま実行するようスタブ化する
+     */
+    @SuppressWarnings("unchecked")
+    private void stubTransaction() {
+        doAnswer(invocation -> ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null))
+            .when(this.mockTransactionTemplate).execute(any());
+    }
+
+    /**
+     * 2次キャッシュの破棄をモックで受けるようスタブ化する
+     */
+    private void stubCache() {
+        doReturn(this.mockSessionFactory).when(this.mockSessionFactory).unwrap(SessionFactory.class);
+        doReturn(this.mockCache).when(this.mockSessionFactory).getCache();
+    }
+
+    private static ByteArrayInputStream stream(String csv) {
+        return new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static DataIntegrityViolationException uniqueViolation() {
+        return new DataIntegrityViolationException("duplicate key",
+            new ConstraintViolationException("duplicate key value violates unique constraint",
+                new SQLException("duplicate key value violates unique constraint", "23505"), Category.NAME_CONSTRAINT));
+    }
+
 }
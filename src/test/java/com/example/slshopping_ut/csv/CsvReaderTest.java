@@ -0,0 +1,59 @@
+package com.example.slshopping_ut.csv;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.jupiter.api.Test;
+
+class CsvReaderTest {
+
+    /**
+     * 【概要】
+     * CSVのレコードを1件ずつ読み込む<br>
+     *
+     * 【条件】
+     * 先頭にBOMがあり、改行がCRLFとLFの混在したCSVを読み込むこと<br>
+     *
+     * 【結果】
+     * BOMを除いてカンマ区切りの項目を返却すること<br>
+     * 空の項目は空文字として返却すること<br>
+     * ファイルの末尾に達した場合はnullを返却すること
+     */
+    @Test
+    void testReadRecord() throws IOException {
+        try (CsvReader target = new CsvReader(new StringReader("\uFEFFname,price\r\nA,100\nB,\n"))) {
+            assertThat(target.readRecord()).containsExactly("name", "price");
+            assertThat(target.readRecord()).containsExactly("A", "100");
+            assertThat(target.readRecord()).containsExactly("B", "");
+            assertThat(target.readRecord()).isNull();
+        }
+    }
+
+    /**
+     * 【概要】
+     * ダブルクォートで囲まれた項目の読み込み<br>
+     *
+     * 【条件】
+     * カンマ・改行・連続したダブルクォートを含む項目を読み込むこと<br>
+     * 最終行に改行がないこと<br>
+     *
+     * 【結果】
+     * ダブルクォートの中のカンマ・改行を項目の一部として返却すること<br>
+     * 連続したダブルクォートを1つのダブルクォートとして返却すること<br>
+     * getLineNumberはレコードの開始行を返却すること
+     */
+    @Test
+    void testReadRecord_quoted() throws IOException {
+        try (CsvReader target = new CsvReader(new StringReader(
+                "\"a,b\",\"2行\n目\"\n\"say \"\"hi\"\"\",x"))) {
+            assertThat(target.readRecord()).containsExactly("a,b", "2行\n目");
+            assertThat(target.getLineNumber()).isEqualTo(1L);
+            assertThat(target.readRecord()).containsExactly("say \"hi\"", "x");
+            assertThat(target.getLineNumber()).isEqualTo(3L);
+            assertThat(target.readRecord()).isNull();
+        }
+    }
+
+}
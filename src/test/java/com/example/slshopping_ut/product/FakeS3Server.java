@@ -0,0 +1,233 @@
+package com.example.slshopping_ut.product;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * テスト用のS3互換のオブジェクトストレージ(オブジェクトはメモリ上に保持する)
+ * S3ImageStoreが使用するAPI(PUT・GET・HEAD・DELETE・ListObjectsV2・マルチパートアップロード)のみに対応する
+ * 署名の作成はSDKに任せるため署名の内容は検証せず、Authorizationヘッダーのアクセスキーが異なる場合のみ403を返す
+ * SDKがaws-chunked形式で送信した内容は、元の内容に戻して保存する
+ */
+class FakeS3Server implements AutoCloseable {
+
+    static final String REGION = "us-east-1";
+
+    static final String BUCKET = "product-images";
+
+    static final String ACCESS_KEY = "test-access-key";
+
+    static final String SECRET_KEY = "test-secret-key";
+
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    /** キー → 内容 */
+    final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+
+    /** アップロードID → パート番号 → 内容 */
+    final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+
+    /** GETの回数 */
+    final AtomicInteger getCount = new AtomicInteger();
+
+    /** 受信したパートの数 */
+    final AtomicInteger partCount = new AtomicInteger();
+
+    FakeS3Server() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    URI endpoint() {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            byte[] body = decode(exchange, exchange.getRequestBody().readAllBytes());
+            if (!verify(exchange)) {
+                respond(exchange, 403, "<Error><Code>InvalidAccessKeyId</Code></Error>");
+                return;
+            }
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getRawPath();
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String bucketPath = "/" + BUCKET;
+            // ListObjectsV2はバケットのパス(末尾の/は省略される場合がある)に送信される
+            String key = path.length() > bucketPath.length() + 1
+                ? URLDecoder.decode(path.substring(bucketPath.length() + 1), StandardCharsets.UTF_8)
+                : null;
+
+            if (key == null) {
+                // ListObjectsV2
+                StringBuilder xml = new StringBuilder("<ListBucketResult><IsTruncated>false</IsTruncated>");
+                new TreeMap<>(objects).keySet().stream()
+                    .filter(objectKey -> objectKey.startsWith(query.getOrDefault("prefix", "")))
+                    .forEach(objectKey -> xml.append("<Contents><Key>").append(objectKey).append("</Key></Contents>"));
+                respond(exchange, 200, xml.append("</ListBucketResult>").toString());
+            } else if ("POST".equals(method) && query.containsKey("uploads")) {
+                String uploadId = UUID.randomUUID().toString();
+                uploads.put(uploadId, new ConcurrentHashMap<>());
+                respond(exchange, 200, "<InitiateMultipartUploadResult><Bucket>" + BUCKET + "</Bucket><Key>" + key
+                    + "</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+            } else if ("PUT".equals(method) && query.containsKey("partNumber")) {
+                int partNumber = Integer.parseInt(query.get("partNumber"));
+                uploads.get(query.get("uploadId")).put(partNumber, body);
+                partCount.incrementAndGet();
+                exchange.getResponseHeaders().set("ETag", etag(body));
+                respond(exchange, 200, "");
+            } else if ("POST".equals(method) && query.containsKey("uploadId")) {
+                Map<Integer, byte[]> parts = new TreeMap<>(uploads.remove(query.get("uploadId")));
+                int length = parts.values().stream().mapToInt(part -> part.length).sum();
+                byte[] content = new byte[length];
+                int offset = 0;
+                for (byte[] part : parts.values()) {
+                    System.arraycopy(part, 0, content, offset, part.length);
+                    offset += part.length;
+                }
+                objects.put(key, content);
+                respond(exchange, 200, "<CompleteMultipartUploadResult><Bucket>" + BUCKET + "</Bucket><Key>" + key
+                    + "</Key><ETag>\"multipart-" + parts.size() + "\"</ETag></CompleteMultipartUploadResult>");
+            } else if ("DELETE".equals(method) && query.containsKey("uploadId")) {
+                uploads.remove(query.get("uploadId"));
+                respond(exchange, 204, null);
+            } else if ("PUT".equals(method)) {
+                objects.put(key, body);
+                // SDKは送信した内容のMD5とETagを比較する
+                exchange.getResponseHeaders().set("ETag", etag(body));
+                respond(exchange, 200, "");
+            } else if ("GET".equals(method) || "HEAD".equals(method)) {
+                if ("GET".equals(method)) {
+                    getCount.incrementAndGet();
+                }
+                byte[] content = objects.get(key);
+                if (content == null) {
+                    respond(exchange, 404, "HEAD".equals(method) ? null : "<Error><Code>NoSuchKey</Code></Error>");
+                    return;
+                }
+                exchange.getResponseHeaders().set("Last-Modified", "Wed, 01 May 2024 00:00:00 GMT");
+                exchange.getResponseHeaders().set("ETag", etag(content));
+                if ("HEAD".equals(method)) {
+                    respond(exchange, 200, null);
+                } else {
+                    exchange.sendResponseHeaders(200, content.length);
+                    exchange.getResponseBody().write(content);
+                }
+            } else if ("DELETE".equals(method)) {
+                objects.remove(key);
+                respond(exchange, 204, null);
+            } else {
+                respond(exchange, 405, "");
+            }
+        }
+    }
+
+    /**
+     * Authorizationヘッダーのアクセスキーを確認する
+     */
+    private static boolean verify(HttpExchange exchange) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        return authorization != null && authorization.contains("Credential=" + ACCESS_KEY + "/");
+    }
+
+    /**
+     * aws-chunked形式(チャンクごとのサイズ・署名と内容の繰り返し)で送信された場合は、内容のみを取り出す
+     */
+    private static byte[] decode(HttpExchange exchange, byte[] body) throws IOException {
+        String contentSha256 = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        if (contentSha256 == null || !contentSha256.startsWith("STREAMING-")) {
+            return body;
+        }
+        InputStream in = new ByteArrayInputStream(body);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while (true) {
+            String header = readLine(in);
+            int extension = header.indexOf(';');
+            int size = Integer.parseInt(extension < 0 ? header : header.substring(0, extension), 16);
+            if (size == 0) {
+                return out.toByteArray();
+            }
+            out.write(in.readNBytes(size));
+            readLine(in);
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1 && c != '\n') {
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    /**
+     * S3と同じく、内容のMD5をETagとして返す
+     */
+    private static String etag(byte[] content) {
+        try {
+            return "\"" + HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(content)) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new TreeMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String param : rawQuery.split("&")) {
+            int eq = param.indexOf('=');
+            String name = eq < 0 ? param : param.substring(0, eq);
+            String value = eq < 0 ? "" : param.substring(eq + 1);
+            query.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    /**
+     * @param body 本文(本文がない場合はnull)
+     */
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+}
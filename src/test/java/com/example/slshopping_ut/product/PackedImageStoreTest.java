@@ -0,0 +1,298 @@
+package com.example.slshopping_ut.product;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class PackedImageStoreTest {
+
+    /** テスト対象クラス */
+    private PackedImageStore target;
+
+    @TempDir
+    Path tempDir;
+
+    private Path packedDir;
+
+    private String keyA = "sha256/aa/aa/a.png";
+
+    private String keyB = "sha256/bb/bb/b.png";
+
+    private String keyC = "sha256/cc/cc/c.png";
+
+    @BeforeEach
+    void setup() throws Exception {
+        packedDir = tempDir.resolve("product-images-packed");
+        target = open(268435456L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        target.close();
+    }
+
+    /**
+     * 【概要】
+     * 画像の保存・取得の検証<br>
+     *
+     * 【条件】
+     * 100バイトのファイルを保存すること<br>
+     *
+     * 【結果】
+     * 保存した内容・サイズの画像を取得できること<br>
+     * ファイルではなく、メモリにマップした領域として返すこと<br>
+     * 保存していないキーはnullを返すこと
+     */
+    @Test
+    void testPutAndGet() throws Exception {
+        //準備
+        byte[] content = content(100, 1);
+
+        //実行
+        target.put(keyA, file(content));
+
+        //検証
+        assertThat(target.exists(keyA)).isTrue();
+        StoredImage image = target.get(keyA);
+        assertThat(image.getFile()).isNull();
+        assertThat(image.getLength()).isEqualTo(100);
+        assertThat(read(image)).isEqualTo(content);
+        assertThat(target.exists(keyB)).isFalse();
+        assertThat(target.get(keyB)).isNull();
+    }
+
+    /**
+     * 【概要】
+     * 前方一致による画像の削除の検証<br>
+     *
+     * 【条件】
+     * 元の画像・サムネイルと、別の画像を保存し、元の画像のキーの拡張子を除いた部分で削除すること<br>
+     *
+     * 【結果】
+     * 元の画像・サムネイルが削除されること<br>
+     * 別の画像は削除されないこと
+     */
+    @Test
+    void testRemoveAll() throws Exception {
+        //準備
+        target.put(keyA, file(content(100, 1)));
+        target.put("sha256/aa/aa/a_thumb.png", file(content(10, 2)));
+        target.put(keyB, file(content(100, 3)));
+
+        //実行
+        target.removeAll("sha256/aa/aa/a");
+
+        //検証
+        assertThat(target.exists(keyA)).isFalse();
+        assertThat(target.exists("sha256/aa/aa/a_thumb.png")).isFalse();
+        assertThat(target.exists(keyB)).isTrue();
+    }
+
+    /**
+     * 【概要】
+     * 起動時の索引の作成の検証<br>
+     *
+     * 【条件】
+     * 画像の保存・上書き・削除の後、セグメントファイルを開き直すこと<br>
+     *
+     * 【結果】
+     * 最後に保存した内容を取得できること<br>
+     * 削除した画像は存在しないこと
+     */
+    @Test
+    void testOpen_reload() throws Exception {
+        //準備
+        byte[] content = content(100, 2);
+        target.put(keyA, file(content(100, 1)));
+        target.put(keyA, file(content));
+        target.put(keyB, file(content(100, 3)));
+        target.removeAll(keyB);
+        target.close();
+
+        //実行
+        target = open(268435456L);
+
+        //検証
+        assertThat(read(target.get(keyA))).isEqualTo(content);
+        assertThat(target.exists(keyB)).isFalse();
+    }
+
+    /**
+     * 【概要】
+     * 追記先のセグメントファイルのマップの検証<br>
+     *
+     * 【条件】
+     * 100バイトの画像を保存して取得した後、別の画像を保存して取得すること<br>
+     *
+     * 【結果】
+     * 追記に備えてセグメントファイルの長さが1MB確保されていること<br>
+     * 2件目の取得でマップし直さず、1件目の取得でマップした領域を使用すること<br>
+     * 閉じた後のセグメントファイルは書き込み済みのサイズに切り詰められていること
+     */
+    @Test
+    void testGet_reusesMapping() throws Exception {
+        //準備
+        Path segment = packedDir.resolve("segment-00000001.dat");
+        target.put(keyA, file(content(100, 1)));
+        read(target.get(keyA));
+        Object mapped = ReflectionTestUtils.getField(ReflectionTestUtils.getField(target, "active"), "mapped");
+
+        //実行
+        target.put(keyB, file(content(100, 2)));
+
+        //検証
+        assertThat(read(target.get(keyB))).isEqualTo(content(100, 2));
+        assertThat(ReflectionTestUtils.getField(ReflectionTestUtils.getField(target, "active"), "mapped"))
+            .isSameAs(mapped);
+        assertThat(Files.size(segment)).isEqualTo(1024 * 1024);
+        target.close();
+        assertThat(Files.size(segment)).isEqualTo(2 * (24 + keyA.length() + 100));
+    }
+
+    /**
+     * 【概要】
+     * 書き込みの途中で停止したセグメントファイルの読み込みの検証<br>
+     *
+     * 【条件】
+     * セグメントファイルの末尾に、途中までのレコードが残っていること<br>
+     *
+     * 【結果】
+     * 途中までのレコードを切り捨て、それ以前の画像を取得できること<br>
+     * 切り捨てた位置から追記できること
+     */
+    @Test
+    void testOpen_incompleteRecord() throws Exception {
+        //準備
+        byte[] content = content(100, 1);
+        target.put(keyA, file(content));
+        target.close();
+        Path segment = packedDir.resolve("segment-00000001.dat");
+        long size = Files.size(segment);
+        Files.write(segment, new byte[] { 0x53, 0x4C, 0x50, 0x49, 0, 0, 0 }, StandardOpenOption.APPEND);
+
+        //実行
+        target = open(268435456L);
+        target.put(keyB, file(content(100, 2)));
+
+        //検証
+        assertThat(read(target.get(keyA))).isEqualTo(content);
+        target.close();
+        assertThat(Files.size(segment)).isEqualTo(size * 2);
+        target = open(268435456L);
+        assertThat(read(target.get(keyB))).isEqualTo(content(100, 2));
+    }
+
+    /**
+     * 【概要】
+     * セグメントファイルの圧縮の検証<br>
+     *
+     * 【条件】
+     * セグメントファイルの最大サイズを300バイトとし、100バイトの画像を3件保存すること(2件目までが1つ目のセグメントファイル)<br>
+     * 1件目の画像を削除し、圧縮が終わるまで待つこと<br>
+     *
+     * 【結果】
+     * 参照されない部分が半分になった1つ目のセグメントファイルが、2件目の画像のレコードのみのファイルに置き換えられること<br>
+     * 2件目の画像を置き換えの前後・開き直した後も取得できること<br>
+     * 削除した画像は開き直した後も存在しないこと
+     */
+    @Test
+    void testRemoveAll_compaction() throws Exception {
+        //準備
+        target.close();
+        target = open(300L);
+        byte[] content = content(100, 2);
+        target.put(keyA, file(content(100, 1)));
+        target.put(keyB, file(content));
+        target.put(keyC, file(content(100, 3)));
+        StoredImage before = target.get(keyB);
+
+        //実行
+        target.removeAll(keyA);
+        target.awaitCompaction();
+
+        //検証
+        Path segment = packedDir.resolve("segment-00000001.dat");
+        assertThat(Files.size(segment)).isEqualTo(24 + keyB.length() + 100);
+        assertThat(packedDir.resolve("segment-00000001.dat.compacting")).doesNotExist();
+        assertThat(read(before)).isEqualTo(content);
+        assertThat(read(target.get(keyB))).isEqualTo(content);
+        target.close();
+        target = open(300L);
+        assertThat(read(target.get(keyB))).isEqualTo(content);
+        assertThat(read(target.get(keyC))).isEqualTo(content(100, 3));
+        assertThat(target.exists(keyA)).isFalse();
+    }
+
+    /**
+     * 【概要】
+     * 参照される画像がなくなったセグメントファイルの圧縮の検証<br>
+     *
+     * 【条件】
+     * セグメントファイルの最大サイズを300バイトとし、100バイトの画像を3件保存すること(2件目までが1つ目のセグメントファイル)<br>
+     * 1件目・2件目の画像を削除し、圧縮が終わるまで待つこと<br>
+     *
+     * 【結果】
+     * 1つ目のセグメントファイルが削除されること<br>
+     * 開き直した後も、削除した画像は存在せず、3件目の画像を取得できること
+     */
+    @Test
+    void testRemoveAll_compactionDeletesEmptySegment() throws Exception {
+        //準備
+        target.close();
+        target = open(300L);
+        target.put(keyA, file(content(100, 1)));
+        target.put(keyB, file(content(100, 2)));
+        target.put(keyC, file(content(100, 3)));
+
+        //実行
+        target.removeAll(keyA);
+        target.removeAll(keyB);
+        target.awaitCompaction();
+
+        //検証
+        assertThat(packedDir.resolve("segment-00000001.dat")).doesNotExist();
+        target.close();
+        target = open(300L);
+        assertThat(target.exists(keyA)).isFalse();
+        assertThat(target.exists(keyB)).isFalse();
+        assertThat(read(target.get(keyC))).isEqualTo(content(100, 3));
+    }
+
+    private PackedImageStore open(long segmentSize) throws Exception {
+        PackedImageStore store = new PackedImageStore();
+        ReflectionTestUtils.setField(store, "packedDir", packedDir.toString());
+        ReflectionTestUtils.setField(store, "segmentSize", segmentSize);
+        ReflectionTestUtils.setField(store, "compactionThreshold", 0.5);
+        store.open();
+        return store;
+    }
+
+    private Path file(byte[] content) throws Exception {
+        return Files.write(Files.createTempFile(tempDir, "upload", ".png"), content);
+    }
+
+    private static byte[] content(int length, int seed) {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) (i * seed);
+        }
+        return content;
+    }
+
+    private static byte[] read(StoredImage image) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        image.transferTo(0, image.getLength(), Channels.newChannel(out));
+        return out.toByteArray();
+    }
+
+}
@@ -1,11 +1,14 @@
 package com.example.slshopping_ut.product;
 
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -15,11 +18,16 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import com.example.slshopping_ut.DuplicateException;
+import com.example.slshopping_ut.KeysetPage;
+import com.example.slshopping_ut.KeysetRequest;
 import com.example.slshopping_ut.brand.BrandService;
 import com.example.slshopping_ut.category.CategoryService;
+import com.example.slshopping_ut.csv.CsvImportResult;
 import com.example.slshopping_ut.entity.Brand;
 import com.example.slshopping_ut.entity.Category;
 import com.example.slshopping_ut.entity.Product;
@@ -40,6 +48,12 @@ class ProductControllerTest {
     @Mock
     private ProductImageService mockProductImageService;
 
+    @Mock
+    private ProductImportService mockProductImportService;
+
+    @Mock
+    private ProductExportService mockProductExportService;
+
     /** テスト対象クラスにモックを注入 */
     @InjectMocks
     private ProductController target;
@@ -59,23 +73,35 @@ class ProductControllerTest {
      * 【条件】
      * GET通信の/productsにリクエストすること<br>
      * クエリパラメーターkeywordにはnullを入力すること<br>
-     * productServiceのfindAllメソッドは商品のリストを返却するようスタブ化すること<br>
+     * productServiceのlistPageメソッドは商品のページと絞り込み候補ごとの件数を返却するようスタブ化すること<br>
      *
      * 【結果】
      * ステータスが200であること<br>
      * products/products.htmlを表示すること<br>
      * キー名listProductsに商品のリストが格納されていること<br>
-     * キー名keywordにnullが格納されていること
+     * キー名pageに商品のページが格納されていること<br>
+     * キー名facetsに絞り込み候補ごとの件数が格納されていること<br>
+     * キー名filterに絞り込みなしの条件が格納されていること<br>
+     * キー名keywordにnullが格納されていること<br>
+     * キー名listBrands・listCategoriesにキャッシュしたブランド・カテゴリーのリストが格納されていること
      */
     @Test
     void testListProducts() throws Exception {
         //準備
-        List<Product> products = new ArrayList<>();
+        List<ProductListRow> products = new ArrayList<>();
+        KeysetPage<ProductListRow> page = new KeysetPage<>(products, KeysetRequest.SORT_ID, KeysetPage.DEFAULT_SIZE, null, null);
+        ProductFacets facets = new ProductFacets(ProductFilter.NONE);
         String keyword = null;
+        List<Brand> brands = List.of(new Brand(1L, "brandA"));
+        List<Category> categories = List.of(new Category(1L, "categoryA"));
 
         //スタブを設定
         //doReturn(返り値の設定).when(対象のモック).対象のメソッド（引数）
-        doReturn(products).when(this.mockProductService).listAll(keyword);
+        doReturn(brands).when(this.mockBrandService).listCached();
+        doReturn(categories).when(this.mockCategoryService).listCached();
+        doReturn(new ProductSearchResult(page, facets)).when(this.mockProductService).listPage(isNull(),
+            eq(ProductFilter.NONE), argThat(request ->
+                KeysetRequest.SORT_ID.equals(request.getSort()) && request.getSize() == KeysetPage.DEFAULT_SIZE));
 
         //検証
         /*
@@ -91,10 +117,74 @@ class ProductControllerTest {
                 .andExpect(status().isOk()) // ステータスの検証
                 .andExpect(view().name("products/products")) // テンプレートファイルの呼び出し検証
                 .andExpect(model().attribute("listProducts", products)) // modelに格納されている要素の検証
-                .andExpect(model().attribute("keyword", keyword));
+                .andExpect(model().attribute("page", page))
+                .andExpect(model().attribute("facets", facets))
+                .andExpect(model().attribute("filter", ProductFilter.NONE))
+                .andExpect(model().attribute("keyword", keyword))
+                .andExpect(model().attribute("listBrands", brands))
+                .andExpect(model().attribute("listCategories", categories));
 
     }
 
+    /**
+     * 【概要】
+     * 商品一覧表示画面の絞り込みの検証<br>
+     *
+     * 【条件】
+     * GET通信の/productsにリクエストすること<br>
+     * クエリパラメーターbrandIdに1、priceにFROM_1000を入力すること<br>
+     * productServiceのlistPageメソッドは商品のページと絞り込み候補ごとの件数を返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * ステータスが200であること<br>
+     * キー名filterにブランドID1・価格帯FROM_1000の条件が格納されていること
+     */
+    @Test
+    void testListProducts_filtered() throws Exception {
+        //準備
+        ProductFilter filter = new ProductFilter(1L, null, PriceRange.FROM_1000);
+        KeysetPage<ProductListRow> page = new KeysetPage<>(new ArrayList<>(), KeysetRequest.SORT_ID, KeysetPage.DEFAULT_SIZE, null, null);
+
+        //スタブを設定
+        doReturn(new ProductSearchResult(page, new ProductFacets(filter))).when(this.mockProductService)
+            .listPage(isNull(), eq(filter), any(KeysetRequest.class));
+
+        //検証
+        this.mockMvc.perform(get("/products").param("brandId", "1").param("price", "FROM_1000"))
+                .andExpect(status().isOk())
+                .andExpect(view().name("products/products"))
+                .andExpect(model().attribute("filter", filter));
+    }
+
+    /**
+     * 【概要】
+     * 商品検索の入力補完の検証<br>
+     *
+     * 【条件】
+     * GET通信の/products/suggestにリクエストすること<br>
+     * クエリパラメーターqにsoを入力すること<br>
+     * productServiceのsuggestメソッドは候補のリストを返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * ステータスが200であること<br>
+     * 候補の種別・ID・名前がJSONで返却されること
+     */
+    @Test
+    void testSuggest() throws Exception {
+        //スタブを設定
+        doReturn(List.of(new Suggestion(Suggestion.TYPE_BRAND, 1L, "Sony"),
+            new Suggestion(Suggestion.TYPE_PRODUCT, 3L, "Sound Bar")))
+            .when(this.mockProductService).suggest("so");
+
+        //検証
+        this.mockMvc.perform(get("/products/suggest").param("q", "so"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].type").value("brand"))
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[1].name").value("Sound Bar"));
+    }
+
     /**
      * 【概要】
      * 商品新規登録画面の検証<br>
@@ -128,14 +218,14 @@ class ProductControllerTest {
      * 【条件】
      * POST通信の/products/saveにリクエストすること<br>
      * バリデーションを通過する値をパラメーターにすること<br>
-     * productImageServiceのisValidメソッドはtrueを返却するようスタブ化すること<br>
-     * productServiceのcheckUniqueメソッドはtrueを返却するようスタブ化すること<br>
+     * productImageServiceのstageメソッドは一時ファイルを返却するようスタブ化すること<br>
      * productsServiceのsaveメソッドはProductのインスタンスを返却するようスタブ化すること<br>
      *
      * 【結果】
      * ステータスが302であること<br>
      * /productsにリダイレクトしていること<br>
-     * リダイレクト先にキー名success_messageに「登録に成功しました」という文字列が格納されていること
+     * リダイレクト先にキー名success_messageに「登録に成功しました」という文字列が格納されていること<br>
+     * 一時ファイルを保存する処理を登録すること
      */
     @Test
     void testSaveProduct() throws Exception {
@@ -145,11 +235,10 @@ class ProductControllerTest {
         Product product = new Product(1L, "productA", "description", 1, "image",
             1.0, 1.0, 1.0, 1.0, category, brand);
 
-        //スタブを設定
-        doReturn(true).when(this.mockProductImageService).isValid(null);
+        StagedImage stagedImage = new StagedImage(Paths.get("upload.tmp"), "image", "hash");
 
-        doReturn(true).when(this.mockProductService).checkUnique(product);
-        
+        //スタブを設定
+        doReturn(stagedImage).when(this.mockProductImageService).stage(null);
         doReturn(product).when(this.mockProductService).save(product);
 
         //検証
@@ -163,7 +252,209 @@ class ProductControllerTest {
                 .andExpect(status().isFound())
                 .andExpect(redirectedUrl("/products"))
                 .andExpect(flash().attribute("success_message", "登録に成功しました"));
+        verify(this.mockProductImageService).commitAsync(stagedImage, product, null);
+
+    }
+
+    /**
+     * 【概要】
+     * 商品新規登録処理で名前が重複していた場合の検証<br>
+     *
+     * 【条件】
+     * POST通信の/products/saveにリクエストすること<br>
+     * productImageServiceのstageメソッドは一時ファイルを返却するようスタブ化すること<br>
+     * productServiceのsaveメソッドはDuplicateExceptionをスローするようスタブ化すること<br>
+     *
+     * 【結果】
+     * ステータスが200であること<br>
+     * products/product_form.htmlを表示すること<br>
+     * キー名error_messageに「重複しています」という文字列が格納されていること<br>
+     * 一時ファイルを削除し、保存先へ移動しないこと
+     */
+    @Test
+    void testSaveProduct_duplicate() throws Exception {
+        //準備
+        Brand brand = new Brand(1L, "brandA");
+        Category category = new Category(1L, "categoryA");
+        Product product = new Product(null, "productA", "description", 1, "image",
+            1.0, 1.0, 1.0, 1.0, category, brand);
+
+        StagedImage stagedImage = new StagedImage(Paths.get("upload.tmp"), "image", "hash");
+
+        //スタブを設定
+        doReturn(stagedImage).when(this.mockProductImageService).stage(null);
+        doThrow(new DuplicateException(null)).when(this.mockProductService).save(product);
+
+        //検証
+        this.mockMvc.perform(post("/products/save")
+                .flashAttr("product", product))
+                .andExpect(status().isOk())
+                .andExpect(view().name("products/product_form"))
+                .andExpect(model().attribute("error_message", "重複しています"));
+        verify(this.mockProductImageService).discard(stagedImage);
+        verify(this.mockProductImageService, never()).commitAsync(any(), any(), any());
+    }
+
+    /**
+     * 【概要】
+     * 商品新規登録処理で重複以外の理由により保存に失敗した場合の検証<br>
+     *
+     * 【条件】
+     * POST通信の/products/saveにリクエストすること<br>
+     * productImageServiceのstageメソッドは一時ファイルを返却するようスタブ化すること<br>
+     * productServiceのsaveメソッドはRuntimeExceptionをスローするようスタブ化すること<br>
+     *
+     * 【結果】
+     * 例外をそのままスローすること<br>
+     * 一時ファイルを削除し、保存先へ移動しないこと
+     */
+    @Test
+    void testSaveProduct_saveFailed() throws Exception {
+        //準備
+        Brand brand = new Brand(1L, "brandA");
+        Category category = new Category(1L, "categoryA");
+        Product product = new Product(null, "productA", "description", 1, "image",
+            1.0, 1.0, 1.0, 1.0, category, brand);
 
+        StagedImage stagedImage = new StagedImage(Paths.get("upload.tmp"), "image", "hash");
+        RuntimeException failure = new RuntimeException("connection lost");
+
+        //スタブを設定
+        doReturn(stagedImage).when(this.mockProductImageService).stage(null);
+        doThrow(failure).when(this.mockProductService).save(product);
+
+        //検証
+        assertThatThrownBy(() -> this.mockMvc.perform(post("/products/save")
+                .flashAttr("product", product)))
+                .hasCause(failure);
+        verify(this.mockProductImageService).discard(stagedImage);
+        verify(this.mockProductImageService, never()).commitAsync(any(), any(), any());
+    }
+
+    /**
+     * 【概要】
+     * 商品新規登録処理で画像が不正な場合の検証<br>
+     *
+     * 【条件】
+     * POST通信の/products/saveにリクエストすること<br>
+     * productImageServiceのstageメソッドはInvalidImageExceptionをスローするようスタブ化すること<br>
+     *
+     * 【結果】
+     * ステータスが200であること<br>
+     * products/product_form.htmlを表示すること<br>
+     * キー名file_error_messageに画像の条件の文字列が格納されていること<br>
+     * 商品情報を登録しないこと
+     */
+    @Test
+    void testSaveProduct_invalidImage() throws Exception {
+        //準備
+        Brand brand = new Brand(1L, "brandA");
+        Category category = new Category(1L, "categoryA");
+        Product product = new Product(null, "productA", "description", 1, "image",
+            1.0, 1.0, 1.0, 1.0, category, brand);
+
+        //スタブを設定
+        doThrow(new InvalidImageException("Unsupported image format")).when(this.mockProductImageService).stage(null);
+
+        //検証
+        this.mockMvc.perform(post("/products/save")
+                .flashAttr("product", product))
+                .andExpect(status().isOk())
+                .andExpect(view().name("products/product_form"))
+                .andExpect(model().attribute("file_error_message", "画像は2MB以内かつpng・jpg・jpeg形式で添付してください"));
+        verify(this.mockProductService, never()).save(any());
+    }
+
+    /**
+     * 【概要】
+     * 商品一括登録処理の検証<br>
+     *
+     * 【条件】
+     * POST通信の/products/importにCSVファイルを添付してリクエストすること<br>
+     * productImportServiceのimportCsvメソッドは登録結果を返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * ステータスが200であること<br>
+     * products/product_import.htmlを表示すること<br>
+     * キー名resultに登録結果が格納されていること
+     */
+    @Test
+    void testImportProducts() throws Exception {
+        //準備
+        MockMultipartFile file = new MockMultipartFile("file", "products.csv", "text/csv",
+            "name,description,price,brand,category\n".getBytes());
+        CsvImportResult result = new CsvImportResult();
+
+        //スタブを設定
+        doReturn(result).when(this.mockProductImportService).importCsv(any());
+
+        //検証
+        this.mockMvc.perform(multipart("/products/import").file(file))
+            .andExpect(status().isOk())
+            .andExpect(view().name("products/product_import"))
+            .andExpect(model().attribute("result", result));
+    }
+
+    /**
+     * 【概要】
+     * 商品一括登録処理の検証(ファイル未添付)<br>
+     *
+     * 【条件】
+     * POST通信の/products/importにファイルを添付せずリクエストすること<br>
+     *
+     * 【結果】
+     * products/product_import.htmlを表示すること<br>
+     * キー名file_error_messageにエラーメッセージが格納されていること<br>
+     * 一括登録処理を呼び出さないこと
+     */
+    @Test
+    void testImportProducts_noFile() throws Exception {
+        this.mockMvc.perform(multipart("/products/import"))
+            .andExpect(status().isOk())
+            .andExpect(view().name("products/product_import"))
+            .andExpect(model().attribute("file_error_message", "CSVファイルを選択してください"));
+
+        verify(this.mockProductImportService, never()).importCsv(any());
+    }
+
+    /**
+     * 【概要】
+     * 商品情報のCSV出力の検証<br>
+     *
+     * 【条件】
+     * GET通信の/products/exportにリクエストすること<br>
+     *
+     * 【結果】
+     * ステータスが200であること<br>
+     * CSVを添付ファイルとして返却すること<br>
+     * productExportServiceのexportCsvメソッドを呼び出すこと
+     */
+    @Test
+    void testExportProducts() throws Exception {
+        this.mockMvc.perform(get("/products/export"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("text/csv;charset=UTF-8"))
+            .andExpect(header().string("Content-Disposition", "attachment; filename=\"products.csv\""));
+
+        verify(this.mockProductExportService, times(1)).exportCsv(any());
+    }
+
+    /**
+     * 【概要】
+     * 商品情報の出力の検証(未対応の形式)<br>
+     *
+     * 【条件】
+     * GET通信の/products/exportに、クエリパラメーターformatをxmlにしてリクエストすること<br>
+     *
+     * 【結果】
+     * ステータスが400であること
+     */
+    @Test
+    void testExportProducts_unsupportedFormat() throws Exception {
+        this.mockMvc.perform(get("/products/export").param("format", "xml"))
+            .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(this.mockProductExportService);
     }
 
     /**
@@ -177,7 +468,8 @@ class ProductControllerTest {
      * 【結果】
      * ステータスが200であること<br>
      * products/product_detail.htmlを表示すること<br>
-     * キー名productにID1LのProductが格納されていること
+     * キー名productにID1LのProductが格納されていること<br>
+     * ブランド・カテゴリーの選択肢を取得しないこと
      */
     @Test
     void testDetailProduct() throws Exception {
@@ -193,6 +485,8 @@ class ProductControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(view().name("products/product_detail"))
                 .andExpect(model().attribute("product", product));
+        verify(this.mockBrandService, never()).listCached();
+        verify(this.mockCategoryService, never()).listCached();
     }
 
     /**
@@ -232,8 +526,6 @@ class ProductControllerTest {
      * 【条件】
      * POST通信の/products/edit/1にリクエストすること<br>
      * バリデーションを通過する値をパラメーターにすること<br>
-     * productImageServiceのisValidメソッドはtrueを返却するようスタブ化すること<br>
-     * productServiceのcheckUniqueメソッドはtrueを返却するようスタブ化すること<br>
      * productsServiceのsaveメソッドはProductのインスタンスを返却するようスタブ化すること<br>
      *
      * 【結果】
@@ -251,8 +543,6 @@ class ProductControllerTest {
             1.0, 1.0, 1.0, 1.0, category, brand);
 
         //スタブを設定
-        doReturn(true).when(this.mockProductImageService).isValid(null);
-        doReturn(true).when(this.mockProductService).checkUnique(product);
         doReturn(product).when(this.mockProductService).save(product);
 
         //検証
@@ -269,25 +559,32 @@ class ProductControllerTest {
      *
      * 【条件】
      * GET通信の/products/delete/1にリクエストすること<br>
+     * productServiceのdeleteメソッドは削除したProductのインスタンスを返却するようスタブ化すること<br>
      *
      * 【結果】
      * ステータスが302であること<br>
      * /productsにリダイレクトしていること<br>
-     * リダイレクト先にキー名success_messageに「削除に成功しました」という文字列が格納されていること
+     * リダイレクト先にキー名success_messageに「削除に成功しました」という文字列が格納されていること<br>
+     * 削除した商品の画像を削除すること<br>
+     * 商品情報を削除とは別に取得しないこと
      */
     @Test
     void testDeleteProduct() throws Exception {
         //準備
         Long id = 1L;
+        Product product = new Product(id, "productA", "description", 1, "image",
+            1.0, 1.0, 1.0, 1.0, new Category(1L, "categoryA"), new Brand(1L, "brandA"));
 
         //スタブの設定
-        doNothing().when(this.mockProductService).delete(id);
+        doReturn(product).when(this.mockProductService).delete(id);
 
         //検証
         this.mockMvc.perform(get("/products/delete/{id}", id))
                 .andExpect(status().isFound())
                 .andExpect(redirectedUrl("/products"))
                 .andExpect(flash().attribute("success_message", "削除に成功しました"));
+        verify(this.mockProductImageService).delete(product);
+        verify(this.mockProductService, never()).get(any());
 
     }
 }
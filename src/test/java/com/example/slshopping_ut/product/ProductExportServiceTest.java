@@ -0,0 +1,108 @@
+package com.example.slshopping_ut.product;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.example.slshopping_ut.entity.Brand;
+import com.example.slshopping_ut.entity.Category;
+import com.example.slshopping_ut.entity.Product;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManager;
+
+@ExtendWith(MockitoExtension.class)
+class ProductExportServiceTest {
+
+    /** モック化したクラス */
+    @Mock
+    private ProductRepository mockProductRepository;
+
+    @Mock
+    private EntityManager mockEntityManager;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    /** テスト対象クラスにモックを注入 */
+    @InjectMocks
+    private ProductExportService target;
+
+    /**
+     * 【概要】
+     * 商品情報のCSV出力<br>
+     *
+     * 【条件】
+     * productRepositoryのstreamAllメソッドは、商品説明にカンマ・ダブルクォートを含む商品と含まない商品を返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * BOM・ヘッダー行に続けて1行に1件の商品を出力すること<br>
+     * カンマ・ダブルクォートを含む項目はダブルクォートで囲むこと<br>
+     * 出力した商品を永続化コンテキストから切り離すこと
+     */
+    @Test
+    void testExportCsv() throws Exception {
+        Product productA = product(1L, "productA", "a,\"b\"");
+        Product productB = product(2L, "productB", "descriptionB");
+        doReturn(Stream.of(productA, productB)).when(this.mockProductRepository).streamAll();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        target.exportCsv(out);
+
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("\uFEFF"
+            + "id,name,description,price,brand,category,length,width,height,weight\r\n"
+            + "1,productA,\"a,\"\"b\"\"\",100,brandA,categoryA,1.0,2.0,3.0,4.0\r\n"
+            + "2,productB,descriptionB,100,brandA,categoryA,1.0,2.0,3.0,4.0\r\n");
+        verify(this.mockEntityManager, times(1)).detach(productA);
+        verify(this.mockEntityManager, times(1)).detach(productB);
+    }
+
+    /**
+     * 【概要】
+     * 商品情報のNDJSON出力<br>
+     *
+     * 【条件】
+     * productRepositoryのstreamAllメソッドは2件の商品を返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * 1行に1件の商品をJSONで出力すること<br>
+     * ブランド・カテゴリーは名前を出力すること
+     */
+    @Test
+    void testExportNdjson() throws Exception {
+        doReturn(Stream.of(product(1L, "productA", "descriptionA"), product(2L, "productB", "descriptionB")))
+            .when(this.mockProductRepository).streamAll();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        target.exportNdjson(out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(2);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertThat(first.get("id").asLong()).isEqualTo(1L);
+        assertThat(first.get("name").asText()).isEqualTo("productA");
+        assertThat(first.get("brand").asText()).isEqualTo("brandA");
+        assertThat(first.get("category").asText()).isEqualTo("categoryA");
+        assertThat(first.get("weight").asDouble()).isEqualTo(4.0);
+        assertThat(objectMapper.readTree(lines[1]).get("name").asText()).isEqualTo("productB");
+        verify(this.mockEntityManager, times(2)).detach(any());
+    }
+
+    private static Product product(Long id, String name, String description) {
+        return new Product(id, name, description, 100, null, 1.0, 2.0, 3.0, 4.0,
+            new Category(1L, "categoryA"), new Brand(1L, "brandA"));
+    }
+
+}
@@ -0,0 +1,205 @@
+package com.example.slshopping_ut.product;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.example.slshopping_ut.entity.ImageKey;
+import com.example.slshopping_ut.entity.ImageVariant;
+
+class ProductImageControllerTest {
+
+    /** テスト対象クラス */
+    private ProductImageController target = new ProductImageController();
+
+    private MockMvc mockMvc;
+
+    @TempDir
+    Path tempDir;
+
+    private Path root;
+
+    private String hash = "ab".repeat(32);
+
+    private byte[] content = new byte[100];
+
+    @BeforeEach
+    void setup() throws Exception {
+        root = tempDir.resolve("product-images");
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        write(ImageKey.of(hash, "image.png", ImageVariant.THUMBNAIL));
+        write("1/legacy.png");
+        Files.write(tempDir.resolve("secret.txt"), content);
+
+        FileSystemImageStore imageStore = new FileSystemImageStore();
+        ReflectionTestUtils.setField(imageStore, "rootDir", root.toString());
+        ReflectionTestUtils.setField(target, "imageStore", imageStore);
+        ReflectionTestUtils.setField(target, "imageDir", root.toString());
+        ReflectionTestUtils.setField(target, "sendfileThreshold", 49152L);
+        //MockMvcの生成
+        this.mockMvc = MockMvcBuilders.standaloneSetup(target).alwaysDo(log()).build();
+    }
+
+    /**
+     * 【概要】
+     * 内容のハッシュ値で名前を付けた画像の配信の検証<br>
+     *
+     * 【条件】
+     * GET通信の/product-images/sha256/ab/ab/{ハッシュ値}_thumb.pngにリクエストすること<br>
+     *
+     * 【結果】
+     * ステータスが200であること<br>
+     * 画像の内容・Content-Type・Content-Lengthを返すこと<br>
+     * ファイル名から作成した強いETagと、1年間再検証しないCache-Controlを返すこと
+     */
+    @Test
+    void testServe() throws Exception {
+        this.mockMvc.perform(get("/product-images/" + ImageKey.of(hash, "image.png", ImageVariant.THUMBNAIL)))
+            .andExpect(status().isOk())
+            .andExpect(content().bytes(content))
+            .andExpect(content().contentType("image/png"))
+            .andExpect(header().longValue("Content-Length", 100))
+            .andExpect(header().string("ETag", "\"" + hash + "_thumb\""))
+            .andExpect(header().string("Cache-Control", ProductImageController.IMMUTABLE))
+            .andExpect(header().string("Accept-Ranges", "bytes"))
+            .andExpect(header().exists("Last-Modified"));
+    }
+
+    /**
+     * 【概要】
+     * 旧形式の画像の配信の検証<br>
+     *
+     * 【条件】
+     * GET通信の/product-images/1/legacy.pngにリクエストすること<br>
+     *
+     * 【結果】
+     * ステータスが200であること<br>
+     * 毎回再検証させるCache-Controlを返すこと
+     */
+    @Test
+    void testServe_legacy() throws Exception {
+        this.mockMvc.perform(get("/product-images/1/legacy.png"))
+            .andExpect(status().isOk())
+            .andExpect(content().bytes(content))
+            .andExpect(header().string("Cache-Control", ProductImageController.REVALIDATE))
+            .andExpect(header().exists("ETag"));
+    }
+
+    /**
+     * 【概要】
+     * 変更がない場合の再検証の検証<br>
+     *
+     * 【条件】
+     * If-None-Matchに画像のETagを指定すること<br>
+     *
+     * 【結果】
+     * ステータスが304であること<br>
+     * 本文を返さないこと
+     */
+    @Test
+    void testServe_notModified() throws Exception {
+        this.mockMvc.perform(get("/product-images/" + ImageKey.of(hash, "image.png", ImageVariant.THUMBNAIL))
+            .header("If-None-Match", "\"" + hash + "_thumb\""))
+            .andExpect(status().isNotModified())
+            .andExpect(content().bytes(new byte[0]));
+    }
+
+    /**
+     * 【概要】
+     * 範囲を指定した取得の検証<br>
+     *
+     * 【条件】
+     * Rangeにbytes=10-19を指定すること<br>
+     *
+     * 【結果】
+     * ステータスが206であること<br>
+     * 指定した範囲の内容と、Content-Range・Content-Lengthを返すこと
+     */
+    @Test
+    void testServe_range() throws Exception {
+        this.mockMvc.perform(get("/product-images/" + ImageKey.of(hash, "image.png", ImageVariant.THUMBNAIL))
+            .header("Range", "bytes=10-19"))
+            .andExpect(status().isPartialContent())
+            .andExpect(content().bytes(Arrays.copyOfRange(content, 10, 20)))
+            .andExpect(header().string("Content-Range", "bytes 10-19/100"))
+            .andExpect(header().longValue("Content-Length", 10));
+    }
+
+    /**
+     * 【概要】
+     * If-Rangeが一致しない場合の検証<br>
+     *
+     * 【条件】
+     * Rangeにbytes=10-19、If-Rangeに異なるETagを指定すること<br>
+     *
+     * 【結果】
+     * ステータスが200であること<br>
+     * 画像全体を返すこと
+     */
+    @Test
+    void testServe_ifRangeMismatch() throws Exception {
+        this.mockMvc.perform(get("/product-images/" + ImageKey.of(hash, "image.png", ImageVariant.THUMBNAIL))
+            .header("Range", "bytes=10-19")
+            .header("If-Range", "\"other\""))
+            .andExpect(status().isOk())
+            .andExpect(content().bytes(content));
+    }
+
+    /**
+     * 【概要】
+     * 画像のサイズを超える範囲を指定した取得の検証<br>
+     *
+     * 【条件】
+     * Rangeにbytes=100-を指定すること<br>
+     *
+     * 【結果】
+     * ステータスが416であること<br>
+     * 画像のサイズをContent-Rangeで返すこと
+     */
+    @Test
+    void testServe_rangeNotSatisfiable() throws Exception {
+        this.mockMvc.perform(get("/product-images/" + ImageKey.of(hash, "image.png", ImageVariant.THUMBNAIL))
+            .header("Range", "bytes=100-"))
+            .andExpect(status().isRequestedRangeNotSatisfiable())
+            .andExpect(header().string("Content-Range", "bytes */100"));
+    }
+
+    /**
+     * 【概要】
+     * 存在しない画像の検証<br>
+     *
+     * 【条件】
+     * 存在しない画像と、保存先の外のファイル(../secret.txt)にリクエストすること<br>
+     *
+     * 【結果】
+     * ステータスが404であること
+     */
+    @Test
+    void testServe_notFound() throws Exception {
+        this.mockMvc.perform(get("/product-images/1/missing.png"))
+            .andExpect(status().isNotFound());
+        this.mockMvc.perform(get(URI.create("/product-images/..%2Fsecret.txt")))
+            .andExpect(status().isNotFound());
+    }
+
+    private void write(String key) throws Exception {
+        Path path = root.resolve(key);
+        Files.createDirectories(path.getParent());
+        Files.write(path, content);
+    }
+
+}
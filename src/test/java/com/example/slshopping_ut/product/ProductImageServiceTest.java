@@ -0,0 +1,472 @@
+package com.example.slshopping_ut.product;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.slshopping_ut.entity.ImageKey;
+import com.example.slshopping_ut.entity.ImageStatus;
+import com.example.slshopping_ut.entity.ImageVariant;
+import com.example.slshopping_ut.entity.Product;
+
+@ExtendWith(MockitoExtension.class)
+class ProductImageServiceTest {
+
+    /** モック化したクラス */
+    @Mock
+    private ProductRepository mockProductRepository;
+
+    /** 一時ディレクトリに保存する画像の保存先 */
+    @Spy
+    private ContentAddressedImageStore imageStore = new ContentAddressedImageStore();
+
+    /** テスト対象クラスにモックを注入 */
+    @InjectMocks
+    private ProductImageService target;
+
+    @TempDir
+    Path tempDir;
+
+    private Path root;
+
+    @BeforeEach
+    void setup() throws Exception {
+        root = tempDir.resolve("product-images");
+        FileSystemImageStore backend = new FileSystemImageStore();
+        ReflectionTestUtils.setField(backend, "rootDir", root.toString());
+        ReflectionTestUtils.setField(imageStore, "backend", backend);
+        ReflectionTestUtils.setField(imageStore, "rootDir", root.toString());
+        ReflectionTestUtils.setField(imageStore, "stagingDir", tempDir.resolve("staging").toString());
+        ReflectionTestUtils.setField(target, "uploadDir", root.toString());
+        ReflectionTestUtils.setField(target, "workers", 2);
+        ReflectionTestUtils.setField(target, "queueCapacity", 10);
+        target.start();
+    }
+
+    /**
+     * 【概要】
+     * 商品画像の保存の検証<br>
+     *
+     * 【条件】
+     * 新規登録の商品に1000x500ピクセルの画像を添付し、保存を登録すること<br>
+     *
+     * 【結果】
+     * 商品情報に画像のファイル名・ハッシュ値と、保存状況PROCESSINGが格納されること<br>
+     * ハッシュ値の先頭2バイトのディレクトリに、ハッシュ値の名前で画像が保存されること<br>
+     * 長辺を96・640ピクセルに縮小したサムネイル・詳細画面用の画像が保存されること<br>
+     * 一時ファイルが残っていないこと<br>
+     * 商品の画像の保存状況をREADYに更新すること
+     */
+    @Test
+    void testCommitAsync() throws Exception {
+        //準備
+        byte[] png = png(1000, 500);
+        Product product = new Product();
+
+        //実行
+        StagedImage stagedImage = target.stage(new MockMultipartFile("file", "new.png", "image/png", png));
+        String previousHash = target.setMainImage(stagedImage, product);
+        product.setId(1L);
+        target.commitAsync(stagedImage, product, previousHash);
+        target.shutdown();
+
+        //検証
+        String hash = stagedImage.getHash();
+        assertThat(previousHash).isNull();
+        assertThat(product.getImageName()).isEqualTo("new.png");
+        assertThat(product.getImageHash()).isEqualTo(hash);
+        assertThat(product.getImageStatus()).isEqualTo(ImageStatus.PROCESSING);
+        assertThat(product.getImage()).isEqualTo(
+            "/product-images/sha256/" + hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + ".png");
+
+        assertThat(Files.readAllBytes(root.resolve(ImageKey.of(hash, "new.png")))).isEqualTo(png);
+        BufferedImage thumbnail = ImageIO.read(
+            root.resolve(ImageKey.of(hash, "new.png", ImageVariant.THUMBNAIL)).toFile());
+        assertThat(thumbnail.getWidth()).isEqualTo(96);
+        assertThat(thumbnail.getHeight()).isEqualTo(48);
+        BufferedImage detail = ImageIO.read(root.resolve(ImageKey.of(hash, "new.png", ImageVariant.DETAIL)).toFile());
+        assertThat(detail.getWidth()).isEqualTo(640);
+        assertThat(detail.getHeight()).isEqualTo(320);
+        assertThat(list(tempDir.resolve("staging"))).isEmpty();
+        verify(this.mockProductRepository).updateImageStatus(1L, hash, ImageStatus.READY);
+    }
+
+    /**
+     * 【概要】
+     * 他の商品と同じ画像の保存の検証<br>
+     *
+     * 【条件】
+     * 保存済みの画像と同じ内容の画像を、別の商品に添付して保存を登録すること<br>
+     *
+     * 【結果】
+     * 商品情報の保存状況がREADYであること<br>
+     * 画像が1つだけ保存されていること<br>
+     * 一時ファイルが残っていないこと
+     */
+    @Test
+    void testCommitAsync_sameContent() throws Exception {
+        //準備
+        byte[] png = png(50, 50);
+        storeImage(png, "shared.png");
+        Product product = new Product();
+
+        //実行
+        StagedImage stagedImage = target.stage(new MockMultipartFile("file", "other.png", "image/png", png));
+        target.setMainImage(stagedImage, product);
+        product.setId(2L);
+        target.commitAsync(stagedImage, product, null);
+        target.shutdown();
+
+        //検証
+        String hash = stagedImage.getHash();
+        assertThat(product.getImageStatus()).isEqualTo(ImageStatus.READY);
+        assertThat(list(root.resolve(ImageKey.directoryOf(hash)))).containsExactlyInAnyOrder(
+            hash + ".png", hash + "_thumb.png", hash + "_detail.png");
+        assertThat(list(tempDir.resolve("staging"))).isEmpty();
+    }
+
+    /**
+     * 【概要】
+     * 登録済みと同じ画像を添付した更新の検証<br>
+     *
+     * 【条件】
+     * 保存状況がREADYの画像を持つ商品に、同じ内容の画像を別のファイル名で添付して保存を登録すること<br>
+     *
+     * 【結果】
+     * 登録済みの画像のファイル名・ハッシュ値を引き継ぐこと<br>
+     * 画像の保存・削除と保存状況の更新を行わず、一時ファイルが残っていないこと
+     */
+    @Test
+    void testCommitAsync_unchanged() throws Exception {
+        //準備
+        byte[] png = png(50, 50);
+        String hash = storeImage(png, "current.png");
+        Product current = new Product(1L, "productA", "description", 1, "current.png", 1.0, 1.0, 1.0, 1.0, null, null);
+        current.setImageHash(hash);
+        Product product = new Product(1L, "productA", "description", 1, null, 1.0, 1.0, 1.0, 1.0, null, null);
+
+        //スタブを設定
+        doReturn(Optional.of(current)).when(this.mockProductRepository).findById(1L);
+
+        //実行
+        StagedImage stagedImage = target.stage(new MockMultipartFile("file", "renamed.png", "image/png", png));
+        String previousHash = target.setMainImage(stagedImage, product);
+        target.commitAsync(stagedImage, product, previousHash);
+        target.shutdown();
+
+        //検証
+        assertThat(previousHash).isEqualTo(hash);
+        assertThat(product.getImageName()).isEqualTo("current.png");
+        assertThat(product.getImageHash()).isEqualTo(hash);
+        assertThat(list(tempDir.resolve("staging"))).isEmpty();
+        verify(this.imageStore, never()).store(any(), any(), any());
+        verify(this.mockProductRepository, never()).updateImageStatus(any(), any(), any());
+        verify(this.mockProductRepository, never()).countByImageHash(any());
+    }
+
+    /**
+     * 【概要】
+     * 画像を変更した更新の検証<br>
+     *
+     * 【条件】
+     * 保存済みの画像を持つ商品に、別の画像を添付して保存を登録すること<br>
+     * productRepositoryのcountByImageHashメソッドは0を返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * 新しい画像を保存し、参照する商品がなくなった更新前の画像(派生画像を含む)を削除すること
+     */
+    @Test
+    void testCommitAsync_releasePrevious() throws Exception {
+        //準備
+        String previousHash = storeImage(png(50, 50), "current.png");
+        Product current = new Product(1L, "productA", "description", 1, "current.png", 1.0, 1.0, 1.0, 1.0, null, null);
+        current.setImageHash(previousHash);
+        Product product = new Product(1L, "productA", "description", 1, null, 1.0, 1.0, 1.0, 1.0, null, null);
+
+        //スタブを設定
+        doReturn(Optional.of(current)).when(this.mockProductRepository).findById(1L);
+        doReturn(0L).when(this.mockProductRepository).countByImageHash(previousHash);
+
+        //実行
+        StagedImage stagedImage = target.stage(new MockMultipartFile("file", "new.png", "image/png", png(60, 60)));
+        target.commitAsync(stagedImage, product, target.setMainImage(stagedImage, product));
+        target.shutdown();
+
+        //検証
+        assertThat(product.getImageHash()).isEqualTo(stagedImage.getHash());
+        assertThat(root.resolve(ImageKey.of(stagedImage.getHash(), "new.png"))).exists();
+        assertThat(list(root.resolve(ImageKey.directoryOf(previousHash))))
+            .noneMatch(fileName -> fileName.startsWith(previousHash));
+    }
+
+    /**
+     * 【概要】
+     * 他の商品も参照している画像を持つ商品の削除の検証<br>
+     *
+     * 【条件】
+     * productRepositoryのcountByImageHashメソッドは1を返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * 画像を削除しないこと
+     */
+    @Test
+    void testDelete_shared() throws Exception {
+        //準備
+        String hash = storeImage(png(50, 50), "shared.png");
+        Product product = new Product(1L, "productA", "description", 1, "shared.png", 1.0, 1.0, 1.0, 1.0, null, null);
+        product.setImageHash(hash);
+
+        //スタブを設定
+        doReturn(1L).when(this.mockProductRepository).countByImageHash(hash);
+
+        //実行
+        target.delete(product);
+        target.shutdown();
+
+        //検証
+        assertThat(root.resolve(ImageKey.of(hash, "shared.png"))).exists();
+        verify(this.imageStore, never()).remove(any());
+    }
+
+    /**
+     * 【概要】
+     * 商品画像の保存に失敗した場合の検証<br>
+     *
+     * 【条件】
+     * 保存を登録する前に一時ファイルが削除されていること<br>
+     *
+     * 【結果】
+     * 商品の画像の保存状況をFAILEDに更新すること
+     */
+    @Test
+    void testCommitAsync_failed() throws Exception {
+        //準備
+        Product product = new Product();
+        StagedImage stagedImage = target.stage(new MockMultipartFile("file", "new.png", "image/png", png(50, 50)));
+        target.setMainImage(stagedImage, product);
+        product.setId(1L);
+        Files.delete(stagedImage.getPath());
+
+        //実行
+        target.commitAsync(stagedImage, product, null);
+        target.shutdown();
+
+        //検証
+        verify(this.mockProductRepository).updateImageStatus(1L, stagedImage.getHash(), ImageStatus.FAILED);
+        verify(this.mockProductRepository, never()).updateImageStatus(1L, stagedImage.getHash(), ImageStatus.READY);
+    }
+
+    /**
+     * 【概要】
+     * 画像が添付されていない場合の検証<br>
+     *
+     * 【条件】
+     * 空のファイルを一時ファイルに書き出し、新規登録の商品の保存を登録すること<br>
+     *
+     * 【結果】
+     * 一時ファイルを作成せず、商品の画像の保存状況を更新しないこと
+     */
+    @Test
+    void testStage_empty() throws Exception {
+        //準備
+        MockMultipartFile file = new MockMultipartFile("file", "", "application/octet-stream", new byte[0]);
+        Product product = new Product();
+
+        //実行
+        StagedImage stagedImage = target.stage(file);
+        target.setMainImage(stagedImage, product);
+        product.setId(1L);
+        target.commitAsync(stagedImage, product, null);
+        target.shutdown();
+
+        //検証
+        assertThat(stagedImage).isNull();
+        assertThat(product.getImageName()).isNull();
+        assertThat(list(tempDir.resolve("staging"))).isEmpty();
+        verifyNoInteractions(this.mockProductRepository);
+    }
+
+    /**
+     * 【概要】
+     * 画像以外のファイルの検証<br>
+     *
+     * 【条件】
+     * 拡張子がpngのテキストファイルを一時ファイルに書き出すこと<br>
+     *
+     * 【結果】
+     * InvalidImageExceptionがスローされること<br>
+     * 一時ファイルが残っていないこと
+     */
+    @Test
+    void testStage_notImage() throws Exception {
+        //準備
+        MockMultipartFile file = new MockMultipartFile("file", "fake.png", "image/png", "not an image".getBytes());
+
+        //実行・検証
+        assertThatThrownBy(() -> target.stage(file)).isInstanceOf(InvalidImageException.class);
+        assertThat(list(tempDir.resolve("staging"))).isEmpty();
+    }
+
+    /**
+     * 【概要】
+     * 上限サイズを超える画像の検証<br>
+     *
+     * 【条件】
+     * 先頭がPNGのバイト列で、2MBを1バイト超えるファイルを一時ファイルに書き出すこと<br>
+     *
+     * 【結果】
+     * InvalidImageExceptionがスローされること<br>
+     * 一時ファイルが残っていないこと
+     */
+    @Test
+    void testStage_tooLarge() throws Exception {
+        //準備
+        byte[] content = new byte[(int) ProductImageService.MAX_IMAGE_SIZE + 1];
+        byte[] png = png(1, 1);
+        System.arraycopy(png, 0, content, 0, png.length);
+        MockMultipartFile file = new MockMultipartFile("file", "large.png", "image/png", content);
+
+        //実行・検証
+        assertThatThrownBy(() -> target.stage(file)).isInstanceOf(InvalidImageException.class);
+        assertThat(list(tempDir.resolve("staging"))).isEmpty();
+    }
+
+    /**
+     * 【概要】
+     * 拡張子と内容の形式が異なる画像の検証<br>
+     *
+     * 【条件】
+     * PNGの画像を拡張子jpgのファイル名で一時ファイルに書き出すこと<br>
+     *
+     * 【結果】
+     * ファイル名の拡張子がpngになること<br>
+     * ハッシュ値が画像の内容のSHA-256であること
+     */
+    @Test
+    void testStage_extensionMismatch() throws Exception {
+        //準備
+        byte[] png = png(10, 10);
+
+        //実行
+        StagedImage stagedImage = target.stage(new MockMultipartFile("file", "photo.jpg", "image/jpeg", png));
+
+        //検証
+        assertThat(stagedImage.getFileName()).isEqualTo("photo.png");
+        assertThat(stagedImage.getHash()).isEqualTo(ContentAddressedImageStore.hash(stagedImage.getPath()));
+        assertThat(Files.readAllBytes(stagedImage.getPath())).isEqualTo(png);
+    }
+
+    /**
+     * 【概要】
+     * 旧形式の商品画像の移行の検証<br>
+     *
+     * 【条件】
+     * 商品IDごとのディレクトリに50x50ピクセルの画像とサムネイルがあること<br>
+     * productRepositoryのfindIdsWithoutImageHashメソッドは商品ID1を返却するようスタブ化すること<br>
+     * productRepositoryのupdateImageHashメソッドは1を返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * 画像をハッシュ値の名前で保存し、商品のハッシュ値を設定すること<br>
+     * 商品IDごとのディレクトリの画像を削除しないこと
+     */
+    @Test
+    void testMigrateLegacyImages() throws Exception {
+        //準備
+        byte[] png = png(50, 50);
+        Path legacyDir = Files.createDirectories(root.resolve("1"));
+        Files.write(legacyDir.resolve("legacy.png"), png);
+        Files.write(legacyDir.resolve("legacy_thumb.png"), png);
+        String hash = ContentAddressedImageStore.hash(Files.write(tempDir.resolve("source.png"), png));
+
+        //スタブを設定
+        doReturn(List.of(1L)).when(this.mockProductRepository).findIdsWithoutImageHash();
+        doReturn(1).when(this.mockProductRepository).updateImageHash(1L, "legacy.png", hash);
+
+        //実行
+        target.migrateLegacyImages();
+        target.shutdown();
+
+        //検証
+        assertThat(Files.readAllBytes(root.resolve(ImageKey.of(hash, "legacy.png")))).isEqualTo(png);
+        assertThat(root.resolve(ImageKey.of(hash, "legacy.png", ImageVariant.THUMBNAIL))).exists();
+        assertThat(Files.readAllBytes(legacyDir.resolve("legacy.png"))).isEqualTo(png);
+    }
+
+    /**
+     * 【概要】
+     * 移行済みの旧形式の商品画像の検証<br>
+     *
+     * 【条件】
+     * 商品IDごとのディレクトリに画像があること<br>
+     * productRepositoryのfindIdsWithoutImageHashメソッドは空のリストを返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * 画像を保存せず、商品のハッシュ値も更新しないこと
+     */
+    @Test
+    void testMigrateLegacyImages_alreadyMigrated() throws Exception {
+        //準備
+        Path legacyDir = Files.createDirectories(root.resolve("1"));
+        Files.write(legacyDir.resolve("legacy.png"), png(50, 50));
+
+        //スタブを設定
+        doReturn(List.of()).when(this.mockProductRepository).findIdsWithoutImageHash();
+
+        //実行
+        target.migrateLegacyImages();
+        target.shutdown();
+
+        //検証
+        verify(imageStore, never()).store(any(), any(), any());
+        verify(this.mockProductRepository, never()).updateImageHash(any(), any(), any());
+        assertThat(legacyDir.resolve("legacy.png")).exists();
+    }
+
+    /**
+     * 画像を保存済みにする
+     *
+     * @return 画像のハッシュ値
+     */
+    private String storeImage(byte[] image, String fileName) throws Exception {
+        Path source = Files.write(tempDir.resolve("source-" + fileName), image);
+        String hash = ContentAddressedImageStore.hash(source);
+        imageStore.store(source, hash, fileName);
+        clearInvocations(imageStore);
+        return hash;
+    }
+
+    private static Stream<String> list(Path dir) throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(path -> path.getFileName().toString()).toList().stream();
+        }
+    }
+
+    private static byte[] png(int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+}
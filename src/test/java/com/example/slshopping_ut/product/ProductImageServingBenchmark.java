@@ -0,0 +1,158 @@
+package com.example.slshopping_ut.product;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.example.slshopping_ut.SlshoppingUtApplication;
+import com.example.slshopping_ut.entity.ImageKey;
+import com.example.slshopping_ut.entity.ImageVariant;
+
+/**
+ * 商品画像の配信の性能測定
+ * 以前の静的リソースのハンドラー(ResourceHttpRequestHandler)とProductImageControllerで、
+ * 詳細画面用の画像(sendfileで送信する大きさ)・サムネイル(通常の書き込みで送信する大きさ)の取得と、
+ * ブラウザのキャッシュの再検証(条件付きリクエスト)の1秒あたりの処理件数を比較する
+ * 認証を省略するためdevプロファイルで起動し、データベースに接続して実行する
+ *
+ * 通常のテストでは実行しない。実行する場合は ./gradlew benchmark
+ */
+@Tag("benchmark")
+class ProductImageServingBenchmark {
+
+    /** 同時に取得する利用者の数 */
+    private static final int USERS = 100;
+
+    /** 1人あたりのリクエストの回数 */
+    private static final int REQUESTS_PER_USER = 200;
+
+    /** 測定前の準備運転のリクエストの回数 */
+    private static final int WARMUP_REQUESTS = 1000;
+
+    /** 以前のハンドラーで同じ画像を配信するURLの接頭辞 */
+    private static final String RESOURCE_PREFIX = "/resource-images/";
+
+    @TempDir
+    Path imageDir;
+
+    @Test
+    void benchmarkServing() throws Exception {
+        String hash = "ab".repeat(32);
+        write(ImageKey.of(hash, "image.jpg", ImageVariant.DETAIL), 200 * 1024);
+        write(ImageKey.of(hash, "image.jpg", ImageVariant.THUMBNAIL), 4 * 1024);
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(
+                SlshoppingUtApplication.class, ResourceHandlerConfig.class)
+                .profiles("dev")
+                .properties("server.port=0", "spring.jpa.show-sql=false",
+                    "slshopping.image.dir=" + imageDir,
+                    "slshopping.image.staging-dir=" + imageDir.resolve("staging"))
+                .run();
+                ExecutorService clientThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(clientThreads)
+                .build();
+
+            for (ImageVariant variant : ImageVariant.values()) {
+                String key = ImageKey.of(hash, "image.jpg", variant);
+                URI resource = URI.create("http://localhost:" + port + RESOURCE_PREFIX + key);
+                URI controller = URI.create("http://localhost:" + port + ProductImageController.PREFIX + key);
+                System.out.printf("%s GET: resource handler %.0f req/s, ProductImageController %.0f req/s%n",
+                    variant, measure(client, resource, false), measure(client, controller, false));
+                System.out.printf("%s revalidate: resource handler %.0f req/s, ProductImageController %.0f req/s%n",
+                    variant, measure(client, resource, true), measure(client, controller, true));
+            }
+        }
+    }
+
+    /**
+     * 全員のリクエストが終わるまでの1秒あたりの処理件数を測定する
+     *
+     * @param revalidate 1回目の応答のETag・Last-Modifiedを付けて再検証する場合はtrue
+     * @return 1秒あたりの処理件数
+     */
+    private static double measure(HttpClient client, URI uri, boolean revalidate) throws Exception {
+        HttpResponse<Void> first = client.send(HttpRequest.newBuilder(uri).GET().build(),
+            HttpResponse.BodyHandlers.discarding());
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri).GET();
+        if (revalidate) {
+            first.headers().firstValue("ETag").ifPresent(etag -> builder.header("If-None-Match", etag));
+            first.headers().firstValue("Last-Modified").ifPresent(date -> builder.header("If-Modified-Since", date));
+        }
+        HttpRequest request = builder.build();
+        int expected = revalidate ? 304 : 200;
+
+        for (int i = 0; i < WARMUP_REQUESTS; i++) {
+            client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        }
+
+        AtomicInteger errors = new AtomicInteger();
+        long start = System.nanoTime();
+        try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int user = 0; user < USERS; user++) {
+                users.submit(() -> {
+                    for (int i = 0; i < REQUESTS_PER_USER; i++) {
+                        try {
+                            if (client.send(request, HttpResponse.BodyHandlers.ofByteArray()).statusCode() != expected) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                });
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (errors.get() > 0) {
+            System.out.printf("%s: %d errors%n", uri, errors.get());
+        }
+        return USERS * REQUESTS_PER_USER / (elapsed / 1_000_000_000.0);
+    }
+
+    /**
+     * 指定したサイズの画像(内容は乱数)を作成する
+     */
+    private void write(String key, int size) throws Exception {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        Path path = imageDir.resolve(key);
+        Files.createDirectories(path.getParent());
+        Files.write(path, content);
+    }
+
+    /**
+     * 以前の設定(MvcConfig)と同じ静的リソースのハンドラーを、比較用のURLで登録する
+     */
+    static class ResourceHandlerConfig implements WebMvcConfigurer {
+
+        @Value("${slshopping.image.dir}")
+        private String imageDir;
+
+        @Override
+        public void addResourceHandlers(ResourceHandlerRegistry registry) {
+            registry.addResourceHandler(RESOURCE_PREFIX + "**")
+                .addResourceLocations("file:" + imageDir + "/");
+        }
+    }
+
+}
@@ -0,0 +1,197 @@
+package com.example.slshopping_ut.product;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.slshopping_ut.brand.BrandService;
+import com.example.slshopping_ut.category.CategoryService;
+import com.example.slshopping_ut.csv.CsvImportResult;
+import com.example.slshopping_ut.entity.Brand;
+import com.example.slshopping_ut.entity.Category;
+import com.example.slshopping_ut.entity.Product;
+
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+
+@ExtendWith(MockitoExtension.class)
+class ProductImportServiceTest {
+
+    private static final String HEADER = "name,description,price,brand,category,length,width,height,weight\n";
+
+    /** モック化したクラス */
+    @Mock
+    private ProductRepository mockProductRepository;
+
+    @Mock
+    private BrandService mockBrandService;
+
+    @Mock
+    private CategoryService mockCategoryService;
+
+    @Mock
+    private ProductSearchIndex mockProductSearchIndex;
+
+    @Mock
+    private ProductSuggestIndex mockProductSuggestIndex;
+
+    @Mock
+    private ProductNameFilter mockProductNameFilter;
+
+    @Mock
+    private TransactionTemplate mockTransactionTemplate;
+
+    @Mock
+    private EntityManager mockEntityManager;
+
+    /** 入力チェックは実際の処理を使用する */
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    /** テスト対象クラスにモックを注入 */
+    @InjectMocks
+    private ProductImportService target;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        // Brand・CategoryのコンストラクタはIDを設定しないため、setIdで設定する
+        Brand brand = new Brand(null, "brandA");
+        brand.setId(1L);
+        Category category = new Category(null, "categoryA");
+        category.setId(1L);
+        lenient().doReturn(List.of(brand)).when(mockBrandService).listCached();
+        lenient().doReturn(List.of(category)).when(mockCategoryService).listCached();
+        // トランザクション内の処理はそのまま実行する
+        lenient().doAnswer(invocation -> {
+            ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(mockTransactionTemplate).executeWithoutResult(any());
+    }
+
+    /**
+     * 【概要】
+     * CSVファイルの商品を一括登録<br>
+     *
+     * 【条件】
+     * 正しい行2件(商品説明にカンマを含む行を含む)と、未登録のブランド・整数でない価格・長すぎる商品名の行を読み込むこと<br>
+     *
+     * 【結果】
+     * 正しい行の商品を1回のsaveAllで登録し、検索インデックス・入力補完・商品名のフィルターに追加すること<br>
+     * 商品名のフィルターで登録されていないことが確実なため、商品名の重複をデータベースに問い合わせないこと<br>
+     * エラーの行は行番号とエラーメッセージを返却すること
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testImportCsv() throws Exception {
+        String csv = HEADER
+            + "productA,\"説明,カンマあり\",100,brandA,categoryA,1.0,2.0,3.0,4.0\n"
+            + "productB,descriptionB,200,brandX,categoryA,,,,\n"
+            + "productC,descriptionC,abc,brandA,categoryA,,,,\n"
+            + "productDDDDD,descriptionD,100,brandA,categoryA,,,,\n"
+            + "productE,descriptionE,500,brandA,categoryA,,,,\n";
+
+        CsvImportResult result = target.importCsv(stream(csv));
+
+        assertThat(result.getTotalRows()).isEqualTo(5L);
+        assertThat(result.getImportedRows()).isEqualTo(2L);
+        assertThat(result.getErrorRows()).isEqualTo(3L);
+        assertThat(result.getErrors()).extracting(CsvImportResult.RowError::getLine).containsExactly(3L, 4L, 5L);
+        assertThat(result.getErrors().get(0).getMessage()).isEqualTo("ブランド「brandX」は登録されていません");
+        assertThat(result.getErrors().get(1).getMessage()).isEqualTo("価格は整数で入力してください");
+        assertThat(result.getErrors().get(2).getMessage()).isEqualTo("商品名は1文字以上10文字以内で入力してください");
+
+        ArgumentCaptor<List<Product>> captor = ArgumentCaptor.forClass(List.class);
+        verify(mockProductRepository, times(1)).saveAll(captor.capture());
+        assertThat(captor.getValue()).extracting(Product::getName).containsExactly("productA", "productE");
+        Product saved = captor.getValue().get(0);
+        assertThat(saved.getDescription()).isEqualTo("説明,カンマあり");
+        assertThat(saved.getBrand().getId()).isEqualTo(1L);
+        assertThat(saved.getCategory().getId()).isEqualTo(1L);
+        assertThat(saved.getWeight()).isEqualTo(4.0);
+        verify(mockEntityManager, times(1)).clear();
+        verify(mockProductSearchIndex, times(2)).put(any(Product.class));
+        verify(mockProductSuggestIndex, times(2)).putProduct(any(Product.class));
+        // 登録されていないことが確実な商品名のみのため、データベースに問い合わせない
+        verify(mockProductRepository, never()).findExistingNames(any());
+        verify(mockProductNameFilter, times(1)).put("productA");
+        verify(mockProductNameFilter, times(1)).put("productE");
+    }
+
+    /**
+     * 【概要】
+     * 商品名が重複する行の一括登録<br>
+     *
+     * 【条件】
+     * ファイル内で重複する商品名と、登録済みの商品名の行を読み込むこと<br>
+     * productNameFilterのmightExistメソッドはproductBのみtrueを返却するようスタブ化すること<br>
+     * productRepositoryのfindExistingNamesメソッドはproductBを返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * 重複した行をエラーとし、残りの行だけを登録すること<br>
+     * データベースにはフィルターで登録済みの可能性がある商品名のみ問い合わせること
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testImportCsv_duplicateNames() throws Exception {
+        String csv = HEADER
+            + "productA,descriptionA,100,brandA,categoryA,,,,\n"
+            + "productA,descriptionA,100,brandA,categoryA,,,,\n"
+            + "productB,descriptionB,100,brandA,categoryA,,,,\n";
+        doReturn(false).when(mockProductNameFilter).mightExist("productA");
+        doReturn(true).when(mockProductNameFilter).mightExist("productB");
+        doReturn(List.of("productB")).when(mockProductRepository).findExistingNames(List.of("productB"));
+
+        CsvImportResult result = target.importCsv(stream(csv));
+
+        assertThat(result.getImportedRows()).isEqualTo(1L);
+        assertThat(result.getErrors()).extracting(CsvImportResult.RowError::getMessage).containsExactly(
+            "商品名「productA」がファイル内で重複しています", "商品名「productB」は既に登録されています");
+
+        ArgumentCaptor<List<Product>> captor = ArgumentCaptor.forClass(List.class);
+        verify(mockProductRepository, times(1)).saveAll(captor.capture());
+        assertThat(captor.getValue()).extracting(Product::getName).containsExactly("productA");
+    }
+
+    /**
+     * 【概要】
+     * 必須の列がないCSVファイルの一括登録<br>
+     *
+     * 【条件】
+     * ヘッダー行にprice・categoryの列がないこと<br>
+     *
+     * 【結果】
+     * 1行目のエラーを返却し、データ行を読み込まないこと
+     */
+    @Test
+    void testImportCsv_missingColumns() throws Exception {
+        CsvImportResult result = target.importCsv(stream("name,description,brand\nproductA,descriptionA,brandA\n"));
+
+        assertThat(result.getTotalRows()).isZero();
+        assertThat(result.getErrors()).extracting(CsvImportResult.RowError::getLine).containsExactly(1L);
+        assertThat(result.getErrors().get(0).getMessage()).isEqualTo("必須の列がありません: price, category");
+        verify(mockProductRepository, never()).saveAll(any());
+    }
+
+    private static ByteArrayInputStream stream(String csv) {
+        return new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
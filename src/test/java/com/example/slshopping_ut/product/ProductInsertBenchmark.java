@@ -0,0 +1,87 @@
+package com.example.slshopping_ut.product;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.slshopping_ut.entity.Brand;
+import com.example.slshopping_ut.entity.Category;
+import com.example.slshopping_ut.entity.Product;
+
+import jakarta.persistence.EntityManager;
+
+/**
+ * 商品の一括登録の性能測定
+ * 1件ずつ送信する場合(IDENTITY列のIDを使用していた時と同じ送信回数)と、バッチでまとめて送信する場合の1秒あたりの登録件数を比較する
+ * データベースに接続して実行し、登録した商品はロールバックする
+ *
+ * 通常のテストでは実行しない。実行する場合は ./gradlew benchmark
+ */
+@Tag("benchmark")
+@SpringBootTest
+class ProductInsertBenchmark {
+
+    /** 1回の測定で登録する商品の件数 */
+    private static final int ROWS = 5000;
+
+    /** 測定前の準備運転の回数 */
+    private static final int WARMUP = 2;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void benchmarkInsert() {
+        for (int i = 0; i < WARMUP; i++) {
+            insert(1);
+            insert(50);
+        }
+
+        double single = insert(1);
+        double batched = insert(50);
+        System.out.printf("product insert: batch_size=1 %.0f rows/s, batch_size=50 %.0f rows/s (x%.1f)%n",
+            single, batched, batched / single);
+    }
+
+    /**
+     * 指定したバッチサイズで商品を登録し、1秒あたりの登録件数を返す
+     *
+     * @param batchSize JDBCのバッチサイズ
+     * @return 1秒あたりの登録件数
+     */
+    private double insert(int batchSize) {
+        return transactionTemplate.execute(status -> {
+            Session session = entityManager.unwrap(Session.class);
+            session.setJdbcBatchSize(batchSize);
+
+            Brand brand = new Brand(null, "BM-B");
+            Category category = new Category(null, "BM-C");
+            entityManager.persist(brand);
+            entityManager.persist(category);
+            entityManager.flush();
+
+            long start = System.nanoTime();
+            for (int i = 0; i < ROWS; i++) {
+                entityManager.persist(new Product(null, "BM" + i, "benchmark", 100, null, 1.0, 1.0, 1.0, 1.0,
+                    category, brand));
+                // 永続化コンテキストが大きくなりすぎないよう、50件ごとに送信して切り離す(ブランド・カテゴリーは外部キーとしてのみ参照する)
+                if ((i + 1) % 50 == 0) {
+                    entityManager.flush();
+                    entityManager.clear();
+                }
+            }
+            entityManager.flush();
+            long elapsed = System.nanoTime() - start;
+
+            status.setRollbackOnly();
+            return ROWS / (elapsed / 1_000_000_000.0);
+        });
+    }
+
+}
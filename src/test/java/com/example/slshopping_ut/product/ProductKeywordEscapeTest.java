@@ -0,0 +1,143 @@
+package com.example.slshopping_ut.product;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.example.slshopping_ut.KeysetCursor;
+import com.example.slshopping_ut.brand.BrandService;
+import com.example.slshopping_ut.category.CategoryService;
+import com.example.slshopping_ut.entity.Brand;
+import com.example.slshopping_ut.entity.Category;
+import com.example.slshopping_ut.entity.Product;
+
+/**
+ * キーワードに%・_を含む場合の、データベースへのクエリと検索インデックスの検索結果の検証
+ * データベースに接続して実行するため、テスト用のデータは実行後に削除する
+ */
+@SpringBootTest
+@ActiveProfiles("dev")
+class ProductKeywordEscapeTest {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private BrandService brandService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    private final List<Product> products = new ArrayList<>();
+
+    private Brand brand;
+
+    private Category category;
+
+    @BeforeEach
+    void setup() throws Exception {
+        brand = brandService.save(new Brand(null, "KE-B"));
+        category = categoryService.save(new Category(null, "KE-C"));
+        for (String name : List.of("KE-50%off", "KE-50xoff", "KE-a_b", "KE-axb")) {
+            products.add(productService.save(new Product(null, name, "keyword escape", 100, null,
+                1.0, 1.0, 1.0, 1.0, category, brand)));
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (Product product : products) {
+            productService.delete(product.getId());
+        }
+        brandService.delete(brand.getId());
+        categoryService.delete(category.getId());
+    }
+
+    /**
+     * 【概要】
+     * キーワードに%を含む場合の検証<br>
+     *
+     * 【条件】
+     * 「50%」で検索すること<br>
+     *
+     * 【結果】
+     * データベースへのクエリ・検索インデックスのどちらも、%を文字として含む商品のみを返すこと
+     */
+    @Test
+    void testSearch_percent() {
+        //実行
+        Set<Long> fromDatabase = searchDatabase("50%");
+        Set<Long> fromIndex = searchIndex("50%");
+
+        //検証
+        assertThat(fromDatabase).containsExactly(products.get(0).getId());
+        assertThat(fromIndex).isEqualTo(fromDatabase);
+    }
+
+    /**
+     * 【概要】
+     * キーワードに_を含む場合の検証<br>
+     *
+     * 【条件】
+     * 「a_b」で検索すること<br>
+     *
+     * 【結果】
+     * データベースへのクエリ・検索インデックスのどちらも、_を文字として含む商品のみを返すこと
+     */
+    @Test
+    void testSearch_underscore() {
+        //実行
+        Set<Long> fromDatabase = searchDatabase("a_b");
+        Set<Long> fromIndex = searchIndex("a_b");
+
+        //検証
+        assertThat(fromDatabase).containsExactly(products.get(2).getId());
+        assertThat(fromIndex).isEqualTo(fromDatabase);
+    }
+
+    /**
+     * データベースへのクエリで検索し、テスト用の商品のIDを返す
+     */
+    private Set<Long> searchDatabase(String keyword) {
+        ProductFilter none = ProductFilter.NONE;
+        return productRepository.findListRowsAfter(keyword, none.getBrandId(), none.getCategoryId(),
+            none.getMinPrice(), none.getMaxPrice(), 0L, PageRequest.of(0, 100)).stream()
+            .map(ProductListRow::getId)
+            .filter(this::isTestProduct)
+            .collect(Collectors.toSet());
+    }
+
+    /**
+     * 検索インデックスで検索し、テスト用の商品のIDを返す
+     */
+    private Set<Long> searchIndex(String keyword) {
+        assertThat(productSearchIndex.isReady()).isTrue();
+        return productSearchIndex.search(keyword, ProductFilter.NONE, false, new ProductFacets(ProductFilter.NONE))
+            .stream()
+            .map(KeysetCursor::getId)
+            .filter(this::isTestProduct)
+            .collect(Collectors.toSet());
+    }
+
+    private boolean isTestProduct(Long id) {
+        return products.stream().anyMatch(product -> product.getId().equals(id));
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.example.slshopping_ut.product;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.slshopping_ut.KeysetCursor;
+import com.example.slshopping_ut.brand.BrandSearchIndex;
+import com.example.slshopping_ut.category.CategorySearchIndex;
+import com.example.slshopping_ut.entity.Brand;
+import com.example.slshopping_ut.entity.Category;
+import com.example.slshopping_ut.entity.Product;
+
+/**
+ * 商品一覧(キーワードなし)の1ページあたりの処理時間の測定
+ * 商品件数を増やしながら、一致した商品を全件走査・整列する場合(以前の処理)と、
+ * 集計済みの件数を使用しカーソルの位置から1ページ分だけ走査する場合の、絞り込み候補の集計とページの取得にかかる時間を比較する
+ * インデックスのみを対象とし、データベースには接続しない
+ *
+ * 通常のテストでは実行しない。実行する場合は ./gradlew benchmark
+ */
+@Tag("benchmark")
+class ProductListPageBenchmark {
+
+    /** 測定する商品件数(カタログが数十万件の規模まで) */
+    private static final int[] SIZES = { 10_000, 100_000, 300_000 };
+
+    private static final int BRANDS = 50;
+
+    private static final int CATEGORIES = 20;
+
+    /** 1ページあたりの表示件数 */
+    private static final int PAGE_SIZE = 20;
+
+    /** 1回の測定で取得するページ数 */
+    private static final int PAGES = 200;
+
+    /** 測定前の準備運転の回数 */
+    private static final int WARMUP = 3;
+
+    @Test
+    void benchmarkListPage() {
+        ProductFilter unfiltered = ProductFilter.NONE;
+        ProductFilter byBrand = new ProductFilter(1L, null, null);
+        for (int size : SIZES) {
+            ProductSearchIndex index = build(size);
+            for (int i = 0; i < WARMUP; i++) {
+                scan(index, byBrand);
+                seek(index, unfiltered);
+                seek(index, byBrand);
+            }
+            System.out.printf("product list page (%,d products, name order): full scan %.3f ms/page, "
+                + "seek unfiltered %.3f ms/page, seek by brand %.3f ms/page%n",
+                size, scan(index, byBrand), seek(index, unfiltered), seek(index, byBrand));
+        }
+    }
+
+    /**
+     * 以前の処理と同じく、一致した商品を全件走査して件数を集計し、名前順に整列してから1ページ分を切り出す
+     *
+     * @return 1ページあたりのミリ秒
+     */
+    private double scan(ProductSearchIndex index, ProductFilter filter) {
+        long start = System.nanoTime();
+        for (int page = 0; page < PAGES; page++) {
+            List<KeysetCursor> hits = index.search("", filter, true, new ProductFacets(filter));
+            hits.subList(0, Math.min(hits.size(), PAGE_SIZE + 1));
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / PAGES;
+    }
+
+    /**
+     * 集計済みの件数を合算し、前のページの末尾のカーソルから1ページ分だけ走査する
+     *
+     * @return 1ページあたりのミリ秒
+     */
+    private double seek(ProductSearchIndex index, ProductFilter filter) {
+        long start = System.nanoTime();
+        KeysetCursor cursor = KeysetCursor.START;
+        for (int page = 0; page < PAGES; page++) {
+            index.countFacets(new ProductFacets(filter));
+            List<KeysetCursor> rows = index.seekAfter(filter, true, cursor, PAGE_SIZE + 1);
+            cursor = rows.size() > PAGE_SIZE ? rows.get(PAGE_SIZE - 1) : KeysetCursor.START;
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / PAGES;
+    }
+
+    /**
+     * ブランド・カテゴリー・価格が分散した商品を登録したインデックスを作成する
+     *
+     * @param size 商品件数
+     * @return インデックス
+     */
+    private ProductSearchIndex build(int size) {
+        BrandSearchIndex brandSearchIndex = new BrandSearchIndex();
+        CategorySearchIndex categorySearchIndex = new CategorySearchIndex();
+        ProductSearchIndex index = new ProductSearchIndex();
+        ReflectionTestUtils.setField(index, "brandSearchIndex", brandSearchIndex);
+        ReflectionTestUtils.setField(index, "categorySearchIndex", categorySearchIndex);
+
+        Brand[] brands = new Brand[BRANDS];
+        for (int i = 0; i < BRANDS; i++) {
+            brands[i] = new Brand((long) i + 1, "brand" + i);
+            brandSearchIndex.put(brands[i]);
+        }
+        Category[] categories = new Category[CATEGORIES];
+        for (int i = 0; i < CATEGORIES; i++) {
+            categories[i] = new Category((long) i + 1, "category" + i);
+            categorySearchIndex.put(categories[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            // 名前順とID順が一致しないよう、IDを並べ替えた値を名前に使用する
+            String name = "product" + Integer.toHexString(Integer.reverse(i + 1));
+            index.put(new Product((long) i + 1, name, "benchmark", 1 + (i * 7919) % 60000, null, 1.0, 1.0, 1.0, 1.0,
+                categories[i % CATEGORIES], brands[i % BRANDS]));
+        }
+        return index;
+    }
+
+}
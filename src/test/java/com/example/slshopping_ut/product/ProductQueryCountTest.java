@@ -0,0 +1,151 @@
+package com.example.slshopping_ut.product;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.example.slshopping_ut.brand.BrandService;
+import com.example.slshopping_ut.category.CategoryService;
+import com.example.slshopping_ut.entity.Brand;
+import com.example.slshopping_ut.entity.Category;
+import com.example.slshopping_ut.entity.Product;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * 商品一覧の表示で発行されるSQLの件数の検証
+ * 表示する商品の件数やブランド・カテゴリーの種類数によって、SQLの件数が増えないことを確認する
+ * データベースに接続して実行するため、テスト用のデータは実行後に削除する
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("dev")
+class ProductQueryCountTest {
+
+    /** テスト用の商品の件数 */
+    private static final int PRODUCT_COUNT = 5;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private BrandService brandService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    private final List<Product> products = new ArrayList<>();
+
+    private final List<Brand> brands = new ArrayList<>();
+
+    private final List<Category> categories = new ArrayList<>();
+
+    /**
+     * 商品ごとに別のブランド・カテゴリーを紐づけたテスト用のデータを登録する
+     */
+    @BeforeEach
+    void setup() throws Exception {
+        for (int i = 1; i <= PRODUCT_COUNT; i++) {
+            Brand brand = brandService.save(new Brand(null, "QC-B" + i));
+            Category category = categoryService.save(new Category(null, "QC-C" + i));
+            brands.add(brand);
+            categories.add(category);
+            products.add(productService.save(new Product(null, "QC-P" + i, "query count", 100 * i, null,
+                1.0, 1.0, 1.0, 1.0, category, brand)));
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (Product product : products) {
+            productService.delete(product.getId());
+        }
+        for (Brand brand : brands) {
+            brandService.delete(brand.getId());
+        }
+        for (Category category : categories) {
+            categoryService.delete(category.getId());
+        }
+    }
+
+    /**
+     * 【概要】
+     * 商品一覧の表示で発行されるSQLの件数の検証<br>
+     *
+     * 【条件】
+     * GET通信の/productsにリクエストすること<br>
+     * 1件の商品に一致するキーワードと、ブランド・カテゴリーがそれぞれ異なる5件の商品に一致するキーワードで検索すること<br>
+     *
+     * 【結果】
+     * どちらの場合も発行されるSQLの件数が同じであること<br>
+     * ブランド・カテゴリーを商品ごとに追加のSQLで取得しないこと
+     */
+    @Test
+    void testListProducts_statementCountIsConstant() throws Exception {
+        long single = countStatements("QC-P1");
+        long multiple = countStatements("QC-P");
+
+        assertThat(multiple).isEqualTo(single);
+        assertThat(statistics().getEntityFetchCount()).isZero();
+    }
+
+    /**
+     * 【概要】
+     * 商品詳細の表示で発行されるSQLの件数の検証<br>
+     *
+     * 【条件】
+     * GET通信の/products/detail/{id}にリクエストすること<br>
+     *
+     * 【結果】
+     * ブランド・カテゴリーを商品と別のSQLで取得しないこと
+     */
+    @Test
+    void testProductDetail_loadsBrandAndCategoryWithProduct() throws Exception {
+        Statistics statistics = statistics();
+        statistics.clear();
+
+        mockMvc.perform(get("/products/detail/{id}", products.get(0).getId()))
+            .andExpect(status().isOk())
+            .andExpect(model().attributeExists("product"));
+
+        assertThat(statistics.getEntityFetchCount()).isZero();
+    }
+
+    /**
+     * 商品一覧をキーワードで検索し、発行されたSQLの件数を返す
+     */
+    private long countStatements(String keyword) throws Exception {
+        Statistics statistics = statistics();
+        statistics.clear();
+
+        mockMvc.perform(get("/products").param("keyword", keyword))
+            .andExpect(status().isOk());
+
+        return statistics.getPrepareStatementCount();
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+}
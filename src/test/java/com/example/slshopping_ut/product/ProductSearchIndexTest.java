@@ -0,0 +1,222 @@
+package com.example.slshopping_ut.product;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.example.slshopping_ut.KeysetCursor;
+import com.example.slshopping_ut.brand.BrandSearchIndex;
+import com.example.slshopping_ut.category.CategorySearchIndex;
+import com.example.slshopping_ut.entity.Brand;
+import com.example.slshopping_ut.entity.Category;
+import com.example.slshopping_ut.entity.Product;
+
+@ExtendWith(MockitoExtension.class)
+class ProductSearchIndexTest {
+
+    /** ブランド名・カテゴリー名の検索に使用するインデックス */
+    @Spy
+    private BrandSearchIndex brandSearchIndex = new BrandSearchIndex();
+
+    @Spy
+    private CategorySearchIndex categorySearchIndex = new CategorySearchIndex();
+
+    /** 構築時の読み込みに使用するリポジトリ */
+    @Mock
+    private ProductRepository productRepository;
+
+    /** テスト対象クラスにインデックスを注入 */
+    @InjectMocks
+    private ProductSearchIndex target;
+
+    private Brand brand;
+
+    private Category category;
+
+    @BeforeEach
+    void setup() {
+        brand = new Brand();
+        brand.setId(1L);
+        brand.setName("Sony");
+        category = new Category();
+        category.setId(1L);
+        category.setName("オーディオ");
+
+        brandSearchIndex.put(brand);
+        categorySearchIndex.put(category);
+        target.put(new Product(1L, "ワイヤレスイヤホン", "ノイズキャンセリング対応", 1, null, 1.0, 1.0, 1.0, 1.0, category, brand));
+        target.put(new Product(2L, "Speaker", "wireless speaker", 1, null, 1.0, 1.0, 1.0, 1.0, category, brand));
+    }
+
+    /**
+     * 【概要】
+     * 商品名・商品説明の部分一致で検索<br>
+     *
+     * 【条件】
+     * 単語の区切りのない日本語の商品名・商品説明の途中の文字列を検索すること<br>
+     *
+     * 【結果】
+     * 部分文字列として含む商品IDだけを返却すること<br>
+     * N-gramが一致しても文字列として含まない場合は返却しないこと
+     */
+    @Test
+    void testSearch_substringOfNameAndDescription() {
+        assertThat(target.search("イヤホン").toArray()).containsExactly(1L);
+        assertThat(target.search("キャンセル").toArray()).containsExactly(1L);
+        assertThat(target.search("less speak").toArray()).containsExactly(2L);
+        assertThat(target.search("イヤレスイヤ").toArray()).containsExactly(1L);
+        assertThat(target.search("スイヤレス").toArray()).isEmpty();
+    }
+
+    /**
+     * 【概要】
+     * ブランド名・カテゴリー名の部分一致で検索<br>
+     *
+     * 【条件】
+     * ブランド名の一部Sonと、カテゴリー名の一部ディオを検索すること<br>
+     *
+     * 【結果】
+     * そのブランド・カテゴリーの商品IDをすべて返却すること<br>
+     * LIKEと同じく大文字・小文字を区別すること
+     */
+    @Test
+    void testSearch_brandAndCategoryName() {
+        assertThat(target.search("Son").toArray()).containsExactly(1L, 2L);
+        assertThat(target.search("ディオ").toArray()).containsExactly(1L, 2L);
+        assertThat(target.search("sony").toArray()).isEmpty();
+    }
+
+    /**
+     * 【概要】
+     * ブランド名の変更と商品の削除の反映<br>
+     *
+     * 【条件】
+     * ブランド名をPonyに変更し、商品ID1を削除すること<br>
+     *
+     * 【結果】
+     * 変更前のブランド名では検索できないこと<br>
+     * 削除した商品が検索結果に含まれないこと
+     */
+    @Test
+    void testPutBrandAndRemove() {
+        brand.setName("Pony");
+        brandSearchIndex.put(brand);
+        target.remove(1L);
+
+        assertThat(target.search("Sony").toArray()).isEmpty();
+        assertThat(target.search("Pony").toArray()).containsExactly(2L);
+        assertThat(target.search("イヤホン").toArray()).isEmpty();
+    }
+
+    /**
+     * 【概要】
+     * 絞り込みと絞り込み候補ごとの件数の集計<br>
+     *
+     * 【条件】
+     * 別ブランド・別価格帯の商品ID3を登録し、キーワードなし・ブランドID1で絞り込むこと<br>
+     *
+     * 【結果】
+     * ブランドID1の商品だけを返却すること<br>
+     * ブランドの件数は他のブランドも含めて集計されること<br>
+     * 価格帯の件数はブランドID1の商品だけで集計されること
+     */
+    @Test
+    void testSearch_filterAndFacets() {
+        Brand other = new Brand();
+        other.setId(2L);
+        other.setName("Bose");
+        brandSearchIndex.put(other);
+        target.put(new Product(3L, "Headphone", "noise cancelling", 30000, null, 1.0, 1.0, 1.0, 1.0, category, other));
+
+        ProductFilter filter = new ProductFilter(1L, null, null);
+        ProductFacets facets = new ProductFacets(filter);
+        assertThat(target.search("", filter, false, facets))
+            .extracting(KeysetCursor::getId).containsExactly(1L, 2L);
+        assertThat(facets.getBrandCount(1L)).isEqualTo(2L);
+        assertThat(facets.getBrandCount(2L)).isEqualTo(1L);
+        assertThat(facets.getPriceCount(PriceRange.UNDER_1000)).isEqualTo(2L);
+        assertThat(facets.getPriceCount(PriceRange.FROM_10000)).isEqualTo(0L);
+    }
+
+    /**
+     * 【概要】
+     * 集計済みの件数と、カーソルの位置からの絞り込み<br>
+     *
+     * 【条件】
+     * 別ブランド・別価格帯の商品ID3を登録し、商品ID2の価格を変更して、商品ID1を削除すること<br>
+     * ブランドID1・名前順で、先頭から1件ずつ前後に取得すること<br>
+     *
+     * 【結果】
+     * 件数には変更後の価格帯が反映され、削除した商品は含まれないこと<br>
+     * カーソルより後ろ・前の、ブランドID1の商品だけを名前順に返却すること
+     */
+    @Test
+    void testCountFacetsAndSeek() {
+        Brand other = new Brand();
+        other.setId(2L);
+        other.setName("Bose");
+        brandSearchIndex.put(other);
+        target.put(new Product(3L, "Headphone", "noise cancelling", 30000, null, 1.0, 1.0, 1.0, 1.0, category, other));
+        target.put(new Product(4L, "Amplifier", "stereo", 1, null, 1.0, 1.0, 1.0, 1.0, category, brand));
+        target.put(new Product(2L, "Speaker", "wireless speaker", 5000, null, 1.0, 1.0, 1.0, 1.0, category, brand));
+        target.remove(1L);
+
+        ProductFacets facets = new ProductFacets(ProductFilter.NONE);
+        target.countFacets(facets);
+        assertThat(facets.getBrandCount(1L)).isEqualTo(2L);
+        assertThat(facets.getBrandCount(2L)).isEqualTo(1L);
+        assertThat(facets.getPriceCount(PriceRange.UNDER_1000)).isEqualTo(1L);
+        assertThat(facets.getPriceCount(PriceRange.FROM_5000)).isEqualTo(1L);
+        assertThat(facets.getPriceCount(PriceRange.FROM_10000)).isEqualTo(1L);
+
+        ProductFilter filter = new ProductFilter(1L, null, null);
+        assertThat(target.seekAfter(filter, true, KeysetCursor.START, 1))
+            .extracting(KeysetCursor::getId).containsExactly(4L);
+        assertThat(target.seekAfter(filter, true, new KeysetCursor(4L, "Amplifier"), 5))
+            .extracting(KeysetCursor::getId).containsExactly(2L);
+        assertThat(target.seekBefore(filter, true, new KeysetCursor(2L, "Speaker"), 5))
+            .extracting(KeysetCursor::getId).containsExactly(4L);
+        assertThat(target.seekAfter(filter, false, new KeysetCursor(2L, null), 5))
+            .extracting(KeysetCursor::getId).containsExactly(4L);
+    }
+
+    /**
+     * 【概要】
+     * 構築中に更新された商品の反映<br>
+     *
+     * 【条件】
+     * 構築時の読み込みの後、インデックスへの反映の前に、商品ID2の商品名をSubwooferに更新すること<br>
+     *
+     * 【結果】
+     * 読み込み済みの更新前の内容で上書きされず、更新後の商品名で検索できること
+     */
+    @Test
+    void testBuild_putWhileBuilding() {
+        Product stale = new Product(2L, "Speaker", "wireless speaker", 1, null, 1.0, 1.0, 1.0, 1.0, category, brand);
+        Product updated = new Product(2L, "Subwoofer", "bass", 1, null, 1.0, 1.0, 1.0, 1.0, category, brand);
+
+        //スタブの設定(読み込みの直後に、保存処理から更新される)
+        doAnswer(invocation -> {
+            target.put(updated);
+            return List.of(stale);
+        }).when(this.productRepository).searchPageAfter(anyString(), any(), any(), anyInt(), anyInt(), anyLong(), any());
+
+        //実行
+        target.build();
+
+        //検証
+        assertThat(target.search("Subwoofer").toArray()).containsExactly(2L);
+        assertThat(target.search("Speaker").toArray()).isEmpty();
+    }
+
+}
@@ -4,20 +4,29 @@ import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
+import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.crossstore.ChangeSetPersister.NotFoundException;
+import org.springframework.data.domain.PageRequest;
 
+import com.example.slshopping_ut.DuplicateException;
+import com.example.slshopping_ut.KeysetCursor;
+import com.example.slshopping_ut.KeysetPage;
+import com.example.slshopping_ut.KeysetRequest;
 import com.example.slshopping_ut.entity.Brand;
 import com.example.slshopping_ut.entity.Category;
 import com.example.slshopping_ut.entity.Product;
+import com.example.slshopping_ut.search.PostingList;
 
 @ExtendWith(MockitoExtension.class)
 class ProductServiceTest {
@@ -26,6 +35,15 @@ class ProductServiceTest {
     @Mock
     private ProductRepository mockProductRepository;
 
+    @Mock
+    private ProductSearchIndex mockProductSearchIndex;
+
+    @Mock
+    private ProductNameFilter mockProductNameFilter;
+
+    @Mock
+    private ProductSuggestIndex mockProductSuggestIndex;
+
     /** テスト対象クラスにモックを注入 */
     @InjectMocks
     private ProductService target;
@@ -129,11 +147,207 @@ class ProductServiceTest {
         assertThat(target.listAll(keyword)).isEqualTo(expected);
     }
 
+    /**
+     * 【概要】
+     * インデックスを使用して商品を検索<br>
+     *
+     * 【条件】
+     * productSearchIndexのisReadyメソッドはtrueを返却するようスタブ化すること<br>
+     * productSearchIndexのsearchメソッドは商品ID 1, 2のリストを返却するようスタブ化すること<br>
+     * productRepositoryのfindAllByIdメソッドはID順とは異なる順でProductのリストを返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * インデックスが返却したIDの順にProductのリストを返却すること<br>
+     * productRepositoryのsearchメソッドが呼び出されないこと
+     */
+    @Test
+    void testListAll_searchIndexIsReady() {
+        String keyword = "product";
+        Product productA = new Product(1L, "productA", "descriptionA", 1, null, 1.0, 1.0, 1.0, 1.0, new Category(1L, "categoryA"), new Brand(1L, "brandA"));
+        ProductListRow productB = new ProductListRow(2L, "productB", 1, null, null, null, "brandB", "categoryB");
+
+        //スタブの設定
+        doReturn(true).when(this.mockProductSearchIndex).isReady();
+        doReturn(PostingList.of(1L, 2L)).when(this.mockProductSearchIndex).search(keyword);
+        doReturn(Arrays.asList(productB, productA)).when(this.mockProductRepository).findAllById(Arrays.asList(1L, 2L));
+
+        //検証処理
+        assertThat(target.listAll(keyword)).containsExactly(productA, productB);
+        verify(this.mockProductRepository, never()).search(anyString());
+    }
+
+    /**
+     * 【概要】
+     * 商品の先頭ページを取得<br>
+     *
+     * 【条件】
+     * productServiceのlistPageメソッドにキーワード・絞り込み条件・カーソルを指定せず、ID順・表示件数2を渡すこと<br>
+     * productRepositoryのfindListRowsAfterメソッドは3件のProductListRowのリストを返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * 先頭2件のProductListRowが格納されていること<br>
+     * 次のページのカーソルが2件目の商品IDであること<br>
+     * 前のページが存在しないこと
+     */
+    @Test
+    void testListPage_firstPage() {
+        List<ProductListRow> rows = Arrays.asList(
+            new ProductListRow(1L, "productA", 1, null, null, null, "brandA", "categoryA"),
+            new ProductListRow(2L, "productB", 1, null, null, null, "brandB", "categoryB"),
+            new ProductListRow(3L, "productC", 1, null, null, null, "brandC", "categoryC")
+        );
+
+        //スタブの設定
+        doReturn(rows).when(this.mockProductRepository).findListRowsAfter("", null, null, 0, Integer.MAX_VALUE, 0L,
+            PageRequest.of(0, 3));
+
+        //検証処理
+        KeysetPage<ProductListRow> page = target.listPage(null, ProductFilter.NONE, KeysetRequest.of(null, null, null, 2)).getPage();
+        assertThat(page.getContent()).containsExactly(rows.get(0), rows.get(1));
+        assertThat(page.getNextCursor()).isEqualTo("2");
+        assertThat(page.hasPrevious()).isFalse();
+    }
+
+    /**
+     * 【概要】
+     * 商品の前のページを取得<br>
+     *
+     * 【条件】
+     * productServiceのlistPageメソッドにキーワードproductと名前順・before=5:productE、表示件数2を渡すこと<br>
+     * productRepositoryのfindListRowsBeforeNameメソッドは名前の降順で2件のProductListRowのリストを返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * ProductListRowが昇順に並び替えられていること<br>
+     * 前のページが存在しないこと<br>
+     * 次のページのカーソルが末尾の商品IDと商品名であること
+     */
+    @Test
+    void testListPage_backward() {
+        String keyword = "product";
+        List<ProductListRow> rows = Arrays.asList(
+            new ProductListRow(4L, "productD", 1, null, null, null, "brandA", "categoryA"),
+            new ProductListRow(3L, "productC", 1, null, null, null, "brandB", "categoryB")
+        );
+
+        //スタブの設定
+        doReturn(rows).when(this.mockProductRepository).findListRowsBeforeName(keyword, null, null, 0, Integer.MAX_VALUE,
+            "productE", 5L, PageRequest.of(0, 3));
+
+        //検証処理
+        KeysetPage<ProductListRow> page = target.listPage(keyword, ProductFilter.NONE, KeysetRequest.of("name", null, "5:productE", 2)).getPage();
+        assertThat(page.getContent()).containsExactly(rows.get(1), rows.get(0));
+        assertThat(page.hasPrevious()).isFalse();
+        assertThat(page.getNextCursor()).isEqualTo("4:productD");
+    }
+
+    /**
+     * 【概要】
+     * インデックスの構築前に絞り込み候補ごとの件数を集計<br>
+     *
+     * 【条件】
+     * productServiceのlistPageメソッドにブランドID1の絞り込み条件を渡すこと<br>
+     * productRepositoryのcountFacetsメソッドは(ブランド, カテゴリー, 価格帯)の組ごとの件数を返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * ブランドの件数はブランド以外の絞り込み条件で集計されていること<br>
+     * カテゴリー・価格帯の件数はブランドID1の商品だけで集計されていること<br>
+     * 商品の取得にはブランドID1の絞り込み条件が渡されること
+     */
+    @Test
+    void testListPage_facetsFromAggregateQuery() {
+        ProductFilter filter = new ProductFilter(1L, null, null);
+        List<Object[]> rows = Arrays.asList(
+            new Object[] { 1L, 1L, 0, 3L },
+            new Object[] { 1L, 2L, 1, 2L },
+            new Object[] { 2L, 1L, 1, 4L }
+        );
+
+        //スタブの設定
+        doReturn(rows).when(this.mockProductRepository).countFacets("");
+        doReturn(Arrays.asList()).when(this.mockProductRepository).findListRowsAfter("", 1L, null, 0, Integer.MAX_VALUE,
+            0L, PageRequest.of(0, 3));
+
+        //検証処理
+        ProductFacets facets = target.listPage(null, filter, KeysetRequest.of(null, null, null, 2)).getFacets();
+        assertThat(facets.getBrandCount(1L)).isEqualTo(5L);
+        assertThat(facets.getBrandCount(2L)).isEqualTo(4L);
+        assertThat(facets.getCategoryCount(1L)).isEqualTo(3L);
+        assertThat(facets.getCategoryCount(2L)).isEqualTo(2L);
+        assertThat(facets.getPriceCount(PriceRange.UNDER_1000)).isEqualTo(3L);
+        assertThat(facets.getPriceCount(PriceRange.FROM_1000)).isEqualTo(2L);
+    }
+
+    /**
+     * 【概要】
+     * インデックスを使用して絞り込み<br>
+     *
+     * 【条件】
+     * productSearchIndexのisReadyメソッドはtrueを返却するようスタブ化すること<br>
+     * productSearchIndexのseekAfterメソッドは絞り込み後の商品ID 2のカーソルを返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * インデックスが返却した商品だけが格納されていること<br>
+     * 件数は集計済みの件数から取得し、一致した商品の走査(searchメソッド)は呼び出されないこと<br>
+     * productRepositoryの集計クエリ・ページ取得クエリが呼び出されないこと
+     */
+    @Test
+    void testListPage_filteredBySearchIndex() {
+        ProductFilter filter = new ProductFilter(null, 2L, null);
+        ProductListRow productB = new ProductListRow(2L, "productB", 1, null, null, null, "brandB", "categoryB");
+
+        //スタブの設定
+        doReturn(true).when(this.mockProductSearchIndex).isReady();
+        doReturn(Arrays.asList(new KeysetCursor(2L, "productB"))).when(this.mockProductSearchIndex)
+            .seekAfter(filter, false, KeysetCursor.START, 3);
+        doReturn(Arrays.asList(productB)).when(this.mockProductRepository).findListRows(Arrays.asList(2L));
+
+        //検証処理
+        ProductSearchResult result = target.listPage(null, filter, KeysetRequest.of(null, null, null, 2));
+        assertThat(result.getPage().getContent()).containsExactly(productB);
+        assertThat(result.getPage().hasNext()).isFalse();
+        assertThat(result.getFacets().getFilter()).isEqualTo(filter);
+        verify(this.mockProductSearchIndex).countFacets(any(ProductFacets.class));
+        verify(this.mockProductSearchIndex, never()).search(anyString(), any(), anyBoolean(), any());
+        verify(this.mockProductRepository, never()).countFacets(anyString());
+        verify(this.mockProductRepository, never()).findListRowsAfter(anyString(), any(), any(), anyInt(), anyInt(), any(), any());
+    }
+
+    /**
+     * 【概要】
+     * インデックスを使用して絞り込みなしの商品を名前順に取得<br>
+     *
+     * 【条件】
+     * productSearchIndexのisReadyメソッドはtrueを返却するようスタブ化すること<br>
+     * productSearchIndexのseekAfterメソッドは名前順の商品ID 2, 1のカーソルを返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * 絞り込みがある場合と同じく、インデックスが返却した並び順で商品が格納されていること<br>
+     * productRepositoryの名前順のページ取得クエリが呼び出されないこと
+     */
+    @Test
+    void testListPage_unfilteredBySearchIndex() {
+        ProductListRow productA = new ProductListRow(2L, "Product", 1, null, null, null, "brandA", "categoryA");
+        ProductListRow productB = new ProductListRow(1L, "product", 1, null, null, null, "brandB", "categoryB");
+
+        //スタブの設定
+        doReturn(true).when(this.mockProductSearchIndex).isReady();
+        doReturn(Arrays.asList(new KeysetCursor(2L, "Product"), new KeysetCursor(1L, "product")))
+            .when(this.mockProductSearchIndex).seekAfter(ProductFilter.NONE, true, KeysetCursor.START, 3);
+        doReturn(Arrays.asList(productB, productA)).when(this.mockProductRepository).findListRows(Arrays.asList(2L, 1L));
+
+        //検証処理
+        ProductSearchResult result = target.listPage(null, ProductFilter.NONE, KeysetRequest.of("name", null, null, 2));
+        assertThat(result.getPage().getContent()).containsExactly(productA, productB);
+        verify(this.mockProductRepository, never()).findListRowsAfterName(anyString(), any(), any(), anyInt(), anyInt(),
+            any(), any(), any());
+    }
+
     /**
      * 【概要】
      * 商品名の重複チェック<br>
      *
      * 【条件】
+     * productNameFilterのmightExistメソッドはtrueを返却するようスタブ化すること<br>
      * productRepositoryのfindByNameメソッドはnullを返すようスタブ化すること<br>
      *
      * 【結果】
@@ -145,6 +359,7 @@ class ProductServiceTest {
         Product newProduct = new Product(1L, "productA", "descriptionA", 1, null, 1.0, 1.0, 1.0, 1.0, new Category(1L, "categoryA"), new Brand(1L, "brandA"));
 
         //スタブの設定
+        doReturn(true).when(this.mockProductNameFilter).mightExist(anyString());
         doReturn(null).when(this.mockProductRepository).findByName(anyString());
 
         //検証処理
@@ -173,12 +388,102 @@ class ProductServiceTest {
         mockProduct.setName("product");
 
         //スタブの設定
+        doReturn(true).when(this.mockProductNameFilter).mightExist(anyString());
         doReturn(mockProduct).when(this.mockProductRepository).findByName(newProduct.getName());
 
         //検証処理
         assertThat(target.checkUnique(newProduct)).isFalse();
     }
 
+    /**
+     * 【概要】
+     * 登録されていないことが確実な商品名の重複チェック<br>
+     *
+     * 【条件】
+     * productNameFilterのmightExistメソッドはfalseを返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * trueを返し、データベースに問い合わせないこと
+     */
+    @Test
+    void testCheckUnique_definitelyAbsent() {
+        Product newProduct = new Product();
+        newProduct.setName("newproduct");
+
+        doReturn(false).when(this.mockProductNameFilter).mightExist(newProduct.getName());
+
+        assertThat(target.checkUnique(newProduct)).isTrue();
+        verify(this.mockProductRepository, never()).findByName(anyString());
+    }
+
+    /**
+     * 【概要】
+     * 商品名が重複する商品情報の登録<br>
+     *
+     * 【条件】
+     * productRepositoryのsaveAndFlushメソッドは名前の一意制約違反のDataIntegrityViolationExceptionをスローするようスタブ化すること<br>
+     *
+     * 【結果】
+     * DuplicateExceptionをスローすること<br>
+     * 払い出されたIDを戻し、検索インデックスに追加しないこと
+     */
+    @Test
+    void testSave_duplicate() {
+        Product newProduct = new Product();
+        newProduct.setName("product");
+
+        //スタブの設定(保存時に払い出されたIDが格納された後、一意制約違反になる)
+        doAnswer(invocation -> {
+            newProduct.setId(1L);
+            throw uniqueViolation();
+        }).when(this.mockProductRepository).saveAndFlush(newProduct);
+
+        //検証処理
+        assertThatThrownBy(() -> target.save(newProduct)).isInstanceOf(DuplicateException.class);
+        assertThat(newProduct.getId()).isNull();
+        verify(this.mockProductSearchIndex, never()).put(any());
+    }
+
+    /**
+     * 【概要】
+     * 一意制約以外の制約に違反する商品情報の登録<br>
+     *
+     * 【結果】
+     * DataIntegrityViolationExceptionをそのままスローすること
+     */
+    @Test
+    void testSave_otherConstraintViolation() {
+        Product newProduct = new Product();
+        DataIntegrityViolationException e = new DataIntegrityViolationException("not null",
+            new SQLException("null value", "23502"));
+
+        doThrow(e).when(this.mockProductRepository).saveAndFlush(newProduct);
+
+        assertThatThrownBy(() -> target.save(newProduct)).isSameAs(e);
+    }
+
+    /**
+     * 【概要】
+     * 商品名以外の一意制約に違反する商品情報の登録<br>
+     *
+     * 【条件】
+     * productRepositoryのsaveAndFlushメソッドは主キーの一意制約違反(SQLSTATE 23505)のDataIntegrityViolationExceptionをスローするようスタブ化すること<br>
+     *
+     * 【結果】
+     * DuplicateExceptionに変換せず、DataIntegrityViolationExceptionをそのままスローすること
+     */
+    @Test
+    void testSave_otherUniqueViolation() {
+        Product newProduct = new Product();
+        DataIntegrityViolationException e = new DataIntegrityViolationException("duplicate key",
+            new ConstraintViolationException("duplicate key value violates unique constraint",
+                new SQLException("duplicate key value violates unique constraint", "23505"), "products_pkey"));
+
+        doThrow(e).when(this.mockProductRepository).saveAndFlush(newProduct);
+
+        assertThatThrownBy(() -> target.save(newProduct)).isSameAs(e);
+    }
+
     /**
      * 【概要】
      * 商品情報の取得<br>
@@ -258,4 +563,42 @@ class ProductServiceTest {
         //検証処理
         assertThat(target.get(id)).isEqualTo(product.get());
     }
+
+    /**
+     * 【概要】
+     * 商品情報の削除処理の検証<br>
+     *
+     * 【条件】
+     * productRepositoryのfindByIdはProductのインスタンスを格納したOptionalを返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * 取得した商品情報を削除し、削除した商品情報を返却すること<br>
+     * 商品情報の取得は1回のみであること<br>
+     * インデックスから削除すること
+     */
+    @Test
+    void testDelete() throws Exception {
+        //準備
+        Long id = 1L;
+        Product product = new Product();
+        product.setId(id);
+
+        //スタブの設定
+        doReturn(Optional.of(product)).when(this.mockProductRepository).findById(id);
+
+        //検証処理
+        assertThat(target.delete(id)).isSameAs(product);
+        verify(this.mockProductRepository).findById(id);
+        verify(this.mockProductRepository).delete(product);
+        verify(this.mockProductRepository, never()).deleteById(any());
+        verify(this.mockProductSearchIndex).remove(id);
+        verify(this.mockProductSuggestIndex).removeProduct(id);
+    }
+
+    private static DataIntegrityViolationException uniqueViolation() {
+        return new DataIntegrityViolationException("duplicate key",
+            new ConstraintViolationException("duplicate key value violates unique constraint",
+                new SQLException("duplicate key value violates unique constraint", "23505"), Product.NAME_CONSTRAINT));
+    }
+
 }
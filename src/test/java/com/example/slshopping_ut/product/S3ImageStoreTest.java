@@ -0,0 +1,303 @@
+package com.example.slshopping_ut.product;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class S3ImageStoreTest {
+
+    /** マルチパートアップロードのパートのサイズ(S3の最小値の5MB) */
+    private static final long PART_SIZE = 5 * 1024 * 1024;
+
+    /** テスト対象クラス */
+    private S3ImageStore target;
+
+    /** テスト用のオブジェクトストレージ */
+    private FakeS3Server server;
+
+    @TempDir
+    Path tempDir;
+
+    private String keyA = "sha256/aa/aa/a.png";
+
+    private String keyB = "sha256/bb/bb/b.png";
+
+    private String keyC = "sha256/cc/cc/c.png";
+
+    /** テスト中に開いたクラス(終了時に閉じる) */
+    private List<S3ImageStore> stores = new ArrayList<>();
+
+    @BeforeEach
+    void setup() throws Exception {
+        server = new FakeS3Server();
+        target = open("cache-1", 1024 * 1024, FakeS3Server.ACCESS_KEY);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stores.forEach(S3ImageStore::close);
+        server.close();
+    }
+
+    /**
+     * 【概要】
+     * 画像の保存・取得の検証<br>
+     *
+     * 【条件】
+     * 100バイトの画像を保存し、保存したサーバーで取得すること<br>
+     *
+     * 【結果】
+     * オブジェクトストレージに1回のPUTで保存されること<br>
+     * 保存したサーバーでは、ダウンロードせずにキャッシュのファイルを返すこと
+     */
+    @Test
+    void testPutAndGet() throws Exception {
+        //準備
+        byte[] content = content(100, 1);
+
+        //実行
+        target.put(keyA, file(content));
+        StoredImage image = target.get(keyA);
+
+        //検証
+        assertThat(server.objects.get(keyA)).isEqualTo(content);
+        assertThat(server.partCount.get()).isZero();
+        assertThat(image.getFile()).isEqualTo(tempDir.resolve("cache-1").resolve(keyA));
+        assertThat(read(image)).isEqualTo(content);
+        assertThat(server.getCount.get()).isZero();
+        assertThat(target.exists(keyA)).isTrue();
+    }
+
+    /**
+     * 【概要】
+     * マルチパートアップロードの検証<br>
+     *
+     * 【条件】
+     * パートのサイズを5MBとし、起動時に移行する旧形式の画像など、アップロードの上限(2MB)を超える12MBの画像を保存すること<br>
+     *
+     * 【結果】
+     * 3つのパートに分けて送信し、元の内容のオブジェクトとして保存されること<br>
+     * 完了していないアップロードが残らないこと
+     */
+    @Test
+    void testPut_multipart() throws Exception {
+        //準備
+        byte[] content = content(12 * 1024 * 1024, 3);
+
+        //実行
+        target.put(keyA, file(content));
+
+        //検証
+        assertThat(server.partCount.get()).isEqualTo(3);
+        assertThat(server.objects.get(keyA)).isEqualTo(content);
+        assertThat(server.uploads).isEmpty();
+    }
+
+    /**
+     * 【概要】
+     * 他のサーバーでの取得(読み込み時キャッシュ)の検証<br>
+     *
+     * 【条件】
+     * 保存したサーバーとは別のキャッシュの保存先で、同じ画像を2回取得すること<br>
+     *
+     * 【結果】
+     * 1回目のみダウンロードし、2回ともキャッシュのファイルを返すこと<br>
+     * 保存されていない画像はnullを返すこと
+     */
+    @Test
+    void testGet_readThrough() throws Exception {
+        //準備
+        byte[] content = content(100, 1);
+        target.put(keyA, file(content));
+        S3ImageStore otherNode = open("cache-2", 1024 * 1024, FakeS3Server.ACCESS_KEY);
+
+        //実行
+        StoredImage first = otherNode.get(keyA);
+        StoredImage second = otherNode.get(keyA);
+
+        //検証
+        assertThat(server.getCount.get()).isEqualTo(1);
+        assertThat(first.getFile()).isEqualTo(tempDir.resolve("cache-2").resolve(keyA));
+        assertThat(read(first)).isEqualTo(content);
+        assertThat(read(second)).isEqualTo(content);
+        assertThat(otherNode.get(keyB)).isNull();
+    }
+
+    /**
+     * 【概要】
+     * キャッシュの合計サイズが上限を超えた場合の検証<br>
+     *
+     * 【条件】
+     * キャッシュの上限を250バイトとし、100バイトの画像を3件取得した後、1件目を再び取得すること<br>
+     *
+     * 【結果】
+     * 最も長く使われていない1件目がキャッシュから削除され、再びダウンロードすること
+     */
+    @Test
+    void testGet_evict() throws Exception {
+        //準備
+        target.put(keyA, file(content(100, 1)));
+        target.put(keyB, file(content(100, 2)));
+        target.put(keyC, file(content(100, 3)));
+        S3ImageStore otherNode = open("cache-2", 250, FakeS3Server.ACCESS_KEY);
+        otherNode.get(keyA);
+        otherNode.get(keyB);
+
+        //実行
+        otherNode.get(keyC);
+
+        //検証
+        assertThat(tempDir.resolve("cache-2").resolve(keyA)).doesNotExist();
+        assertThat(tempDir.resolve("cache-2").resolve(keyB)).exists();
+        assertThat(read(otherNode.get(keyA))).isEqualTo(content(100, 1));
+        assertThat(server.getCount.get()).isEqualTo(4);
+    }
+
+    /**
+     * 【概要】
+     * 起動時のキャッシュの読み込みの検証<br>
+     *
+     * 【条件】
+     * キャッシュ済みの画像と、ダウンロード途中の一時ファイルが残った保存先で開き直すこと<br>
+     *
+     * 【結果】
+     * キャッシュ済みの画像はダウンロードせずに返すこと<br>
+     * 一時ファイルが削除されること
+     */
+    @Test
+    void testOpen_existingCache() throws Exception {
+        //準備
+        target.put(keyA, file(content(100, 1)));
+        Path leftover = Files.createFile(tempDir.resolve("cache-1").resolve("download-1.tmp"));
+
+        //実行
+        target = open("cache-1", 1024 * 1024, FakeS3Server.ACCESS_KEY);
+
+        //検証
+        assertThat(read(target.get(keyA))).isEqualTo(content(100, 1));
+        assertThat(server.getCount.get()).isZero();
+        assertThat(leftover).doesNotExist();
+    }
+
+    /**
+     * 【概要】
+     * 前方一致による画像の削除の検証<br>
+     *
+     * 【条件】
+     * 元の画像・サムネイルと、別の画像を保存し、元の画像のキーの拡張子を除いた部分で削除すること<br>
+     *
+     * 【結果】
+     * オブジェクトストレージ・キャッシュから元の画像・サムネイルが削除されること<br>
+     * 別の画像は削除されないこと
+     */
+    @Test
+    void testRemoveAll() throws Exception {
+        //準備
+        target.put(keyA, file(content(100, 1)));
+        target.put("sha256/aa/aa/a_thumb.png", file(content(10, 2)));
+        target.put(keyB, file(content(100, 3)));
+
+        //実行
+        target.removeAll("sha256/aa/aa/a");
+
+        //検証
+        assertThat(server.objects).containsOnlyKeys(keyB);
+        assertThat(tempDir.resolve("cache-1").resolve(keyA)).doesNotExist();
+        assertThat(target.exists(keyA)).isFalse();
+        assertThat(target.exists(keyB)).isTrue();
+    }
+
+    /**
+     * 【概要】
+     * 他のサーバーで削除された画像の保存済み判定の検証<br>
+     *
+     * 【条件】
+     * 画像を取得してキャッシュに入れた後、別のサーバーで削除し、キャッシュに残ったサーバーで判定・保存し直すこと<br>
+     *
+     * 【結果】
+     * キャッシュに残っていても保存されていないと判定し、キャッシュから削除すること<br>
+     * 保存し直した画像がオブジェクトストレージに保存されること
+     */
+    @Test
+    void testExists_removedOnOtherNode() throws Exception {
+        //準備
+        byte[] content = content(100, 1);
+        target.put(keyA, file(content));
+        S3ImageStore otherNode = open("cache-2", 1024 * 1024, FakeS3Server.ACCESS_KEY);
+        otherNode.removeAll(keyA);
+
+        //実行・検証
+        assertThat(target.exists(keyA)).isFalse();
+        assertThat(tempDir.resolve("cache-1").resolve(keyA)).doesNotExist();
+        target.put(keyA, file(content));
+        assertThat(server.objects.get(keyA)).isEqualTo(content);
+        assertThat(otherNode.exists(keyA)).isTrue();
+    }
+
+    /**
+     * 【概要】
+     * 認証情報が異なる場合の検証<br>
+     *
+     * 【条件】
+     * 登録されていないアクセスキーで画像を保存すること<br>
+     *
+     * 【結果】
+     * IOExceptionが発生し、オブジェクトストレージに保存されないこと
+     */
+    @Test
+    void testPut_invalidCredentials() throws Exception {
+        //準備
+        S3ImageStore invalid = open("cache-2", 1024 * 1024, "wrong-access-key");
+        Path source = file(content(100, 1));
+
+        //実行・検証
+        assertThatThrownBy(() -> invalid.put(keyA, source)).isInstanceOf(IOException.class);
+        assertThat(server.objects).isEmpty();
+    }
+
+    private S3ImageStore open(String cacheDir, long cacheSize, String accessKey) throws Exception {
+        S3ImageStore store = new S3ImageStore();
+        ReflectionTestUtils.setField(store, "endpoint", server.endpoint().toString());
+        ReflectionTestUtils.setField(store, "region", FakeS3Server.REGION);
+        ReflectionTestUtils.setField(store, "bucket", FakeS3Server.BUCKET);
+        ReflectionTestUtils.setField(store, "accessKey", accessKey);
+        ReflectionTestUtils.setField(store, "secretKey", FakeS3Server.SECRET_KEY);
+        ReflectionTestUtils.setField(store, "partSize", PART_SIZE);
+        ReflectionTestUtils.setField(store, "cacheDir", tempDir.resolve(cacheDir).toString());
+        ReflectionTestUtils.setField(store, "cacheSize", cacheSize);
+        store.open();
+        stores.add(store);
+        return store;
+    }
+
+    private Path file(byte[] content) throws Exception {
+        return Files.write(Files.createTempFile(tempDir, "upload", ".png"), content);
+    }
+
+    private static byte[] content(int length, int seed) {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) (i * seed);
+        }
+        return content;
+    }
+
+    private static byte[] read(StoredImage image) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        image.transferTo(0, image.getLength(), Channels.newChannel(out));
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.example.slshopping_ut.search;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class BloomFilterTest {
+
+    /**
+     * 【概要】
+     * 登録した文字列の判定<br>
+     *
+     * 【条件】
+     * 想定件数10000件・誤判定率1%のフィルターに10000件の文字列を登録すること<br>
+     *
+     * 【結果】
+     * 登録したすべての文字列を含む可能性があると判定すること
+     */
+    @Test
+    void testMightContain_inserted() {
+        BloomFilter target = new BloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            target.put("product" + i);
+        }
+
+        for (int i = 0; i < 10000; i++) {
+            assertThat(target.mightContain("product" + i)).isTrue();
+        }
+    }
+
+    /**
+     * 【概要】
+     * 登録していない文字列の誤判定率<br>
+     *
+     * 【条件】
+     * 想定件数10000件・誤判定率1%のフィルターに10000件の文字列を登録し、登録していない10000件の文字列を判定すること<br>
+     *
+     * 【結果】
+     * 含む可能性があると誤判定する割合が2%未満であること<br>
+     * ビットの埋まり具合から求めた誤判定率も2%未満であること
+     */
+    @Test
+    void testMightContain_falsePositiveRate() {
+        BloomFilter target = new BloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            target.put("product" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (target.mightContain("absent" + i)) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives / 10000.0).isLessThan(0.02);
+        assertThat(target.expectedFalsePositiveRate()).isGreaterThan(0.0).isLessThan(0.02);
+    }
+
+    /**
+     * 【概要】
+     * フィルターの大きさ<br>
+     *
+     * 【条件】
+     * 想定件数10000件・誤判定率1%のフィルターを作成すること<br>
+     *
+     * 【結果】
+     * 1件あたり約9.6ビット・7個のハッシュとなり、メモリ使用量がビット数の1/8であること<br>
+     * 何も登録していない場合は、すべての文字列を含まないと判定すること
+     */
+    @Test
+    void testSize() {
+        BloomFilter target = new BloomFilter(10000, 0.01);
+
+        assertThat(target.getBitSize()).isBetween(95851L, 95851L + 63);
+        assertThat(target.getHashCount()).isEqualTo(7);
+        assertThat(target.getMemoryBytes()).isEqualTo(target.getBitSize() / 8);
+        assertThat(target.mightContain("product")).isFalse();
+        assertThat(target.expectedFalsePositiveRate()).isZero();
+    }
+
+    /**
+     * 【概要】
+     * 不正な引数でのフィルターの作成<br>
+     *
+     * 【結果】
+     * IllegalArgumentExceptionが発生すること
+     */
+    @Test
+    void testConstructor_invalidArguments() {
+        assertThatThrownBy(() -> new BloomFilter(0, 0.01)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new BloomFilter(100, 1.0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.example.slshopping_ut.search;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class NgramIndexTest {
+
+    /** テスト対象クラス */
+    private NgramIndex target;
+
+    @BeforeEach
+    void setup() {
+        target = new NgramIndex();
+        target.put(1L, "東京都港区", "1 tokyo@example.com 山田 ");
+        target.put(2L, "京都府京都市");
+        target.put(3L, "大阪府大阪市");
+    }
+
+    /**
+     * 【概要】
+     * 1文字・2文字・3文字以上のキーワードで検索<br>
+     *
+     * 【結果】
+     * いずれかの文字列にキーワードを部分文字列として含むIDを昇順で返却すること
+     */
+    @Test
+    void testSearch_substring() {
+        assertThat(target.search("府").toArray()).containsExactly(2L, 3L);
+        assertThat(target.search("京都").toArray()).containsExactly(1L, 2L);
+        assertThat(target.search("京都市").toArray()).containsExactly(2L);
+        assertThat(target.search("@example.").toArray()).containsExactly(1L);
+    }
+
+    /**
+     * 【概要】
+     * N-gramはすべて含むが、文字列としては含まないキーワードで検索<br>
+     *
+     * 【条件】
+     * N-gram(都府・府京・京都)はID2の文字列に含まれる「都府京都府」を検索すること<br>
+     *
+     * 【結果】
+     * 空のリストを返却すること
+     */
+    @Test
+    void testSearch_gramsMatchButNotSubstring() {
+        assertThat(target.search("都府京都府").toArray()).isEmpty();
+    }
+
+    /**
+     * 【概要】
+     * 空文字で検索<br>
+     *
+     * 【結果】
+     * 登録済みのIDをすべて返却すること
+     */
+    @Test
+    void testSearch_emptyKeyword() {
+        assertThat(target.search("").toArray()).containsExactly(1L, 2L, 3L);
+    }
+
+    /**
+     * 【概要】
+     * 文字列の置き換えと削除<br>
+     *
+     * 【条件】
+     * ID2の文字列を置き換え、ID3を削除すること<br>
+     *
+     * 【結果】
+     * 置き換え前の文字列・削除したIDでは検索できないこと
+     */
+    @Test
+    void testPutAndRemove() {
+        target.put(2L, "北海道札幌市");
+        target.remove(3L);
+
+        assertThat(target.search("京都市").toArray()).isEmpty();
+        assertThat(target.search("札幌").toArray()).containsExactly(2L);
+        assertThat(target.search("市").toArray()).containsExactly(2L);
+        assertThat(target.size()).isEqualTo(2);
+    }
+
+}
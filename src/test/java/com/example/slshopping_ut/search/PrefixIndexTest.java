@@ -0,0 +1,77 @@
+package com.example.slshopping_ut.search;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PrefixIndexTest {
+
+    /** テスト対象クラス */
+    private PrefixIndex<String> target;
+
+    @BeforeEach
+    void setup() {
+        target = new PrefixIndex<>();
+        target.put("product:1", "Sound Bar", "product:1");
+        target.put("brand:1", "Sony", "brand:1");
+        target.put("product:2", "Sony", "product:2");
+        target.put("category:1", "スピーカー", "category:1");
+    }
+
+    /**
+     * 【概要】
+     * 前方一致で検索<br>
+     *
+     * 【条件】
+     * 大文字・全角で入力された文字列を検索すること<br>
+     *
+     * 【結果】
+     * 英字の大小・全角半角を区別せず、前方一致する値を文字列の辞書順に返却すること<br>
+     * 同じ文字列の値はすべて返却すること
+     */
+    @Test
+    void testFind_prefix() {
+        assertThat(target.find("SO", 10)).containsExactly("brand:1", "product:2", "product:1");
+        assertThat(target.find("ｓｏｎ", 10)).containsExactly("brand:1", "product:2");
+        assertThat(target.find("スピ", 10)).containsExactly("category:1");
+    }
+
+    /**
+     * 【概要】
+     * 最大件数と空文字の検索<br>
+     *
+     * 【結果】
+     * 最大件数までの値を返却すること<br>
+     * 空文字の場合は空のリストを返却すること
+     */
+    @Test
+    void testFind_limitAndEmpty() {
+        assertThat(target.find("so", 1)).containsExactly("brand:1");
+        assertThat(target.find(" ", 10)).isEmpty();
+    }
+
+    /**
+     * 【概要】
+     * 値の置き換えと削除<br>
+     *
+     * 【条件】
+     * brand:1の文字列をBoseに置き換え、product:2を削除し、category:1をputIfAbsentで登録し直すこと<br>
+     *
+     * 【結果】
+     * 置き換え前の文字列・削除した値では検索できないこと<br>
+     * 登録済みの値はputIfAbsentで置き換わらないこと
+     */
+    @Test
+    void testPutAndRemove() {
+        target.put("brand:1", "Bose", "brand:1");
+        target.remove("product:2");
+        target.putIfAbsent("category:1", "アンプ", "category:1");
+
+        assertThat(target.find("son", 10)).isEmpty();
+        assertThat(target.find("bo", 10)).containsExactly("brand:1");
+        assertThat(target.find("アン", 10)).isEmpty();
+        assertThat(target.size()).isEqualTo(3);
+    }
+
+}
@@ -1,6 +1,7 @@
 package com.example.slshopping_ut.user;
 
 import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.*;
@@ -16,9 +17,14 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import com.example.slshopping_ut.DuplicateException;
+import com.example.slshopping_ut.KeysetPage;
+import com.example.slshopping_ut.KeysetRequest;
+import com.example.slshopping_ut.csv.CsvImportResult;
 import com.example.slshopping_ut.entity.Role;
 import com.example.slshopping_ut.entity.User;
 
@@ -48,7 +54,7 @@ class UserControllerTest {
      * 【条件】
      * GET通信の/usersにリクエストすること<br>
      * クエリパラメーターkeywordにはnullを入力すること<br>
-     * userServiceのfindAllメソッドは管理者のリストを返却するようスタブ化すること<br>
+     * userServiceのlistPageメソッドは1ページ分のリストを返却するようスタブ化すること<br>
      *
      * 【結果】
      * ステータスが200であること<br>
@@ -59,17 +65,20 @@ class UserControllerTest {
     @Test
     void testListUsers() throws Exception {
         //準備
-        List<User> users = new ArrayList<>();
+        List<UserListRow> users = new ArrayList<>();
+        KeysetPage<UserListRow> page = new KeysetPage<>(users, KeysetRequest.SORT_ID, KeysetPage.DEFAULT_SIZE, null, null);
         String keyword = null;
 
         //スタブを設定
-        doReturn(users).when(this.mockUserService).listAll(keyword);
+        doReturn(page).when(this.mockUserService).listPage(isNull(), argThat(request ->
+            KeysetRequest.SORT_ID.equals(request.getSort()) && request.getSize() == KeysetPage.DEFAULT_SIZE));
 
         //検証
         this.mockMvc.perform(get("/users").param("keyword", keyword))
                 .andExpect(status().isOk())
                 .andExpect(view().name("users/users"))
                 .andExpect(model().attribute("listUsers", users))
+                .andExpect(model().attribute("page", page))
                 .andExpect(model().attribute("keyword", keyword));
 
     }
@@ -102,7 +111,6 @@ class UserControllerTest {
      * 【条件】
      * POST通信の/users/saveにリクエストすること<br>
      * バリデーションを通過する値をパラメーターにすること<br>
-     * userServiceのcheckUniqueメソッドはtrueを返却するようスタブ化すること<br>
      * userServiceのsaveメソッドはUserのインスタンスを返却するようスタブ化すること<br>
      *
      * 【結果】
@@ -119,7 +127,6 @@ class UserControllerTest {
         User user = new User(1L, "aaa@example.com", "password", "userA", false, roles);
 
         //スタブの設定
-        doReturn(true).when(this.mockUserService).checkUnique(user);
         //doNothing()は返り値がない時
         doReturn(user).when(this.mockUserService).save(user);
 
@@ -130,6 +137,38 @@ class UserControllerTest {
                 .andExpect(flash().attribute("success_message", "登録に成功しました"));
     }
 
+    /**
+     * 【概要】
+     * 管理者新規登録処理でメールアドレスが重複していた場合の検証
+     *
+     * 【条件】
+     * POST通信の/users/saveにリクエストすること<br>
+     * userServiceのsaveメソッドはDuplicateExceptionをスローするようスタブ化すること<br>
+     *
+     * 【結果】
+     * ステータスが200であること<br>
+     * users/user_form.htmlを表示すること<br>
+     * キー名error_messageに「重複しています」という文字列が格納されていること
+     */
+    @Test
+    void testNewUserForm_duplicate() throws Exception {
+        //準備
+        Set<Role> roles = Set.of(
+            new Role(1L, "Admin", "管理者")
+        );
+        User user = new User(null, "aaa@example.com", "password", "userA", false, roles);
+
+        //スタブの設定
+        doThrow(new DuplicateException(null)).when(this.mockUserService).save(user);
+
+        //検証
+        this.mockMvc.perform(post("/users/save").flashAttr("user", user))
+                .andExpect(status().isOk())
+                .andExpect(view().name("users/user_form"))
+                .andExpect(model().attribute("error_message", "重複しています"));
+        verify(this.mockUserService, never()).checkUnique(any());
+    }
+
     /**
      * 【概要】
      * 管理者詳細画面の検証<br>
@@ -197,7 +236,6 @@ class UserControllerTest {
      * 【条件】
      * POST通信の/users/edit/1にリクエストすること<br>
      * バリデーションを通過する値をパラメーターにすること<br>
-     * userServiceのcheckUniqueメソッドはtrueを返却するようスタブ化すること<br>
      * userServiceのsaveメソッドはUserのインスタンスを返却するようスタブ化すること<br>
      *
      * 【結果】
@@ -215,7 +253,6 @@ class UserControllerTest {
         User user = new User(1L, "aaa@example.com", "password", "userA", false, roles);
 
         //スタブの設定
-        doReturn(true).when(this.mockUserService).checkUnique(user);
         doReturn(user).when(this.mockUserService).save(user);
 
         //検証
@@ -225,4 +262,54 @@ class UserControllerTest {
                 .andExpect(flash().attribute("success_message", "更新に成功しました"));
 
     }
+
+    /**
+     * 【概要】
+     * 管理者一括登録処理の検証<br>
+     *
+     * 【条件】
+     * POST通信の/users/importにCSVファイルを添付してリクエストすること<br>
+     * userServiceのimportCsvメソッドは登録結果を返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * ステータスが200であること<br>
+     * users/user_import.htmlを表示すること<br>
+     * キー名resultに登録結果が格納されていること
+     */
+    @Test
+    void testImportUsers() throws Exception {
+        //準備
+        MockMultipartFile file = new MockMultipartFile("file", "users.csv", "text/csv", "name\n".getBytes());
+        CsvImportResult result = new CsvImportResult();
+
+        //スタブを設定
+        doReturn(result).when(this.mockUserService).importCsv(any());
+
+        //検証
+        this.mockMvc.perform(multipart("/users/import").file(file))
+            .andExpect(status().isOk())
+            .andExpect(view().name("users/user_import"))
+            .andExpect(model().attribute("result", result));
+    }
+
+    /**
+     * 【概要】
+     * 管理者情報のCSV出力の検証<br>
+     *
+     * 【条件】
+     * GET通信の/users/exportにリクエストすること<br>
+     *
+     * 【結果】
+     * ステータスが200であること<br>
+     * CSVを添付ファイルとして返却すること
+     */
+    @Test
+    void testExportUsers() throws Exception {
+        this.mockMvc.perform(get("/users/export"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Disposition", "attachment; filename=\"users.csv\""));
+
+        verify(this.mockUserService, times(1)).exportCsv(any());
+    }
+
 }
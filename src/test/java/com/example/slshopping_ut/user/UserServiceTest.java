@@ -1,21 +1,46 @@
 package com.example.slshopping_ut.user;
 
 import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.crossstore.ChangeSetPersister.NotFoundException;
-
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.slshopping_ut.DuplicateException;
+import com.example.slshopping_ut.KeysetCursor;
+import com.example.slshopping_ut.KeysetPage;
+import com.example.slshopping_ut.KeysetRequest;
+import com.example.slshopping_ut.csv.CsvImportResult;
+import com.example.slshopping_ut.entity.Role;
 import com.example.slshopping_ut.entity.User;
 
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+
 @ExtendWith(MockitoExtension.class)
 class UserServiceTest {
 
@@ -23,6 +48,35 @@ class UserServiceTest {
     @Mock
     private UserRepository mockUserRepository;
 
+    @Mock
+    private UserSearchIndex mockUserSearchIndex;
+
+    @Mock
+    private UserEmailFilter mockUserEmailFilter;
+
+    @Mock
+    private RoleRepository mockRoleRepository;
+
+    @Mock
+    private PasswordEncoder mockPasswordEncoder;
+
+    @Mock
+    private UserBulkRepository mockUserBulkRepository;
+
+    @Mock
+    private TransactionTemplate mockTransactionTemplate;
+
+    /** 2次キャッシュの破棄で使用する(EntityManagerFactoryとして注入する) */
+    @Mock
+    private SessionFactory mockSessionFactory;
+
+    @Mock
+    private Cache mockCache;
+
+    /** 入力チェックは実際の処理を使用する */
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
     /** テスト対象クラスにモックを注入 */
     @InjectMocks
     private  UserService target;
@@ -77,6 +131,48 @@ class UserServiceTest {
       assertThat(target.listAll("")).isEqualTo(expected);
     }
 
+    /**
+     * 【概要】
+     * 管理者の2ページ目を名前順で取得<br>
+     *
+     * 【条件】
+     * userServiceのlistPageメソッドにキーワードを指定せず、名前順・after=0:a・表示件数2を渡すこと<br>
+     * userRepositoryのfindListRowsAfterNameメソッドは3件のUserListRowのリストを返却するようスタブ化すること<br>
+     * userRepositoryのfindRoleNamesメソッドは表示する2件の管理者のロール名を返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * 先頭2件のUserListRowが格納されていること<br>
+     * 次のページのカーソルが2件目のIDと名前であること<br>
+     * 前のページのカーソルが1件目のIDと名前であること<br>
+     * 各UserListRowにロール名が設定されていること
+     */
+    @Test
+    void testListPage_sortedByName() {
+      List<UserListRow> rows = Arrays.asList(
+        new UserListRow(1L, "aaa@example.com", "userA", false),
+        new UserListRow(2L, "bbb@example.com", "userB", false),
+        new UserListRow(3L, "ccc@example.com", "userC", false)
+      );
+      List<Object[]> roles = Arrays.asList(
+        new Object[] { 1L, "Admin" },
+        new Object[] { 2L, "Editor" },
+        new Object[] { 1L, "Editor" }
+      );
+
+      //スタブの設定
+      doReturn(rows).when(this.mockUserRepository).findListRowsAfterName("", "a", 0L, PageRequest.of(0, 3));
+      doReturn(roles).when(this.mockUserRepository).findRoleNames(argThat(ids ->
+        ids.size() == 2 && ids.containsAll(Arrays.asList(1L, 2L))));
+
+      //検証処理
+      KeysetPage<UserListRow> page = target.listPage(null, KeysetRequest.of("name", "0:a", null, 2));
+      assertThat(page.getContent()).containsExactly(rows.get(0), rows.get(1));
+      assertThat(page.getNextCursor()).isEqualTo("2:" + rows.get(1).getName());
+      assertThat(page.getPrevCursor()).isEqualTo("1:" + rows.get(0).getName());
+      assertThat(rows.get(0).getRoles()).containsExactly("Admin", "Editor");
+      assertThat(rows.get(1).getRoles()).containsExactly("Editor");
+    }
+
     /**
      * 【概要】
      * 管理者を検索<br>
@@ -105,11 +201,49 @@ class UserServiceTest {
 
     }
 
+    /**
+     * 【概要】
+     * インデックスを使用して管理者のページを取得<br>
+     *
+     * 【条件】
+     * userServiceのlistPageメソッドにキーワードexampleとID順・表示件数2を渡すこと<br>
+     * userSearchIndexのisReadyメソッドはtrueを返却するようスタブ化すること<br>
+     * userSearchIndexのsearchメソッドは管理者ID 1〜3のカーソルを返却するようスタブ化すること<br>
+     * userRepositoryのfindListRowsメソッドはID順とは異なる順でUserListRowのリストを返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * 先頭2件のUserListRowがID順に格納されていること<br>
+     * 次のページのカーソルが2件目の管理者IDであること<br>
+     * userRepositoryのfindListRowsAfterメソッドが呼び出されないこと
+     */
+    @Test
+    void testListPage_searchIndexIsReady() {
+      String keyword = "example";
+      List<UserListRow> rows = Arrays.asList(
+        new UserListRow(3L, "ccc@example.com", "userC", false),
+        new UserListRow(1L, "aaa@example.com", "userA", false),
+        new UserListRow(2L, "bbb@example.com", "userB", false)
+      );
+
+      //スタブの設定
+      doReturn(true).when(this.mockUserSearchIndex).isReady();
+      doReturn(Arrays.asList(new KeysetCursor(1L, "userA"), new KeysetCursor(2L, "userB"), new KeysetCursor(3L, "userC")))
+        .when(this.mockUserSearchIndex).search(keyword, false);
+      doReturn(rows).when(this.mockUserRepository).findListRows(Arrays.asList(1L, 2L, 3L));
+
+      //検証処理
+      KeysetPage<UserListRow> page = target.listPage(keyword, KeysetRequest.of(null, null, null, 2));
+      assertThat(page.getContent()).containsExactly(rows.get(1), rows.get(2));
+      assertThat(page.getNextCursor()).isEqualTo("2");
+      verify(this.mockUserRepository, never()).findListRowsAfter(anyString(), anyLong(), any());
+    }
+
    /**
      * 【概要】
      * 管理メールアドレスの重複チェック<br>
      *
      * 【条件】
+     * userEmailFilterのmightExistメソッドはtrueを返却するようスタブ化すること<br>
      * userRepositoryのfindByEmailメソッドはnullを返すようスタブ化すること<br>
      *
      * 【結果】
@@ -121,6 +255,7 @@ class UserServiceTest {
       User newUser = new User(1L, "aaa@example.com", "test1", "userA", false, null);
 
       //スタブの設定
+      doReturn(true).when(this.mockUserEmailFilter).mightExist(anyString());
       doReturn(null).when(this.mockUserRepository).findByEmail(newUser.getEmail());
 
       //検証
@@ -132,6 +267,7 @@ class UserServiceTest {
      * 管理メールアドレスの重複チェック<br>
      *
      * 【条件】
+     * userEmailFilterのmightExistメソッドはtrueを返却するようスタブ化すること<br>
      * userRepositoryのfindByEmailメソッドはUserのインスタンスを返すようスタブ化すること<br>
      *
      * 【結果】
@@ -148,6 +284,7 @@ class UserServiceTest {
       newUser.setEmail("aaa@example.com");
 
       //スタブの設定
+      doReturn(true).when(this.mockUserEmailFilter).mightExist(anyString());
       doReturn(mockUser).when(this.mockUserRepository).findByEmail(newUser.getEmail());
 
       //検証
@@ -155,6 +292,60 @@ class UserServiceTest {
 
     }
 
+    /**
+     * 【概要】
+     * 登録されていないことが確実なメールアドレスの重複チェック<br>
+     *
+     * 【条件】
+     * userEmailFilterのmightExistメソッドはfalseを返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * trueを返し、データベースに問い合わせないこと
+     */
+    @Test
+    void testCheckUnique_definitelyAbsent() {
+      User newUser = new User();
+      newUser.setEmail("new@example.com");
+
+      doReturn(false).when(this.mockUserEmailFilter).mightExist(newUser.getEmail());
+
+      assertThat(target.checkUnique(newUser)).isTrue();
+      verify(this.mockUserRepository, never()).findByEmail(anyString());
+    }
+
+    /**
+     * 【概要】
+     * メールアドレスが重複する管理者情報の登録<br>
+     *
+     * 【条件】
+     * userRepositoryのsaveAndFlushメソッドはメールアドレスの一意制約違反のDataIntegrityViolationExceptionをスローするようスタブ化すること<br>
+     *
+     * 【結果】
+     * DuplicateExceptionをスローすること<br>
+     * 払い出されたIDと入力されたパスワードを戻し、検索インデックスに追加しないこと
+     */
+    @Test
+    void testSave_duplicate() {
+      User newUser = new User();
+      newUser.setEmail("aaa@example.com");
+      newUser.setPassword("password");
+
+      //スタブの設定(保存時に払い出されたIDが格納された後、一意制約違反になる)
+      doReturn("encoded").when(this.mockPasswordEncoder).encode("password");
+      doAnswer(invocation -> {
+        newUser.setId(1L);
+        throw new DataIntegrityViolationException("duplicate key",
+            new ConstraintViolationException("duplicate key value violates unique constraint",
+                new SQLException("duplicate key value violates unique constraint", "23505"), User.EMAIL_CONSTRAINT));
+      }).when(this.mockUserRepository).saveAndFlush(newUser);
+
+      //検証
+      assertThatThrownBy(() -> target.save(newUser)).isInstanceOf(DuplicateException.class);
+      assertThat(newUser.getId()).isNull();
+      assertThat(newUser.getPassword()).isEqualTo("password");
+      verify(this.mockUserSearchIndex, never()).put(any());
+    }
+
     /**
      * 【概要】
      * 管理者情報の取得<br>
@@ -234,4 +425,82 @@ class UserServiceTest {
       //検証
       assertThat(target.get(id)).isEqualTo(user.get());
     }
+
+    /**
+     * 【概要】
+     * 管理者の一括登録<br>
+     *
+     * 【条件】
+     * 新規の管理者・パスワードとロールが空の登録済みの管理者・パスワードが空の新規の管理者・未登録のロールの管理者の行を読み込むこと<br>
+     * userEmailFilterのmightExistメソッドはtrueを返却するようスタブ化すること<br>
+     * userBulkRepositoryのfindIdsメソッドは、登録前はold@example.comのみ、登録後は2件のIDを返却するようスタブ化すること<br>
+     *
+     * 【結果】
+     * 新規の管理者と登録済みの管理者を1回のupsertで登録・更新すること<br>
+     * 新規の管理者のパスワードはハッシュ化し、登録済みの管理者のパスワード・ロールは指定しないこと<br>
+     * パスワードが空の新規の管理者・未登録のロールの行は行番号とエラーメッセージを返却すること<br>
+     * 登録した管理者を検索インデックスに追加すること
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testImportCsv() throws Exception {
+        String csv = "email,name,password,enabled,roles\n"
+            + "new@example.com,userNew,pass1234,true,Admin|Editor\n"
+            + "old@example.com,userOld,,false,\n"
+            + "new2@example.com,userNew2,,true,Admin\n"
+            + "bad@example.com,userBad,pass1234,true,Unknown\n";
+        stubTransaction();
+        stubCache();
+        doReturn(List.of(new Role(1L, "Admin", "admin"), new Role(2L, "Editor", "editor")))
+            .when(this.mockRoleRepository).findAll();
+        doReturn(true).when(this.mockUserEmailFilter).mightExist(anyString());
+        doReturn(Map.of("old@example.com", 5L))
+            .doReturn(Map.of("new@example.com", 10L, "old@example.com", 5L))
+            .when(this.mockUserBulkRepository).findIds(any());
+        doReturn("encoded").when(this.mockPasswordEncoder).encode("pass1234");
+
+        CsvImportResult result = target.importCsv(stream(csv));
+
+        assertThat(result.getTotalRows()).isEqualTo(4L);
+        assertThat(result.getImportedRows()).isEqualTo(2L);
+        assertThat(result.getErrors()).extracting(CsvImportResult.RowError::getLine).containsExactlyInAnyOrder(4L, 5L);
+        assertThat(result.getErrors()).extracting(CsvImportResult.RowError::getMessage).containsExactlyInAnyOrder(
+            "新規の管理者はパスワードを入力してください", "ロール「Unknown」は登録されていません");
+
+        ArgumentCaptor<List<UserImportRow>> captor = ArgumentCaptor.forClass(List.class);
+        verify(this.mockUserBulkRepository, times(1)).upsert(captor.capture());
+        List<UserImportRow> rows = captor.getValue();
+        assertThat(rows).extracting(UserImportRow::getEmail).containsExactly("new@example.com", "old@example.com");
+        assertThat(rows.get(0).getEncodedPassword()).isEqualTo("encoded");
+        assertThat(rows.get(0).getRoleIds()).containsExactly(1L, 2L);
+        assertThat(rows.get(1).getEncodedPassword()).isNull();
+        assertThat(rows.get(1).getRoleIds()).isEmpty();
+        assertThat(rows.get(1).isEnabled()).isFalse();
+        verify(this.mockUserSearchIndex, times(2)).put(any(User.class));
+        verify(this.mockCache, atLeastOnce()).evict(User.class);
+    }
+
+    /**
+     * トランザクション内の処理をそのまま実行するようスタブ化する
+     */
+    @SuppressWarnings("unchecked")
+    private void stubTransaction() {
+        doAnswer(invocation -> {
+            ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(this.mockTransactionTemplate).executeWithoutResult(any());
+    }
+
+    /**
+     * 2次キャッシュの破棄をモックで受けるようスタブ化する
+     */
+    private void stubCache() {
+        doReturn(this.mockSessionFactory).when(this.mockSessionFactory).unwrap(SessionFactory.class);
+        doReturn(this.mockCache).when(this.mockSessionFactory).getCache();
+    }
+
+    private static ByteArrayInputStream stream(String csv) {
+        return new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
+    }
+
 }